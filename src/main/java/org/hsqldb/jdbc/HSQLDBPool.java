@@ -2,54 +2,289 @@ package org.hsqldb.jdbc;
 
 import org.hsqldb.jdbc.pool.JDBCPooledConnection;
 
+import javax.sql.ConnectionEvent;
+import javax.sql.PooledConnection;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Connection pool that hands out connections in the order they were requested.
+ * <p>
+ * {@link JDBCPool} scans every slot from the start, sleeping and rescanning when the pool is full,
+ * so a caller that has been waiting a while can lose out to one that has only just arrived.
+ * Here, free slots are kept on a stack, so acquiring one doesn't need a scan, and callers that find the pool full
+ * join a queue. Returned slots are handed straight to the longest-waiting caller.
+ * <p>
+ * Callers wait for up to the login timeout, or 30 seconds if that's unset, same as {@link JDBCPool}.
+ */
 public class HSQLDBPool extends JDBCPool {
 
+	/** How long callers wait for a free connection if no login timeout has been set. (seconds) */
+	private static final int DEFAULT_TIMEOUT = 30;
+
+	/** Caller waiting for a free slot */
+	private static class Waiter {
+		private final Condition slotAssigned;
+		/** Slot handed to this waiter, or -1 if still waiting. Guarded by lock. */
+		private int slot = -1;
+
+		private Waiter(Condition slotAssigned) {
+			this.slotAssigned = slotAssigned;
+		}
+	}
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** Indexes of slots not handed out, most recently returned at top. Guarded by lock. */
+	private final int[] freeSlots;
+	/** Guarded by lock */
+	private int freeSlotCount;
+	/** Callers waiting for a slot, longest waiting first. Guarded by lock. */
+	private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+	/** Slot index for each pooled connection, so returned connections don't need a scan */
+	private final Map<PooledConnection, Integer> slotsByConnection = new ConcurrentHashMap<>();
+
 	public HSQLDBPool(int poolSize) {
 		super(poolSize);
+
+		this.freeSlots = new int[poolSize];
+		// Lowest slot at top of stack
+		for (int i = 0; i < poolSize; ++i)
+			this.freeSlots[i] = poolSize - 1 - i;
+
+		this.freeSlotCount = poolSize;
+	}
+
+	/**
+	 * Retrieves a connection, waiting behind any earlier callers until one is free.
+	 *
+	 * @return  a connection to the data source
+	 * @exception SQLException if pool is closed, no connection became free in time, or a database access error occurs
+	 */
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (this.closed)
+			throw new SQLException("connection pool is closed");
+
+		return this.allocate(this.acquireSlot());
 	}
 
 	/**
 	 * Tries to retrieve a new connection using the properties that have already been
 	 * set.
+	 * <p>
+	 * Doesn't jump ahead of callers already waiting in {@link #getConnection()}.
 	 *
 	 * @return  a connection to the data source, or null if no spare connections in pool
 	 * @exception SQLException if a database access error occurs
 	 */
 	public Connection tryConnection() throws SQLException {
-		for (int i = 0; i < states.length(); i++) {
-			if (states.compareAndSet(i, RefState.available, RefState.allocated)) {
-				JDBCPooledConnection pooledConnection = connections[i];
+		if (this.closed)
+			// Probably shutdown situation
+			return null;
+
+		int slot;
+
+		this.lock.lock();
+		try {
+			if (this.freeSlotCount == 0 || !this.waiters.isEmpty())
+				return null;
+
+			slot = this.freeSlots[--this.freeSlotCount];
+		} finally {
+			this.lock.unlock();
+		}
+
+		try {
+			return this.allocate(slot);
+		} catch (SQLException e) {
+			return null;
+		}
+	}
+
+	/** Returns number of connections currently handed out from pool. */
+	public int getAllocatedCount() {
+		this.lock.lock();
+		try {
+			return this.freeSlots.length - this.freeSlotCount;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/** Returns number of callers waiting for a free connection. */
+	public int getWaitingCount() {
+		this.lock.lock();
+		try {
+			return this.waiters.size();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	public int getPoolSize() {
+		return states.length();
+	}
+
+	@Override
+	public void connectionClosed(ConnectionEvent event) {
+		if (this.closed)
+			return;
+
+		Integer slot = this.slotsByConnection.get((PooledConnection) event.getSource());
+		if (slot == null)
+			return;
+
+		states.set(slot, RefState.available);
+		this.releaseSlot(slot);
+	}
+
+	@Override
+	public void connectionErrorOccurred(ConnectionEvent event) {
+		if (this.closed)
+			return;
+
+		Integer slot = this.slotsByConnection.remove((PooledConnection) event.getSource());
+		if (slot == null)
+			return;
+
+		connections[slot] = null;
+		states.set(slot, RefState.empty);
+		this.releaseSlot(slot);
+	}
+
+	@Override
+	public void close(int wait) throws SQLException {
+		super.close(wait);
+
+		this.slotsByConnection.clear();
+
+		// Let waiting callers know
+		this.lock.lock();
+		try {
+			for (Waiter waiter : this.waiters)
+				waiter.slotAssigned.signal();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/** Returns index of free slot, waiting in turn if there are none. */
+	private int acquireSlot() throws SQLException {
+		int timeout = this.getLoginTimeout();
+		if (timeout <= 0)
+			timeout = DEFAULT_TIMEOUT;
+
+		long remaining = TimeUnit.SECONDS.toNanos(timeout);
+
+		this.lock.lock();
+		try {
+			if (this.freeSlotCount > 0 && this.waiters.isEmpty())
+				return this.freeSlots[--this.freeSlotCount];
+
+			Waiter waiter = new Waiter(this.lock.newCondition());
+			this.waiters.addLast(waiter);
+
+			try {
+				while (waiter.slot < 0 && !this.closed && remaining > 0)
+					remaining = waiter.slotAssigned.awaitNanos(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+
+				if (waiter.slot < 0) {
+					this.waiters.remove(waiter);
+					throw new SQLException("interrupted while waiting for connection");
+				}
+
+				// Slot was handed over anyway, so pass it on
+				this.releaseSlotLocked(waiter.slot);
+				throw new SQLException("interrupted while waiting for connection");
+			}
+
+			if (waiter.slot >= 0)
+				return waiter.slot;
+
+			this.waiters.remove(waiter);
+
+			if (this.closed)
+				throw new SQLException("connection pool is closed");
+
+			throw new SQLException("no free connection after " + timeout + " seconds");
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/** Returns connection for <tt>slot</tt>, opening a new one if needed, or releases slot and throws. */
+	private Connection allocate(int slot) throws SQLException {
+		JDBCPooledConnection pooledConnection = connections[slot];
+
+		try {
+			if (this.closed)
+				throw new SQLException("connection pool is closed");
+
+			if (pooledConnection == null) {
+				pooledConnection = (JDBCPooledConnection) source.getPooledConnection();
 
 				if (pooledConnection == null)
 					// Probably shutdown situation
-					return null;
+					throw new SQLException("connection pool is closed");
 
-				return pooledConnection.getConnection();
+				pooledConnection.addConnectionEventListener(this);
+				pooledConnection.addStatementEventListener(this);
+				connections[slot] = pooledConnection;
+				this.slotsByConnection.put(pooledConnection, slot);
 			}
 
-			if (states.compareAndSet(i, RefState.empty, RefState.allocated)) {
+			states.set(slot, RefState.allocated);
+			return pooledConnection.getConnection();
+		} catch (SQLException | RuntimeException e) {
+			if (pooledConnection != null) {
+				this.slotsByConnection.remove(pooledConnection);
+
+				// Don't leak underlying connection when discarding it
 				try {
-					JDBCPooledConnection pooledConnection = (JDBCPooledConnection) source.getPooledConnection();
+					pooledConnection.close();
+				} catch (SQLException | RuntimeException closeException) {
+					e.addSuppressed(closeException);
+				}
+			}
 
-					if (pooledConnection == null)
-						// Probably shutdown situation
-						return null;
+			connections[slot] = null;
+			states.set(slot, RefState.empty);
+			this.releaseSlot(slot);
+			throw e;
+		}
+	}
 
-					pooledConnection.addConnectionEventListener(this);
-					pooledConnection.addStatementEventListener(this);
-					connections[i] = pooledConnection;
+	private void releaseSlot(int slot) {
+		this.lock.lock();
+		try {
+			this.releaseSlotLocked(slot);
+		} finally {
+			this.lock.unlock();
+		}
+	}
 
-					return pooledConnection.getConnection();
-				} catch (SQLException e) {
-					states.set(i, RefState.empty);
-				}
-			}
+	/** Hands <tt>slot</tt> to longest-waiting caller, or returns it to free stack. Caller must hold lock. */
+	private void releaseSlotLocked(int slot) {
+		Waiter waiter = this.waiters.pollFirst();
+
+		if (waiter != null) {
+			waiter.slot = slot;
+			waiter.slotAssigned.signal();
+			return;
 		}
 
-		return null;
+		this.freeSlots[this.freeSlotCount++] = slot;
 	}
 
 }
@@ -1,6 +1,8 @@
 package org.qortal.api;
 
 import io.swagger.v3.jaxrs2.integration.resources.OpenApiResource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.rewrite.handler.RedirectPatternRule;
 import org.eclipse.jetty.rewrite.handler.RewriteHandler;
@@ -20,6 +22,7 @@ import org.qortal.api.resource.ApiDefinition;
 import org.qortal.api.websocket.*;
 import org.qortal.network.Network;
 import org.qortal.settings.Settings;
+import org.qortal.utils.VirtualThreads;
 
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
@@ -32,9 +35,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.KeyStore;
 import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
 
 public class ApiService {
 
+	private static final Logger LOGGER = LogManager.getLogger(ApiService.class);
+
 	private static ApiService instance;
 
 	private final ResourceConfig config;
@@ -43,6 +49,9 @@ public class ApiService {
 
 	public static final String API_VERSION_HEADER = "X-API-VERSION";
 
+	/** Maximum number of API threads, including Jetty's acceptors and selectors. Same as Jetty's default thread pool. */
+	private static final int MAX_THREADS = 200;
+
 	private ApiService() {
 		this.config = new ResourceConfig();
 		this.config.packages("org.qortal.api.resource", "org.qortal.api.restricted.resource");
@@ -71,6 +80,20 @@ public class ApiService {
 	}
 
 
+	/** Returns new Jetty server, using virtual threads if enabled and supported. */
+	private static Server createServer() {
+		if (!Settings.getInstance().isVirtualThreadsEnabled())
+			return new Server();
+
+		ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("API", MAX_THREADS);
+		if (executor == null) {
+			LOGGER.warn("Virtual threads need Java 21 or later - using platform threads for API");
+			return new Server();
+		}
+
+		return new Server(new VirtualThreadPool(executor, MAX_THREADS));
+	}
+
 	public void start() {
 		try {
 			// Create API server
@@ -100,7 +123,7 @@ public class ApiService {
 				SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
 				sslContextFactory.setSslContext(sslContext);
 
-				this.server = new Server();
+				this.server = createServer();
 
 				HttpConfiguration httpConfig = new HttpConfiguration();
 				httpConfig.setSecureScheme("https");
@@ -123,7 +146,12 @@ public class ApiService {
 				// Non-SSL
 				InetAddress bindAddr = InetAddress.getByName(Network.getInstance().getBindAddress());
 				InetSocketAddress endpoint = new InetSocketAddress(bindAddr, Settings.getInstance().getApiPort());
-				this.server = new Server(endpoint);
+				this.server = createServer();
+
+				ServerConnector connector = new ServerConnector(this.server);
+				connector.setHost(endpoint.getHostString());
+				connector.setPort(endpoint.getPort());
+				this.server.addConnector(connector);
 			}
 
 			// Error handler
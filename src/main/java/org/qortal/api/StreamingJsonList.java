@@ -0,0 +1,172 @@
+package org.qortal.api;
+
+import org.eclipse.persistence.jaxb.JAXBContextFactory;
+import org.eclipse.persistence.jaxb.MarshallerProperties;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JSON array response that's written one page of entries at a time, as pages are read from the repository,
+ * instead of building the whole list, then the whole JSON text, in memory first.
+ * <p>
+ * Output is the same as returning a <tt>List</tt> of <tt>entryClass</tt> from a resource method,
+ * which should be annotated with <tt>@Produces(MediaType.APPLICATION_JSON)</tt>.
+ * <p>
+ * Each page is fetched using its own read-only repository, which is closed again before the page is written,
+ * so slow clients don't keep repository connections busy. Pages are fetched as separate queries, so results
+ * should have a stable ordering, and later pages may reflect changes made since earlier pages were fetched.
+ * <p>
+ * Repository errors before the first entry still produce an API error response,
+ * but later errors can only abort the response.
+ */
+public class StreamingJsonList<T> implements StreamingOutput {
+
+	/** Fetches up to <tt>count</tt> entries, starting at <tt>index</tt> into the whole list. Fewer entries means there are no more. */
+	@FunctionalInterface
+	public interface PageSource<T> {
+		public List<T> fetch(Repository repository, int index, int count) throws DataException;
+	}
+
+	/** Runs query using <tt>repository</tt>, with the usual API limit/offset semantics. */
+	@FunctionalInterface
+	public interface Query<T> {
+		public List<T> fetch(Repository repository, Integer limit, Integer offset) throws DataException;
+	}
+
+	private static final int DEFAULT_PAGE_SIZE = 100;
+
+	/** JAXB contexts are expensive to create, but thread-safe, unlike marshallers */
+	private static final Map<Class<?>, JAXBContext> CONTEXTS = new ConcurrentHashMap<>();
+
+	private final HttpServletRequest request;
+	private final Class<T> entryClass;
+	private final PageSource<T> pageSource;
+
+	private int pageSize = DEFAULT_PAGE_SIZE;
+
+	public StreamingJsonList(HttpServletRequest request, Class<T> entryClass, PageSource<T> pageSource) {
+		this.request = request;
+		this.entryClass = entryClass;
+		this.pageSource = pageSource;
+	}
+
+	/** Returns response that runs <tt>query</tt> a page at a time, within overall <tt>limit</tt> and <tt>offset</tt>. */
+	public static <T> StreamingJsonList<T> fromQuery(HttpServletRequest request, Class<T> entryClass, Integer limit, Integer offset, Query<T> query) {
+		final boolean isLimited = limit != null && limit > 0;
+		final int firstOffset = offset != null ? offset : 0;
+
+		return new StreamingJsonList<>(request, entryClass, (repository, index, count) -> {
+			if (isLimited) {
+				if (index >= limit)
+					return Collections.emptyList();
+
+				count = Math.min(count, limit - index);
+			}
+
+			return query.fetch(repository, count, firstOffset + index);
+		});
+	}
+
+	/** Returns empty response. */
+	public static <T> StreamingJsonList<T> empty(HttpServletRequest request, Class<T> entryClass) {
+		return new StreamingJsonList<>(request, entryClass, (repository, index, count) -> Collections.emptyList());
+	}
+
+	// For testing, to exercise multiple pages with small result sets
+	public void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public void write(OutputStream outputStream) throws IOException, WebApplicationException {
+		Marshaller marshaller = createMarshaller(this.entryClass);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+		writer.write('[');
+
+		int index = 0;
+		while (true) {
+			List<T> page = this.fetchPage(index);
+
+			for (T entry : page) {
+				if (index > 0)
+					writer.write(',');
+
+				try {
+					marshaller.marshal(entry, writer);
+				} catch (JAXBException e) {
+					throw new IOException("Unable to marshall API response entry", e);
+				}
+
+				++index;
+			}
+
+			if (page.size() < this.pageSize)
+				break;
+		}
+
+		writer.write(']');
+		writer.flush();
+	}
+
+	/** Fetches page using its own repository, so it isn't held open while page is written. */
+	private List<T> fetchPage(int index) throws IOException {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
+			return this.pageSource.fetch(repository, index, this.pageSize);
+		} catch (DataException e) {
+			// Only a response with nothing written yet can be turned into an API error
+			if (index == 0)
+				throw ApiExceptionFactory.INSTANCE.createException(this.request, ApiError.REPOSITORY_ISSUE, e);
+
+			throw new IOException("Repository issue while streaming API response", e);
+		} catch (WebApplicationException e) {
+			if (index == 0)
+				throw e;
+
+			throw new IOException("Unable to continue streaming API response", e);
+		}
+	}
+
+	private static Marshaller createMarshaller(Class<?> entryClass) {
+		try {
+			JAXBContext jc = CONTEXTS.get(entryClass);
+			if (jc == null) {
+				// Create JAXB context aware of entry's class, and its subclasses
+				jc = JAXBContextFactory.createContext(new Class[] { entryClass }, null);
+				CONTEXTS.putIfAbsent(entryClass, jc);
+			}
+
+			// Create marshaller
+			Marshaller marshaller = jc.createMarshaller();
+
+			// Set the marshaller media type to JSON
+			marshaller.setProperty(MarshallerProperties.MEDIA_TYPE, "application/json");
+
+			// Tell marshaller not to include JSON root element in the output
+			marshaller.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, false);
+
+			return marshaller;
+		} catch (JAXBException e) {
+			throw new RuntimeException("Unable to create API marshaller", e);
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package org.qortal.api;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jetty thread pool that runs each job on a new virtual thread.
+ * <p>
+ * Jetty keeps a few long-running jobs, e.g. acceptors and selectors, so <tt>maxThreads</tt> should leave room
+ * for those as well as requests.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+	private final ExecutorService executor;
+	private final int maxThreads;
+	private final AtomicInteger threadCount = new AtomicInteger();
+
+	/**
+	 * @param executor virtual thread executor, e.g. from {@link org.qortal.utils.VirtualThreads#newThreadPerTaskExecutor(String, int)}
+	 * @param maxThreads maximum number of jobs executor runs at once
+	 */
+	public VirtualThreadPool(ExecutorService executor, int maxThreads) {
+		this.executor = executor;
+		this.maxThreads = maxThreads;
+	}
+
+	@Override
+	public void execute(Runnable job) {
+		if (!this.isRunning() && !this.isStarting())
+			throw new RejectedExecutionException("Thread pool not running");
+
+		this.threadCount.incrementAndGet();
+		try {
+			this.executor.execute(() -> {
+				try {
+					job.run();
+				} finally {
+					this.threadCount.decrementAndGet();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			this.threadCount.decrementAndGet();
+			throw e;
+		}
+	}
+
+	@Override
+	public void join() throws InterruptedException {
+		while (!this.executor.awaitTermination(1, TimeUnit.MINUTES))
+			;
+	}
+
+	@Override
+	public int getThreads() {
+		return this.threadCount.get();
+	}
+
+	@Override
+	public int getIdleThreads() {
+		// Virtual threads aren't pooled
+		return 0;
+	}
+
+	@Override
+	public boolean isLowOnThreads() {
+		return this.threadCount.get() >= this.maxThreads;
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+		this.executor.shutdownNow();
+		super.doStop();
+	}
+
+}
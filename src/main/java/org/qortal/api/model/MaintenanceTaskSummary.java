@@ -0,0 +1,50 @@
+package org.qortal.api.model;
+
+import org.qortal.controller.repository.MaintenanceTask;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+
+@XmlAccessorType(XmlAccessType.FIELD)
+public class MaintenanceTaskSummary {
+
+	public String name;
+	public boolean isStopped;
+	// Not always present
+	public String pausedReason;
+
+	public int batchSize;
+	public int progressHeight;
+	public int targetHeight;
+	public int backlog;
+
+	public long lastBatchTime;
+	public long lastCommitTime;
+	public long lastLockWaitTime;
+	public long batchCount;
+	public long itemCount;
+	public long nextStepTimestamp;
+
+	protected MaintenanceTaskSummary() {
+		/* For JAXB */
+	}
+
+	public MaintenanceTaskSummary(MaintenanceTask task) {
+		this.name = task.getName();
+		this.isStopped = task.isStopped();
+		this.pausedReason = task.getPausedReason();
+
+		this.batchSize = task.getBatchSize();
+		this.progressHeight = task.getProgressHeight();
+		this.targetHeight = task.getTargetHeight();
+		this.backlog = task.getBacklog();
+
+		this.lastBatchTime = task.getLastBatchTime();
+		this.lastCommitTime = task.getLastCommitTime();
+		this.lastLockWaitTime = task.getLastLockWaitTime();
+		this.batchCount = task.getBatchCount();
+		this.itemCount = task.getItemCount();
+		this.nextStepTimestamp = task.getNextStepTimestamp();
+	}
+
+}
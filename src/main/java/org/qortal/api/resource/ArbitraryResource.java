@@ -59,6 +59,7 @@ import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
@@ -96,7 +97,8 @@ public class ArbitraryResource {
 			}
 	)
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
-	public List<ArbitraryResourceData> getResources(
+	@Produces(MediaType.APPLICATION_JSON)
+	public StreamingOutput getResources(
 			@QueryParam("service") Service service,
 			@QueryParam("name") String name,
 			@QueryParam("identifier") String identifier,
@@ -110,47 +112,36 @@ public class ArbitraryResource {
 			@Parameter(description = "Include status") @QueryParam("includestatus") Boolean includeStatus,
 			@Parameter(description = "Include metadata") @QueryParam("includemetadata") Boolean includeMetadata) {
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
-
-			// Treat empty identifier as null
-			if (identifier != null && identifier.isEmpty()) {
-				identifier = null;
-			}
-
-			// Ensure that "default" and "identifier" parameters cannot coexist
-			boolean defaultRes = Boolean.TRUE.equals(defaultResource);
-			if (defaultRes == true && identifier != null) {
-				throw ApiExceptionFactory.INSTANCE.createCustomException(request, ApiError.INVALID_CRITERIA, "identifier cannot be specified when requesting a default resource");
-			}
-
-			// Set up name filters if supplied
-			List<String> names = null;
-			if (name != null) {
-				// Filter using single name
-				names = Arrays.asList(name);
-			}
-			else if (nameListFilter != null) {
-				// Filter using supplied list of names
-				names = ResourceListManager.getInstance().getStringsInList(nameListFilter);
-				if (names.isEmpty()) {
-					// If list is empty (or doesn't exist) we can shortcut with empty response
-					return new ArrayList<>();
-				}
-			}
+		// Treat empty identifier as null
+		final String resourceIdentifier = (identifier != null && identifier.isEmpty()) ? null : identifier;
 
-			List<ArbitraryResourceData> resources = repository.getArbitraryRepository()
-					.getArbitraryResources(service, identifier, names, defaultRes, followedOnly, excludeBlocked,
-							includeMetadata, includeStatus, limit, offset, reverse);
+		// Ensure that "default" and "identifier" parameters cannot coexist
+		boolean defaultRes = Boolean.TRUE.equals(defaultResource);
+		if (defaultRes == true && resourceIdentifier != null) {
+			throw ApiExceptionFactory.INSTANCE.createCustomException(request, ApiError.INVALID_CRITERIA, "identifier cannot be specified when requesting a default resource");
+		}
 
-			if (resources == null) {
-				return new ArrayList<>();
+		// Set up name filters if supplied
+		List<String> names = null;
+		if (name != null) {
+			// Filter using single name
+			names = Arrays.asList(name);
+		}
+		else if (nameListFilter != null) {
+			// Filter using supplied list of names
+			names = ResourceListManager.getInstance().getStringsInList(nameListFilter);
+			if (names.isEmpty()) {
+				// If list is empty (or doesn't exist) we can shortcut with empty response
+				return StreamingJsonList.empty(request, ArbitraryResourceData.class);
 			}
+		}
 
-			return resources;
+		final List<String> resourceNames = names;
 
-		} catch (DataException e) {
-			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
-		}
+		// Potentially many resources, so written a page at a time
+		return StreamingJsonList.fromQuery(request, ArbitraryResourceData.class, limit, offset, (repository, pageLimit, pageOffset) ->
+				repository.getArbitraryRepository().getArbitraryResources(service, resourceIdentifier, resourceNames, defaultRes,
+						followedOnly, excludeBlocked, includeMetadata, includeStatus, pageLimit, pageOffset, reverse));
 	}
 
 	@GET
@@ -165,7 +156,8 @@ public class ArbitraryResource {
 			}
 	)
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
-	public List<ArbitraryResourceData> searchResources(
+	@Produces(MediaType.APPLICATION_JSON)
+	public StreamingOutput searchResources(
 			@QueryParam("service") Service service,
 			@Parameter(description = "Query (searches name, identifier, title and description fields)") @QueryParam("query") String query,
 			@Parameter(description = "Identifier (searches identifier field only)") @QueryParam("identifier") String identifier,
@@ -188,43 +180,34 @@ public class ArbitraryResource {
 			@Parameter(ref = "offset") @QueryParam("offset") Integer offset,
 			@Parameter(ref = "reverse") @QueryParam("reverse") Boolean reverse) {
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
-
-			boolean defaultRes = Boolean.TRUE.equals(defaultResource);
-			boolean usePrefixOnly = Boolean.TRUE.equals(prefixOnly);
+		boolean defaultRes = Boolean.TRUE.equals(defaultResource);
+		boolean usePrefixOnly = Boolean.TRUE.equals(prefixOnly);
 
-			List<String> exactMatchNames = new ArrayList<>();
+		List<String> exactMatchNames = new ArrayList<>();
 
-			if (nameListFilter != null) {
-				// Load names from supplied list of names
-				exactMatchNames.addAll(ResourceListManager.getInstance().getStringsInList(nameListFilter));
+		if (nameListFilter != null) {
+			// Load names from supplied list of names
+			exactMatchNames.addAll(ResourceListManager.getInstance().getStringsInList(nameListFilter));
 
-				// If list is empty (or doesn't exist) we can shortcut with empty response
-				if (exactMatchNames.isEmpty()) {
-					return new ArrayList<>();
-				}
+			// If list is empty (or doesn't exist) we can shortcut with empty response
+			if (exactMatchNames.isEmpty()) {
+				return StreamingJsonList.empty(request, ArbitraryResourceData.class);
 			}
+		}
 
-			// Move names to exact match list, if requested
-			if (exactMatchNamesOnly != null && exactMatchNamesOnly && names != null) {
-				exactMatchNames.addAll(names);
-				names = null;
-			}
-
-			List<ArbitraryResourceData> resources = repository.getArbitraryRepository()
-					.searchArbitraryResources(service, query, identifier, names, title, description, usePrefixOnly,
-							exactMatchNames, defaultRes, mode, minLevel, followedOnly, excludeBlocked, includeMetadata, includeStatus,
-							before, after, limit, offset, reverse);
-
-			if (resources == null) {
-				return new ArrayList<>();
-			}
+		// Move names to exact match list, if requested
+		if (exactMatchNamesOnly != null && exactMatchNamesOnly && names != null) {
+			exactMatchNames.addAll(names);
+			names = null;
+		}
 
-			return resources;
+		final List<String> partialMatchNames = names;
 
-		} catch (DataException e) {
-			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
-		}
+		// Potentially many resources, so written a page at a time
+		return StreamingJsonList.fromQuery(request, ArbitraryResourceData.class, limit, offset, (repository, pageLimit, pageOffset) ->
+				repository.getArbitraryRepository().searchArbitraryResources(service, query, identifier, partialMatchNames, title, description, usePrefixOnly,
+						exactMatchNames, defaultRes, mode, minLevel, followedOnly, excludeBlocked, includeMetadata, includeStatus,
+						before, after, pageLimit, pageOffset, reverse));
 	}
 
 	@GET
@@ -338,7 +321,7 @@ public class ArbitraryResource {
 		List<TransactionType> txTypes = new ArrayList<>();
 		txTypes.add(TransactionType.ARBITRARY);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			List<byte[]> signatures = repository.getTransactionRepository().getSignaturesMatchingCriteria(startBlock, blockLimit, txGroupId, txTypes,
 					service, name, address, confirmationStatus, limit, offset, reverse);
 
@@ -456,7 +439,7 @@ public class ArbitraryResource {
 																@Parameter(ref = "offset") @QueryParam("offset") Integer offset) {
 		Security.checkApiCallAllowed(request);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 
 			List<ArbitraryTransactionData> hostedTransactions = ArbitraryDataStorageManager.getInstance().listAllHostedTransactions(repository, limit, offset);
 
@@ -487,7 +470,7 @@ public class ArbitraryResource {
 
 		List<ArbitraryResourceData> resources = new ArrayList<>();
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			
 			List<ArbitraryTransactionData> transactionDataList;
 
@@ -12,6 +12,7 @@ import org.qortal.api.ApiError;
 import org.qortal.api.ApiErrors;
 import org.qortal.api.ApiException;
 import org.qortal.api.ApiExceptionFactory;
+import org.qortal.api.StreamingJsonList;
 import org.qortal.api.model.AggregatedOrder;
 import org.qortal.api.model.TradeWithOrderInfo;
 import org.qortal.api.resource.TransactionsResource.ConfirmationStatus;
@@ -23,7 +24,10 @@ import org.qortal.data.asset.AssetData;
 import org.qortal.data.asset.OrderData;
 import org.qortal.data.asset.RecentTradeData;
 import org.qortal.data.asset.TradeData;
+import org.qortal.data.market.CandleData;
 import org.qortal.data.transaction.*;
+import org.qortal.market.CandleInterval;
+import org.qortal.market.TradeHistory;
 import org.qortal.repository.AccountRepository.BalanceOrdering;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
@@ -39,6 +43,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -78,7 +83,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			List<AssetData> assets = repository.getAssetRepository().getAllAssets(limit, offset, reverse);
 
 			if (includeData == null || !includeData)
@@ -113,7 +118,7 @@ public class AssetsResource {
 		if (assetId == null && (assetName == null || assetName.isEmpty()))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			AssetData assetData = null;
 
 			if (assetId != null)
@@ -150,7 +155,8 @@ public class AssetsResource {
 	@ApiErrors({
 		ApiError.INVALID_ADDRESS, ApiError.INVALID_CRITERIA, ApiError.INVALID_ASSET_ID, ApiError.REPOSITORY_ISSUE
 	})
-	public List<AccountBalanceData> getAssetBalances(@QueryParam("address") List<String> addresses, @QueryParam("assetid") List<Long> assetIds,
+	@Produces(MediaType.APPLICATION_JSON)
+	public StreamingOutput getAssetBalances(@QueryParam("address") List<String> addresses, @QueryParam("assetid") List<Long> assetIds,
 			@DefaultValue(value = "ASSET_BALANCE_ACCOUNT") @QueryParam("ordering") BalanceOrdering balanceOrdering,
 			@QueryParam("excludeZero") Boolean excludeZero,
 			@Parameter( ref = "limit" ) @QueryParam("limit") Integer limit,
@@ -166,17 +172,15 @@ public class AssetsResource {
 		if (balanceOrdering == null)
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		// Potentially many balances, so written a page at a time
+		return StreamingJsonList.fromQuery(request, AccountBalanceData.class, limit, offset, (repository, pageLimit, pageOffset) -> {
+			// Checked using same repository as page, so they're consistent
 			for (long assetId : assetIds)
 				if (!repository.getAssetRepository().assetExists(assetId))
 					throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
 
-			return repository.getAccountRepository().getAssetBalances(addresses, assetIds, balanceOrdering, excludeZero, limit, offset, reverse);
-		} catch (ApiException e) {
-			throw e;
-		} catch (DataException e) {
-			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
-		}
+			return repository.getAccountRepository().getAssetBalances(addresses, assetIds, balanceOrdering, excludeZero, pageLimit, pageOffset, reverse);
+		});
 	}
 
 	@GET
@@ -211,7 +215,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			if (!repository.getAssetRepository().assetExists(assetId))
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
 
@@ -256,7 +260,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			if (!repository.getAssetRepository().assetExists(assetId))
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
 
@@ -300,7 +304,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			if (assetIds.isEmpty())
 				assetIds = Collections.singletonList(Asset.QORT);
 			else
@@ -354,7 +358,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			if (!repository.getAssetRepository().assetExists(assetId))
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
 
@@ -377,6 +381,72 @@ public class AssetsResource {
 		}
 	}
 
+	@GET
+	@Path("/candles/{assetid}/{otherassetid}")
+	@Operation(
+		summary = "Asset trade history, as time-bucketed candles",
+		description = "Returns open/high/low/close prices, and volumes, of trades between {assetid} and {otherassetid}, in either direction.<br>"
+				+ "Prices are expressed in terms of {otherassetid} per unit {assetid}. Volume is in {assetid}, quote volume in {otherassetid}.<br>"
+				+ "Buckets without trades are omitted.",
+		responses = {
+			@ApiResponse(
+				description = "candles",
+				content = @Content(
+					array = @ArraySchema(
+						schema = @Schema(
+							implementation = CandleData.class
+						)
+					)
+				)
+			)
+		}
+	)
+	@ApiErrors({
+		ApiError.INVALID_ASSET_ID, ApiError.INVALID_CRITERIA, ApiError.REPOSITORY_ISSUE
+	})
+	public List<CandleData> getAssetCandles(@Parameter(
+		ref = "assetid"
+	) @PathParam("assetid") int assetId, @Parameter(
+		ref = "otherassetid"
+	) @PathParam("otherassetid") int otherAssetId, @Parameter(
+		description = "bucket size",
+		schema = @Schema(implementation = CandleInterval.class, defaultValue = "HOUR")
+	) @QueryParam("interval") CandleInterval interval, @Parameter(
+		description = "earliest bucket start (milliseconds since epoch, inclusive)"
+	) @QueryParam("start") Long start, @Parameter(
+		description = "latest bucket start (milliseconds since epoch, exclusive)"
+	) @QueryParam("end") Long end, @Parameter(
+		ref = "limit"
+	) @QueryParam("limit") Integer limit, @Parameter(
+		ref = "reverse"
+	) @QueryParam("reverse") Boolean reverse) {
+		if (start != null && end != null && start > end)
+			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
+
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
+			if (!repository.getAssetRepository().assetExists(assetId))
+				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
+
+			if (!repository.getAssetRepository().assetExists(otherAssetId))
+				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
+
+			// Markets are stored with lower asset ID as base
+			String market = TradeHistory.getAssetMarket(assetId, otherAssetId);
+			boolean isInverted = assetId > otherAssetId;
+
+			List<CandleData> candles = repository.getMarketRepository().getCandles(market, interval != null ? interval : CandleInterval.HOUR,
+					start != null ? start : 0L, end != null ? end : Long.MAX_VALUE,
+					TradeHistory.getCandleLimit(limit), reverse);
+
+			if (isInverted)
+				candles = candles.stream().map(CandleData::inverted).collect(Collectors.toList());
+
+			return candles;
+		} catch (DataException e) {
+			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
+		}
+	}
+
 	@GET
 	@Path("/order/{orderid}")
 	@Operation(
@@ -405,7 +475,7 @@ public class AssetsResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ORDER_ID, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			OrderData orderData = repository.getAssetRepository().fromOrderId(orderId);
 			if (orderData == null)
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.ORDER_UNKNOWN);
@@ -452,7 +522,7 @@ public class AssetsResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ORDER_ID, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			OrderData orderData = repository.getAssetRepository().fromOrderId(orderId);
 			if (orderData == null)
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.ORDER_UNKNOWN);
@@ -494,7 +564,7 @@ public class AssetsResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			AccountData accountData = repository.getAccountRepository().getAccount(address);
 
 			if (accountData == null)
@@ -543,7 +613,7 @@ public class AssetsResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			AccountData accountData = repository.getAccountRepository().getAccount(address);
 
 			if (accountData == null)
@@ -599,7 +669,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			if (!repository.getAssetRepository().assetExists(assetId))
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
 
@@ -640,7 +710,7 @@ public class AssetsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			if (!repository.getAssetRepository().assetExists(assetId))
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ASSET_ID);
 
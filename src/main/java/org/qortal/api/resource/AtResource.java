@@ -89,7 +89,7 @@ public class AtResource {
 		if (limit != null && limit > 100)
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			return repository.getATRepository().getATsByFunctionality(codeHash, isExecutable, limit, offset, reverse);
 		} catch (ApiException e) {
 			throw e;
@@ -115,7 +115,7 @@ public class AtResource {
 		ApiError.REPOSITORY_ISSUE
 	})
 	public ATData getByAddress(@PathParam("ataddress") String atAddress) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			return repository.getATRepository().fromATAddress(atAddress);
 		} catch (ApiException e) {
 			throw e;
@@ -141,7 +141,7 @@ public class AtResource {
 		ApiError.REPOSITORY_ISSUE
 	})
 	public byte[] getDataByAddress(@PathParam("ataddress") String atAddress) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			ATStateData atStateData = repository.getATRepository().getLatestATState(atAddress);
 			byte[] stateData = atStateData.getStateData();
 
@@ -12,6 +12,7 @@ import org.qortal.account.Account;
 import org.qortal.api.ApiError;
 import org.qortal.api.ApiErrors;
 import org.qortal.api.ApiExceptionFactory;
+import org.qortal.api.StreamingJsonList;
 import org.qortal.api.model.BlockMintingInfo;
 import org.qortal.api.model.BlockSignerSummary;
 import org.qortal.block.Block;
@@ -33,9 +34,11 @@ import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -82,7 +85,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 		    // Check the database first
 			BlockData blockData = repository.getBlockRepository().fromSignature(signature);
 			if (blockData != null) {
@@ -131,7 +134,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 
 			// Default to version 1
 			if (version == null) {
@@ -217,7 +220,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			// Check if the block exists in either the database or archive
 			int height = repository.getBlockRepository().getHeightFromSignature(signature);
 			if (height == 0) {
@@ -262,7 +265,7 @@ public class BlocksResource {
 		ApiError.REPOSITORY_ISSUE
 	})
 	public BlockData getFirstBlock() {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			// Check the database first
 			BlockData blockData = repository.getBlockRepository().fromHeight(1);
 			if (blockData != null) {
@@ -301,7 +304,7 @@ public class BlocksResource {
 		ApiError.REPOSITORY_ISSUE
 	})
 	public BlockData getLastBlock(@QueryParam("includeOnlineSignatures") Boolean includeOnlineSignatures) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			BlockData blockData = repository.getBlockRepository().getLastBlock();
 
 			if (includeOnlineSignatures == null || includeOnlineSignatures == false) {
@@ -342,7 +345,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			BlockData childBlockData = null;
 
 			// Check if block exists in database
@@ -393,7 +396,7 @@ public class BlocksResource {
 		ApiError.REPOSITORY_ISSUE
 	})
 	public int getHeight() {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			return repository.getBlockRepository().getBlockchainHeight();
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -429,7 +432,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			// Firstly check the database
 			BlockData blockData = repository.getBlockRepository().fromSignature(signature);
 			if (blockData != null) {
@@ -470,7 +473,7 @@ public class BlocksResource {
 	})
 	public BlockData getByHeight(@PathParam("height") int height,
 								 @QueryParam("includeOnlineSignatures") Boolean includeOnlineSignatures) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			// Firstly check the database
 			BlockData blockData = repository.getBlockRepository().fromHeight(height);
 			if (blockData != null) {
@@ -516,7 +519,7 @@ public class BlocksResource {
 			ApiError.BLOCK_UNKNOWN, ApiError.REPOSITORY_ISSUE
 	})
 	public BlockMintingInfo getBlockMintingInfoByHeight(@PathParam("height") int height) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			// Try the database
 			BlockData blockData = repository.getBlockRepository().fromHeight(height);
 			if (blockData == null) {
@@ -588,7 +591,7 @@ public class BlocksResource {
 	})
 	public BlockData getByTimestamp(@PathParam("timestamp") long timestamp,
 									@QueryParam("includeOnlineSignatures") Boolean includeOnlineSignatures) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			BlockData blockData = null;
 
 			// Try the Blocks table
@@ -645,16 +648,20 @@ public class BlocksResource {
 	@ApiErrors({
 		ApiError.REPOSITORY_ISSUE
 	})
-	public List<BlockData> getBlockRange(@PathParam("height") int height,
+	@Produces(MediaType.APPLICATION_JSON)
+	public StreamingOutput getBlockRange(@PathParam("height") int startHeight,
 										 @Parameter(ref = "count") @QueryParam("count") int count,
 										 @Parameter(ref = "reverse") @QueryParam("reverse") Boolean reverse,
 										 @QueryParam("includeOnlineSignatures") Boolean includeOnlineSignatures) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		boolean shouldReverse = (reverse != null && reverse == true);
+
+		// Blocks are written a page at a time, so large ranges don't need to fit in memory all at once
+		return new StreamingJsonList<>(request, BlockData.class, (repository, index, pageCount) -> {
 			List<BlockData> blocks = new ArrayList<>();
-			boolean shouldReverse = (reverse != null && reverse == true);
+			int height = shouldReverse ? startHeight - index : startHeight + index;
 
-			int i = 0;
-			while (i < count) {
+			int i = index;
+			while (i < count && blocks.size() < pageCount) {
 				BlockData blockData = repository.getBlockRepository().fromHeight(height);
 				if (blockData == null) {
 					// Not found - try the archive
@@ -675,9 +682,7 @@ public class BlocksResource {
 			}
 
 			return blocks;
-		} catch (DataException e) {
-			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
-		}
+		});
 	}
 
 	@GET
@@ -708,7 +713,7 @@ public class BlocksResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			// Get public key from address
 			AccountData accountData = repository.getAccountRepository().getAccount(address);
 			if (accountData == null || accountData.getPublicKey() == null)
@@ -767,7 +772,7 @@ public class BlocksResource {
 			) @QueryParam("offset") Integer offset, @Parameter(
 				ref = "reverse"
 			) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			for (String address : addresses)
 				if (!Crypto.isValidAddress(address))
 					throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
@@ -812,7 +817,7 @@ public class BlocksResource {
 		if ((startHeight != null && startHeight < 1) || (endHeight != null && endHeight < 1) || (count != null && count < 1))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 
 			/*
 			 * start	end		count		result
@@ -17,6 +17,8 @@ import org.qortal.api.Security;
 import org.qortal.api.model.CrossChainCancelRequest;
 import org.qortal.api.model.CrossChainTradeSummary;
 import org.qortal.controller.tradebot.TradeBot;
+import org.qortal.controller.tradebot.TradeOfferBook;
+import org.qortal.controller.tradebot.TradeOfferBook.TradeOffer;
 import org.qortal.crosschain.ACCT;
 import org.qortal.crosschain.AcctMode;
 import org.qortal.crosschain.SupportedBlockchain;
@@ -24,10 +26,13 @@ import org.qortal.crypto.Crypto;
 import org.qortal.data.at.ATData;
 import org.qortal.data.at.ATStateData;
 import org.qortal.data.crosschain.CrossChainTradeData;
+import org.qortal.data.market.CandleData;
 import org.qortal.data.transaction.BaseTransactionData;
 import org.qortal.data.transaction.MessageTransactionData;
 import org.qortal.data.transaction.TransactionData;
 import org.qortal.group.Group;
+import org.qortal.market.CandleInterval;
+import org.qortal.market.TradeHistory;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
@@ -47,6 +52,7 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import java.util.*;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Path("/crosschain")
 @Tag(name = "Cross-Chain")
@@ -88,19 +94,30 @@ public class CrossChainResource {
 		final boolean isExecutable = true;
 		List<CrossChainTradeData> crossChainTrades = new ArrayList<>();
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
-			Map<ByteArray, Supplier<ACCT>> acctsByCodeHash = SupportedBlockchain.getFilteredAcctMap(foreignBlockchain);
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
+			List<CrossChainTradeData> bookTrades = getTradeOffersFromBook(foreignBlockchain);
 
-			for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : acctsByCodeHash.entrySet()) {
-				byte[] codeHash = acctInfo.getKey().value;
-				ACCT acct = acctInfo.getValue().get();
+			if (bookTrades != null) {
+				// Trade offer book holds all offers, so apply offset here
+				if (reverse != null && reverse)
+					Collections.reverse(bookTrades);
+
+				int fromIndex = offset != null ? Math.max(0, Math.min(offset, bookTrades.size())) : 0;
+				crossChainTrades.addAll(bookTrades.subList(fromIndex, bookTrades.size()));
+			} else {
+				Map<ByteArray, Supplier<ACCT>> acctsByCodeHash = SupportedBlockchain.getFilteredAcctMap(foreignBlockchain);
 
-				List<ATData> atsData = repository.getATRepository().getATsByFunctionality(codeHash, isExecutable, limit, offset, reverse);
+				for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : acctsByCodeHash.entrySet()) {
+					byte[] codeHash = acctInfo.getKey().value;
+					ACCT acct = acctInfo.getValue().get();
 
-				for (ATData atData : atsData) {
-					CrossChainTradeData crossChainTradeData = acct.populateTradeData(repository, atData);
-					if (crossChainTradeData.mode == AcctMode.OFFERING) {
-						crossChainTrades.add(crossChainTradeData);
+					List<ATData> atsData = repository.getATRepository().getATsByFunctionality(codeHash, isExecutable, limit, offset, reverse);
+
+					for (ATData atData : atsData) {
+						CrossChainTradeData crossChainTradeData = acct.populateTradeData(repository, atData);
+						if (crossChainTradeData.mode == AcctMode.OFFERING) {
+							crossChainTrades.add(crossChainTradeData);
+						}
 					}
 				}
 			}
@@ -157,19 +174,25 @@ public class CrossChainResource {
 		final boolean isExecutable = true;
 		List<CrossChainTradeData> crossChainTrades = new ArrayList<>();
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
-			Map<ByteArray, Supplier<ACCT>> acctsByCodeHash = SupportedBlockchain.getFilteredAcctMap(foreignBlockchain);
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
+			List<CrossChainTradeData> bookTrades = getTradeOffersFromBook(foreignBlockchain);
 
-			for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : acctsByCodeHash.entrySet()) {
-				byte[] codeHash = acctInfo.getKey().value;
-				ACCT acct = acctInfo.getValue().get();
+			if (bookTrades != null) {
+				crossChainTrades.addAll(bookTrades);
+			} else {
+				Map<ByteArray, Supplier<ACCT>> acctsByCodeHash = SupportedBlockchain.getFilteredAcctMap(foreignBlockchain);
 
-				List<ATData> atsData = repository.getATRepository().getATsByFunctionality(codeHash, isExecutable, null, null, null);
+				for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : acctsByCodeHash.entrySet()) {
+					byte[] codeHash = acctInfo.getKey().value;
+					ACCT acct = acctInfo.getValue().get();
 
-				for (ATData atData : atsData) {
-					CrossChainTradeData crossChainTradeData = acct.populateTradeData(repository, atData);
-					if (crossChainTradeData.mode == AcctMode.OFFERING) {
-						crossChainTrades.add(crossChainTradeData);
+					List<ATData> atsData = repository.getATRepository().getATsByFunctionality(codeHash, isExecutable, null, null, null);
+
+					for (ATData atData : atsData) {
+						CrossChainTradeData crossChainTradeData = acct.populateTradeData(repository, atData);
+						if (crossChainTradeData.mode == AcctMode.OFFERING) {
+							crossChainTrades.add(crossChainTradeData);
+						}
 					}
 				}
 			}
@@ -204,7 +227,7 @@ public class CrossChainResource {
 	)
 	@ApiErrors({ApiError.ADDRESS_UNKNOWN, ApiError.INVALID_CRITERIA, ApiError.REPOSITORY_ISSUE})
 	public CrossChainTradeData getTrade(@PathParam("ataddress") String atAddress) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			ATData atData = repository.getATRepository().fromATAddress(atAddress);
 			if (atData == null)
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.ADDRESS_UNKNOWN);
@@ -264,7 +287,7 @@ public class CrossChainResource {
 
 		final Boolean isFinished = Boolean.TRUE;
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			Integer minimumFinalHeight = null;
 
 			if (minimumTimestamp != null) {
@@ -374,7 +397,7 @@ public class CrossChainResource {
 		Boolean isFinished = Boolean.TRUE;
 		boolean useInversePrice = (inverse != null && inverse == true);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			Map<ByteArray, Supplier<ACCT>> acctsByCodeHash = SupportedBlockchain.getFilteredAcctMap(foreignBlockchain);
 
 			long totalForeign = 0;
@@ -428,6 +451,73 @@ public class CrossChainResource {
 		}
 	}
 
+	@GET
+	@Path("/candles/{blockchain}")
+	@Operation(
+		summary = "Completed trade history, as time-bucketed candles",
+		description = "Returns open/high/low/close prices, and volumes, of completed trades.<br>"
+				+ "Prices are expressed in terms of QORT per unit foreign currency, unless inverted. "
+				+ "Volume is in foreign currency, quote volume in QORT, unless inverted.<br>"
+				+ "Buckets without trades are omitted.",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					array = @ArraySchema(
+						schema = @Schema(
+							implementation = CandleData.class
+						)
+					)
+				)
+			)
+		}
+	)
+	@ApiErrors({ApiError.INVALID_CRITERIA, ApiError.REPOSITORY_ISSUE})
+	public List<CandleData> getTradeCandles(
+			@Parameter(
+					description = "foreign blockchain",
+					example = "LITECOIN",
+					schema = @Schema(implementation = SupportedBlockchain.class)
+				) @PathParam("blockchain") SupportedBlockchain foreignBlockchain,
+			@Parameter(
+					description = "bucket size",
+					schema = @Schema(implementation = CandleInterval.class, defaultValue = "HOUR")
+				) @QueryParam("interval") CandleInterval interval,
+			@Parameter(
+					description = "earliest bucket start (milliseconds since epoch, inclusive)"
+				) @QueryParam("start") Long start,
+			@Parameter(
+					description = "latest bucket start (milliseconds since epoch, exclusive)"
+				) @QueryParam("end") Long end,
+			@Parameter(
+					description = "Display prices in terms of foreign currency per unit QORT",
+					example = "false",
+					schema = @Schema(type = "boolean", defaultValue = "false")
+				) @QueryParam("inverse") Boolean inverse,
+			@Parameter( ref = "limit") @QueryParam("limit") Integer limit,
+			@Parameter( ref = "reverse" ) @QueryParam("reverse") Boolean reverse) {
+		// foreignBlockchain is required
+		if (foreignBlockchain == null)
+			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
+
+		if (start != null && end != null && start > end)
+			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
+
+		boolean useInversePrice = (inverse != null && inverse == true);
+
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
+			List<CandleData> candles = repository.getMarketRepository().getCandles(foreignBlockchain.name(), interval != null ? interval : CandleInterval.HOUR,
+					start != null ? start : 0L, end != null ? end : Long.MAX_VALUE,
+					TradeHistory.getCandleLimit(limit), reverse);
+
+			if (useInversePrice)
+				candles = candles.stream().map(CandleData::inverted).collect(Collectors.toList());
+
+			return candles;
+		} catch (DataException e) {
+			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
+		}
+	}
+
 	@DELETE
 	@Path("/tradeoffer")
 	@Operation(
@@ -552,6 +642,23 @@ public class CrossChainResource {
 		}
 	}
 
+	/**
+	 * Returns copies of OFFERING trades from trade offer book, sorted by creation timestamp,
+	 * or null if book isn't available.
+	 */
+	private static List<CrossChainTradeData> getTradeOffersFromBook(SupportedBlockchain foreignBlockchain) {
+		List<TradeOffer> tradeOffers = TradeOfferBook.getInstance().getCurrentOffers(foreignBlockchain != null ? foreignBlockchain.name() : null);
+		if (tradeOffers == null)
+			return null;
+
+		// Copies, as we add presence info to returned trades
+		List<CrossChainTradeData> crossChainTrades = new ArrayList<>(tradeOffers.size());
+		for (TradeOffer tradeOffer : tradeOffers)
+			crossChainTrades.add(new CrossChainTradeData(tradeOffer.getTradeData()));
+
+		return crossChainTrades;
+	}
+
 	private static void decorateTradeDataWithPresence(CrossChainTradeData crossChainTradeData) {
 		TradeBot.getInstance().decorateTradeDataWithPresence(crossChainTradeData);
 	}
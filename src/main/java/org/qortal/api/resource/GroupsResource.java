@@ -62,7 +62,7 @@ public class GroupsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			List<GroupData> allGroupData = repository.getGroupRepository().getAllGroups(limit, offset, reverse);
 			allGroupData.forEach(groupData -> {
 				try {
@@ -96,7 +96,7 @@ public class GroupsResource {
 		if (!Crypto.isValidAddress(owner))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			return repository.getGroupRepository().getGroupsByOwner(owner);
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -122,7 +122,7 @@ public class GroupsResource {
 		if (!Crypto.isValidAddress(member))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			List<GroupData> allGroupData = repository.getGroupRepository().getGroupsWithMember(member);
 			allGroupData.forEach(groupData -> {
 				try {
@@ -153,7 +153,7 @@ public class GroupsResource {
 	)
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
 	public GroupData getGroupData(@PathParam("groupid") int groupId) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			GroupData groupData = repository.getGroupRepository().fromGroupId(groupId);
 			if (groupData == null)
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.GROUP_UNKNOWN);
@@ -183,7 +183,7 @@ public class GroupsResource {
 	public GroupMembers getGroup(@PathParam("groupid") int groupId, @QueryParam("onlyAdmins") Boolean onlyAdmins,
 			@Parameter(ref = "limit") @QueryParam("limit") Integer limit, @Parameter(ref = "offset") @QueryParam("offset") Integer offset,
 			@Parameter(ref="reverse") @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			if (!repository.getGroupRepository().groupExists(groupId))
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.GROUP_UNKNOWN);
 
@@ -736,7 +736,7 @@ public class GroupsResource {
 	)
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
 	public List<GroupInviteData> getInvitesByInvitee(@PathParam("address") String invitee) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			return repository.getGroupRepository().getInvitesByInvitee(invitee);
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -759,7 +759,7 @@ public class GroupsResource {
 	)
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
 	public List<GroupInviteData> getInvitesByGroupId(@PathParam("groupid") int groupId) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			return repository.getGroupRepository().getInvitesByGroupId(groupId);
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -782,7 +782,7 @@ public class GroupsResource {
 	)
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
 	public List<GroupJoinRequestData> getJoinRequests(@PathParam("groupid") int groupId) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			return repository.getGroupRepository().getGroupJoinRequests(groupId);
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -805,7 +805,7 @@ public class GroupsResource {
 	)
 	@ApiErrors({ApiError.REPOSITORY_ISSUE})
 	public List<GroupBanData> getBans(@PathParam("groupid") int groupId) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			return repository.getGroupRepository().getGroupBans(groupId);
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
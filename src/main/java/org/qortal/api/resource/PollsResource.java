@@ -66,7 +66,7 @@ public class PollsResource {
     ) @QueryParam("offset") Integer offset, @Parameter(
             ref = "reverse"
     ) @QueryParam("reverse") Boolean reverse) {
-            try (final Repository repository = RepositoryManager.getRepository()) {
+            try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 		    List<PollData> allPollData = repository.getVotingRepository().getAllPolls(limit, offset, reverse);
 		    return allPollData;
             } catch (DataException e) {
@@ -90,7 +90,7 @@ public class PollsResource {
     )
     @ApiErrors({ApiError.REPOSITORY_ISSUE})
     public PollData getPollData(@PathParam("pollName") String pollName) {
-            try (final Repository repository = RepositoryManager.getRepository()) {
+            try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
                     PollData pollData = repository.getVotingRepository().fromPollName(pollName);
                     if (pollData == null)
                             throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.POLL_NO_EXISTS);
@@ -119,7 +119,7 @@ public class PollsResource {
     )
     @ApiErrors({ApiError.REPOSITORY_ISSUE})
     public PollVotes getPollVotes(@PathParam("pollName") String pollName, @QueryParam("onlyCounts") Boolean onlyCounts) {
-            try (final Repository repository = RepositoryManager.getRepository()) {
+            try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
                     PollData pollData = repository.getVotingRepository().fromPollName(pollName);
                     if (pollData == null)
                             throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.POLL_NO_EXISTS);
@@ -47,7 +47,7 @@ public class StatsResource {
 	public BigDecimal circulatingSupply() {
 		long total = 0L;
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			int currentHeight = repository.getBlockRepository().getBlockchainHeight();
 
 			List<BlockChain.RewardByHeight> rewardsByHeight = BlockChain.getInstance().getBlockRewardsByHeight();
@@ -33,6 +33,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.lang.reflect.Constructor;
@@ -41,6 +42,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 
 @Path("/transactions")
@@ -77,7 +79,7 @@ public class TransactionsResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			TransactionData transactionData = repository.getTransactionRepository().fromSignature(signature);
 			if (transactionData == null)
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.TRANSACTION_UNKNOWN);
@@ -118,7 +120,7 @@ public class TransactionsResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			TransactionData transactionData = repository.getTransactionRepository().fromSignature(signature);
 			if (transactionData == null)
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.TRANSACTION_UNKNOWN);
@@ -162,7 +164,7 @@ public class TransactionsResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_REFERENCE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			TransactionData transactionData = repository.getTransactionRepository().fromReference(reference);
 			if (transactionData == null)
 				throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.TRANSACTION_UNKNOWN);
@@ -211,7 +213,7 @@ public class TransactionsResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			// Check if the block exists in either the database or archive
 			int height = repository.getBlockRepository().getHeightFromSignature(signature);
 			if (height == 0) {
@@ -281,7 +283,7 @@ public class TransactionsResource {
 			}
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			return repository.getTransactionRepository().getUnconfirmedTransactions(txTypes, creatorPublicKey, limit, offset, reverse);
 		} catch (ApiException e) {
 			throw e;
@@ -318,7 +320,7 @@ public class TransactionsResource {
 	) @QueryParam("offset") Integer offset, @Parameter(
 		ref = "reverse"
 	) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			return repository.getTransactionRepository().getApprovalPendingTransactions(txGroupId, limit, offset, reverse);
 		} catch (ApiException e) {
 			throw e;
@@ -354,7 +356,8 @@ public class TransactionsResource {
 	@ApiErrors({
 		ApiError.INVALID_CRITERIA, ApiError.REPOSITORY_ISSUE
 	})
-	public List<TransactionData> searchTransactions(@QueryParam("startBlock") Integer startBlock, @QueryParam("blockLimit") Integer blockLimit,
+	@Produces(MediaType.APPLICATION_JSON)
+	public StreamingOutput searchTransactions(@QueryParam("startBlock") Integer startBlock, @QueryParam("blockLimit") Integer blockLimit,
 			@QueryParam("txGroupId") Integer txGroupId,
 			@QueryParam("txType") List<TransactionType> txTypes, @QueryParam("address") String address, @Parameter(
 				description = "whether to include confirmed, unconfirmed or both",
@@ -374,21 +377,23 @@ public class TransactionsResource {
 		if (confirmationStatus != ConfirmationStatus.CONFIRMED && (startBlock != null || blockLimit != null))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
-			List<byte[]> signatures = repository.getTransactionRepository().getSignaturesMatchingCriteria(startBlock, blockLimit, txGroupId,
-					txTypes, null, null, address, confirmationStatus, limit, offset, reverse);
+		// Signatures are fetched once, with first page, as their ordering isn't stable enough for paging
+		AtomicReference<List<byte[]>> signaturesRef = new AtomicReference<>();
 
-			// Expand signatures to transactions
-			List<TransactionData> transactions = new ArrayList<>(signatures.size());
-			for (byte[] signature : signatures)
-				transactions.add(repository.getTransactionRepository().fromSignature(signature));
+		// Expand signatures to transactions a page at a time, instead of holding all transactions at once
+		return new StreamingJsonList<>(request, TransactionData.class, (repository, index, count) -> {
+			if (index == 0)
+				signaturesRef.set(repository.getTransactionRepository().getSignaturesMatchingCriteria(startBlock, blockLimit, txGroupId,
+						txTypes, null, null, address, confirmationStatus, limit, offset, reverse));
+
+			List<byte[]> signatures = signaturesRef.get();
+			List<TransactionData> transactions = new ArrayList<>();
+
+			for (int i = index; i < signatures.size() && i < index + count; ++i)
+				transactions.add(repository.getTransactionRepository().fromSignature(signatures.get(i)));
 
 			return transactions;
-		} catch (ApiException e) {
-			throw e;
-		} catch (DataException e) {
-			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
-		}
+		});
 	}
 
 	@GET
@@ -439,7 +444,7 @@ public class TransactionsResource {
 		}
 		else {
 			// Fetch from local db
-			try (final Repository repository = RepositoryManager.getRepository()) {
+			try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 				List<byte[]> signatures = repository.getTransactionRepository().getSignaturesMatchingCriteria(null, null, null,
 						null, null, null, address, TransactionsResource.ConfirmationStatus.CONFIRMED, limit, offset, reverse);
 
@@ -574,7 +579,7 @@ public class TransactionsResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_PUBLIC_KEY, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			List<byte[]> signatures = repository.getTransactionRepository().getSignaturesMatchingCriteria(null,
 					publicKey, confirmationStatus, limit, offset, reverse);
 
@@ -21,6 +21,7 @@ import org.qortal.account.Account;
 import org.qortal.account.PrivateKeyAccount;
 import org.qortal.api.*;
 import org.qortal.api.model.ActivitySummary;
+import org.qortal.api.model.MaintenanceTaskSummary;
 import org.qortal.api.model.NodeInfo;
 import org.qortal.api.model.NodeStatus;
 import org.qortal.block.BlockChain;
@@ -30,8 +31,10 @@ import org.qortal.controller.RestartNode;
 import org.qortal.controller.Synchronizer;
 import org.qortal.controller.Synchronizer.SynchronizationResult;
 import org.qortal.controller.repository.BlockArchiveRebuilder;
+import org.qortal.controller.repository.PruneManager;
 import org.qortal.data.account.MintingAccountData;
 import org.qortal.data.account.RewardShareData;
+import org.qortal.metrics.Metrics;
 import org.qortal.network.Network;
 import org.qortal.network.Peer;
 import org.qortal.network.PeerAddress;
@@ -39,6 +42,7 @@ import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
 import org.qortal.settings.Settings;
+import org.qortal.transaction.Transaction.TransactionType;
 import org.qortal.utils.Base58;
 import org.qortal.utils.NTP;
 
@@ -52,6 +56,7 @@ import java.net.UnknownHostException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
@@ -312,11 +317,12 @@ public class AdminResource {
 
 			summary.setBlockCount(endHeight - startHeight);
 
-			summary.setTransactionCountByType(repository.getTransactionRepository().getTransactionSummary(startHeight + 1, endHeight));
+			Map<TransactionType, Integer> transactionCounts = repository.getBlockRepository().getActivitySummary(startHeight + 1, endHeight);
+			summary.setTransactionCountByType(transactionCounts);
 
-			summary.setAssetsIssued(repository.getAssetRepository().getRecentAssetIds(oneday).size());
+			summary.setAssetsIssued(transactionCounts.getOrDefault(TransactionType.ISSUE_ASSET, 0));
 
-			summary.setNamesRegistered (repository.getNameRepository().getRecentNames(oneday).size());
+			summary.setNamesRegistered(transactionCounts.getOrDefault(TransactionType.REGISTER_NAME, 0));
 
 			return summary;
 		} catch (DataException e) {
@@ -343,16 +349,22 @@ public class AdminResource {
 
 		try (final Repository repository = RepositoryManager.getRepository()) {
 			int startHeight = 1;
-			long start = repository.getBlockRepository().fromHeight(startHeight).getTimestamp();
 			int endHeight = repository.getBlockRepository().getBlockchainHeight();
 
 			summary.setBlockCount(endHeight - startHeight);
 
-			summary.setTransactionCountByType(repository.getTransactionRepository().getTransactionSummary(startHeight + 1, endHeight));
+			// Assets and names include those issued in genesis block, but transaction counts don't
+			Map<TransactionType, Integer> transactionCounts = repository.getBlockRepository().getActivityTotals();
 
-			summary.setAssetsIssued(repository.getAssetRepository().getRecentAssetIds(start).size());
+			summary.setAssetsIssued(transactionCounts.getOrDefault(TransactionType.ISSUE_ASSET, 0));
 
-			summary.setNamesRegistered (repository.getNameRepository().getRecentNames(start).size());
+			summary.setNamesRegistered(transactionCounts.getOrDefault(TransactionType.REGISTER_NAME, 0));
+
+			Map<TransactionType, Integer> genesisCounts = repository.getBlockRepository().getActivitySummary(startHeight, startHeight);
+			genesisCounts.forEach((type, count) -> transactionCounts.computeIfPresent(type, (key, total) -> total - count));
+			transactionCounts.values().removeIf(count -> count <= 0);
+
+			summary.setTransactionCountByType(transactionCounts);
 
 			return summary;
 		} catch (DataException e) {
@@ -360,6 +372,59 @@ public class AdminResource {
 		}
 	}
 
+	@POST
+	@Path("/summary/verify")
+	@Operation(
+		summary = "Check materialised activity summaries against confirmed transactions",
+		description = "Compares per-block transaction counts for recent blocks, and all-time totals, "
+				+ "against the Transactions table. Summaries are rebuilt if inconsistent.",
+		responses = {
+			@ApiResponse(
+				description = "\"true\" if summaries were consistent, \"false\" if they were rebuilt",
+				content = @Content(mediaType = MediaType.TEXT_PLAIN, schema = @Schema(type = "string"))
+			)
+		}
+	)
+	@ApiErrors({ApiError.REPOSITORY_ISSUE})
+	@SecurityRequirement(name = "apiKey")
+	public String verifySummary(@HeaderParam(Security.API_KEY_HEADER) String apiKey,
+			@Parameter(description = "number of recent blocks to check (default 1440)") @QueryParam("blocks") Integer blockCount,
+			@Parameter(description = "rebuild if inconsistent (default true)") @QueryParam("rebuild") Boolean rebuild) {
+		Security.checkApiCallAllowed(request);
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			ReentrantLock blockchainLock = Controller.getInstance().getBlockchainLock();
+
+			// Block processing must not change counts while we compare
+			blockchainLock.lockInterruptibly();
+
+			try {
+				int endHeight = repository.getBlockRepository().getBlockchainHeight();
+				int startHeight = Math.max(1, endHeight - (blockCount != null ? blockCount : 1440) + 1);
+
+				boolean isConsistent = repository.getBlockRepository().getActivitySummary(startHeight, endHeight)
+						.equals(repository.getTransactionRepository().getTransactionSummary(startHeight, endHeight))
+						&& repository.getBlockRepository().getActivityTotals()
+						.equals(repository.getBlockRepository().getActivitySummary(1, endHeight));
+
+				if (!isConsistent && (rebuild == null || rebuild)) {
+					LOGGER.info("Activity summaries inconsistent - rebuilding");
+					repository.getBlockRepository().rebuildActivitySummaries();
+					repository.saveChanges();
+				}
+
+				return Boolean.toString(isConsistent);
+			} finally {
+				blockchainLock.unlock();
+			}
+		} catch (InterruptedException e) {
+			// We couldn't lock blockchain to perform check
+			return "false";
+		} catch (DataException e) {
+			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
+		}
+	}
+
 	@GET
 	@Path("/enginestats")
 	@Operation(
@@ -384,6 +449,53 @@ public class AdminResource {
 		return Controller.getInstance().getStatsSnapshot();
 	}
 
+	@GET
+	@Path("/metrics")
+	@Operation(
+		summary = "Fetch node metrics in Prometheus text format",
+		description = "Latency histograms, counters and queue depths for network, synchronization, repository and QDN. "
+				+ "API key can be supplied via 'apiKey' query parameter for scrapers that cannot set headers.",
+		responses = {
+			@ApiResponse(
+				content = @Content(mediaType = MediaType.TEXT_PLAIN, schema = @Schema(type = "string"))
+			)
+		}
+	)
+	@Produces(MediaType.TEXT_PLAIN)
+	@SecurityRequirement(name = "apiKey")
+	public String getMetrics(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return Metrics.getInstance().toPrometheusText();
+	}
+
+	@GET
+	@Path("/repository/maintenance")
+	@Operation(
+		summary = "Fetch progress of background repository maintenance (pruning, trimming, archiving)",
+		description = "Includes current adaptive batch sizes, latencies and remaining backlog in blocks",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					array = @ArraySchema(
+						schema = @Schema(
+							implementation = MaintenanceTaskSummary.class
+						)
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public List<MaintenanceTaskSummary> getRepositoryMaintenance(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return PruneManager.getInstance().getMaintenanceTasks().stream()
+				.map(MaintenanceTaskSummary::new)
+				.collect(Collectors.toList());
+	}
+
 	@GET
 	@Path("/mintingaccounts")
 	@Operation(
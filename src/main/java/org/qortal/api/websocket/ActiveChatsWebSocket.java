@@ -7,6 +7,8 @@ import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
 import org.qortal.controller.ChatNotifier;
 import org.qortal.crypto.Crypto;
 import org.qortal.data.chat.ActiveChats;
+import org.qortal.data.chat.ActiveChats.DirectChat;
+import org.qortal.data.chat.ActiveChats.GroupChat;
 import org.qortal.data.transaction.ChatTransactionData;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
@@ -14,10 +16,12 @@ import org.qortal.repository.RepositoryManager;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.qortal.data.chat.ChatMessage.Encoding;
 
@@ -25,6 +29,12 @@ import static org.qortal.data.chat.ChatMessage.Encoding;
 @SuppressWarnings("serial")
 public class ActiveChatsWebSocket extends ApiWebSocket {
 
+	/** What we last sent to a session, so new CHAT messages only need the chats they affect looked up. */
+	private static class SessionState {
+		private ActiveChats activeChats;
+		private String previousOutput;
+	}
+
 	@Override
 	public void configure(WebSocketServletFactory factory) {
 		factory.register(ActiveChatsWebSocket.class);
@@ -41,12 +51,13 @@ public class ActiveChatsWebSocket extends ApiWebSocket {
 			return;
 		}
 
-		AtomicReference<String> previousOutput = new AtomicReference<>(null);
+		SessionState state = new SessionState();
 
-		ChatNotifier.Listener listener = chatTransactionData -> onNotify(session, chatTransactionData, address, previousOutput);
-		ChatNotifier.getInstance().register(session, listener);
+		// Subscribed to our groups once we know them
+		ChatNotifier.Listener listener = event -> onNotify(session, event.getChatTransactionData(), address, state);
+		ChatNotifier.getInstance().register(session, getSubscription(address, null), listener);
 
-		this.onNotify(session, null, address, previousOutput);
+		this.onNotify(session, null, address, state);
 	}
 
 	@OnWebSocketClose
@@ -67,7 +78,7 @@ public class ActiveChatsWebSocket extends ApiWebSocket {
 		}
 	}
 
-	private void onNotify(Session session, ChatTransactionData chatTransactionData, String ourAddress, AtomicReference<String> previousOutput) {
+	private void onNotify(Session session, ChatTransactionData chatTransactionData, String ourAddress, SessionState state) {
 		// If CHAT has a recipient (i.e. direct message, not group-based) and we're neither sender nor recipient, then it's of no interest
 		if (chatTransactionData != null) {
 			String recipient = chatTransactionData.getRecipient();
@@ -76,23 +87,87 @@ public class ActiveChatsWebSocket extends ApiWebSocket {
 				return;
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
-			ActiveChats activeChats = repository.getChatRepository().getActiveChats(ourAddress, getTargetEncoding(session));
+		synchronized (state) {
+			try (final Repository repository = RepositoryManager.getRepository()) {
+				Encoding encoding = getTargetEncoding(session);
 
-			StringWriter stringWriter = new StringWriter();
+				if (chatTransactionData == null || state.activeChats == null
+						|| !updateActiveChats(repository, state.activeChats, chatTransactionData, ourAddress, encoding)) {
+					state.activeChats = repository.getChatRepository().getActiveChats(ourAddress, encoding);
 
-			marshall(stringWriter, activeChats);
+					// Our groups may have changed
+					ChatNotifier.getInstance().updateSubscription(session, getSubscription(ourAddress, state.activeChats));
+				}
 
-			// Only output if something has changed
-			String output = stringWriter.toString();
-			if (output.equals(previousOutput.get()))
-				return;
+				StringWriter stringWriter = new StringWriter();
+
+				marshall(stringWriter, state.activeChats);
+
+				// Only output if something has changed
+				String output = stringWriter.toString();
+				if (output.equals(state.previousOutput))
+					return;
+
+				state.previousOutput = output;
+				session.getRemote().sendStringByFuture(output);
+			} catch (DataException | IOException | WebSocketException e) {
+				// No output this time?
+			}
+		}
+	}
 
-			previousOutput.set(output);
-			session.getRemote().sendStringByFuture(output);
-		} catch (DataException | IOException | WebSocketException e) {
-			// No output this time?
+	/**
+	 * Updates just the chats affected by new CHAT message.
+	 *
+	 * @return false if active chats need fetching in full, e.g. we've joined a group since they were last fetched
+	 */
+	private static boolean updateActiveChats(Repository repository, ActiveChats activeChats, ChatTransactionData chatTransactionData,
+			String ourAddress, Encoding encoding) throws DataException {
+		int txGroupId = chatTransactionData.getTxGroupId();
+		String recipient = chatTransactionData.getRecipient();
+
+		// Group 0 only includes messages without recipient
+		if (txGroupId != 0 || recipient == null) {
+			List<GroupChat> groupChats = activeChats.getGroups();
+
+			int index = IntStream.range(0, groupChats.size())
+					.filter(i -> groupChats.get(i).getGroupId() == txGroupId)
+					.findFirst().orElse(-1);
+
+			if (index == -1) {
+				// Not one of our groups, unless we've joined since
+				if (repository.getGroupRepository().memberExists(txGroupId, ourAddress))
+					return false;
+			} else {
+				GroupChat groupChat = repository.getChatRepository().getActiveGroupChat(txGroupId, encoding);
+				if (groupChat == null)
+					return false;
+
+				groupChats.set(index, groupChat);
+			}
 		}
+
+		if (recipient != null) {
+			String otherAddress = recipient.equals(ourAddress) ? chatTransactionData.getSender() : recipient;
+
+			DirectChat directChat = repository.getChatRepository().getActiveDirectChat(ourAddress, otherAddress);
+			if (directChat == null)
+				return false;
+
+			List<DirectChat> directChats = activeChats.getDirect();
+			directChats.removeIf(existingChat -> existingChat.getAddress().equals(otherAddress));
+			directChats.add(directChat);
+		}
+
+		return true;
+	}
+
+	/** Returns subscription for direct messages involving our address, messages in our groups, and group membership changes. */
+	private static ChatNotifier.Subscription getSubscription(String ourAddress, ActiveChats activeChats) {
+		List<Integer> groupIds = activeChats == null ? Collections.emptyList()
+				: activeChats.getGroups().stream().map(GroupChat::getGroupId).collect(Collectors.toList());
+
+		return new ChatNotifier.Subscription(groupIds, Collections.singletonList(ourAddress), true);
 	}
 
 	private Encoding getTargetEncoding(Session session) {
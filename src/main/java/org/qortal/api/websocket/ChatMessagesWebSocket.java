@@ -65,8 +65,8 @@ public class ChatMessagesWebSocket extends ApiWebSocket {
 				return;
 			}
 
-			ChatNotifier.Listener listener = chatTransactionData -> onNotify(session, chatTransactionData, txGroupId);
-			ChatNotifier.getInstance().register(session, listener);
+			ChatNotifier.Listener listener = event -> onNotify(session, event, txGroupId);
+			ChatNotifier.getInstance().register(session, ChatNotifier.Subscription.forGroup(txGroupId), listener);
 
 			return;
 		}
@@ -97,8 +97,8 @@ public class ChatMessagesWebSocket extends ApiWebSocket {
 			return;
 		}
 
-		ChatNotifier.Listener listener = chatTransactionData -> onNotify(session, chatTransactionData, involvingAddresses);
-		ChatNotifier.getInstance().register(session, listener);
+		ChatNotifier.Listener listener = event -> onNotify(session, event, involvingAddresses);
+		ChatNotifier.getInstance().register(session, ChatNotifier.Subscription.forAddresses(involvingAddresses), listener);
 	}
 
 	@OnWebSocketClose
@@ -119,7 +119,8 @@ public class ChatMessagesWebSocket extends ApiWebSocket {
 		}
 	}
 
-	private void onNotify(Session session, ChatTransactionData chatTransactionData, int txGroupId) {
+	private void onNotify(Session session, ChatNotifier.Event event, int txGroupId) {
+		ChatTransactionData chatTransactionData = event.getChatTransactionData();
 		if (chatTransactionData == null)
 			// There has been a group-membership change, but we're not interested
 			return;
@@ -128,10 +129,11 @@ public class ChatMessagesWebSocket extends ApiWebSocket {
 		if (chatTransactionData.getRecipient() != null || chatTransactionData.getTxGroupId() != txGroupId)
 			return;
 
-		sendChat(session, chatTransactionData);
+		sendChat(session, event);
 	}
 
-	private void onNotify(Session session, ChatTransactionData chatTransactionData, List<String> involvingAddresses) {
+	private void onNotify(Session session, ChatNotifier.Event event, List<String> involvingAddresses) {
+		ChatTransactionData chatTransactionData = event.getChatTransactionData();
 		if (chatTransactionData == null)
 			return;
 
@@ -145,7 +147,7 @@ public class ChatMessagesWebSocket extends ApiWebSocket {
 		if (!transactionAddresses.containsAll(involvingAddresses))
 			return;
 
-		sendChat(session, chatTransactionData);
+		sendChat(session, event);
 	}
 
 	private void sendMessages(Session session, List<ChatMessage> chatMessages) {
@@ -160,17 +162,40 @@ public class ChatMessagesWebSocket extends ApiWebSocket {
 		}
 	}
 
-	private void sendChat(Session session, ChatTransactionData chatTransactionData) {
+	private void sendChat(Session session, ChatNotifier.Event event) {
+		Encoding encoding = getTargetEncoding(session);
+
+		// Sessions using the same encoding get the same output, so only build it once
+		String output = event.getPayload(encoding, () -> buildChatOutput(event.getChatTransactionData(), encoding));
+		if (output == null)
+			// No output this time?
+			return;
+
+		try {
+			session.getRemote().sendStringByFuture(output);
+		} catch (WebSocketException e) {
+			// No output this time?
+		}
+	}
+
+	private static String buildChatOutput(ChatTransactionData chatTransactionData, Encoding encoding) {
 		// Convert ChatTransactionData to ChatMessage
 		ChatMessage chatMessage;
 		try (final Repository repository = RepositoryManager.getRepository()) {
-			chatMessage = repository.getChatRepository().toChatMessage(chatTransactionData, getTargetEncoding(session));
+			chatMessage = repository.getChatRepository().toChatMessage(chatTransactionData, encoding);
 		} catch (DataException e) {
-			// No output this time?
-			return;
+			return null;
+		}
+
+		StringWriter stringWriter = new StringWriter();
+
+		try {
+			marshall(stringWriter, Collections.singletonList(chatMessage));
+		} catch (IOException e) {
+			return null;
 		}
 
-		sendMessages(session, Collections.singletonList(chatMessage));
+		return stringWriter.toString();
 	}
 
 	private Encoding getTargetEncoding(Session session) {
@@ -4,6 +4,7 @@ import org.qortal.account.Account;
 import org.qortal.account.PublicKeyAccount;
 import org.qortal.data.asset.OrderData;
 import org.qortal.data.asset.TradeData;
+import org.qortal.market.TradeHistory;
 import org.qortal.repository.AssetRepository;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
@@ -76,6 +77,10 @@ public class Trade {
 		long initiatorSaving = this.tradeData.getInitiatorSaving();
 		if (initiatorSaving > 0)
 			initiatingCreator.modifyAssetBalance(initiatingOrder.getHaveAssetId(), initiatorSaving);
+
+		// Update market's trade history
+		TradeHistory.processAssetTrade(this.repository, initiatingOrder.getHaveAssetId(), initiatingOrder.getWantAssetId(),
+				tradeData.getInitiator(), tradeData.getTarget(), tradeData.getInitiatorAmount(), tradeData.getTargetAmount(), tradeData.getTimestamp());
 	}
 
 	public void orphan() throws DataException {
@@ -111,6 +116,9 @@ public class Trade {
 
 		// Remove trade from repository
 		assetRepository.delete(tradeData);
+
+		// Rebuild market's trade history without this trade
+		TradeHistory.orphanAssetTrade(this.repository, initiatingOrder.getHaveAssetId(), initiatingOrder.getWantAssetId(), tradeData.getTimestamp());
 	}
 
 }
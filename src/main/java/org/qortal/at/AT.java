@@ -6,6 +6,8 @@ import org.qortal.crypto.Crypto;
 import org.qortal.data.at.ATData;
 import org.qortal.data.at.ATStateData;
 import org.qortal.data.transaction.DeployAtTransactionData;
+import org.qortal.metrics.Histogram;
+import org.qortal.metrics.Metrics;
 import org.qortal.repository.ATRepository;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
@@ -17,6 +19,9 @@ import java.util.List;
 
 public class AT {
 
+	private static final Histogram EXECUTION_TIME = Metrics.getInstance().histogram("qortal_at_execution_seconds",
+			"Time taken to load and execute a single AT");
+
 	// Properties
 	private Repository repository;
 	private ATData atData;
@@ -84,6 +89,8 @@ public class AT {
 	public void undeploy() throws DataException {
 		// AT states deleted implicitly by repository
 		this.repository.getATRepository().delete(this.atData.getATAddress());
+
+		ATMachineStateCache.getInstance().invalidate(this.atData.getATAddress());
 	}
 
 	/**
@@ -116,9 +123,20 @@ public class AT {
 		if (latestAtStateData == null)
 			throw new IllegalStateException("No previous AT state data found");
 
-		// [Re]create AT machine state using AT state data or from scratch as applicable
-		byte[] codeBytes = this.atData.getCodeBytes();
-		MachineState state = MachineState.fromBytes(api, loggerFactory, latestAtStateData.getStateData(), codeBytes);
+		final long startTime = System.nanoTime();
+
+		// [Re]create AT machine state using AT state data, reusing cached machine if possible
+		ATMachineStateCache machineStateCache = ATMachineStateCache.getInstance();
+		byte[] codeHash = this.atData.getCodeHash();
+
+		MachineState state = machineStateCache.take(atAddress, codeHash, latestAtStateData.getStateHash());
+		if (state != null) {
+			state.reuseFromBytes(api, latestAtStateData.getStateData());
+		} else {
+			byte[] codeBytes = this.atData.getCodeBytes();
+			state = MachineState.fromBytes(api, loggerFactory, latestAtStateData.getStateData(), codeBytes);
+		}
+
 		try {
 			api.preExecute(state);
 			state.execute();
@@ -129,6 +147,10 @@ public class AT {
 		byte[] stateData = state.toBytes();
 		byte[] stateHash = Crypto.digest(stateData);
 
+		machineStateCache.put(atAddress, codeHash, stateHash, state);
+
+		EXECUTION_TIME.recordSince(startTime);
+
 		// Nothing happened?
 		if (state.getSteps() == 0 && Arrays.equals(stateHash, latestAtStateData.getStateHash()))
 			// We currently want to execute frozen ATs, to maintain backwards support.
@@ -171,6 +193,8 @@ public class AT {
 		// Delete old AT state data from repository
 		this.repository.getATRepository().delete(atAddress, blockHeight);
 
+		ATMachineStateCache.getInstance().invalidate(atAddress);
+
 		if (this.atStateData.isInitial())
 			return;
 
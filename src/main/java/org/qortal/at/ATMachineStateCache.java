@@ -0,0 +1,121 @@
+package org.qortal.at;
+
+import org.ciyam.at.MachineState;
+import org.qortal.metrics.Counter;
+import org.qortal.metrics.Metrics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of decoded AT machines, keyed by AT address, so ATs that run every block
+ * don't need to rebuild their machine (header, versioned constants, code segment, logger) each time.
+ * <p>
+ * Each entry records the code hash and the state hash the machine was left at. Cached machines are
+ * always reset from the AT's latest serialized state using {@link MachineState#reuseFromBytes(org.ciyam.at.API, byte[])}
+ * before use, so an entry that is out of date (e.g. left over from a block that was never committed)
+ * can't affect execution results.
+ * <p>
+ * A machine is removed from the cache while in use, so it is never shared between threads.
+ */
+public class ATMachineStateCache {
+
+	/** Maximum number of cached machines, roughly the number of ATs expected to run per block */
+	private static final int MAX_ENTRIES = 1000;
+
+	private static final Counter REUSED = Metrics.getInstance().counter("qortal_at_machine_cache_total",
+			"AT machine state cache lookups", "result", "reused");
+	private static final Counter STALE = Metrics.getInstance().counter("qortal_at_machine_cache_total",
+			"AT machine state cache lookups", "result", "stale");
+	private static final Counter MISSED = Metrics.getInstance().counter("qortal_at_machine_cache_total",
+			"AT machine state cache lookups", "result", "miss");
+
+	private static class CachedMachine {
+		private final byte[] codeHash;
+		private final byte[] stateHash;
+		private final MachineState machineState;
+
+		private CachedMachine(byte[] codeHash, byte[] stateHash, MachineState machineState) {
+			this.codeHash = codeHash;
+			this.stateHash = stateHash;
+			this.machineState = machineState;
+		}
+	}
+
+	private static ATMachineStateCache instance;
+
+	@SuppressWarnings("serial")
+	private final Map<String, CachedMachine> entries = new LinkedHashMap<>(MAX_ENTRIES + 1, 0.75F, true) {
+		// This method is called just after a new entry has been added
+		@Override
+		public boolean removeEldestEntry(Map.Entry<String, CachedMachine> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private ATMachineStateCache() {
+		Metrics.getInstance().gauge("qortal_at_machine_cache_entries", "Number of cached AT machine states", this::size);
+	}
+
+	public static synchronized ATMachineStateCache getInstance() {
+		if (instance == null)
+			instance = new ATMachineStateCache();
+
+		return instance;
+	}
+
+	/**
+	 * Removes and returns cached machine for AT, or null if there isn't one for this code.
+	 * <p>
+	 * Caller must reset returned machine from AT's latest state before use,
+	 * and can return it afterwards using {@link #put(String, byte[], byte[], MachineState)}.
+	 *
+	 * @param latestStateHash hash of AT's latest state, used only to tell whether cached machine is up to date
+	 */
+	public MachineState take(String atAddress, byte[] codeHash, byte[] latestStateHash) {
+		CachedMachine cachedMachine;
+		synchronized (this.entries) {
+			cachedMachine = this.entries.remove(atAddress);
+		}
+
+		if (cachedMachine == null || !Arrays.equals(cachedMachine.codeHash, codeHash)) {
+			MISSED.increment();
+			return null;
+		}
+
+		if (Arrays.equals(cachedMachine.stateHash, latestStateHash))
+			REUSED.increment();
+		else
+			STALE.increment();
+
+		return cachedMachine.machineState;
+	}
+
+	/** Caches machine for AT, as left at <tt>stateHash</tt>. */
+	public void put(String atAddress, byte[] codeHash, byte[] stateHash, MachineState machineState) {
+		synchronized (this.entries) {
+			this.entries.put(atAddress, new CachedMachine(codeHash, stateHash, machineState));
+		}
+	}
+
+	/** Discards cached machine for AT, e.g. when AT state is orphaned. */
+	public void invalidate(String atAddress) {
+		synchronized (this.entries) {
+			this.entries.remove(atAddress);
+		}
+	}
+
+	public void clear() {
+		synchronized (this.entries) {
+			this.entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (this.entries) {
+			return this.entries.size();
+		}
+	}
+
+}
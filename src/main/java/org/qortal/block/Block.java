@@ -25,6 +25,9 @@ import org.qortal.data.block.BlockSummaryData;
 import org.qortal.data.block.BlockTransactionData;
 import org.qortal.data.network.OnlineAccountData;
 import org.qortal.data.transaction.TransactionData;
+import org.qortal.market.TradeHistory;
+import org.qortal.metrics.Histogram;
+import org.qortal.metrics.Metrics;
 import org.qortal.repository.ATRepository;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
@@ -108,6 +111,10 @@ public class Block {
 	// Other properties
 	private static final Logger LOGGER = LogManager.getLogger(Block.class);
 
+	private static final Histogram VALIDATION_TIME = Metrics.getInstance().histogram("qortal_block_validation_seconds", "Time taken to validate a block, including its transactions");
+	private static final Histogram PROCESS_TIME = Metrics.getInstance().histogram("qortal_block_process_seconds", "Time taken to process a block into the repository");
+	private static final Histogram ORPHAN_TIME = Metrics.getInstance().histogram("qortal_block_orphan_seconds", "Time taken to orphan a block from the repository");
+
 	/** Number of left-shifts to apply to block's online accounts count when calculating block's weight. */
 	private static final int ACCOUNTS_COUNT_SHIFT = Transformer.PUBLIC_KEY_LENGTH * 8;
 	/** Number of left-shifts to apply to previous block's weight when calculating a chain's weight. */
@@ -147,11 +154,17 @@ public class Block {
 		private final AccountData recipientAccountData;
 
 		ExpandedAccount(Repository repository, RewardShareData rewardShareData) throws DataException {
+			this(repository, rewardShareData,
+					repository.getAccountRepository().getAccount(rewardShareData.getMinter()),
+					rewardShareData.getRecipient().equals(rewardShareData.getMinter()) ? null : repository.getAccountRepository().getAccount(rewardShareData.getRecipient()));
+		}
+
+		private ExpandedAccount(Repository repository, RewardShareData rewardShareData, AccountData mintingAccountData, AccountData recipientAccountData) {
 			this.rewardShareData = rewardShareData;
 			this.sharePercent = this.rewardShareData.getSharePercent();
 
 			this.mintingAccount = new Account(repository, this.rewardShareData.getMinter());
-			this.mintingAccountData = repository.getAccountRepository().getAccount(this.mintingAccount.getAddress());
+			this.mintingAccountData = mintingAccountData;
 			this.isMinterFounder = Account.isFounder(mintingAccountData.getFlags());
 
 			this.isRecipientAlsoMinter = this.rewardShareData.getRecipient().equals(this.mintingAccount.getAddress());
@@ -163,10 +176,48 @@ public class Block {
 			} else {
 				// Recipient differs from minter
 				this.recipientAccount = new Account(repository, this.rewardShareData.getRecipient());
-				this.recipientAccountData = repository.getAccountRepository().getAccount(this.recipientAccount.getAddress());
+				this.recipientAccountData = recipientAccountData;
 			}
 		}
 
+		/**
+		 * Returns expanded accounts for many reward-shares, fetching all minter and recipient accounts in bulk.
+		 * <p>
+		 * Each expanded account gets its own copies of account data, exactly as if constructed individually,
+		 * as callers (e.g. {@link Block#increaseAccountLevels()}) modify them locally.
+		 */
+		public static List<ExpandedAccount> expandAccounts(Repository repository, List<RewardShareData> rewardShares) throws DataException {
+			Set<String> addresses = new HashSet<>(rewardShares.size() * 2);
+			for (RewardShareData rewardShareData : rewardShares) {
+				addresses.add(rewardShareData.getMinter());
+				addresses.add(rewardShareData.getRecipient());
+			}
+
+			Map<String, AccountData> accountsByAddress = repository.getAccountRepository().getAccounts(addresses);
+
+			List<ExpandedAccount> expandedAccounts = new ArrayList<>(rewardShares.size());
+			for (RewardShareData rewardShareData : rewardShares) {
+				AccountData mintingAccountData = copyOf(accountsByAddress.get(rewardShareData.getMinter()));
+
+				AccountData recipientAccountData = null;
+				if (!rewardShareData.getRecipient().equals(rewardShareData.getMinter()))
+					recipientAccountData = copyOf(accountsByAddress.get(rewardShareData.getRecipient()));
+
+				expandedAccounts.add(new ExpandedAccount(repository, rewardShareData, mintingAccountData, recipientAccountData));
+			}
+
+			return expandedAccounts;
+		}
+
+		private static AccountData copyOf(AccountData accountData) {
+			if (accountData == null)
+				return null;
+
+			return new AccountData(accountData.getAddress(), accountData.getReference(), accountData.getPublicKey(), accountData.getDefaultGroupId(),
+					accountData.getFlags(), accountData.getLevel(), accountData.getBlocksMinted(), accountData.getBlocksMintedAdjustment(),
+					accountData.getBlocksMintedPenalty());
+		}
+
 		public Account getMintingAccount() {
 			return this.mintingAccount;
 		}
@@ -711,12 +762,7 @@ public class Block {
 				throw new DataException("Online accounts invalid?");
 		}
 
-		List<ExpandedAccount> expandedAccounts = new ArrayList<>();
-
-		for (RewardShareData rewardShare : this.cachedOnlineRewardShares)
-			expandedAccounts.add(new ExpandedAccount(repository, rewardShare));
-
-		this.cachedExpandedAccounts = expandedAccounts;
+		this.cachedExpandedAccounts = ExpandedAccount.expandAccounts(repository, this.cachedOnlineRewardShares);
 
 		return this.cachedExpandedAccounts;
 	}
@@ -1216,6 +1262,16 @@ public class Block {
 	 * @throws DataException
 	 */
 	public ValidationResult isValid() throws DataException {
+		final long startTime = System.nanoTime();
+
+		try {
+			return this.validate();
+		} finally {
+			VALIDATION_TIME.recordSince(startTime);
+		}
+	}
+
+	private ValidationResult validate() throws DataException {
 		// Check parent block exists
 		if (this.blockData.getReference() == null)
 			return ValidationResult.REFERENCE_MISSING;
@@ -1471,8 +1527,8 @@ public class Block {
 		this.ourAtStates = new ArrayList<>();
 		this.ourAtFees = 0;
 
-		// Find all executable ATs, ordered by earliest creation date first
-		List<ATData> executableATs = this.repository.getATRepository().getAllExecutableATs();
+		// Find all ATs that might execute at this height, ordered by earliest creation date first
+		List<ATData> executableATs = this.repository.getATRepository().getExecutableATs(this.blockData.getHeight());
 
 		// Run each AT, appends AT-Transactions and corresponding AT states, to our lists
 		for (ATData atData : executableATs) {
@@ -1534,6 +1590,8 @@ public class Block {
 	 * @throws DataException
 	 */
 	public void process() throws DataException {
+		final long startTime = System.nanoTime();
+
 		// Set our block's height
 		int blockchainHeight = this.repository.getBlockRepository().getBlockchainHeight();
 		this.blockData.setHeight(blockchainHeight + 1);
@@ -1597,10 +1655,15 @@ public class Block {
 		// Also update "transaction participants" in repository for "transactions involving X" support in API
 		linkTransactionsToBlock();
 
+		// Update per-block transaction counts used by activity summaries
+		processActivitySummary();
+
 		postBlockTidy();
 
 		// Log some debugging info relating to the block weight calculation
 		this.logDebugInfo();
+
+		PROCESS_TIME.recordSince(startTime);
 	}
 
 	protected void increaseAccountLevels() throws DataException {
@@ -1796,6 +1859,9 @@ public class Block {
 
 			AT at = new AT(repository, atData, atStateData);
 			at.update(this.blockData.getHeight(), this.blockData.getTimestamp());
+
+			// Record completed cross-chain trades for market history
+			TradeHistory.processCrossChainTrade(this.repository, atData, atStateData, this.blockData.getHeight(), this.blockData.getTimestamp());
 		}
 	}
 
@@ -1827,12 +1893,23 @@ public class Block {
 		}
 	}
 
+	protected void processActivitySummary() throws DataException {
+		Map<TransactionType, Integer> transactionCounts = new EnumMap<>(TransactionType.class);
+
+		for (Transaction transaction : this.transactions)
+			transactionCounts.merge(transaction.getTransactionData().getType(), 1, Integer::sum);
+
+		this.repository.getBlockRepository().saveActivitySummary(this.blockData.getHeight(), transactionCounts);
+	}
+
 	/**
 	 * Removes block from blockchain undoing transactions and adding them to unconfirmed pile.
 	 * 
 	 * @throws DataException
 	 */
 	public void orphan() throws DataException {
+		final long startTime = System.nanoTime();
+
 		LOGGER.trace(() -> String.format("Orphaning block %d", this.blockData.getHeight()));
 
 		// Log some debugging info relating to the block weight calculation
@@ -1868,11 +1945,19 @@ public class Block {
 			}
 		}
 
+		// Remove per-block transaction counts used by activity summaries
+		this.repository.getBlockRepository().deleteActivitySummary(this.blockData.getHeight());
+
+		// Remove cross-chain trades completed in this block from market history
+		TradeHistory.orphanCrossChainTrades(this.repository, this.blockData.getHeight());
+
 		// Delete block from blockchain
 		this.repository.getBlockRepository().delete(this.blockData);
 		this.blockData.setHeight(null);
 
 		postBlockTidy();
+
+		ORPHAN_TIME.recordSince(startTime);
 	}
 
 	protected void orphanTransactionsFromBlock() throws DataException {
@@ -2512,14 +2597,9 @@ public class Block {
 	 * @return - the index of the key, or null if not found
 	 */
 	private static Integer getRewardShareIndex(byte[] rewardSharePublicKey, List<byte[]> rewardSharePublicKeys) {
-		int index = 0;
-		for (byte[] publicKey : rewardSharePublicKeys) {
-			if (Arrays.equals(rewardSharePublicKey, publicKey)) {
-				return index;
-			}
-			index++;
-		}
-		return null;
+		// Keys are sorted the same way as the repository sorts them: unsigned, byte-by-byte
+		int index = Collections.binarySearch(rewardSharePublicKeys, rewardSharePublicKey, Arrays::compareUnsigned);
+		return index >= 0 ? index : null;
 	}
 
 	private void logDebugInfo() {
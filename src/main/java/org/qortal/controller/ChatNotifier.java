@@ -1,25 +1,165 @@
 package org.qortal.controller;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.eclipse.jetty.websocket.api.Session;
 import org.qortal.data.transaction.ChatTransactionData;
+import org.qortal.metrics.Counter;
+import org.qortal.metrics.Metrics;
+import org.qortal.utils.DaemonThreadFactory;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
+/**
+ * Notifies websocket sessions about new CHAT messages, and group membership changes.
+ * <p>
+ * Sessions subscribe to groups and/or addresses, so each CHAT message only reaches sessions that might be interested,
+ * instead of every session.
+ * <p>
+ * Events are queued per session, and delivered in order by a small pool of threads, so slow listeners don't hold up
+ * the thread reporting the event, or each other. A session that falls too far behind misses events.
+ */
 public class ChatNotifier {
 
+	private static final Logger LOGGER = LogManager.getLogger(ChatNotifier.class);
+
+	/** Maximum number of events waiting for delivery to a session */
+	private static final int MAX_QUEUED_EVENTS_PER_SESSION = 100;
+	private static final int DELIVERY_THREAD_COUNT = 4;
+
 	private static ChatNotifier instance;
 
 	@FunctionalInterface
 	public interface Listener {
-		void notify(ChatTransactionData chatTransactionData);
+		void notify(Event event);
+	}
+
+	/** New CHAT message, or group membership change, being delivered to one or more sessions. */
+	public static class Event {
+		private final ChatTransactionData chatTransactionData;
+		private final ConcurrentMap<Object, String> payloads = new ConcurrentHashMap<>();
+
+		private Event(ChatTransactionData chatTransactionData) {
+			this.chatTransactionData = chatTransactionData;
+		}
+
+		/** Returns new CHAT message, or null if there has been a group membership change. */
+		public ChatTransactionData getChatTransactionData() {
+			return this.chatTransactionData;
+		}
+
+		/**
+		 * Returns payload for <tt>key</tt>, only building it once for all sessions receiving this event.
+		 * <p>
+		 * If <tt>payloadBuilder</tt> returns null, nothing is kept, and null is returned.
+		 */
+		public String getPayload(Object key, Supplier<String> payloadBuilder) {
+			return this.payloads.computeIfAbsent(key, k -> payloadBuilder.get());
+		}
+	}
+
+	/** What a session wants to be notified about. */
+	public static class Subscription {
+		private final Set<Integer> groupIds;
+		private final Set<String> addresses;
+		private final boolean includeMembershipChanges;
+
+		/**
+		 * @param groupIds groups whose messages session wants, i.e. messages without recipient, or with a non-zero group ID
+		 * @param addresses addresses whose direct messages session wants, as either sender or recipient
+		 * @param includeMembershipChanges whether session wants to know about group membership changes
+		 */
+		public Subscription(Collection<Integer> groupIds, Collection<String> addresses, boolean includeMembershipChanges) {
+			this.groupIds = new HashSet<>(groupIds);
+			this.addresses = new HashSet<>(addresses);
+			this.includeMembershipChanges = includeMembershipChanges;
+		}
+
+		public static Subscription forGroup(int groupId) {
+			return new Subscription(Collections.singleton(groupId), Collections.emptySet(), false);
+		}
+
+		public static Subscription forAddresses(Collection<String> addresses) {
+			return new Subscription(Collections.emptySet(), addresses, false);
+		}
+	}
+
+	private class Subscriber {
+		private final Listener listener;
+		private Subscription subscription;
+
+		/** Guarded by this */
+		private final Deque<Event> queue = new ArrayDeque<>();
+		/** Whether a delivery thread is working through queue. Guarded by this. */
+		private boolean isDelivering = false;
+
+		private Subscriber(Subscription subscription, Listener listener) {
+			this.subscription = subscription;
+			this.listener = listener;
+		}
+
+		private void enqueue(Event event) {
+			synchronized (this) {
+				if (this.queue.size() >= MAX_QUEUED_EVENTS_PER_SESSION) {
+					droppedEvents.increment();
+					return;
+				}
+
+				this.queue.addLast(event);
+
+				if (this.isDelivering)
+					return;
+
+				this.isDelivering = true;
+			}
+
+			deliveryExecutor.execute(this::deliver);
+		}
+
+		private void deliver() {
+			while (true) {
+				Event event;
+
+				synchronized (this) {
+					event = this.queue.pollFirst();
+
+					if (event == null) {
+						this.isDelivering = false;
+						return;
+					}
+				}
+
+				try {
+					this.listener.notify(event);
+				} catch (RuntimeException e) {
+					LOGGER.debug("Exception while notifying chat listener", e);
+				}
+			}
+		}
 	}
 
-	private Map<Session, Listener> listenersBySession = new HashMap<>();
+	/** Guarded by this.subscribers */
+	private final Map<Session, Subscriber> subscribers = new HashMap<>();
+	/** Guarded by this.subscribers */
+	private final Map<Integer, Set<Subscriber>> subscribersByGroupId = new HashMap<>();
+	/** Guarded by this.subscribers */
+	private final Map<String, Set<Subscriber>> subscribersByAddress = new HashMap<>();
+	/** Guarded by this.subscribers */
+	private final Set<Subscriber> membershipChangeSubscribers = new HashSet<>();
+
+	private final ExecutorService deliveryExecutor = Executors.newFixedThreadPool(DELIVERY_THREAD_COUNT, new DaemonThreadFactory("Chat-Notifier"));
+
+	private final Counter droppedEvents;
 
 	private ChatNotifier() {
+		this.droppedEvents = Metrics.getInstance().counter("qortal_chat_notifier_dropped_events_total",
+				"Number of chat events not delivered as session's queue was full");
+		Metrics.getInstance().gauge("qortal_chat_notifier_sessions", "Number of sessions subscribed to chat events", this::getSessionCount);
 	}
 
 	public static synchronized ChatNotifier getInstance() {
@@ -29,34 +169,110 @@ public class ChatNotifier {
 		return instance;
 	}
 
-	public void register(Session session, Listener listener) {
-		synchronized (this.listenersBySession) {
-			this.listenersBySession.put(session, listener);
+	public void register(Session session, Subscription subscription, Listener listener) {
+		Subscriber subscriber = new Subscriber(subscription, listener);
+
+		synchronized (this.subscribers) {
+			Subscriber previousSubscriber = this.subscribers.put(session, subscriber);
+			if (previousSubscriber != null)
+				this.removeFromIndexes(previousSubscriber);
+
+			this.addToIndexes(subscriber);
+		}
+	}
+
+	/** Replaces what session is subscribed to, e.g. after the groups it's interested in change. */
+	public void updateSubscription(Session session, Subscription subscription) {
+		synchronized (this.subscribers) {
+			Subscriber subscriber = this.subscribers.get(session);
+			if (subscriber == null)
+				return;
+
+			this.removeFromIndexes(subscriber);
+			subscriber.subscription = subscription;
+			this.addToIndexes(subscriber);
 		}
 	}
 
 	public void deregister(Session session) {
-		synchronized (this.listenersBySession) {
-			this.listenersBySession.remove(session);
+		synchronized (this.subscribers) {
+			Subscriber subscriber = this.subscribers.remove(session);
+			if (subscriber != null)
+				this.removeFromIndexes(subscriber);
 		}
 	}
 
+	public int getSessionCount() {
+		synchronized (this.subscribers) {
+			return this.subscribers.size();
+		}
+	}
+
+	private void addToIndexes(Subscriber subscriber) {
+		for (Integer groupId : subscriber.subscription.groupIds)
+			this.subscribersByGroupId.computeIfAbsent(groupId, k -> new HashSet<>()).add(subscriber);
+
+		for (String address : subscriber.subscription.addresses)
+			this.subscribersByAddress.computeIfAbsent(address, k -> new HashSet<>()).add(subscriber);
+
+		if (subscriber.subscription.includeMembershipChanges)
+			this.membershipChangeSubscribers.add(subscriber);
+	}
+
+	private void removeFromIndexes(Subscriber subscriber) {
+		for (Integer groupId : subscriber.subscription.groupIds)
+			removeFromIndex(this.subscribersByGroupId, groupId, subscriber);
+
+		for (String address : subscriber.subscription.addresses)
+			removeFromIndex(this.subscribersByAddress, address, subscriber);
+
+		this.membershipChangeSubscribers.remove(subscriber);
+	}
+
+	private static <K> void removeFromIndex(Map<K, Set<Subscriber>> index, K key, Subscriber subscriber) {
+		Set<Subscriber> indexedSubscribers = index.get(key);
+		if (indexedSubscribers == null)
+			return;
+
+		indexedSubscribers.remove(subscriber);
+
+		if (indexedSubscribers.isEmpty())
+			index.remove(key);
+	}
+
 	public void onNewChatTransaction(ChatTransactionData chatTransactionData) {
-		for (Listener listener : getAllListeners())
-			listener.notify(chatTransactionData);
+		Set<Subscriber> interestedSubscribers = new LinkedHashSet<>();
+
+		String recipient = chatTransactionData.getRecipient();
+		int txGroupId = chatTransactionData.getTxGroupId();
+
+		synchronized (this.subscribers) {
+			// Group 0 only includes messages without recipient
+			if (recipient == null || txGroupId != 0)
+				interestedSubscribers.addAll(this.subscribersByGroupId.getOrDefault(txGroupId, Collections.emptySet()));
+
+			if (recipient != null) {
+				interestedSubscribers.addAll(this.subscribersByAddress.getOrDefault(chatTransactionData.getSender(), Collections.emptySet()));
+				interestedSubscribers.addAll(this.subscribersByAddress.getOrDefault(recipient, Collections.emptySet()));
+			}
+		}
+
+		notifySubscribers(interestedSubscribers, new Event(chatTransactionData));
 	}
 
 	public void onGroupMembershipChange() {
-		for (Listener listener : getAllListeners())
-			listener.notify(null);
-	}
+		List<Subscriber> interestedSubscribers;
 
-	private Collection<Listener> getAllListeners() {
-		// Make a copy of listeners to both avoid concurrent modification
-		// and reduce synchronization time
-		synchronized (this.listenersBySession) {
-			return new ArrayList<>(this.listenersBySession.values());
+		synchronized (this.subscribers) {
+			interestedSubscribers = new ArrayList<>(this.membershipChangeSubscribers);
 		}
+
+		notifySubscribers(interestedSubscribers, new Event(null));
+	}
+
+	private void notifySubscribers(Collection<Subscriber> interestedSubscribers, Event event) {
+		for (Subscriber subscriber : interestedSubscribers)
+			subscriber.enqueue(event);
 	}
 
 }
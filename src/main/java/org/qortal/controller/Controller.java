@@ -16,6 +16,7 @@ import org.qortal.controller.arbitrary.*;
 import org.qortal.controller.repository.NamesDatabaseIntegrityCheck;
 import org.qortal.controller.repository.PruneManager;
 import org.qortal.controller.tradebot.TradeBot;
+import org.qortal.crosschain.ForeignBlockchainCache;
 import org.qortal.data.account.AccountBalanceData;
 import org.qortal.data.account.AccountData;
 import org.qortal.data.block.BlockData;
@@ -30,6 +31,7 @@ import org.qortal.event.EventBus;
 import org.qortal.globalization.Translator;
 import org.qortal.gui.Gui;
 import org.qortal.gui.SysTray;
+import org.qortal.market.TradeHistory;
 import org.qortal.network.Network;
 import org.qortal.network.Peer;
 import org.qortal.network.message.*;
@@ -404,6 +406,10 @@ public class Controller extends Thread {
 			try (final Repository repository = RepositoryManager.getRepository()) {
 				RepositoryManager.rebuildTransactionSequences(repository);
 				ArbitraryDataCacheManager.getInstance().buildArbitraryResourcesCache(repository, false);
+
+				// Lite nodes have no trades to build from
+				if (!Settings.getInstance().isLite())
+					TradeHistory.buildIfNeeded(repository);
 			}
 		} catch (DataException e) {
 			// If exception has no cause or message then repository is in use by some other process.
@@ -456,6 +462,13 @@ public class Controller extends Thread {
 				Gui.getInstance().fatalError("Database upgrade needed", "Please restart the core to complete the upgrade process.");
 				return;
 			}
+
+			// Load reward-shares into memory, for online accounts encoding/decoding
+			repository.getAccountRepository().rebuildRewardShareIndex();
+
+			// Load open asset orders into memory, for order matching
+			if (Settings.getInstance().isAssetOrderBookEnabled())
+				repository.getAssetRepository().rebuildOrderBook();
 		} catch (DataException e) {
 			LOGGER.error("Error checking transaction sequences in repository", e);
 			return;
@@ -971,6 +984,12 @@ public class Controller extends Thread {
 				LOGGER.info("Shutting down transaction importer");
 				TransactionImporter.getInstance().shutdown();
 
+				LOGGER.info("Shutting down trade-bot");
+				TradeBot.getInstance().shutdown();
+
+				LOGGER.info("Saving foreign blockchain caches");
+				ForeignBlockchainCache.saveAll();
+
 				if (blockMinter != null) {
 					LOGGER.info("Shutting down block minter");
 					blockMinter.shutdown();
@@ -14,6 +14,7 @@ import org.qortal.crypto.Qortal25519Extras;
 import org.qortal.data.account.MintingAccountData;
 import org.qortal.data.account.RewardShareData;
 import org.qortal.data.network.OnlineAccountData;
+import org.qortal.metrics.Metrics;
 import org.qortal.network.Network;
 import org.qortal.network.Peer;
 import org.qortal.network.message.GetOnlineAccountsV3Message;
@@ -142,6 +143,8 @@ public class OnlineAccountsManager {
     }
 
     private OnlineAccountsManager() {
+        Metrics.getInstance().gauge("qortal_online_accounts_import_queue_size", "Number of online accounts waiting to be imported",
+                () -> this.onlineAccountsImportQueue.size());
     }
 
     private static class SingletonContainer {
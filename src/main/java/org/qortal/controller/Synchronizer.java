@@ -14,6 +14,8 @@ import org.qortal.data.transaction.RewardShareTransactionData;
 import org.qortal.data.transaction.TransactionData;
 import org.qortal.event.Event;
 import org.qortal.event.EventBus;
+import org.qortal.metrics.Histogram;
+import org.qortal.metrics.Metrics;
 import org.qortal.network.Network;
 import org.qortal.network.Peer;
 import org.qortal.network.message.*;
@@ -39,6 +41,8 @@ public class Synchronizer extends Thread {
 
 	private static final Logger LOGGER = LogManager.getLogger(Synchronizer.class);
 
+	private static final Histogram SYNC_TIME = Metrics.getInstance().histogram("qortal_sync_attempt_seconds", "Time taken by a synchronization attempt with a peer");
+
 	/** Max number of new blocks we aim to add to chain tip in each sync round */
 	private static final int SYNC_BATCH_SIZE = 1000; // XXX move to Settings?
 
@@ -303,7 +307,11 @@ public class Synchronizer extends Thread {
 			Controller.getInstance().updateSysTray();
 
 		try {
+			final long startTime = System.nanoTime();
 			SynchronizationResult syncResult = Synchronizer.getInstance().synchronize(peer, force);
+			SYNC_TIME.recordSince(startTime);
+			Metrics.getInstance().counter("qortal_sync_results_total", "Number of synchronization attempts, by result", "result", syncResult.name()).increment();
+
 			switch (syncResult) {
 				case GENESIS_ONLY:
 				case NO_COMMON_BLOCK:
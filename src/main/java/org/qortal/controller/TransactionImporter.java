@@ -4,6 +4,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.data.block.BlockData;
 import org.qortal.data.transaction.TransactionData;
+import org.qortal.metrics.Metrics;
 import org.qortal.network.Network;
 import org.qortal.network.Peer;
 import org.qortal.network.message.GetTransactionMessage;
@@ -51,6 +52,11 @@ public class TransactionImporter extends Thread {
     public static List<TransactionData> unconfirmedTransactionsCache = null;
 
 
+    private TransactionImporter() {
+        Metrics.getInstance().gauge("qortal_transaction_import_queue_size", "Number of incoming transactions waiting to be imported",
+                () -> this.incomingTransactions.size());
+    }
+
     public static synchronized TransactionImporter getInstance() {
         if (instance == null) {
             instance = new TransactionImporter();
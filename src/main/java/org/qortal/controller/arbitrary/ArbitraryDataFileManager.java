@@ -10,6 +10,9 @@ import org.qortal.data.arbitrary.ArbitraryFileListResponseInfo;
 import org.qortal.data.arbitrary.ArbitraryRelayInfo;
 import org.qortal.data.network.PeerData;
 import org.qortal.data.transaction.ArbitraryTransactionData;
+import org.qortal.metrics.Counter;
+import org.qortal.metrics.Histogram;
+import org.qortal.metrics.Metrics;
 import org.qortal.network.Network;
 import org.qortal.network.Peer;
 import org.qortal.network.message.*;
@@ -19,12 +22,16 @@ import org.qortal.repository.RepositoryManager;
 import org.qortal.settings.Settings;
 import org.qortal.utils.ArbitraryTransactionUtils;
 import org.qortal.utils.Base58;
+import org.qortal.utils.ByteArray;
+import org.qortal.utils.ExpiryWheel;
 import org.qortal.utils.NTP;
 
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class ArbitraryDataFileManager extends Thread {
@@ -34,6 +41,15 @@ public class ArbitraryDataFileManager extends Thread {
     private static ArbitraryDataFileManager instance;
     private volatile boolean isStopping = false;
 
+    private static final Histogram CHUNK_FETCH_TIME = Metrics.getInstance().histogram("qortal_qdn_chunk_fetch_seconds", "Time taken for a peer to respond to a QDN data file request");
+    private static final Counter CHUNK_FETCH_FAILURES = Metrics.getInstance().counter("qortal_qdn_chunk_fetch_failures_total", "Number of QDN data file requests without a valid response");
+    private static final Counter RELAY_HITS = Metrics.getInstance().counter("qortal_qdn_relay_lookups_total", "Lookups for data files we don't hold, by whether we had relay info", "result", "hit");
+    private static final Counter RELAY_MISSES = Metrics.getInstance().counter("qortal_qdn_relay_lookups_total", "Lookups for data files we don't hold, by whether we had relay info", "result", "miss");
+    private static final Counter RELAY_EXPIRED = Metrics.getInstance().counter("qortal_qdn_relay_expired_total", "Number of relay map entries expired");
+
+    /** Time covered by each slot of the expiry wheels */
+    private static final long EXPIRY_WHEEL_TICK = 1000L; // ms
+
 
     /**
      * Map to keep track of our in progress (outgoing) arbitrary data file requests
@@ -41,9 +57,13 @@ public class ArbitraryDataFileManager extends Thread {
     public Map<String, Long> arbitraryDataFileRequests = Collections.synchronizedMap(new HashMap<>());
 
     /**
-     * Map to keep track of hashes that we might need to relay
+     * Map to keep track of hashes that we might need to relay.
+     * Key = hash58, value = relay info, with at most one entry per signature-peer combination.
+     * Lists are never modified in place, so they can be read without locking.
      */
-    public List<ArbitraryRelayInfo> arbitraryRelayMap = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, List<ArbitraryRelayInfo>> arbitraryRelayMap = new ConcurrentHashMap<>();
+    private final ExpiryWheel<ArbitraryRelayInfo> relayExpiryWheel =
+            new ExpiryWheel<>(EXPIRY_WHEEL_TICK, (int) (ArbitraryDataManager.ARBITRARY_RELAY_TIMEOUT / EXPIRY_WHEEL_TICK) + 1);
 
     /**
      * List to keep track of any arbitrary data file hash responses
@@ -51,9 +71,13 @@ public class ArbitraryDataFileManager extends Thread {
     public final List<ArbitraryFileListResponseInfo> arbitraryDataFileHashResponses = Collections.synchronizedList(new ArrayList<>());
 
     /**
-     * List to keep track of peers potentially available for direct connections, based on recent requests
+     * Map to keep track of peers potentially available for direct connections, based on recent requests.
+     * Key = signature, value = connection info, with at most one entry per peer address.
+     * Lists are never modified in place, so they can be read without locking.
      */
-    private List<ArbitraryDirectConnectionInfo> directConnectionInfo = Collections.synchronizedList(new ArrayList<>());
+    private final Map<ByteArray, List<ArbitraryDirectConnectionInfo>> directConnectionInfo = new ConcurrentHashMap<>();
+    private final ExpiryWheel<ArbitraryDirectConnectionInfo> directConnectionInfoExpiryWheel =
+            new ExpiryWheel<>(EXPIRY_WHEEL_TICK, (int) (ArbitraryDataManager.ARBITRARY_DIRECT_CONNECTION_INFO_TIMEOUT / EXPIRY_WHEEL_TICK) + 1);
 
     /**
      * Map to keep track of peers requesting QDN data that we hold.
@@ -67,6 +91,10 @@ public class ArbitraryDataFileManager extends Thread {
 
 
     private ArbitraryDataFileManager() {
+        Metrics.getInstance().gauge("qortal_qdn_relay_map_entries", "Number of entries in QDN relay map",
+                () -> this.arbitraryRelayMap.values().stream().mapToLong(List::size).sum());
+        Metrics.getInstance().gauge("qortal_qdn_direct_connection_info_entries", "Number of peers known to be hosting QDN data for direct connections",
+                () -> this.directConnectionInfo.values().stream().mapToLong(List::size).sum());
     }
 
     public static ArbitraryDataFileManager getInstance() {
@@ -111,11 +139,15 @@ public class ArbitraryDataFileManager extends Thread {
         arbitraryDataFileRequests.entrySet().removeIf(entry -> entry.getValue() == null || entry.getValue() < requestMinimumTimestamp);
 
         final long relayMinimumTimestamp = now - ArbitraryDataManager.getInstance().ARBITRARY_RELAY_TIMEOUT;
-        arbitraryRelayMap.removeIf(entry -> entry == null || entry.getTimestamp() == null || entry.getTimestamp() < relayMinimumTimestamp);
         arbitraryDataFileHashResponses.removeIf(entry -> entry.getTimestamp() < relayMinimumTimestamp);
 
-        final long directConnectionInfoMinimumTimestamp = now - ArbitraryDataManager.getInstance().ARBITRARY_DIRECT_CONNECTION_INFO_TIMEOUT;
-        directConnectionInfo.removeIf(entry -> entry.getTimestamp() < directConnectionInfoMinimumTimestamp);
+        // Relay and direct connection entries are expired using wheels, so we only visit entries that are due
+        int expiredCount = relayExpiryWheel.expire(now, expiredEntry ->
+                removeFromMultimap(arbitraryRelayMap, expiredEntry.getHash58(), relayInfo -> relayInfo == expiredEntry));
+        RELAY_EXPIRED.add(expiredCount);
+
+        directConnectionInfoExpiryWheel.expire(now, expiredEntry ->
+                removeFromMultimap(directConnectionInfo, ByteArray.wrap(expiredEntry.getSignature()), connectionInfo -> connectionInfo == expiredEntry));
 
         final long recentDataRequestMinimumTimestamp = now - ArbitraryDataManager.getInstance().ARBITRARY_RECENT_DATA_REQUESTS_TIMEOUT;
         recentDataRequests.entrySet().removeIf(entry -> entry.getValue() < recentDataRequestMinimumTimestamp);
@@ -204,11 +236,13 @@ public class ArbitraryDataFileManager extends Thread {
             Message getArbitraryDataFileMessage = new GetArbitraryDataFileMessage(signature, hash);
 
             Message response = null;
+            final long startTime = System.nanoTime();
             try {
                 response = peer.getResponseWithTimeout(getArbitraryDataFileMessage, (int) ArbitraryDataManager.ARBITRARY_REQUEST_TIMEOUT);
             } catch (InterruptedException e) {
                 // Will return below due to null response
             }
+            CHUNK_FETCH_TIME.recordSince(startTime);
             arbitraryDataFileRequests.remove(hash58);
             LOGGER.trace(String.format("Removed hash %.8s from arbitraryDataFileRequests", hash58));
 
@@ -217,10 +251,12 @@ public class ArbitraryDataFileManager extends Thread {
 
             if (response == null) {
                 LOGGER.debug("Received null response from peer {}", peer);
+                CHUNK_FETCH_FAILURES.increment();
                 return null;
             }
             if (response.getType() != MessageType.ARBITRARY_DATA_FILE) {
                 LOGGER.debug("Received response with invalid type: {} from peer {}", response.getType(), peer);
+                CHUNK_FETCH_FAILURES.increment();
                 return null;
             }
 
@@ -310,9 +346,7 @@ public class ArbitraryDataFileManager extends Thread {
     // Fetch data directly from peers
 
     private List<ArbitraryDirectConnectionInfo> getDirectConnectionInfoForSignature(byte[] signature) {
-        synchronized (directConnectionInfo) {
-            return directConnectionInfo.stream().filter(i -> Arrays.equals(i.getSignature(), signature)).collect(Collectors.toList());
-        }
+        return new ArrayList<>(directConnectionInfo.getOrDefault(ByteArray.wrap(signature), Collections.emptyList()));
     }
 
     /**
@@ -321,19 +355,28 @@ public class ArbitraryDataFileManager extends Thread {
      * @param connectionInfo - the direct connection info to add
      */
     public void addDirectConnectionInfoIfUnique(ArbitraryDirectConnectionInfo connectionInfo) {
-        boolean peerAlreadyExists;
-        synchronized (directConnectionInfo) {
-            peerAlreadyExists = directConnectionInfo.stream()
-                    .anyMatch(i -> Arrays.equals(i.getSignature(), connectionInfo.getSignature())
-                            && Objects.equals(i.getPeerAddress(), connectionInfo.getPeerAddress()));
-        }
-        if (!peerAlreadyExists) {
-            directConnectionInfo.add(connectionInfo);
+        boolean[] wasAdded = new boolean[1];
+
+        directConnectionInfo.compute(ByteArray.wrap(connectionInfo.getSignature()), (signature, connectionInfoList) -> {
+            if (connectionInfoList != null && connectionInfoList.stream()
+                    .anyMatch(i -> Objects.equals(i.getPeerAddress(), connectionInfo.getPeerAddress()))) {
+                return connectionInfoList;
+            }
+
+            List<ArbitraryDirectConnectionInfo> newList = connectionInfoList != null ? new ArrayList<>(connectionInfoList) : new ArrayList<>();
+            newList.add(connectionInfo);
+            wasAdded[0] = true;
+            return Collections.unmodifiableList(newList);
+        });
+
+        if (wasAdded[0]) {
+            directConnectionInfoExpiryWheel.schedule(connectionInfo,
+                    connectionInfo.getTimestamp() + ArbitraryDataManager.ARBITRARY_DIRECT_CONNECTION_INFO_TIMEOUT);
         }
     }
 
     private void removeDirectConnectionInfo(ArbitraryDirectConnectionInfo connectionInfo) {
-        this.directConnectionInfo.remove(connectionInfo);
+        removeFromMultimap(this.directConnectionInfo, ByteArray.wrap(connectionInfo.getSignature()), connectionInfo::equals);
     }
 
     public boolean fetchDataFilesFromPeersForSignature(byte[] signature) {
@@ -444,11 +487,7 @@ public class ArbitraryDataFileManager extends Thread {
     // Relays
 
     private List<ArbitraryRelayInfo> getRelayInfoListForHash(String hash58) {
-        synchronized (arbitraryRelayMap) {
-            return arbitraryRelayMap.stream()
-                    .filter(relayInfo -> Objects.equals(relayInfo.getHash58(), hash58))
-                    .collect(Collectors.toList());
-        }
+        return new ArrayList<>(arbitraryRelayMap.getOrDefault(hash58, Collections.emptyList()));
     }
 
     private ArbitraryRelayInfo getOptimalRelayInfoEntryForHash(String hash58) {
@@ -497,16 +536,37 @@ public class ArbitraryDataFileManager extends Thread {
             return;
         }
 
-        // Remove existing entry for this peer if it exists, to renew the timestamp
-        this.removeFromRelayMap(newEntry);
+        arbitraryRelayMap.compute(newEntry.getHash58(), (hash58, relayInfoList) -> {
+            List<ArbitraryRelayInfo> newList = new ArrayList<>();
+
+            // Remove existing entry for this peer if it exists, to renew the timestamp
+            if (relayInfoList != null) {
+                relayInfoList.stream().filter(relayInfo -> !relayInfo.equals(newEntry)).forEach(newList::add);
+            }
+
+            // Re-add
+            newList.add(newEntry);
+            return Collections.unmodifiableList(newList);
+        });
 
-        // Re-add
-        arbitraryRelayMap.add(newEntry);
+        // Any replaced entry is left in the wheel, but won't match on expiry
+        relayExpiryWheel.schedule(newEntry, newEntry.getTimestamp() + ArbitraryDataManager.ARBITRARY_RELAY_TIMEOUT);
         LOGGER.debug("Added entry to relay map: {}", newEntry);
     }
 
-    private void removeFromRelayMap(ArbitraryRelayInfo entry) {
-        arbitraryRelayMap.removeIf(relayInfo -> relayInfo.equals(entry));
+    /**
+     * Removes entries matching <tt>predicate</tt> from list mapped to <tt>key</tt>,
+     * replacing the list rather than modifying it, and removing the key if nothing remains.
+     */
+    private static <K, V> void removeFromMultimap(Map<K, List<V>> map, K key, Predicate<V> predicate) {
+        map.computeIfPresent(key, (k, list) -> {
+            if (list.stream().noneMatch(predicate)) {
+                return list;
+            }
+
+            List<V> newList = list.stream().filter(predicate.negate()).collect(Collectors.toList());
+            return newList.isEmpty() ? null : Collections.unmodifiableList(newList);
+        });
     }
 
 
@@ -585,6 +645,7 @@ public class ArbitraryDataFileManager extends Thread {
                 }
             }
             else if (relayInfo != null) {
+                RELAY_HITS.increment();
                 LOGGER.debug("We have relay info for hash {}", Base58.encode(hash));
                 // We need to ask this peer for the file
                 Peer peerToAsk = relayInfo.getPeer();
@@ -601,6 +662,7 @@ public class ArbitraryDataFileManager extends Thread {
                 }
             }
             else {
+                RELAY_MISSES.increment();
                 LOGGER.debug("Hash {} doesn't exist and we don't have relay info", hash58);
 
                 // We don't have this file
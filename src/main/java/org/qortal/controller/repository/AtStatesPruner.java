@@ -3,116 +3,137 @@ package org.qortal.controller.repository;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.controller.Controller;
-import org.qortal.controller.Synchronizer;
 import org.qortal.data.block.BlockData;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
-import org.qortal.repository.RepositoryManager;
 import org.qortal.settings.Settings;
 import org.qortal.utils.NTP;
 
-public class AtStatesPruner implements Runnable {
+public class AtStatesPruner extends MaintenanceTask {
 
 	private static final Logger LOGGER = LogManager.getLogger(AtStatesPruner.class);
 
+	private boolean archiveMode = false;
+	private int pruneStartHeight;
+
 	@Override
-	public void run() {
-		Thread.currentThread().setName("AT States pruner");
+	public String getName() {
+		return "AT States pruner";
+	}
 
+	@Override
+	public boolean isEnabled() {
 		if (Settings.getInstance().isLite()) {
 			// Nothing to prune in lite mode
-			return;
+			return false;
 		}
 
-		boolean archiveMode = false;
 		if (!Settings.getInstance().isTopOnly()) {
 			// Top-only mode isn't enabled, but we might want to prune for the purposes of archiving
 			if (!Settings.getInstance().isArchiveEnabled()) {
 				// No pruning or archiving, so we must not prune anything
-				return;
+				return false;
 			}
 			else {
 				// We're allowed to prune blocks that have already been archived
-				archiveMode = true;
+				this.archiveMode = true;
 			}
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
-			int pruneStartHeight = repository.getATRepository().getAtPruneHeight();
-			int maxLatestAtStatesHeight = PruneManager.getMaxHeightForLatestAtStates(repository);
+		return true;
+	}
+
+	@Override
+	protected long getBaseInterval() {
+		return Settings.getInstance().getAtStatesPruneInterval();
+	}
+
+	@Override
+	protected int getBaseBatchSize() {
+		return Settings.getInstance().getAtStatesPruneBatchSize();
+	}
+
+	@Override
+	protected long getCaughtUpDelay() {
+		// Back off for a while to save CPU for syncing
+		return 5 * 60 * 1000L;
+	}
+
+	@Override
+	protected boolean prepare(Repository repository) throws DataException {
+		this.pruneStartHeight = repository.getATRepository().getAtPruneHeight();
+		this.progressHeight = this.pruneStartHeight;
+
+		int maxLatestAtStatesHeight = PruneManager.getMaxHeightForLatestAtStates(repository);
+
+		repository.discardChanges();
+		repository.getATRepository().rebuildLatestAtStates(maxLatestAtStatesHeight);
+		this.commit(repository);
+
+		return true;
+	}
 
-			repository.discardChanges();
+	@Override
+	protected StepResult step(Repository repository, int batchSize) throws DataException {
+		BlockData chainTip = Controller.getInstance().getChainTip();
+		if (chainTip == null || NTP.getTime() == null)
+			return StepResult.NOT_READY;
+
+		// Prune AT states for all blocks up until our latest minus pruneBlockLimit
+		final int ourLatestHeight = chainTip.getHeight();
+		int upperPrunableHeight = ourLatestHeight - Settings.getInstance().getPruneBlockLimit();
+
+		// In archive mode we are only allowed to trim blocks that have already been archived
+		if (this.archiveMode) {
+			upperPrunableHeight = repository.getBlockArchiveRepository().getBlockArchiveHeight() - 1;
+
+			// TODO: validate that the actual archived data exists before pruning it?
+		}
+
+		this.targetHeight = upperPrunableHeight;
+
+		int upperBatchHeight = this.pruneStartHeight + batchSize;
+		int upperPruneHeight = Math.min(upperBatchHeight, upperPrunableHeight);
+
+		if (this.pruneStartHeight >= upperPruneHeight)
+			return StepResult.NOT_READY;
+
+		LOGGER.debug(String.format("Pruning AT states between blocks %d and %d...", this.pruneStartHeight, upperPruneHeight));
+
+		int numAtStatesPruned = repository.getATRepository().pruneAtStates(this.pruneStartHeight, upperPruneHeight);
+		this.commit(repository);
+		int numAtStateDataRowsTrimmed = repository.getATRepository().trimAtStates(
+				this.pruneStartHeight, upperPruneHeight, Settings.getInstance().getAtStatesTrimLimit());
+		this.commit(repository);
+
+		if (numAtStatesPruned > 0 || numAtStateDataRowsTrimmed > 0) {
+			this.addProcessedItems(numAtStatesPruned + numAtStateDataRowsTrimmed);
+
+			final int finalPruneStartHeight = this.pruneStartHeight;
+			LOGGER.debug(() -> String.format("Pruned %d AT state%s between blocks %d and %d",
+					numAtStatesPruned, (numAtStatesPruned != 1 ? "s" : ""),
+					finalPruneStartHeight, upperPruneHeight));
+
+			return StepResult.PROGRESS;
+		}
+
+		// Can we move onto next batch?
+		if (upperPrunableHeight > upperBatchHeight) {
+			this.pruneStartHeight = upperBatchHeight;
+			this.progressHeight = this.pruneStartHeight;
+			repository.getATRepository().setAtPruneHeight(this.pruneStartHeight);
+			int maxLatestAtStatesHeight = PruneManager.getMaxHeightForLatestAtStates(repository);
 			repository.getATRepository().rebuildLatestAtStates(maxLatestAtStatesHeight);
-			repository.saveChanges();
-
-			while (!Controller.isStopping()) {
-				repository.discardChanges();
-
-				Thread.sleep(Settings.getInstance().getAtStatesPruneInterval());
-
-				BlockData chainTip = Controller.getInstance().getChainTip();
-				if (chainTip == null || NTP.getTime() == null)
-					continue;
-
-				// Don't even attempt if we're mid-sync as our repository requests will be delayed for ages
-				if (Synchronizer.getInstance().isSynchronizing())
-					continue;
-
-				// Prune AT states for all blocks up until our latest minus pruneBlockLimit
-				final int ourLatestHeight = chainTip.getHeight();
-				int upperPrunableHeight = ourLatestHeight - Settings.getInstance().getPruneBlockLimit();
-
-				// In archive mode we are only allowed to trim blocks that have already been archived
-				if (archiveMode) {
-					upperPrunableHeight = repository.getBlockArchiveRepository().getBlockArchiveHeight() - 1;
-
-					// TODO: validate that the actual archived data exists before pruning it?
-				}
-
-				int upperBatchHeight = pruneStartHeight + Settings.getInstance().getAtStatesPruneBatchSize();
-				int upperPruneHeight = Math.min(upperBatchHeight, upperPrunableHeight);
-
-				if (pruneStartHeight >= upperPruneHeight)
-					continue;
-
-				LOGGER.debug(String.format("Pruning AT states between blocks %d and %d...", pruneStartHeight, upperPruneHeight));
-
-				int numAtStatesPruned = repository.getATRepository().pruneAtStates(pruneStartHeight, upperPruneHeight);
-				repository.saveChanges();
-				int numAtStateDataRowsTrimmed = repository.getATRepository().trimAtStates(
-						pruneStartHeight, upperPruneHeight, Settings.getInstance().getAtStatesTrimLimit());
-				repository.saveChanges();
-
-				if (numAtStatesPruned > 0 || numAtStateDataRowsTrimmed > 0) {
-					final int finalPruneStartHeight = pruneStartHeight;
-					LOGGER.debug(() -> String.format("Pruned %d AT state%s between blocks %d and %d",
-							numAtStatesPruned, (numAtStatesPruned != 1 ? "s" : ""),
-							finalPruneStartHeight, upperPruneHeight));
-				} else {
-					// Can we move onto next batch?
-					if (upperPrunableHeight > upperBatchHeight) {
-						pruneStartHeight = upperBatchHeight;
-						repository.getATRepository().setAtPruneHeight(pruneStartHeight);
-						maxLatestAtStatesHeight = PruneManager.getMaxHeightForLatestAtStates(repository);
-						repository.getATRepository().rebuildLatestAtStates(maxLatestAtStatesHeight);
-						repository.saveChanges();
-
-						final int finalPruneStartHeight = pruneStartHeight;
-						LOGGER.debug(() -> String.format("Bumping AT state base prune height to %d", finalPruneStartHeight));
-					}
-					else {
-						// We've pruned up to the upper prunable height
-						// Back off for a while to save CPU for syncing
-						repository.discardChanges();
-						Thread.sleep(5*60*1000L);
-					}
-				}
-			}
-		} catch (DataException e) {
-			LOGGER.warn(String.format("Repository issue trying to prune AT states: %s", e.getMessage()));
-		} catch (InterruptedException e) {
-			// Time to exit
+			this.commit(repository);
+
+			final int finalPruneStartHeight = this.pruneStartHeight;
+			LOGGER.debug(() -> String.format("Bumping AT state base prune height to %d", finalPruneStartHeight));
+
+			return StepResult.PROGRESS;
 		}
+
+		// We've pruned up to the upper prunable height
+		return StepResult.CAUGHT_UP;
 	}
 
 }
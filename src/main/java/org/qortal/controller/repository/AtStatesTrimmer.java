@@ -3,88 +3,104 @@ package org.qortal.controller.repository;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.controller.Controller;
-import org.qortal.controller.Synchronizer;
 import org.qortal.data.block.BlockData;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
-import org.qortal.repository.RepositoryManager;
 import org.qortal.settings.Settings;
 import org.qortal.utils.NTP;
 
-public class AtStatesTrimmer implements Runnable {
+public class AtStatesTrimmer extends MaintenanceTask {
 
 	private static final Logger LOGGER = LogManager.getLogger(AtStatesTrimmer.class);
 
+	private int trimStartHeight;
+
+	@Override
+	public String getName() {
+		return "AT States trimmer";
+	}
+
+	@Override
+	public boolean isEnabled() {
+		// Nothing to trim in lite mode
+		return !Settings.getInstance().isLite();
+	}
+
+	@Override
+	protected long getBaseInterval() {
+		return Settings.getInstance().getAtStatesTrimInterval();
+	}
+
+	@Override
+	protected int getBaseBatchSize() {
+		return Settings.getInstance().getAtStatesTrimBatchSize();
+	}
+
 	@Override
-	public void run() {
-		Thread.currentThread().setName("AT States trimmer");
+	protected boolean prepare(Repository repository) throws DataException {
+		this.trimStartHeight = repository.getATRepository().getAtTrimHeight();
+		this.progressHeight = this.trimStartHeight;
+
+		int maxLatestAtStatesHeight = PruneManager.getMaxHeightForLatestAtStates(repository);
 
-		if (Settings.getInstance().isLite()) {
-			// Nothing to trim in lite mode
-			return;
+		repository.discardChanges();
+		repository.getATRepository().rebuildLatestAtStates(maxLatestAtStatesHeight);
+		this.commit(repository);
+
+		return true;
+	}
+
+	@Override
+	protected StepResult step(Repository repository, int batchSize) throws DataException {
+		BlockData chainTip = Controller.getInstance().getChainTip();
+		if (chainTip == null || NTP.getTime() == null)
+			return StepResult.NOT_READY;
+
+		long currentTrimmableTimestamp = NTP.getTime() - Settings.getInstance().getAtStatesMaxLifetime();
+		// We want to keep AT states near the tip of our copy of blockchain so we can process/orphan nearby blocks
+		long chainTrimmableTimestamp = chainTip.getTimestamp() - Settings.getInstance().getAtStatesMaxLifetime();
+
+		long upperTrimmableTimestamp = Math.min(currentTrimmableTimestamp, chainTrimmableTimestamp);
+		int upperTrimmableHeight = repository.getBlockRepository().getHeightFromTimestamp(upperTrimmableTimestamp);
+
+		this.targetHeight = upperTrimmableHeight;
+
+		int upperBatchHeight = this.trimStartHeight + batchSize;
+		int upperTrimHeight = Math.min(upperBatchHeight, upperTrimmableHeight);
+
+		if (this.trimStartHeight >= upperTrimHeight)
+			return StepResult.CAUGHT_UP;
+
+		int numAtStatesTrimmed = repository.getATRepository().trimAtStates(this.trimStartHeight, upperTrimHeight, Settings.getInstance().getAtStatesTrimLimit());
+		this.commit(repository);
+
+		if (numAtStatesTrimmed > 0) {
+			this.addProcessedItems(numAtStatesTrimmed);
+
+			final int finalTrimStartHeight = this.trimStartHeight;
+			LOGGER.debug(() -> String.format("Trimmed %d AT state%s between blocks %d and %d",
+					numAtStatesTrimmed, (numAtStatesTrimmed != 1 ? "s" : ""),
+					finalTrimStartHeight, upperTrimHeight));
+
+			return StepResult.PROGRESS;
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
-			int trimStartHeight = repository.getATRepository().getAtTrimHeight();
+		// Can we move onto next batch?
+		if (upperTrimmableHeight > upperBatchHeight) {
+			this.trimStartHeight = upperBatchHeight;
+			this.progressHeight = this.trimStartHeight;
+			repository.getATRepository().setAtTrimHeight(this.trimStartHeight);
 			int maxLatestAtStatesHeight = PruneManager.getMaxHeightForLatestAtStates(repository);
-
-			repository.discardChanges();
 			repository.getATRepository().rebuildLatestAtStates(maxLatestAtStatesHeight);
-			repository.saveChanges();
-
-			while (!Controller.isStopping()) {
-				repository.discardChanges();
-
-				Thread.sleep(Settings.getInstance().getAtStatesTrimInterval());
-
-				BlockData chainTip = Controller.getInstance().getChainTip();
-				if (chainTip == null || NTP.getTime() == null)
-					continue;
-
-				// Don't even attempt if we're mid-sync as our repository requests will be delayed for ages
-				if (Synchronizer.getInstance().isSynchronizing())
-					continue;
-
-				long currentTrimmableTimestamp = NTP.getTime() - Settings.getInstance().getAtStatesMaxLifetime();
-				// We want to keep AT states near the tip of our copy of blockchain so we can process/orphan nearby blocks
-				long chainTrimmableTimestamp = chainTip.getTimestamp() - Settings.getInstance().getAtStatesMaxLifetime();
-
-				long upperTrimmableTimestamp = Math.min(currentTrimmableTimestamp, chainTrimmableTimestamp);
-				int upperTrimmableHeight = repository.getBlockRepository().getHeightFromTimestamp(upperTrimmableTimestamp);
-
-				int upperBatchHeight = trimStartHeight + Settings.getInstance().getAtStatesTrimBatchSize();
-				int upperTrimHeight = Math.min(upperBatchHeight, upperTrimmableHeight);
-
-				if (trimStartHeight >= upperTrimHeight)
-					continue;
-
-				int numAtStatesTrimmed = repository.getATRepository().trimAtStates(trimStartHeight, upperTrimHeight, Settings.getInstance().getAtStatesTrimLimit());
-				repository.saveChanges();
-
-				if (numAtStatesTrimmed > 0) {
-					final int finalTrimStartHeight = trimStartHeight;
-					LOGGER.debug(() -> String.format("Trimmed %d AT state%s between blocks %d and %d",
-							numAtStatesTrimmed, (numAtStatesTrimmed != 1 ? "s" : ""),
-							finalTrimStartHeight, upperTrimHeight));
-				} else {
-					// Can we move onto next batch?
-					if (upperTrimmableHeight > upperBatchHeight) {
-						trimStartHeight = upperBatchHeight;
-						repository.getATRepository().setAtTrimHeight(trimStartHeight);
-						maxLatestAtStatesHeight = PruneManager.getMaxHeightForLatestAtStates(repository);
-						repository.getATRepository().rebuildLatestAtStates(maxLatestAtStatesHeight);
-						repository.saveChanges();
-
-						final int finalTrimStartHeight = trimStartHeight;
-						LOGGER.debug(() -> String.format("Bumping AT state base trim height to %d", finalTrimStartHeight));
-					}
-				}
-			}
-		} catch (DataException e) {
-			LOGGER.warn(String.format("Repository issue trying to trim AT states: %s", e.getMessage()));
-		} catch (InterruptedException e) {
-			// Time to exit
+			this.commit(repository);
+
+			final int finalTrimStartHeight = this.trimStartHeight;
+			LOGGER.debug(() -> String.format("Bumping AT state base trim height to %d", finalTrimStartHeight));
+
+			return StepResult.PROGRESS;
 		}
+
+		return StepResult.CAUGHT_UP;
 	}
 
 }
@@ -3,115 +3,132 @@ package org.qortal.controller.repository;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.controller.Controller;
-import org.qortal.controller.Synchronizer;
 import org.qortal.data.block.BlockData;
 import org.qortal.repository.BlockArchiveWriter;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
-import org.qortal.repository.RepositoryManager;
 import org.qortal.settings.Settings;
 import org.qortal.transform.TransformationException;
 import org.qortal.utils.NTP;
 
 import java.io.IOException;
 
-public class BlockArchiver implements Runnable {
+public class BlockArchiver extends MaintenanceTask {
 
 	private static final Logger LOGGER = LogManager.getLogger(BlockArchiver.class);
 
 	private static final long INITIAL_SLEEP_PERIOD = 5 * 60 * 1000L + 1234L; // ms
 
-	public void run() {
-		Thread.currentThread().setName("Block archiver");
+	private int startHeight;
 
-		if (!Settings.getInstance().isArchiveEnabled() || Settings.getInstance().isLite()) {
-			return;
+	@Override
+	public String getName() {
+		return "Block archiver";
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return Settings.getInstance().isArchiveEnabled() && !Settings.getInstance().isLite();
+	}
+
+	@Override
+	protected long getBaseInterval() {
+		return Settings.getInstance().getArchiveInterval();
+	}
+
+	@Override
+	protected int getBaseBatchSize() {
+		// Archive files are sized by BlockArchiveWriter, not by us,
+		// so each step writes a whole file and needs its own scheduler thread
+		return 1;
+	}
+
+	@Override
+	protected long getInitialDelay() {
+		// Don't even start building until initial rush has ended
+		return INITIAL_SLEEP_PERIOD;
+	}
+
+	@Override
+	protected long getCaughtUpDelay() {
+		// Sleep for a while to allow more blocks to become available
+		return 60 * 60 * 1000L; // 1 hour
+	}
+
+	@Override
+	protected boolean prepare(Repository repository) throws DataException {
+		this.startHeight = repository.getBlockArchiveRepository().getBlockArchiveHeight();
+		this.progressHeight = this.startHeight;
+
+		// Don't attempt to archive if we have no ATStatesHeightIndex, as it will be too slow
+		boolean hasAtStatesHeightIndex = repository.getATRepository().hasAtStatesHeightIndex();
+		if (!hasAtStatesHeightIndex) {
+			LOGGER.info("Unable to start block archiver due to missing ATStatesHeightIndex. Bootstrapping is recommended.");
+			repository.discardChanges();
+			return false;
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
-			// Don't even start building until initial rush has ended
-			Thread.sleep(INITIAL_SLEEP_PERIOD);
+		LOGGER.info("Starting block archiver from height {}...", this.startHeight);
 
-			int startHeight = repository.getBlockArchiveRepository().getBlockArchiveHeight();
+		return true;
+	}
 
-			// Don't attempt to archive if we have no ATStatesHeightIndex, as it will be too slow
-			boolean hasAtStatesHeightIndex = repository.getATRepository().hasAtStatesHeightIndex();
-			if (!hasAtStatesHeightIndex) {
-				LOGGER.info("Unable to start block archiver due to missing ATStatesHeightIndex. Bootstrapping is recommended.");
-				repository.discardChanges();
-				return;
-			}
+	@Override
+	protected StepResult step(Repository repository, int batchSize) throws DataException, InterruptedException {
+		BlockData chainTip = Controller.getInstance().getChainTip();
+		if (chainTip == null || NTP.getTime() == null) {
+			return StepResult.NOT_READY;
+		}
 
-			LOGGER.info("Starting block archiver from height {}...", startHeight);
-
-			while (!Controller.isStopping()) {
-				repository.discardChanges();
-
-				Thread.sleep(Settings.getInstance().getArchiveInterval());
-
-				BlockData chainTip = Controller.getInstance().getChainTip();
-				if (chainTip == null || NTP.getTime() == null) {
-					continue;
-				}
-
-				// Don't even attempt if we're mid-sync as our repository requests will be delayed for ages
-				if (Synchronizer.getInstance().isSynchronizing()) {
-					continue;
-				}
-
-				// Don't attempt to archive if we're not synced yet
-				final Long minLatestBlockTimestamp = Controller.getMinimumLatestBlockTimestamp();
-				if (minLatestBlockTimestamp == null || chainTip.getTimestamp() < minLatestBlockTimestamp) {
-					continue;
-				}
-
-
-				// Build cache of blocks
-				try {
-					final int maximumArchiveHeight = BlockArchiveWriter.getMaxArchiveHeight(repository);
-					BlockArchiveWriter writer = new BlockArchiveWriter(startHeight, maximumArchiveHeight, repository);
-					BlockArchiveWriter.BlockArchiveWriteResult result = writer.write();
-					switch (result) {
-						case OK:
-							// Increment block archive height
-							startHeight += writer.getWrittenCount();
-							repository.getBlockArchiveRepository().setBlockArchiveHeight(startHeight);
-							repository.saveChanges();
-							break;
-
-						case STOPPING:
-							return;
-
-							// We've reached the limit of the blocks we can archive
-							// Sleep for a while to allow more to become available
-						case NOT_ENOUGH_BLOCKS:
-							// We didn't reach our file size target, so that must mean that we don't have enough blocks
-							// yet or something went wrong. Sleep for a while and then try again.
-							repository.discardChanges();
-							Thread.sleep(60 * 60 * 1000L); // 1 hour
-							break;
-
-						case BLOCK_NOT_FOUND:
-							// We tried to archive a block that didn't exist. This is a major failure and likely means
-							// that a bootstrap or re-sync is needed. Try again every minute until then.
-							LOGGER.info("Error: block not found when building archive. If this error persists, " +
-									"a bootstrap or re-sync may be needed.");
-							repository.discardChanges();
-							Thread.sleep( 60 * 1000L); // 1 minute
-							break;
-					}
-
-				} catch (IOException | TransformationException e) {
-					LOGGER.info("Caught exception when creating block cache", e);
-				}
+		// Don't attempt to archive if we're not synced yet
+		final Long minLatestBlockTimestamp = Controller.getMinimumLatestBlockTimestamp();
+		if (minLatestBlockTimestamp == null || chainTip.getTimestamp() < minLatestBlockTimestamp) {
+			return StepResult.NOT_READY;
+		}
 
+		// Build cache of blocks
+		try {
+			final int maximumArchiveHeight = BlockArchiveWriter.getMaxArchiveHeight(repository);
+			this.targetHeight = maximumArchiveHeight;
+
+			BlockArchiveWriter writer = new BlockArchiveWriter(this.startHeight, maximumArchiveHeight, repository);
+			BlockArchiveWriter.BlockArchiveWriteResult result = writer.write();
+			switch (result) {
+				case OK:
+					// Increment block archive height
+					this.startHeight += writer.getWrittenCount();
+					this.progressHeight = this.startHeight;
+					this.addProcessedItems(writer.getWrittenCount());
+					repository.getBlockArchiveRepository().setBlockArchiveHeight(this.startHeight);
+					this.commit(repository);
+					return StepResult.PROGRESS;
+
+				case STOPPING:
+					return StepResult.STOP;
+
+					// We've reached the limit of the blocks we can archive
+					// Sleep for a while to allow more to become available
+				case NOT_ENOUGH_BLOCKS:
+					// We didn't reach our file size target, so that must mean that we don't have enough blocks
+					// yet or something went wrong. Sleep for a while and then try again.
+					repository.discardChanges();
+					return StepResult.CAUGHT_UP;
+
+				case BLOCK_NOT_FOUND:
+					// We tried to archive a block that didn't exist. This is a major failure and likely means
+					// that a bootstrap or re-sync is needed. Try again every minute until then.
+					LOGGER.info("Error: block not found when building archive. If this error persists, " +
+							"a bootstrap or re-sync may be needed.");
+					repository.discardChanges();
+					this.requestDelay(60 * 1000L); // 1 minute
+					return StepResult.NOT_READY;
 			}
-		} catch (DataException e) {
+
+		} catch (IOException | TransformationException e) {
 			LOGGER.info("Caught exception when creating block cache", e);
-		} catch (InterruptedException e) {
-			// Do nothing
 		}
 
+		return StepResult.NOT_READY;
 	}
 
 }
@@ -0,0 +1,191 @@
+package org.qortal.controller.repository;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.controller.Controller;
+import org.qortal.controller.Synchronizer;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.settings.Settings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single thread that runs a group of repository maintenance tasks (pruning, trimming, archiving).
+ * <p>
+ * Tasks in the same group take turns, so a task whose steps can't be made small
+ * (e.g. block archiving) should be given its own scheduler.
+ * <p>
+ * Before each batch we wait (briefly) for the blockchain lock to become free, so we don't compete
+ * with block minting or synchronization. If the node is synchronizing, or the lock stays held,
+ * the batch is postponed. Batch sizes and intervals are adapted per task by {@link MaintenanceTask}.
+ */
+public class MaintenanceScheduler extends Thread {
+
+	private static final Logger LOGGER = LogManager.getLogger(MaintenanceScheduler.class);
+
+	/** Maximum time to sleep between checks, so newly-due tasks aren't delayed for long */
+	private static final long MAX_SLEEP = 10 * 1000L; // ms
+
+	private final List<MaintenanceTask> tasks = new CopyOnWriteArrayList<>();
+
+	public MaintenanceScheduler(String name) {
+		super(name);
+		this.setDaemon(true);
+	}
+
+	public MaintenanceScheduler() {
+		this("Repository maintenance");
+	}
+
+	public void addTask(MaintenanceTask task) {
+		if (task.isEnabled())
+			this.tasks.add(task);
+	}
+
+	public List<MaintenanceTask> getTasks() {
+		return Collections.unmodifiableList(this.tasks);
+	}
+
+	@Override
+	public void run() {
+		if (this.tasks.isEmpty())
+			return;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			final long startTime = System.currentTimeMillis();
+			for (MaintenanceTask task : this.tasks)
+				task.onStart(startTime);
+
+			List<MaintenanceTask> preparedTasks = new ArrayList<>();
+
+			while (!Controller.isStopping()) {
+				MaintenanceTask task = this.getNextTask();
+				if (task == null)
+					// All tasks have stopped
+					return;
+
+				long sleepTime = task.getNextStepTimestamp() - System.currentTimeMillis();
+				if (sleepTime > 0) {
+					Thread.sleep(Math.min(sleepTime, MAX_SLEEP));
+					continue;
+				}
+
+				repository.discardChanges();
+
+				if (!preparedTasks.contains(task)) {
+					if (!this.prepareTask(repository, task))
+						continue;
+
+					preparedTasks.add(task);
+				}
+
+				// Don't even attempt if we're mid-sync as our repository requests will be delayed for ages
+				if (Synchronizer.getInstance().isSynchronizing()) {
+					task.onPaused(System.currentTimeMillis(), "synchronizing");
+					continue;
+				}
+
+				// Wait for any in-progress minting or synchronization to finish
+				Long lockWaitTime = waitForBlockchainLock();
+				if (lockWaitTime == null) {
+					task.onPaused(System.currentTimeMillis(), "blockchain busy");
+					continue;
+				}
+
+				boolean isNodeIdle = lockWaitTime == 0 && !Controller.getInstance().getBlockchainLock().hasQueuedThreads();
+
+				this.runStep(repository, task, lockWaitTime, isNodeIdle);
+			}
+		} catch (DataException e) {
+			LOGGER.warn(String.format("Repository issue during repository maintenance: %s", e.getMessage()));
+		} catch (InterruptedException e) {
+			// Time to exit
+		}
+	}
+
+	private MaintenanceTask getNextTask() {
+		MaintenanceTask nextTask = null;
+
+		for (MaintenanceTask task : this.tasks) {
+			if (task.isStopped())
+				continue;
+
+			if (nextTask == null || task.getNextStepTimestamp() < nextTask.getNextStepTimestamp())
+				nextTask = task;
+		}
+
+		return nextTask;
+	}
+
+	private boolean prepareTask(Repository repository, MaintenanceTask task) throws InterruptedException {
+		try {
+			if (task.prepare(repository))
+				return true;
+		} catch (DataException e) {
+			LOGGER.warn(String.format("Repository issue trying to start %s: %s", task.getName(), e.getMessage()));
+		} catch (RuntimeException e) {
+			// Don't let one broken task stop all the others
+			LOGGER.error(String.format("Unexpected error trying to start %s", task.getName()), e);
+		}
+
+		task.onStopped();
+		return false;
+	}
+
+	private void runStep(Repository repository, MaintenanceTask task, long lockWaitTime, boolean isNodeIdle) throws InterruptedException {
+		final String threadName = this.getName();
+		this.setName(task.getName());
+
+		try {
+			final long before = System.currentTimeMillis();
+			MaintenanceTask.StepResult result = task.step(repository, task.getBatchSize());
+			final long now = System.currentTimeMillis();
+
+			task.onStepCompleted(result, now - before, lockWaitTime, isNodeIdle, now);
+		} catch (DataException e) {
+			LOGGER.warn(String.format("Repository issue during %s: %s", task.getName(), e.getMessage()));
+
+			// Previous per-task threads would exit here, so we do similar
+			task.onStopped();
+		} catch (RuntimeException e) {
+			// Don't let one broken task stop all the others
+			LOGGER.error(String.format("Unexpected error during %s", task.getName()), e);
+			task.onStopped();
+		} finally {
+			this.setName(threadName);
+		}
+	}
+
+	/**
+	 * Waits for blockchain lock to be free, without keeping it.
+	 *
+	 * @return time spent waiting (ms), or null if lock wasn't free within configured timeout
+	 */
+	private static Long waitForBlockchainLock() throws InterruptedException {
+		ReentrantLock blockchainLock = Controller.getInstance().getBlockchainLock();
+
+		if (!blockchainLock.isLocked())
+			return 0L;
+
+		final long before = System.currentTimeMillis();
+		if (!blockchainLock.tryLock(Settings.getInstance().getMaintenanceMaxLockWait(), TimeUnit.MILLISECONDS))
+			return null;
+
+		// We only wanted to know when it was free
+		blockchainLock.unlock();
+
+		return System.currentTimeMillis() - before;
+	}
+
+	public void shutdown() {
+		this.interrupt();
+	}
+
+}
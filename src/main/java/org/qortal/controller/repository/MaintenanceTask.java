@@ -0,0 +1,256 @@
+package org.qortal.controller.repository;
+
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.settings.Settings;
+
+/**
+ * A unit of background repository maintenance (pruning, trimming, archiving) that is
+ * executed in small batches by the {@link MaintenanceScheduler}.
+ * <p>
+ * Implementations keep their own progress (e.g. current trim height) and perform one batch per
+ * call to {@link #step(Repository, int)}. The batch size and the delay between batches are chosen
+ * by this class from measured batch latency and blockchain lock-wait time.
+ */
+public abstract class MaintenanceTask {
+
+	public enum StepResult {
+		/** A batch was processed, or progress was made, and there may be more work to do */
+		PROGRESS,
+		/** Nothing could be done this time around (e.g. not synced yet) - try again after the base interval */
+		NOT_READY,
+		/** All currently available work is done - back off for a while */
+		CAUGHT_UP,
+		/** Task can no longer run */
+		STOP
+	}
+
+	/** Batch sizes never grow beyond this multiple of the configured batch size */
+	private static final int MAX_BATCH_MULTIPLIER = 8;
+	/** Intervals between batches never drop below this */
+	private static final long MIN_INTERVAL = 250L; // ms
+
+	// Only ever modified by scheduler thread, but volatile as also read by API for progress reporting
+
+	private volatile int batchSize;
+	private volatile long nextStepTimestamp;
+	private Long requestedDelay;
+
+	private volatile boolean stopped = false;
+	private volatile String pausedReason = null;
+
+	protected volatile int progressHeight;
+	protected volatile int targetHeight;
+
+	private volatile long lastBatchTime; // ms
+	private volatile long lastCommitTime; // ms
+	private volatile long lastLockWaitTime; // ms
+	private volatile long batchCount;
+	private volatile long itemCount;
+
+	protected MaintenanceTask() {
+		this.batchSize = Math.max(1, this.getBaseBatchSize());
+	}
+
+	/** Human-readable name, also used as thread name while the task is executing. */
+	public abstract String getName();
+
+	/** Whether this task should run at all, given current settings. */
+	public abstract boolean isEnabled();
+
+	/** Configured interval between batches (ms), from Settings. */
+	protected abstract long getBaseInterval();
+
+	/** Configured batch size (blocks), from Settings. */
+	protected abstract int getBaseBatchSize();
+
+	/**
+	 * One-off setup, called on the scheduler thread before the first step.
+	 *
+	 * @return false if the task is unable to run
+	 */
+	protected boolean prepare(Repository repository) throws DataException {
+		return true;
+	}
+
+	/** Delay before first step (ms). */
+	protected long getInitialDelay() {
+		return 0L;
+	}
+
+	/** Delay after all available work has been done (ms). */
+	protected long getCaughtUpDelay() {
+		return this.getBaseInterval();
+	}
+
+	/**
+	 * Performs one batch of work.
+	 * <p>
+	 * Implementations should commit their changes using {@link #commit(Repository)}
+	 * so that commit latency is measured.
+	 */
+	protected abstract StepResult step(Repository repository, int batchSize) throws DataException, InterruptedException;
+
+	/** Overrides the delay before the next step, for the current step only. */
+	protected void requestDelay(long delay) {
+		this.requestedDelay = delay;
+	}
+
+	/** Commits changes to repository, recording commit latency. */
+	protected void commit(Repository repository) throws DataException {
+		final long before = System.currentTimeMillis();
+		repository.saveChanges();
+		this.lastCommitTime = System.currentTimeMillis() - before;
+	}
+
+	/** Records number of rows/blocks processed by current step, for reporting. */
+	protected void addProcessedItems(int count) {
+		this.itemCount += count;
+	}
+
+	// Scheduler callbacks
+
+	void onStart(long now) {
+		this.nextStepTimestamp = now + this.getInitialDelay();
+	}
+
+	void onPaused(long now, String reason) {
+		this.pausedReason = reason;
+		// Back off harder while the node is busy
+		this.nextStepTimestamp = now + this.getBaseInterval() * 2;
+	}
+
+	void onStopped() {
+		this.stopped = true;
+	}
+
+	/**
+	 * Adjusts batch size and next step time based on how the last step went.
+	 *
+	 * @param result outcome of step
+	 * @param batchTime how long the step took (ms), including commits
+	 * @param lockWaitTime how long we waited for the blockchain lock to become free before the step (ms)
+	 * @param isNodeIdle whether there was no sync/minting activity
+	 * @param now current time (ms)
+	 */
+	void onStepCompleted(StepResult result, long batchTime, long lockWaitTime, boolean isNodeIdle, long now) {
+		this.pausedReason = null;
+		this.lastLockWaitTime = lockWaitTime;
+
+		final long baseInterval = this.getBaseInterval();
+		long delay;
+
+		switch (result) {
+			case PROGRESS:
+				this.lastBatchTime = batchTime;
+				this.batchCount++;
+
+				final long targetBatchTime = Settings.getInstance().getMaintenanceTargetBatchTime();
+				this.batchSize = adjustBatchSize(this.batchSize, this.getBaseBatchSize(), targetBatchTime, batchTime, lockWaitTime, isNodeIdle);
+
+				// Speed up when idle, slow down when under pressure
+				if (isNodeIdle)
+					delay = baseInterval / 4;
+				else if (isUnderPressure(targetBatchTime, batchTime, lockWaitTime))
+					delay = baseInterval * 2;
+				else
+					delay = baseInterval;
+				break;
+
+			case CAUGHT_UP:
+				delay = this.getCaughtUpDelay();
+				break;
+
+			case STOP:
+				this.stopped = true;
+				// fall-through
+
+			case NOT_READY:
+			default:
+				delay = baseInterval;
+				break;
+		}
+
+		if (this.requestedDelay != null) {
+			delay = this.requestedDelay;
+			this.requestedDelay = null;
+		}
+
+		this.nextStepTimestamp = now + Math.max(MIN_INTERVAL, delay);
+	}
+
+	/** Returns whether batch latency or blockchain lock-wait suggest the repository is busy. */
+	private static boolean isUnderPressure(long targetBatchTime, long batchTime, long lockWaitTime) {
+		return batchTime > targetBatchTime || lockWaitTime > targetBatchTime / 4;
+	}
+
+	/**
+	 * Returns new batch size, shrinking quickly under pressure but growing more cautiously.
+	 * <p>
+	 * Batches that take longer than the target, or that had to wait for the blockchain lock,
+	 * halve the batch size. Quick batches on an idle node grow it by a quarter.
+	 * Result is kept between 1 and {@link #MAX_BATCH_MULTIPLIER} &times; <tt>baseBatchSize</tt>.
+	 */
+	public static int adjustBatchSize(int batchSize, int baseBatchSize, long targetBatchTime, long batchTime, long lockWaitTime, boolean isNodeIdle) {
+		final int maxBatchSize = Math.max(1, baseBatchSize) * MAX_BATCH_MULTIPLIER;
+
+		if (isUnderPressure(targetBatchTime, batchTime, lockWaitTime))
+			batchSize /= 2;
+		else if (isNodeIdle && batchTime < targetBatchTime / 2)
+			batchSize += Math.max(1, batchSize / 4);
+
+		return Math.max(1, Math.min(maxBatchSize, batchSize));
+	}
+
+	// Getters
+
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	public long getNextStepTimestamp() {
+		return this.nextStepTimestamp;
+	}
+
+	public boolean isStopped() {
+		return this.stopped;
+	}
+
+	public String getPausedReason() {
+		return this.pausedReason;
+	}
+
+	public int getProgressHeight() {
+		return this.progressHeight;
+	}
+
+	public int getTargetHeight() {
+		return this.targetHeight;
+	}
+
+	/** Number of blocks still to be processed, or 0 if unknown / none. */
+	public int getBacklog() {
+		return Math.max(0, this.targetHeight - this.progressHeight);
+	}
+
+	public long getLastBatchTime() {
+		return this.lastBatchTime;
+	}
+
+	public long getLastCommitTime() {
+		return this.lastCommitTime;
+	}
+
+	public long getLastLockWaitTime() {
+		return this.lastLockWaitTime;
+	}
+
+	public long getBatchCount() {
+		return this.batchCount;
+	}
+
+	public long getItemCount() {
+		return this.itemCount;
+	}
+
+}
@@ -4,83 +4,102 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.block.BlockChain;
 import org.qortal.controller.Controller;
-import org.qortal.controller.Synchronizer;
 import org.qortal.data.block.BlockData;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
-import org.qortal.repository.RepositoryManager;
 import org.qortal.settings.Settings;
 import org.qortal.utils.NTP;
 
-public class OnlineAccountsSignaturesTrimmer implements Runnable {
+public class OnlineAccountsSignaturesTrimmer extends MaintenanceTask {
 
 	private static final Logger LOGGER = LogManager.getLogger(OnlineAccountsSignaturesTrimmer.class);
 
 	private static final long INITIAL_SLEEP_PERIOD = 5 * 60 * 1000L + 1234L; // ms
 
-	public void run() {
-		Thread.currentThread().setName("Online Accounts trimmer");
+	private int trimStartHeight;
 
-		if (Settings.getInstance().isLite()) {
-			// Nothing to trim in lite mode
-			return;
-		}
+	@Override
+	public String getName() {
+		return "Online Accounts trimmer";
+	}
+
+	@Override
+	public boolean isEnabled() {
+		// Nothing to trim in lite mode
+		return !Settings.getInstance().isLite();
+	}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
-			// Don't even start trimming until initial rush has ended
-			Thread.sleep(INITIAL_SLEEP_PERIOD);
+	@Override
+	protected long getBaseInterval() {
+		return Settings.getInstance().getOnlineSignaturesTrimInterval();
+	}
 
-			int trimStartHeight = repository.getBlockRepository().getOnlineAccountsSignaturesTrimHeight();
+	@Override
+	protected int getBaseBatchSize() {
+		return Settings.getInstance().getOnlineSignaturesTrimBatchSize();
+	}
 
-			while (!Controller.isStopping()) {
-				repository.discardChanges();
+	@Override
+	protected long getInitialDelay() {
+		// Don't even start trimming until initial rush has ended
+		return INITIAL_SLEEP_PERIOD;
+	}
 
-				Thread.sleep(Settings.getInstance().getOnlineSignaturesTrimInterval());
+	@Override
+	protected boolean prepare(Repository repository) throws DataException {
+		this.trimStartHeight = repository.getBlockRepository().getOnlineAccountsSignaturesTrimHeight();
+		this.progressHeight = this.trimStartHeight;
 
-				BlockData chainTip = Controller.getInstance().getChainTip();
-				if (chainTip == null || NTP.getTime() == null)
-					continue;
+		return true;
+	}
 
-				// Don't even attempt if we're mid-sync as our repository requests will be delayed for ages
-				if (Synchronizer.getInstance().isSynchronizing())
-					continue;
+	@Override
+	protected StepResult step(Repository repository, int batchSize) throws DataException {
+		BlockData chainTip = Controller.getInstance().getChainTip();
+		if (chainTip == null || NTP.getTime() == null)
+			return StepResult.NOT_READY;
 
-				// Trim blockchain by removing 'old' online accounts signatures
-				long upperTrimmableTimestamp = NTP.getTime() - BlockChain.getInstance().getOnlineAccountSignaturesMaxLifetime();
-				int upperTrimmableHeight = repository.getBlockRepository().getHeightFromTimestamp(upperTrimmableTimestamp);
+		// Trim blockchain by removing 'old' online accounts signatures
+		long upperTrimmableTimestamp = NTP.getTime() - BlockChain.getInstance().getOnlineAccountSignaturesMaxLifetime();
+		int upperTrimmableHeight = repository.getBlockRepository().getHeightFromTimestamp(upperTrimmableTimestamp);
 
-				int upperBatchHeight = trimStartHeight + Settings.getInstance().getOnlineSignaturesTrimBatchSize();
-				int upperTrimHeight = Math.min(upperBatchHeight, upperTrimmableHeight);
+		this.targetHeight = upperTrimmableHeight;
 
-				if (trimStartHeight >= upperTrimHeight)
-					continue;
+		int upperBatchHeight = this.trimStartHeight + batchSize;
+		int upperTrimHeight = Math.min(upperBatchHeight, upperTrimmableHeight);
 
-				int numSigsTrimmed = repository.getBlockRepository().trimOldOnlineAccountsSignatures(trimStartHeight, upperTrimHeight);
-				repository.saveChanges();
+		if (this.trimStartHeight >= upperTrimHeight)
+			return StepResult.CAUGHT_UP;
 
-				if (numSigsTrimmed > 0) {
-					final int finalTrimStartHeight = trimStartHeight;
-					LOGGER.debug(() -> String.format("Trimmed %d online accounts signature%s between blocks %d and %d",
-							numSigsTrimmed, (numSigsTrimmed != 1 ? "s" : ""),
-							finalTrimStartHeight, upperTrimHeight));
-				} else {
-					// Can we move onto next batch?
-					if (upperTrimmableHeight > upperBatchHeight) {
-						trimStartHeight = upperBatchHeight;
+		int numSigsTrimmed = repository.getBlockRepository().trimOldOnlineAccountsSignatures(this.trimStartHeight, upperTrimHeight);
+		this.commit(repository);
 
-						repository.getBlockRepository().setOnlineAccountsSignaturesTrimHeight(trimStartHeight);
-						repository.saveChanges();
+		if (numSigsTrimmed > 0) {
+			this.addProcessedItems(numSigsTrimmed);
 
-						final int finalTrimStartHeight = trimStartHeight;
-						LOGGER.debug(() -> String.format("Bumping online accounts signatures base trim height to %d", finalTrimStartHeight));
-					}
-				}
-			}
-		} catch (DataException e) {
-			LOGGER.warn(String.format("Repository issue trying to trim online accounts signatures: %s", e.getMessage()));
-		} catch (InterruptedException e) {
-			// Time to exit
+			final int finalTrimStartHeight = this.trimStartHeight;
+			LOGGER.debug(() -> String.format("Trimmed %d online accounts signature%s between blocks %d and %d",
+					numSigsTrimmed, (numSigsTrimmed != 1 ? "s" : ""),
+					finalTrimStartHeight, upperTrimHeight));
+
+			return StepResult.PROGRESS;
 		}
+
+		// Can we move onto next batch?
+		if (upperTrimmableHeight > upperBatchHeight) {
+			this.trimStartHeight = upperBatchHeight;
+			this.progressHeight = this.trimStartHeight;
+
+			repository.getBlockRepository().setOnlineAccountsSignaturesTrimHeight(this.trimStartHeight);
+			this.commit(repository);
+
+			final int finalTrimStartHeight = this.trimStartHeight;
+			LOGGER.debug(() -> String.format("Bumping online accounts signatures base trim height to %d", finalTrimStartHeight));
+
+			return StepResult.PROGRESS;
+		}
+
+		return StepResult.CAUGHT_UP;
 	}
 
 }
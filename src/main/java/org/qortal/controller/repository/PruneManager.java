@@ -8,14 +8,12 @@ import org.qortal.data.block.BlockData;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.settings.Settings;
-import org.qortal.utils.DaemonThreadFactory;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 public class PruneManager {
 
@@ -26,7 +24,9 @@ public class PruneManager {
     private boolean isTopOnly = Settings.getInstance().isTopOnly();
     private int pruneBlockLimit = Settings.getInstance().getPruneBlockLimit();
 
-    private ExecutorService executorService;
+    private MaintenanceScheduler maintenanceScheduler;
+    /** Separate thread for archiving, as each archive file is written in one go, which would stall other tasks */
+    private MaintenanceScheduler archiveScheduler;
 
     private PruneManager() {
 
@@ -40,7 +40,8 @@ public class PruneManager {
     }
 
     public void start() {
-        this.executorService = Executors.newCachedThreadPool(new DaemonThreadFactory());
+        this.maintenanceScheduler = new MaintenanceScheduler();
+        this.archiveScheduler = new MaintenanceScheduler("Block archiver");
 
         if (Settings.getInstance().isTopOnly()) {
             // Top-only-sync
@@ -54,6 +55,9 @@ public class PruneManager {
             // Full node with full SQL support
             this.startFullSQLNode();
         }
+
+        this.maintenanceScheduler.start();
+        this.archiveScheduler.start();
     }
 
     /**
@@ -95,17 +99,17 @@ public class PruneManager {
 
 
     private void startPruning() {
-        this.executorService.execute(new AtStatesPruner());
-        this.executorService.execute(new BlockPruner());
+        this.maintenanceScheduler.addTask(new AtStatesPruner());
+        this.maintenanceScheduler.addTask(new BlockPruner());
     }
 
     private void startTrimming() {
-        this.executorService.execute(new AtStatesTrimmer());
-        this.executorService.execute(new OnlineAccountsSignaturesTrimmer());
+        this.maintenanceScheduler.addTask(new AtStatesTrimmer());
+        this.maintenanceScheduler.addTask(new OnlineAccountsSignaturesTrimmer());
     }
 
     private void startArchiving() {
-        this.executorService.execute(new BlockArchiver());
+        this.archiveScheduler.addTask(new BlockArchiver());
     }
 
     private void deleteArchive() {
@@ -126,15 +130,30 @@ public class PruneManager {
     }
 
     public void stop() {
-        this.executorService.shutdownNow();
+        if (this.maintenanceScheduler == null)
+            return;
+
+        this.maintenanceScheduler.shutdown();
+        this.archiveScheduler.shutdown();
 
         try {
-            this.executorService.awaitTermination(2L, TimeUnit.SECONDS);
+            this.maintenanceScheduler.join(2000L);
+            this.archiveScheduler.join(2000L);
         } catch (InterruptedException e) {
             // We tried...
         }
     }
 
+    /** Returns maintenance tasks (pruning, trimming, archiving), for progress reporting. */
+    public List<MaintenanceTask> getMaintenanceTasks() {
+        if (this.maintenanceScheduler == null)
+            return List.of();
+
+        List<MaintenanceTask> tasks = new ArrayList<>(this.maintenanceScheduler.getTasks());
+        tasks.addAll(this.archiveScheduler.getTasks());
+        return tasks;
+    }
+
     public boolean isBlockPruned(int height) throws DataException {
         if (!this.isTopOnly) {
             return false;
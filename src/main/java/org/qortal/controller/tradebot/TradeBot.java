@@ -114,6 +114,8 @@ public class TradeBot implements Listener {
 	private Map<ByteArray, TradePresenceData> safeAllTradePresencesByPubkey = Collections.emptyMap();
 	private long nextTradePresenceBroadcastTimestamp = 0L;
 
+	private final TradeBotScheduler scheduler = new TradeBotScheduler(Settings.getInstance().getTradeBotThreadsPerBlockchain());
+
 	private Map<String, Long> failedTrades = new HashMap<>();
 	private Map<String, Long> validTrades = new HashMap<>();
 
@@ -262,32 +264,79 @@ public class TradeBot implements Listener {
 				return;
 			}
 
-			for (TradeBotData tradeBotData : allTradeBotData)
-				try (final Repository repository = RepositoryManager.getRepository()) {
-					// Find ACCT-specific trade-bot for this entry
-					ACCT acct = SupportedBlockchain.getAcctByName(tradeBotData.getAcctName());
-					if (acct == null) {
-						LOGGER.debug(() -> String.format("Couldn't find ACCT matching name %s", tradeBotData.getAcctName()));
-						continue;
-					}
+			this.scheduler.retainOnly(allTradeBotData);
 
-					AcctTradeBot acctTradeBot = findTradeBotForAcct(acct);
-					if (acctTradeBot == null) {
-						LOGGER.debug(() -> String.format("Couldn't find ACCT trade-bot matching name %s", tradeBotData.getAcctName()));
-						continue;
-					}
+			final long now = NTP.getTime();
 
-					acctTradeBot.progress(repository, tradeBotData);
-				} catch (DataException e) {
-					LOGGER.error("Couldn't run trade bot due to repository issue", e);
-				} catch (ForeignBlockchainException e) {
-					LOGGER.warn(() -> String.format("Foreign blockchain issue processing trade-bot entry for AT %s: %s", tradeBotData.getAtAddress(), e.getMessage()));
+			for (TradeBotData tradeBotData : allTradeBotData) {
+				// Find ACCT-specific trade-bot for this entry
+				ACCT acct = SupportedBlockchain.getAcctByName(tradeBotData.getAcctName());
+				if (acct == null) {
+					LOGGER.debug(() -> String.format("Couldn't find ACCT matching name %s", tradeBotData.getAcctName()));
+					continue;
+				}
+
+				AcctTradeBot acctTradeBot = findTradeBotForAcct(acct);
+				if (acctTradeBot == null) {
+					LOGGER.debug(() -> String.format("Couldn't find ACCT trade-bot matching name %s", tradeBotData.getAcctName()));
+					continue;
 				}
 
+				// Nothing more to do for entries that have ended
+				if (acctTradeBot.getEndStates().contains(tradeBotData.getState()))
+					continue;
+
+				if (!this.scheduler.claimIfDue(tradeBotData, now))
+					continue;
+
+				String foreignBlockchain = tradeBotData.getForeignBlockchain() != null ? tradeBotData.getForeignBlockchain() : tradeBotData.getAcctName();
+
+				if (!this.scheduler.submit(foreignBlockchain, () -> this.step(acctTradeBot, tradeBotData))) {
+					LOGGER.debug(() -> String.format("Deferring trade-bot entry for AT %s as %s trade-bot is busy", tradeBotData.getAtAddress(), foreignBlockchain));
+					this.scheduler.stepRejected(tradeBotData);
+				}
+			}
+
 			broadcastPresenceTimestamps();
 		}
 	}
 
+	/** Progresses trade-bot entry, on its foreign blockchain's executor thread. */
+	private void step(AcctTradeBot acctTradeBot, TradeBotData tradeBotData) {
+		final int previousStateValue = tradeBotData.getStateValue();
+		final long previousTimestamp = tradeBotData.getTimestamp();
+		boolean hasFailed = true;
+		final boolean isLastStep;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			acctTradeBot.progress(repository, tradeBotData);
+			hasFailed = false;
+		} catch (DataException e) {
+			LOGGER.error("Couldn't run trade bot due to repository issue", e);
+		} catch (ForeignBlockchainException e) {
+			LOGGER.warn(() -> String.format("Foreign blockchain issue processing trade-bot entry for AT %s: %s", tradeBotData.getAtAddress(), e.getMessage()));
+		} catch (RuntimeException e) {
+			LOGGER.error(String.format("Unexpected error processing trade-bot entry for AT %s", tradeBotData.getAtAddress()), e);
+		} finally {
+			// Trade-bot steps update entry in place when they change state
+			boolean isChanged = tradeBotData.getStateValue() != previousStateValue || tradeBotData.getTimestamp() != previousTimestamp;
+
+			// Always release entry's schedule, otherwise it would never be stepped again
+			Long now = NTP.getTime();
+			isLastStep = this.scheduler.stepFinished(tradeBotData, isChanged, hasFailed, now != null ? now : System.currentTimeMillis());
+		}
+
+		// Broadcast any new presences once this round of steps is done, rather than waiting for next block
+		if (isLastStep)
+			synchronized (this) {
+				broadcastPresenceTimestamps();
+			}
+	}
+
+	public void shutdown() {
+		this.scheduler.shutdown();
+	}
+
 	public static byte[] generateTradePrivateKey() {
 		// The private key is used for both Curve25519 and secp256k1 so needs to be valid for both.
 		// Curve25519 accepts any seed, so generate a valid secp256k1 key and use that.
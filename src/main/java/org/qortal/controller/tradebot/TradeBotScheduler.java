@@ -0,0 +1,228 @@
+package org.qortal.controller.tradebot;
+
+import org.qortal.data.crosschain.TradeBotData;
+import org.qortal.metrics.Counter;
+import org.qortal.metrics.Histogram;
+import org.qortal.metrics.Metrics;
+import org.qortal.utils.ByteArray;
+import org.qortal.utils.NamedThreadFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides when each trade-bot entry is next stepped, and runs steps on per-foreign-blockchain executors.
+ * <p>
+ * Steps for one foreign blockchain share a small, bounded pool of threads, so a slow ElectrumX server
+ * only holds up trades on its own blockchain.
+ * <p>
+ * Entries whose step doesn't change their state are considered idle and are stepped less often,
+ * backing off up to {@link #MAX_IDLE_BACKOFF}. Any state change, including one made outside trade-bot
+ * (e.g. via API), makes an entry due again immediately.
+ */
+public class TradeBotScheduler {
+
+	/** Delay before stepping an entry again after its first idle step. 30s in ms. */
+	public static final long MIN_IDLE_BACKOFF = 30 * 1000L;
+	/** Maximum delay between steps of an idle entry. Less than trade presence early renewal period, so presences are still renewed. 4 mins in ms. */
+	public static final long MAX_IDLE_BACKOFF = 4 * 60 * 1000L;
+	/** Maximum number of steps waiting to run, per foreign blockchain */
+	private static final int MAX_QUEUED_STEPS = 100;
+	/** How long idle executor threads are kept. 60s. */
+	private static final long EXECUTOR_KEEPALIVE = 60L;
+
+	private static final Counter STEP_FAILURES = Metrics.getInstance().counter("qortal_tradebot_step_failures_total",
+			"Number of trade-bot steps that failed due to repository or foreign blockchain issues");
+	private static final Counter STEPS_REJECTED = Metrics.getInstance().counter("qortal_tradebot_steps_rejected_total",
+			"Number of trade-bot steps not run as their foreign blockchain's queue was full");
+
+	private static class Schedule {
+		/** Earliest time entry should be stepped again */
+		private long nextCheckTimestamp;
+		/** Number of consecutive steps that didn't change entry's state */
+		private int idleSteps;
+		/** Entry's state value and timestamp after last step, to detect changes made elsewhere */
+		private int lastStateValue;
+		private long lastTimestamp;
+		private boolean isRunning;
+	}
+
+	private static class BlockchainExecutor {
+		private final ThreadPoolExecutor executor;
+		private final Histogram stepTime;
+
+		private BlockchainExecutor(String foreignBlockchain, int threadCount) {
+			this.executor = new ThreadPoolExecutor(threadCount, threadCount,
+					EXECUTOR_KEEPALIVE, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<>(MAX_QUEUED_STEPS),
+					new NamedThreadFactory("TradeBot-" + foreignBlockchain));
+			this.executor.allowCoreThreadTimeOut(true);
+
+			this.stepTime = Metrics.getInstance().histogram("qortal_tradebot_step_seconds",
+					"Time taken to step a trade-bot entry", "blockchain", foreignBlockchain);
+
+			Metrics.getInstance().gauge("qortal_tradebot_backlog", "Number of trade-bot steps queued or running",
+					"blockchain", foreignBlockchain, () -> this.executor.getQueue().size() + this.executor.getActiveCount());
+		}
+	}
+
+	/** Schedules keyed by trade private key. Guarded by itself. */
+	private final Map<ByteArray, Schedule> schedules = new HashMap<>();
+	/** Executors keyed by foreign blockchain name. Guarded by itself. */
+	private final Map<String, BlockchainExecutor> executors = new HashMap<>();
+	private final AtomicInteger runningSteps = new AtomicInteger();
+	private final int threadsPerBlockchain;
+
+	private volatile boolean isShutdown = false;
+
+	public TradeBotScheduler(int threadsPerBlockchain) {
+		this.threadsPerBlockchain = threadsPerBlockchain;
+	}
+
+	/** Returns delay before next step, given number of consecutive idle steps. */
+	public static long getIdleBackoff(int idleSteps) {
+		if (idleSteps <= 0)
+			return 0L;
+
+		// Cap shift to avoid overflow
+		long backoff = MIN_IDLE_BACKOFF << Math.min(idleSteps - 1, 16);
+		return Math.min(backoff, MAX_IDLE_BACKOFF);
+	}
+
+	/**
+	 * Returns whether entry is due to be stepped at <tt>now</tt>, and if so, claims it so it isn't stepped twice at once.
+	 * <p>
+	 * A claimed entry must be released by {@link #stepFinished(TradeBotData, boolean, boolean, long)} or {@link #stepRejected(TradeBotData)}.
+	 */
+	public boolean claimIfDue(TradeBotData tradeBotData, long now) {
+		ByteArray key = ByteArray.wrap(tradeBotData.getTradePrivateKey());
+
+		synchronized (this.schedules) {
+			Schedule schedule = this.schedules.get(key);
+
+			if (schedule == null) {
+				schedule = new Schedule();
+				this.schedules.put(key, schedule);
+			} else {
+				if (schedule.isRunning)
+					return false;
+
+				boolean isChangedElsewhere = schedule.lastStateValue != tradeBotData.getStateValue()
+						|| schedule.lastTimestamp != tradeBotData.getTimestamp();
+
+				if (!isChangedElsewhere && now < schedule.nextCheckTimestamp)
+					return false;
+			}
+
+			schedule.isRunning = true;
+			this.runningSteps.incrementAndGet();
+			return true;
+		}
+	}
+
+	/**
+	 * Releases claimed entry after stepping, scheduling its next step.
+	 *
+	 * @param tradeBotData entry, as updated by step
+	 * @param isChanged whether step changed entry's state or timestamp
+	 * @param hasFailed whether step failed, e.g. due to foreign blockchain issue
+	 * @return true if no other steps are running
+	 */
+	public boolean stepFinished(TradeBotData tradeBotData, boolean isChanged, boolean hasFailed, long now) {
+		if (hasFailed)
+			STEP_FAILURES.increment();
+
+		ByteArray key = ByteArray.wrap(tradeBotData.getTradePrivateKey());
+
+		synchronized (this.schedules) {
+			Schedule schedule = this.schedules.get(key);
+
+			if (schedule != null) {
+				// Failed steps back off too, in case foreign blockchain is struggling
+				schedule.idleSteps = isChanged && !hasFailed ? 0 : schedule.idleSteps + 1;
+				schedule.nextCheckTimestamp = now + getIdleBackoff(schedule.idleSteps);
+				schedule.lastStateValue = tradeBotData.getStateValue();
+				schedule.lastTimestamp = tradeBotData.getTimestamp();
+				schedule.isRunning = false;
+			}
+
+			return this.runningSteps.decrementAndGet() == 0;
+		}
+	}
+
+	/** Releases claimed entry whose step couldn't be submitted, so it's due again next time. */
+	public void stepRejected(TradeBotData tradeBotData) {
+		STEPS_REJECTED.increment();
+
+		synchronized (this.schedules) {
+			Schedule schedule = this.schedules.get(ByteArray.wrap(tradeBotData.getTradePrivateKey()));
+			if (schedule != null)
+				schedule.isRunning = false;
+
+			this.runningSteps.decrementAndGet();
+		}
+	}
+
+	/** Forgets schedules for entries that no longer exist, e.g. deleted via API. */
+	public void retainOnly(Collection<TradeBotData> allTradeBotData) {
+		Set<ByteArray> keys = new HashSet<>();
+		for (TradeBotData tradeBotData : allTradeBotData)
+			keys.add(ByteArray.wrap(tradeBotData.getTradePrivateKey()));
+
+		synchronized (this.schedules) {
+			// Keep running entries so their release still finds them
+			this.schedules.entrySet().removeIf(entry -> !keys.contains(entry.getKey()) && !entry.getValue().isRunning);
+		}
+	}
+
+	/**
+	 * Submits step to run on <tt>foreignBlockchain</tt>'s executor.
+	 * <p>
+	 * Step's latency is recorded against its foreign blockchain.
+	 *
+	 * @return false if step was rejected, e.g. as queue is full or we're shutting down
+	 */
+	public boolean submit(String foreignBlockchain, Runnable step) {
+		if (this.isShutdown)
+			return false;
+
+		BlockchainExecutor blockchainExecutor;
+		synchronized (this.executors) {
+			blockchainExecutor = this.executors.computeIfAbsent(foreignBlockchain,
+					key -> new BlockchainExecutor(key, this.threadsPerBlockchain));
+		}
+
+		final Histogram stepTime = blockchainExecutor.stepTime;
+
+		try {
+			blockchainExecutor.executor.execute(() -> {
+				final long startTime = System.nanoTime();
+				try {
+					step.run();
+				} finally {
+					stepTime.recordSince(startTime);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			return false;
+		}
+
+		return true;
+	}
+
+	/** Returns number of steps queued or running, across all foreign blockchains. */
+	public int getBacklog() {
+		return this.runningSteps.get();
+	}
+
+	public void shutdown() {
+		this.isShutdown = true;
+
+		synchronized (this.executors) {
+			for (BlockchainExecutor blockchainExecutor : this.executors.values())
+				blockchainExecutor.executor.shutdownNow();
+		}
+	}
+
+}
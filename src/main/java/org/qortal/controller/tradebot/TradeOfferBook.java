@@ -0,0 +1,493 @@
+package org.qortal.controller.tradebot;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.api.model.CrossChainOfferSummary;
+import org.qortal.controller.Controller;
+import org.qortal.controller.Synchronizer;
+import org.qortal.crosschain.ACCT;
+import org.qortal.crosschain.AcctMode;
+import org.qortal.crosschain.SupportedBlockchain;
+import org.qortal.data.at.ATData;
+import org.qortal.data.at.ATStateData;
+import org.qortal.data.block.BlockData;
+import org.qortal.data.crosschain.CrossChainTradeData;
+import org.qortal.event.Event;
+import org.qortal.event.EventBus;
+import org.qortal.event.Listener;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.utils.ByteArray;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Node-wide book of cross-chain trade offers, kept up to date from the AT states
+ * written by each processed or orphaned block.
+ * <p>
+ * Replaces per-block scans of all ACCT AT states by the trade-offers websocket and API.
+ * After each committed block (see {@link Controller.NewBlockEvent}, {@link Controller.OrphanedBlockEvent})
+ * only the ACCT ATs that produced new AT states, or whose states were orphaned, are re-examined.
+ * <p>
+ * Readers get immutable snapshots without locking. Changes in trade mode are passed to
+ * {@link OfferListener}s, once per foreign blockchain, so they can be shared by many subscribers.
+ */
+public class TradeOfferBook implements Listener {
+
+	private static final Logger LOGGER = LogManager.getLogger(TradeOfferBook.class);
+
+	/** How long finished trades stay in the book */
+	private static final long HISTORIC_PERIOD = 24 * 60 * 60 * 1000L; // ms
+	/** Larger jumps in blockchain height are handled by scanning final AT states instead of block-by-block */
+	private static final int MAX_INCREMENTAL_BLOCKS = 100;
+	/** Number of recent chain tips we remember, to find where a reorg started */
+	private static final int MAX_RECENT_TIPS = 100;
+	/** Number of AT addresses for which we cache whether they are ACCT ATs */
+	private static final int MAX_ACCT_CACHE_ENTRIES = 10_000;
+
+	/** Trade data and summary for one trade AT, as of its latest AT state. Must not be modified. */
+	public static class TradeOffer {
+		private final CrossChainTradeData tradeData;
+		private final CrossChainOfferSummary summary;
+		private final int height;
+
+		private TradeOffer(CrossChainTradeData tradeData, CrossChainOfferSummary summary, int height) {
+			this.tradeData = tradeData;
+			this.summary = summary;
+			this.height = height;
+		}
+
+		public CrossChainTradeData getTradeData() {
+			return this.tradeData;
+		}
+
+		public CrossChainOfferSummary getSummary() {
+			return this.summary;
+		}
+
+		/** Height of AT state this offer was built from */
+		public int getHeight() {
+			return this.height;
+		}
+
+		public AcctMode getMode() {
+			return this.tradeData.mode;
+		}
+	}
+
+	@FunctionalInterface
+	public interface OfferListener {
+		/**
+		 * Called with trades for <tt>foreignBlockchain</tt> whose mode has changed, excluding failed trades.
+		 * <p>
+		 * Called on the thread that updated the book, so listeners should not block.
+		 */
+		void onOffersChanged(String foreignBlockchain, List<CrossChainOfferSummary> changedOffers);
+	}
+
+	private static class BlockchainOffers {
+		/** OFFERING trades, sorted by creation timestamp */
+		private final List<TradeOffer> currentOffers;
+		/** REDEEMED/REFUNDED/CANCELLED trades from the last 24 hours */
+		private final List<TradeOffer> historicOffers;
+
+		private BlockchainOffers(List<TradeOffer> currentOffers, List<TradeOffer> historicOffers) {
+			this.currentOffers = Collections.unmodifiableList(currentOffers);
+			this.historicOffers = Collections.unmodifiableList(historicOffers);
+		}
+	}
+
+	private static final Comparator<TradeOffer> CREATION_ORDER = Comparator.comparingLong(offer -> offer.tradeData.creationTimestamp);
+
+	private static TradeOfferBook instance;
+
+	/** Snapshot of offers by foreign blockchain name, or null if book hasn't been built yet */
+	private volatile Map<String, BlockchainOffers> offersByBlockchain;
+
+	private final List<OfferListener> listeners = new ArrayList<>();
+
+	private final Object updateLock = new Object();
+
+	// Guarded by updateLock
+	/** Live (OFFERING/TRADING) and recently finished trade ATs, by AT address */
+	private final Map<String, TradeOffer> tradeOffers = new HashMap<>();
+	/** Recent chain tip signatures, by height */
+	private final NavigableMap<Integer, byte[]> recentTips = new TreeMap<>();
+	@SuppressWarnings("serial")
+	private final Map<String, ACCT> acctsByAtAddress = new LinkedHashMap<>(MAX_ACCT_CACHE_ENTRIES + 1, 0.75F, true) {
+		// This method is called just after a new entry has been added
+		@Override
+		public boolean removeEldestEntry(Map.Entry<String, ACCT> eldest) {
+			return size() > MAX_ACCT_CACHE_ENTRIES;
+		}
+	};
+
+	private TradeOfferBook() {
+		EventBus.INSTANCE.addListener(event -> TradeOfferBook.getInstance().listen(event));
+	}
+
+	public static synchronized TradeOfferBook getInstance() {
+		if (instance == null)
+			instance = new TradeOfferBook();
+
+		return instance;
+	}
+
+	// Listeners
+
+	public void addListener(OfferListener listener) {
+		synchronized (this.listeners) {
+			this.listeners.add(listener);
+		}
+	}
+
+	public void removeListener(OfferListener listener) {
+		synchronized (this.listeners) {
+			this.listeners.remove(listener);
+		}
+	}
+
+	@Override
+	public void listen(Event event) {
+		if (!(event instanceof Controller.NewBlockEvent)
+				&& !(event instanceof Controller.OrphanedBlockEvent)
+				&& !(event instanceof Synchronizer.NewChainTipEvent))
+			return;
+
+		// Nothing to do until someone has asked for the book
+		if (!this.isReady())
+			return;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			this.update(repository);
+		} catch (DataException e) {
+			LOGGER.warn(String.format("Repository issue while updating trade offers: %s", e.getMessage()));
+		}
+	}
+
+	// Readers
+
+	public boolean isReady() {
+		return this.offersByBlockchain != null;
+	}
+
+	/**
+	 * Builds book from repository, if not already built.
+	 */
+	public void start() throws DataException {
+		if (this.isReady())
+			return;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			this.update(repository);
+		}
+	}
+
+	/**
+	 * Returns OFFERING trades, sorted by creation timestamp, for <tt>foreignBlockchain</tt>,
+	 * or for all blockchains if <tt>foreignBlockchain</tt> is null.
+	 * <p>
+	 * Returns null if book isn't ready. Returned trade data must not be modified.
+	 */
+	public List<TradeOffer> getCurrentOffers(String foreignBlockchain) {
+		return getOffers(foreignBlockchain, false);
+	}
+
+	/**
+	 * Returns REDEEMED/REFUNDED/CANCELLED trades from the last 24 hours for <tt>foreignBlockchain</tt>,
+	 * or for all blockchains if <tt>foreignBlockchain</tt> is null.
+	 * <p>
+	 * Returns null if book isn't ready. Returned trade data must not be modified.
+	 */
+	public List<TradeOffer> getHistoricOffers(String foreignBlockchain) {
+		return getOffers(foreignBlockchain, true);
+	}
+
+	private List<TradeOffer> getOffers(String foreignBlockchain, boolean historic) {
+		Map<String, BlockchainOffers> snapshot = this.offersByBlockchain;
+		if (snapshot == null)
+			return null;
+
+		if (foreignBlockchain != null) {
+			BlockchainOffers blockchainOffers = snapshot.get(foreignBlockchain);
+			if (blockchainOffers == null)
+				return Collections.emptyList();
+
+			return historic ? blockchainOffers.historicOffers : blockchainOffers.currentOffers;
+		}
+
+		List<TradeOffer> offers = new ArrayList<>();
+		for (BlockchainOffers blockchainOffers : snapshot.values())
+			offers.addAll(historic ? blockchainOffers.historicOffers : blockchainOffers.currentOffers);
+
+		if (!historic)
+			offers.sort(CREATION_ORDER);
+
+		return offers;
+	}
+
+	// Updating
+
+	/**
+	 * Brings book up to date with repository's current chain tip.
+	 * <p>
+	 * If chain tip follows on from the last one we saw, only ACCT ATs with AT states in the new blocks
+	 * are examined. After a reorg, ACCT ATs whose states were orphaned are examined too.
+	 * Otherwise the whole book is rebuilt.
+	 */
+	public void update(Repository repository) throws DataException {
+		synchronized (this.updateLock) {
+			final boolean wasReady = this.isReady();
+
+			BlockData chainTip = repository.getBlockRepository().getLastBlock();
+			final int tipHeight = chainTip.getHeight();
+
+			Set<String> atAddresses = new LinkedHashSet<>();
+
+			Integer commonHeight = wasReady ? this.findCommonHeight(repository) : null;
+			if (commonHeight == null) {
+				// Rebuild
+				atAddresses.addAll(this.tradeOffers.keySet());
+				atAddresses.addAll(this.findAllTradeATs(repository, tipHeight));
+			} else {
+				// Anything we have that was orphaned
+				for (TradeOffer tradeOffer : this.tradeOffers.values())
+					if (tradeOffer.height > commonHeight)
+						atAddresses.add(tradeOffer.tradeData.qortalAtAddress);
+
+				// Anything new
+				if (tipHeight - commonHeight <= MAX_INCREMENTAL_BLOCKS) {
+					for (int height = commonHeight + 1; height <= tipHeight; ++height)
+						for (ATStateData atState : repository.getATRepository().getBlockATStatesAtHeight(height))
+							if (this.getAcct(repository, atState.getATAddress()) != null)
+								atAddresses.add(atState.getATAddress());
+				} else {
+					atAddresses.addAll(this.findChangedTradeATs(repository, commonHeight + 1));
+				}
+			}
+
+			Map<String, List<TradeOffer>> changedOffersByBlockchain = new HashMap<>();
+			final long tooOldTimestamp = System.currentTimeMillis() - HISTORIC_PERIOD;
+
+			for (String atAddress : atAddresses) {
+				TradeOffer previousOffer = this.tradeOffers.get(atAddress);
+				TradeOffer tradeOffer = this.buildTradeOffer(repository, atAddress);
+
+				if (tradeOffer == null) {
+					// AT no longer exists, e.g. DEPLOY_AT was orphaned
+					this.tradeOffers.remove(atAddress);
+					continue;
+				}
+
+				if (isHistoric(tradeOffer.getMode()) && tradeOffer.summary.getTimestamp() < tooOldTimestamp) {
+					this.tradeOffers.remove(atAddress);
+					continue;
+				}
+
+				this.tradeOffers.put(atAddress, tradeOffer);
+
+				if (previousOffer == null || previousOffer.getMode() != tradeOffer.getMode())
+					changedOffersByBlockchain.computeIfAbsent(tradeOffer.tradeData.foreignBlockchain, k -> new ArrayList<>()).add(tradeOffer);
+			}
+
+			// Remove any historic offers that are over 24 hours old
+			boolean hasExpired = this.tradeOffers.values().removeIf(tradeOffer ->
+					isHistoric(tradeOffer.getMode()) && tradeOffer.summary.getTimestamp() < tooOldTimestamp);
+
+			this.recentTips.tailMap(tipHeight, true).clear();
+			this.recentTips.put(tipHeight, chainTip.getSignature());
+			while (this.recentTips.size() > MAX_RECENT_TIPS)
+				this.recentTips.pollFirstEntry();
+
+			if (!wasReady || !atAddresses.isEmpty() || hasExpired)
+				this.offersByBlockchain = this.buildSnapshot();
+
+			LOGGER.trace(() -> String.format("Trade offers updated to height %d, %d AT%s examined", tipHeight, atAddresses.size(), atAddresses.size() != 1 ? "s" : ""));
+
+			// No-one could have been listening before the book was built
+			if (wasReady)
+				this.notifyListeners(repository, changedOffersByBlockchain);
+		}
+	}
+
+	/** Returns height of most recent chain tip we saw that is still in the blockchain, or null if none are. */
+	private Integer findCommonHeight(Repository repository) throws DataException {
+		for (Map.Entry<Integer, byte[]> recentTip : this.recentTips.descendingMap().entrySet())
+			if (repository.getBlockRepository().getHeightFromSignature(recentTip.getValue()) == recentTip.getKey())
+				return recentTip.getKey();
+
+		return null;
+	}
+
+	/** Returns addresses of all unfinished trade ATs, and trade ATs that finished in the last 24 hours. */
+	private Set<String> findAllTradeATs(Repository repository, int tipHeight) throws DataException {
+		Set<String> atAddresses = new LinkedHashSet<>();
+
+		final Integer dataByteOffset = null;
+		final Long expectedValue = null;
+
+		int historicHeight = repository.getBlockRepository().getHeightFromTimestamp(System.currentTimeMillis() - HISTORIC_PERIOD);
+		++historicHeight; // because height is just *before* timestamp
+
+		for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : SupportedBlockchain.getAcctMap().entrySet()) {
+			byte[] codeHash = acctInfo.getKey().value;
+
+			List<ATStateData> unfinishedAtStates = repository.getATRepository().getMatchingFinalATStates(codeHash,
+					Boolean.FALSE, dataByteOffset, expectedValue, null,
+					null, null, null);
+
+			if (unfinishedAtStates == null)
+				throw new DataException("Couldn't fetch current trades from repository");
+
+			for (ATStateData atState : unfinishedAtStates)
+				atAddresses.add(atState.getATAddress());
+
+			List<ATStateData> historicAtStates = repository.getATRepository().getMatchingFinalATStates(codeHash,
+					Boolean.TRUE, dataByteOffset, expectedValue, Math.min(historicHeight, tipHeight),
+					null, null, null);
+
+			if (historicAtStates == null)
+				throw new DataException("Couldn't fetch historic trades from repository");
+
+			for (ATStateData atState : historicAtStates)
+				atAddresses.add(atState.getATAddress());
+		}
+
+		return atAddresses;
+	}
+
+	/** Returns addresses of trade ATs whose latest state is at, or after, <tt>minimumFinalHeight</tt>. */
+	private Set<String> findChangedTradeATs(Repository repository, int minimumFinalHeight) throws DataException {
+		Set<String> atAddresses = new LinkedHashSet<>();
+
+		for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : SupportedBlockchain.getAcctMap().entrySet()) {
+			List<ATStateData> atStates = repository.getATRepository().getMatchingFinalATStates(acctInfo.getKey().value,
+					null, null, null, minimumFinalHeight,
+					null, null, null);
+
+			if (atStates == null)
+				throw new DataException("Couldn't fetch changed trades from repository");
+
+			for (ATStateData atState : atStates)
+				atAddresses.add(atState.getATAddress());
+		}
+
+		return atAddresses;
+	}
+
+	/** Returns ACCT for AT, or null if AT isn't a supported trade AT (or doesn't exist). */
+	private ACCT getAcct(Repository repository, String atAddress) throws DataException {
+		if (this.acctsByAtAddress.containsKey(atAddress))
+			return this.acctsByAtAddress.get(atAddress);
+
+		ATData atData = repository.getATRepository().fromATAddress(atAddress);
+		if (atData == null)
+			return null;
+
+		// AT's code never changes, so this is safe to cache
+		ACCT acct = SupportedBlockchain.getAcctByCodeHash(atData.getCodeHash());
+		this.acctsByAtAddress.put(atAddress, acct);
+
+		return acct;
+	}
+
+	/** Returns trade offer built from AT's latest state, or null if AT doesn't exist. */
+	private TradeOffer buildTradeOffer(Repository repository, String atAddress) throws DataException {
+		ACCT acct = this.getAcct(repository, atAddress);
+		if (acct == null)
+			return null;
+
+		ATStateData atState = repository.getATRepository().getLatestATState(atAddress);
+		if (atState == null) {
+			this.acctsByAtAddress.remove(atAddress);
+			return null;
+		}
+
+		CrossChainTradeData tradeData = acct.populateTradeData(repository, atState);
+
+		long timestamp;
+		if (tradeData.mode == AcctMode.OFFERING)
+			// We want when trade was created, not when it was last updated
+			timestamp = tradeData.creationTimestamp;
+		else
+			timestamp = repository.getBlockRepository().getTimestampFromHeight(atState.getHeight());
+
+		return new TradeOffer(tradeData, new CrossChainOfferSummary(tradeData, timestamp), atState.getHeight());
+	}
+
+	private Map<String, BlockchainOffers> buildSnapshot() {
+		Map<String, List<TradeOffer>> currentOffersByBlockchain = new HashMap<>();
+		Map<String, List<TradeOffer>> historicOffersByBlockchain = new HashMap<>();
+
+		for (SupportedBlockchain blockchain : SupportedBlockchain.values()) {
+			currentOffersByBlockchain.put(blockchain.name(), new ArrayList<>());
+			historicOffersByBlockchain.put(blockchain.name(), new ArrayList<>());
+		}
+
+		for (TradeOffer tradeOffer : this.tradeOffers.values()) {
+			String foreignBlockchain = tradeOffer.tradeData.foreignBlockchain;
+
+			if (tradeOffer.getMode() == AcctMode.OFFERING)
+				currentOffersByBlockchain.computeIfAbsent(foreignBlockchain, k -> new ArrayList<>()).add(tradeOffer);
+			else if (isHistoric(tradeOffer.getMode()))
+				historicOffersByBlockchain.computeIfAbsent(foreignBlockchain, k -> new ArrayList<>()).add(tradeOffer);
+		}
+
+		Map<String, BlockchainOffers> snapshot = new HashMap<>();
+		for (Map.Entry<String, List<TradeOffer>> entry : currentOffersByBlockchain.entrySet()) {
+			List<TradeOffer> currentOffers = entry.getValue();
+			currentOffers.sort(CREATION_ORDER);
+
+			List<TradeOffer> historicOffers = historicOffersByBlockchain.getOrDefault(entry.getKey(), new ArrayList<>());
+
+			snapshot.put(entry.getKey(), new BlockchainOffers(currentOffers, historicOffers));
+		}
+
+		return Collections.unmodifiableMap(snapshot);
+	}
+
+	private void notifyListeners(Repository repository, Map<String, List<TradeOffer>> changedOffersByBlockchain) {
+		if (changedOffersByBlockchain.isEmpty())
+			return;
+
+		List<OfferListener> currentListeners;
+		synchronized (this.listeners) {
+			if (this.listeners.isEmpty())
+				return;
+
+			currentListeners = new ArrayList<>(this.listeners);
+		}
+
+		for (Map.Entry<String, List<TradeOffer>> entry : changedOffersByBlockchain.entrySet()) {
+			List<CrossChainOfferSummary> changedOffers = new ArrayList<>();
+
+			for (TradeOffer tradeOffer : entry.getValue()) {
+				// Ignore trade if it has failed
+				if (TradeBot.getInstance().isFailedTrade(repository, tradeOffer.tradeData))
+					continue;
+
+				LOGGER.trace(() -> String.format("Block height: %d, AT: %s, mode: %s", tradeOffer.height, tradeOffer.tradeData.qortalAtAddress, tradeOffer.getMode().name()));
+				changedOffers.add(tradeOffer.summary);
+			}
+
+			if (changedOffers.isEmpty())
+				continue;
+
+			List<CrossChainOfferSummary> unmodifiableChangedOffers = Collections.unmodifiableList(changedOffers);
+			for (OfferListener listener : currentListeners)
+				try {
+					listener.onOffersChanged(entry.getKey(), unmodifiableChangedOffers);
+				} catch (Exception e) {
+					// We don't want one listener to break other listeners
+					LOGGER.warn(() -> String.format("Caught %s from a trade offer listener", e.getClass().getSimpleName()), e);
+				}
+		}
+	}
+
+	private static boolean isHistoric(AcctMode mode) {
+		return mode == AcctMode.REDEEMED || mode == AcctMode.REFUNDED || mode == AcctMode.CANCELLED;
+	}
+
+}
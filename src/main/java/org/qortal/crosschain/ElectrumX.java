@@ -10,7 +10,11 @@ import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 import org.qortal.crypto.Crypto;
 import org.qortal.crypto.TrustlessSSLSocketFactory;
+import org.qortal.metrics.Counter;
+import org.qortal.metrics.Metrics;
+import org.qortal.settings.Settings;
 import org.qortal.utils.BitTwiddling;
+import org.qortal.utils.DaemonThreadFactory;
 
 import javax.net.ssl.SSLSocketFactory;
 import java.io.IOException;
@@ -20,6 +24,8 @@ import java.net.Socket;
 import java.net.SocketAddress;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -45,13 +51,55 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 	private static final int RESPONSE_TIME_READINGS = 5;
 	private static final long MAX_AVG_RESPONSE_TIME = 2000L; // ms
 
+	/** Number of recent response times kept per server, for percentile estimates */
+	private static final int RESPONSE_TIME_WINDOW = 20;
+	/** Weight given to each new reading in moving averages of response time and error rate */
+	private static final double EWMA_WEIGHT = 0.2;
+	/** Response time assumed for servers without enough readings, so they're tried before known-slow servers */
+	private static final long UNKNOWN_RESPONSE_TIME = 500L; // ms
+	/** How much an error rate of 100% inflates a server's score */
+	private static final double ERROR_PENALTY = 10.0;
+	/** Error rate above which a server is rested, e.g. after two failures in a row */
+	private static final double MAX_ERROR_RATE = 0.3;
+	private static final long FAILING_SERVER_REST_PERIOD = 5 * 60 * 1000L; // ms
+	/** Chance of picking a random server, instead of the best, so we keep learning about other servers */
+	private static final double EXPLORATION_CHANCE = 0.1;
+
+	/** Read-only RPC methods, which are safe to also send to another server */
+	private static final Set<String> HEDGEABLE_METHODS = Set.of("blockchain.headers.subscribe", "blockchain.block.headers",
+			"blockchain.transaction.get", "blockchain.scripthash.get_balance", "blockchain.scripthash.get_history",
+			"blockchain.scripthash.listunspent");
+	private static final long MIN_HEDGE_DELAY = 50L; // ms
+
+	private static final long PROBE_INTERVAL = 2 * 60 * 1000L; // ms
+	/** Number of servers probed per interval, per ElectrumX instance */
+	private static final int PROBE_BATCH_SIZE = 3;
+	/** Read timeout for probe connections, so an unresponsive server can't hold up probing */
+	private static final int PROBE_READ_TIMEOUT = 10 * 1000; // ms
+
+	private static final ExecutorService HEDGE_EXECUTOR = Executors.newCachedThreadPool(new DaemonThreadFactory("ElectrumX-hedge"));
+
+	private static final Counter HEDGED_CALLS = Metrics.getInstance().counter("qortal_electrumx_hedged_calls_total",
+			"Number of ElectrumX calls also sent to another server as first server was slow");
+
 	public static class Server implements ChainableServer {
 		String hostname;
 
 		ConnectionType connectionType;
 
 		int port;
-		private List<Long> responseTimes = new ArrayList<>();
+
+		/** Recent response times, in ms, oldest first, for percentile estimates */
+		private final Deque<Long> recentResponseTimes = new ArrayDeque<>(RESPONSE_TIME_WINDOW);
+		private int responseTimeReadings = 0;
+		/** Exponentially-weighted moving average of response time, in ms */
+		private double ewmaResponseTime = 0.0;
+		/** Exponentially-weighted moving average of failures, from 0 (never fails) to 1 (always fails) */
+		private double ewmaErrorRate = 0.0;
+		/** When we last heard from, or failed to reach, this server */
+		private long lastContactTimestamp = 0L;
+		/** Server isn't picked until this time, unless there's nothing else */
+		private long restUntilTimestamp = 0L;
 
 		public Server(String hostname, ConnectionType connectionType, int port) {
 			this.hostname = hostname;
@@ -60,24 +108,61 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 		}
 
 		@Override
-		public void addResponseTime(long responseTime) {
-			while (this.responseTimes.size() > RESPONSE_TIME_READINGS) {
-				this.responseTimes.remove(0);
-			}
-			this.responseTimes.add(responseTime);
+		public synchronized void addResponseTime(long responseTime) {
+			if (this.recentResponseTimes.size() >= RESPONSE_TIME_WINDOW)
+				this.recentResponseTimes.removeFirst();
+			this.recentResponseTimes.addLast(responseTime);
+
+			this.ewmaResponseTime = this.responseTimeReadings == 0
+					? responseTime
+					: EWMA_WEIGHT * responseTime + (1.0 - EWMA_WEIGHT) * this.ewmaResponseTime;
+			++this.responseTimeReadings;
+
+			this.ewmaErrorRate *= 1.0 - EWMA_WEIGHT;
+			this.lastContactTimestamp = System.currentTimeMillis();
+		}
+
+		/** Records failure to connect, or respond, which makes server less likely to be picked. */
+		public synchronized void addFailure() {
+			this.ewmaErrorRate = EWMA_WEIGHT + (1.0 - EWMA_WEIGHT) * this.ewmaErrorRate;
+			this.lastContactTimestamp = System.currentTimeMillis();
+
+			if (this.ewmaErrorRate > MAX_ERROR_RATE)
+				this.restUntilTimestamp = this.lastContactTimestamp + FAILING_SERVER_REST_PERIOD;
 		}
 
 		@Override
-		public long averageResponseTime() {
-			if (this.responseTimes.size() < RESPONSE_TIME_READINGS) {
+		public synchronized long averageResponseTime() {
+			if (this.responseTimeReadings < RESPONSE_TIME_READINGS) {
 				// Not enough readings yet
 				return 0L;
 			}
-			OptionalDouble average = this.responseTimes.stream().mapToDouble(a -> a).average();
-			if (average.isPresent()) {
-				return Double.valueOf(average.getAsDouble()).longValue();
-			}
-			return 0L;
+
+			return Math.round(this.ewmaResponseTime);
+		}
+
+		/** Returns percentile of recent response times, in ms, or a default if we have too few readings. */
+		public synchronized long getResponseTimePercentile(int percentile) {
+			if (this.recentResponseTimes.size() < RESPONSE_TIME_READINGS)
+				return UNKNOWN_RESPONSE_TIME;
+
+			long[] sortedResponseTimes = this.recentResponseTimes.stream().mapToLong(Long::longValue).sorted().toArray();
+			int index = (int) Math.ceil(percentile / 100.0 * sortedResponseTimes.length) - 1;
+			return sortedResponseTimes[Math.max(0, index)];
+		}
+
+		/** Returns server's score, based on response time and error rate. Lower is better. */
+		public synchronized double getScore() {
+			double responseTime = this.responseTimeReadings == 0 ? UNKNOWN_RESPONSE_TIME : this.ewmaResponseTime;
+			return responseTime * (1.0 + ERROR_PENALTY * this.ewmaErrorRate);
+		}
+
+		public synchronized boolean isResting(long now) {
+			return now < this.restUntilTimestamp;
+		}
+
+		public synchronized long getLastContactTimestamp() {
+			return this.lastContactTimestamp;
 		}
 
 		@Override
@@ -129,11 +214,32 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 	private final Map<Server.ConnectionType, Integer> defaultPorts = new EnumMap<>(Server.ConnectionType.class);
 	private Bitcoiny blockchain;
 
+	/** Connection to a single ElectrumX server */
+	private static class Connection {
+		private final Server server;
+		private final Socket socket;
+		private final Scanner scanner;
+		private int nextId = 1;
+
+		private Connection(Server server, Socket socket) throws IOException {
+			this.server = server;
+			this.socket = socket;
+			this.scanner = new Scanner(socket.getInputStream());
+			this.scanner.useDelimiter("\n");
+		}
+	}
+
 	private final Object serverLock = new Object();
-	private ChainableServer currentServer;
-	private Socket socket;
-	private Scanner scanner;
-	private int nextId = 1;
+	private Server currentServer;
+	private Connection connection;
+	/** Standby connection to another server, for hedged calls */
+	private Connection hedgeConnection;
+
+	/** Whether hedged calls are enabled, or null to use setting */
+	private volatile Boolean isHedgingEnabled;
+	private final AtomicBoolean isProbing = new AtomicBoolean(false);
+	/** Per-instance, so slow probes for one chain don't delay probes for others */
+	private ScheduledExecutorService probeExecutor;
 
 	private static final int TX_CACHE_SIZE = 1000;
 	@SuppressWarnings("serial")
@@ -145,6 +251,9 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 		}
 	});
 
+	/** Persistent cache of deeply confirmed headers and transactions, shared with other users of this network */
+	private ForeignBlockchainCache persistentCache;
+
 	// Constructors
 
 	public ElectrumX(String netId, String genesisHash, Collection<Server> initialServerList, Map<Server.ConnectionType, Integer> defaultPorts) {
@@ -154,6 +263,14 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 		this.defaultPorts.putAll(defaultPorts);
 	}
 
+	private synchronized ForeignBlockchainCache getPersistentCache() {
+		// Fetched on first use, as settings aren't always available at construction, e.g. in tests
+		if (this.persistentCache == null)
+			this.persistentCache = ForeignBlockchainCache.getInstance(this.netId);
+
+		return this.persistentCache;
+	}
+
 	// Methods for use by other classes
 
 	@Override
@@ -184,7 +301,10 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 		if (!(heightObj instanceof Long))
 			throw new ForeignBlockchainException.NetworkException("Missing/invalid 'height' in JSON from ElectrumX blockchain.headers.subscribe RPC");
 
-		return ((Long) heightObj).intValue();
+		int height = ((Long) heightObj).intValue();
+		this.getPersistentCache().setTipHeight(height);
+
+		return height;
 	}
 
 	/**
@@ -204,6 +324,32 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 	 */
 	@Override
 	public List<byte[]> getRawBlockHeaders(int startHeight, int count) throws ForeignBlockchainException {
+		List<byte[]> cachedHeaders = this.getPersistentCache().getHeaders(startHeight, count);
+		if (cachedHeaders.size() == count)
+			return cachedHeaders;
+
+		// Also refetch last cached header, if any, so we can tell whether it's been reorged out
+		int overlap = cachedHeaders.isEmpty() ? 0 : 1;
+		int fetchStartHeight = startHeight + cachedHeaders.size() - overlap;
+		List<byte[]> fetchedHeaders = this.fetchRawBlockHeaders(fetchStartHeight, count - cachedHeaders.size() + overlap);
+
+		if (!this.getPersistentCache().putHeaders(fetchStartHeight, fetchedHeaders)) {
+			// Cached headers were stale, so fetch everything
+			fetchedHeaders = this.fetchRawBlockHeaders(startHeight, count);
+			this.getPersistentCache().putHeaders(startHeight, fetchedHeaders);
+			return fetchedHeaders;
+		}
+
+		// Server has nothing beyond what we already have, not even the overlapping header
+		if (fetchedHeaders.isEmpty())
+			return cachedHeaders;
+
+		List<byte[]> rawBlockHeaders = new ArrayList<>(cachedHeaders.subList(0, cachedHeaders.size() - overlap));
+		rawBlockHeaders.addAll(fetchedHeaders);
+		return rawBlockHeaders;
+	}
+
+	private List<byte[]> fetchRawBlockHeaders(int startHeight, int count) throws ForeignBlockchainException {
 		Object blockObj = this.rpc("blockchain.block.headers", startHeight, count);
 		if (!(blockObj instanceof JSONObject))
 			throw new ForeignBlockchainException.NetworkException("Unexpected output from ElectrumX blockchain.block.headers RPC");
@@ -221,6 +367,10 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 
 		List<byte[]> rawBlockHeaders = new ArrayList<>(returnedCount.intValue());
 
+		// No headers beyond server's tip
+		if (returnedCount == 0)
+			return rawBlockHeaders;
+
 		byte[] raw = HashCode.fromString(hex).asBytes();
 
 		// Most chains use a fixed length 80 byte header, so block headers can be split up by dividing the hex into
@@ -404,6 +554,12 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 		if (transaction != null)
 			return transaction;
 
+		transaction = this.getPersistentCache().getTransaction(txHash);
+		if (transaction != null) {
+			transactionCache.put(txHash, transaction);
+			return transaction;
+		}
+
 		Object transactionObj = null;
 
 		do {
@@ -511,6 +667,11 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 			// Save into cache
 			transactionCache.put(txHash, transaction);
 
+			// Only deeply confirmed transactions are persisted
+			Object confirmationsObj = transactionJson.get("confirmations");
+			if (confirmationsObj instanceof Long)
+				this.getPersistentCache().putTransaction(transaction, ((Long) confirmationsObj).intValue());
+
 			return transaction;
 		} catch (NullPointerException | ClassCastException e) {
 			// Unexpected / invalid response from ElectrumX server
@@ -580,10 +741,10 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 	 * @throws ForeignBlockchainException
 	 * @throws ClassCastException to be handled by caller
 	 */
-	private Set<Server> serverPeersSubscribe() throws ForeignBlockchainException {
+	private Set<Server> serverPeersSubscribe(Connection connection) throws ForeignBlockchainException {
 		Set<Server> newServers = new HashSet<>();
 
-		Object peers = this.connectedRpc("server.peers.subscribe");
+		Object peers = this.connectedRpc(connection, "server.peers.subscribe");
 
 		for (Object rawPeer : (JSONArray) peers) {
 			JSONArray peer = (JSONArray) rawPeer;
@@ -639,32 +800,43 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 	/**
 	 * Performs RPC call, with automatic reconnection to different server if needed.
 	 * <p>
+	 * If hedged requests are enabled, read-only calls that are slow to answer are also sent to another server,
+	 * and whichever answers first is used.
+	 * <p>
 	 * @return "result" object from within JSON output
 	 * @throws ForeignBlockchainException if server returns error or something goes wrong
 	 */
 	private Object rpc(String method, Object...params) throws ForeignBlockchainException {
+		this.startProbing();
+
 		synchronized (this.serverLock) {
 			if (this.remainingServers.isEmpty())
 				this.remainingServers.addAll(this.servers);
 
 			while (haveConnection()) {
-				Object response = connectedRpc(method, params);
+				boolean isHedging = this.isHedgingEnabled != null ? this.isHedgingEnabled : Settings.getInstance().isElectrumHedgedRequestsEnabled();
+
+				Object response = isHedging && HEDGEABLE_METHODS.contains(method)
+						? this.hedgedRpc(method, params)
+						: this.connectedRpc(this.connection, method, params);
+
+				if (response == null) {
+					// Didn't work, try another server...
+					this.currentServer.addFailure();
+					this.closeServer();
+					continue;
+				}
 
-				// If we have more servers and this one replied slowly, try another
+				// If we have more servers and this one is replying slowly, use another next time
 				if (!this.remainingServers.isEmpty()) {
 					long averageResponseTime = this.currentServer.averageResponseTime();
 					if (averageResponseTime > MAX_AVG_RESPONSE_TIME) {
 						LOGGER.info("Slow average response time {}ms from {} - trying another server...", averageResponseTime, this.currentServer.getHostName());
 						this.closeServer();
-						break;
 					}
 				}
 
-				if (response != null)
-					return response;
-
-				// Didn't work, try another server...
-				this.closeServer();
+				return response;
 			}
 
 			// Failed to perform RPC - maybe lack of servers?
@@ -673,75 +845,268 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 		}
 	}
 
+	/**
+	 * Performs RPC call using current connection, but if no answer arrives within current server's
+	 * 95th percentile response time, also sends call to another server. First answer wins.
+	 * <p>
+	 * If other server answers first, it becomes our current server.
+	 *
+	 * @return response Object, or null if no server responded
+	 * @throws ForeignBlockchainException if answering server returns error, or if interrupted
+	 */
+	private Object hedgedRpc(String method, Object...params) throws ForeignBlockchainException {
+		final Connection primaryConnection = this.connection;
+		final long hedgeDelay = Math.max(MIN_HEDGE_DELAY, primaryConnection.server.getResponseTimePercentile(95));
+
+		CompletionService<Object> completionService = new ExecutorCompletionService<>(HEDGE_EXECUTOR);
+		Map<Future<Object>, Connection> pendingCalls = new HashMap<>();
+
+		pendingCalls.put(completionService.submit(() -> this.connectedRpc(primaryConnection, method, params)), primaryConnection);
+
+		try {
+			Future<Object> completedCall = completionService.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+
+			if (completedCall == null) {
+				Connection hedgeConnection = this.getHedgeConnection();
+
+				if (hedgeConnection != null) {
+					LOGGER.trace(() -> String.format("Hedging slow %s call to %s with %s", method, primaryConnection.server, hedgeConnection.server));
+					HEDGED_CALLS.increment();
+					pendingCalls.put(completionService.submit(() -> this.connectedRpc(hedgeConnection, method, params)), hedgeConnection);
+				}
+
+				completedCall = completionService.take();
+			}
+
+			while (true) {
+				Connection answeringConnection = pendingCalls.remove(completedCall);
+
+				final Object response;
+				try {
+					response = getCallResult(completedCall);
+				} catch (ForeignBlockchainException e) {
+					this.closePendingCalls(pendingCalls);
+					throw e;
+				}
+
+				if (response != null || pendingCalls.isEmpty()) {
+					this.closePendingCalls(pendingCalls);
+
+					if (answeringConnection != primaryConnection && response != null) {
+						LOGGER.debug(() -> String.format("Switching to %s as it answered before %s", answeringConnection.server, primaryConnection.server));
+						this.closeConnection(primaryConnection);
+						this.connection = answeringConnection;
+						this.currentServer = answeringConnection.server;
+						this.hedgeConnection = null;
+					}
+
+					return response;
+				}
+
+				// This call failed, so wait for the other
+				if (answeringConnection == this.hedgeConnection) {
+					answeringConnection.server.addFailure();
+					this.closeConnection(answeringConnection);
+					this.hedgeConnection = null;
+				}
+
+				completedCall = completionService.take();
+			}
+		} catch (InterruptedException e) {
+			// We're probably shutting down, which isn't the fault of any server, so don't let rpc() try others
+			this.closePendingCalls(pendingCalls);
+
+			Thread.currentThread().interrupt();
+			throw new ForeignBlockchainException.NetworkException(String.format("Interrupted while waiting for ElectrumX RPC %s", method));
+		}
+	}
+
+	/**
+	 * Closes connections of calls still awaiting a response, as a stray response would be read
+	 * by the next call on that connection, and forgets those connections.
+	 */
+	private void closePendingCalls(Map<Future<Object>, Connection> pendingCalls) {
+		for (Connection pendingConnection : pendingCalls.values()) {
+			this.closeConnection(pendingConnection);
+
+			if (pendingConnection == this.hedgeConnection)
+				this.hedgeConnection = null;
+
+			if (pendingConnection == this.connection) {
+				this.connection = null;
+				this.currentServer = null;
+			}
+		}
+
+		pendingCalls.clear();
+	}
+
+	private static Object getCallResult(Future<Object> completedCall) throws ForeignBlockchainException, InterruptedException {
+		try {
+			return completedCall.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ForeignBlockchainException)
+				throw (ForeignBlockchainException) e.getCause();
+
+			// Unexpected failure - treat as no response
+			return null;
+		}
+	}
+
+	/** Returns connection to best server other than current one, for hedged calls, or null if none available. */
+	private Connection getHedgeConnection() {
+		if (this.hedgeConnection != null)
+			return this.hedgeConnection;
+
+		List<Server> candidates = new ArrayList<>();
+		for (ChainableServer server : this.servers)
+			if (server instanceof Server && !server.equals(this.currentServer))
+				candidates.add((Server) server);
+
+		while (!candidates.isEmpty()) {
+			Server server = this.selectServer(candidates);
+			candidates.remove(server);
+
+			Connection connection = this.connect(server, false);
+			if (connection != null) {
+				this.hedgeConnection = connection;
+				return connection;
+			}
+		}
+
+		return null;
+	}
+
 	/** Returns true if we have, or create, a connection to an ElectrumX server. */
 	private boolean haveConnection() throws ForeignBlockchainException {
-		if (this.currentServer != null)
+		if (this.connection != null)
 			return true;
 
 		while (!this.remainingServers.isEmpty()) {
-			ChainableServer server = this.remainingServers.remove(RANDOM.nextInt(this.remainingServers.size()));
-			LOGGER.trace(() -> String.format("Connecting to %s", server));
+			Server server = this.selectServer(this.remainingServers);
+			this.remainingServers.remove(server);
 
-			try {
-				SocketAddress endpoint = new InetSocketAddress(server.getHostName(), server.getPort());
-				int timeout = 5000; // ms
+			Connection connection = this.connect(server, true);
+			if (connection == null)
+				// Didn't work, try another server...
+				continue;
+
+			LOGGER.debug(() -> String.format("Connected to %s", server));
+			this.connection = connection;
+			this.currentServer = server;
+			return true;
+		}
 
-				this.socket = new Socket();
-				this.socket.connect(endpoint, timeout);
-				this.socket.setTcpNoDelay(true);
+		return false;
+	}
 
-				if (server.getConnectionType() == Server.ConnectionType.SSL) {
-					SSLSocketFactory factory = TrustlessSSLSocketFactory.getSocketFactory();
-					this.socket = factory.createSocket(this.socket, server.getHostName(), server.getPort(), true);
-				}
+	/**
+	 * Returns server with best score from <tt>candidates</tt>, or occasionally a random candidate, so we keep learning about other servers.
+	 * <p>
+	 * Useless, or resting, servers are only picked if there's nothing else.
+	 */
+	private Server selectServer(Collection<? extends ChainableServer> candidates) {
+		long now = System.currentTimeMillis();
 
-				this.scanner = new Scanner(this.socket.getInputStream());
-				this.scanner.useDelimiter("\n");
+		List<Server> usableServers = new ArrayList<>();
+		List<Server> otherServers = new ArrayList<>();
+		for (ChainableServer candidate : candidates) {
+			if (!(candidate instanceof Server))
+				continue;
 
-				// All connections need to start with a version negotiation
-				this.connectedRpc("server.version");
+			Server server = (Server) candidate;
+			if (this.uselessServers.contains(server) || server.isResting(now))
+				otherServers.add(server);
+			else
+				usableServers.add(server);
+		}
 
-				// Check connection is suitable by asking for server features, including genesis block hash
-				JSONObject featuresJson = (JSONObject) this.connectedRpc("server.features");
+		if (usableServers.isEmpty())
+			usableServers = otherServers;
 
-				if (featuresJson == null || Double.valueOf((String) featuresJson.get("protocol_min")) < MIN_PROTOCOL_VERSION)
-					continue;
+		if (RANDOM.nextDouble() < EXPLORATION_CHANCE)
+			return usableServers.get(RANDOM.nextInt(usableServers.size()));
 
-				if (this.expectedGenesisHash != null && !((String) featuresJson.get("genesis_hash")).equals(this.expectedGenesisHash))
-					continue;
+		return usableServers.stream().min(Comparator.comparingDouble(Server::getScore)).get();
+	}
+
+	/**
+	 * Connects to <tt>server</tt> and checks it is suitable, optionally asking it for more servers.
+	 *
+	 * @return connection, or null if server couldn't be used
+	 */
+	private Connection connect(Server server, boolean askForMoreServers) {
+		return this.connect(server, askForMoreServers, 0);
+	}
+
+	/** Connects to <tt>server</tt>, with <tt>readTimeout</tt> in ms, or 0 for no read timeout. */
+	private Connection connect(Server server, boolean askForMoreServers, int readTimeout) {
+		LOGGER.trace(() -> String.format("Connecting to %s", server));
+
+		Connection connection = null;
+		try {
+			SocketAddress endpoint = new InetSocketAddress(server.getHostName(), server.getPort());
+			int timeout = 5000; // ms
+
+			Socket socket = new Socket();
+			socket.connect(endpoint, timeout);
+			socket.setTcpNoDelay(true);
+			socket.setSoTimeout(readTimeout);
 
-				// Ask for more servers
-				Set<Server> moreServers = serverPeersSubscribe();
+			if (server.getConnectionType() == Server.ConnectionType.SSL) {
+				SSLSocketFactory factory = TrustlessSSLSocketFactory.getSocketFactory();
+				socket = factory.createSocket(socket, server.getHostName(), server.getPort(), true);
+			}
+
+			connection = new Connection(server, socket);
+
+			// All connections need to start with a version negotiation
+			this.connectedRpc(connection, "server.version");
+
+			// Check connection is suitable by asking for server features, including genesis block hash
+			JSONObject featuresJson = (JSONObject) this.connectedRpc(connection, "server.features");
+
+			if (featuresJson == null || Double.valueOf((String) featuresJson.get("protocol_min")) < MIN_PROTOCOL_VERSION
+					|| (this.expectedGenesisHash != null && !((String) featuresJson.get("genesis_hash")).equals(this.expectedGenesisHash))) {
+				server.addFailure();
+				this.closeConnection(connection);
+				return null;
+			}
+
+			if (askForMoreServers) {
+				Set<Server> moreServers = serverPeersSubscribe(connection);
 				// Discard duplicate servers we already know
 				moreServers.removeAll(this.servers);
 				// Add to both lists
 				this.remainingServers.addAll(moreServers);
 				this.servers.addAll(moreServers);
-
-				LOGGER.debug(() -> String.format("Connected to %s", server));
-				this.currentServer = server;
-				return true;
-			} catch (IOException | ForeignBlockchainException | ClassCastException | NullPointerException e) {
-				// Didn't work, try another server...
-				closeServer();
 			}
-		}
 
-		return false;
+			return connection;
+		} catch (IOException | ForeignBlockchainException | ClassCastException | NullPointerException e) {
+			// Didn't work
+			server.addFailure();
+
+			if (connection != null)
+				this.closeConnection(connection);
+
+			return null;
+		}
 	}
 
 	/**
-	 * Perform RPC using currently connected server.
+	 * Perform RPC using passed connection.
 	 * <p>
+	 * @param connection
 	 * @param method
 	 * @param params
 	 * @return response Object, or null if server fails to respond
 	 * @throws ForeignBlockchainException if server returns error
 	 */
 	@SuppressWarnings("unchecked")
-	private Object connectedRpc(String method, Object...params) throws ForeignBlockchainException {
+	private Object connectedRpc(Connection connection, String method, Object...params) throws ForeignBlockchainException {
 		JSONObject requestJson = new JSONObject();
-		requestJson.put("id", this.nextId++);
+		requestJson.put("id", connection.nextId++);
 		requestJson.put("method", method);
 		requestJson.put("jsonrpc", "2.0");
 
@@ -767,9 +1132,9 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 		final String response;
 
 		try {
-			this.socket.getOutputStream().write(request.getBytes());
-			response = scanner.next();
-		} catch (IOException | NoSuchElementException e) {
+			connection.socket.getOutputStream().write(request.getBytes());
+			response = connection.scanner.next();
+		} catch (IOException | NoSuchElementException | IllegalStateException e) {
 			// Unable to send, or receive -- try another server?
 			return null;
 		} catch (NoSuchMethodError e) {
@@ -794,22 +1159,20 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 			return null;
 
 		// Keep track of response times
-		if (this.currentServer != null) {
-			this.currentServer.addResponseTime(responseTime);
-		}
+		connection.server.addResponseTime(responseTime);
 
 		JSONObject responseJson = (JSONObject) responseObj;
 
 		Object errorObj = responseJson.get("error");
 		if (errorObj != null) {
 			if (errorObj instanceof String) {
-				LOGGER.debug(String.format("Unexpected error message from ElectrumX server %s for RPC method %s: %s", this.currentServer, method, (String) errorObj));
+				LOGGER.debug(String.format("Unexpected error message from ElectrumX server %s for RPC method %s: %s", connection.server, method, (String) errorObj));
 				// Try another server
 				return null;
 			}
 
 			if (!(errorObj instanceof JSONObject)) {
-				LOGGER.debug(String.format("Unexpected error response from ElectrumX server %s for RPC method %s", this.currentServer, method));
+				LOGGER.debug(String.format("Unexpected error response from ElectrumX server %s for RPC method %s", connection.server, method));
 				// Try another server
 				return null;
 			}
@@ -819,7 +1182,7 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 			Object messageObj = errorJson.get("message");
 
 			if (!(messageObj instanceof String)) {
-				LOGGER.debug(String.format("Missing/invalid message in error response from ElectrumX server %s for RPC method %s", this.currentServer, method));
+				LOGGER.debug(String.format("Missing/invalid message in error response from ElectrumX server %s for RPC method %s", connection.server, method));
 				// Try another server
 				return null;
 			}
@@ -833,17 +1196,63 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 			if (messageMatcher.find())
 				try {
 					int daemonErrorCode = Integer.parseInt(messageMatcher.group(1));
-					throw new ForeignBlockchainException.NetworkException(daemonErrorCode, message, this.currentServer);
+					throw new ForeignBlockchainException.NetworkException(daemonErrorCode, message, connection.server);
 				} catch (NumberFormatException e) {
 					// We couldn't parse the error code integer? Fall-through to generic exception...
 				}
 
-			throw new ForeignBlockchainException.NetworkException(message, this.currentServer);
+			throw new ForeignBlockchainException.NetworkException(message, connection.server);
 		}
 
 		return responseJson.get("result");
 	}
 
+	// Health probes
+
+	private void startProbing() {
+		if (this.isProbing.compareAndSet(false, true)) {
+			this.probeExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("ElectrumX-probe-" + this.netId));
+			this.probeExecutor.scheduleWithFixedDelay(this::probeServers, PROBE_INTERVAL, PROBE_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Measures response times of a few servers we've not heard from recently, using separate connections
+	 * so current connection isn't disturbed.
+	 * <p>
+	 * Called periodically in background once this instance is in use.
+	 */
+	public void probeServers() {
+		List<Server> candidates = new ArrayList<>();
+		synchronized (this.serverLock) {
+			for (ChainableServer server : this.servers)
+				if (server instanceof Server && !server.equals(this.currentServer) && !this.uselessServers.contains(server))
+					candidates.add((Server) server);
+		}
+
+		// Stalest first
+		candidates.sort(Comparator.comparingLong(Server::getLastContactTimestamp));
+
+		for (Server server : candidates.subList(0, Math.min(PROBE_BATCH_SIZE, candidates.size()))) {
+			// Connecting records response times, or failure
+			Connection connection = this.connect(server, false, PROBE_READ_TIMEOUT);
+			if (connection != null)
+				this.closeConnection(connection);
+
+			LOGGER.trace(() -> String.format("Probed %s: score %.0f", server, server.getScore()));
+		}
+	}
+
+	// Connection management
+
+	private void closeConnection(Connection connection) {
+		try {
+			connection.socket.close();
+		} catch (IOException e) {
+			// We did try...
+		}
+	}
+
 	/**
 	 * Closes connection to <tt>server</tt> if it is currently connected server.
 	 * @param server
@@ -853,15 +1262,10 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 			if (this.currentServer == null || !this.currentServer.equals(server))
 				return;
 
-			if (this.socket != null && !this.socket.isClosed())
-				try {
-					this.socket.close();
-				} catch (IOException e) {
-					// We did try...
-				}
+			if (this.connection != null)
+				this.closeConnection(this.connection);
 
-			this.socket = null;
-			this.scanner = null;
+			this.connection = null;
 			this.currentServer = null;
 		}
 	}
@@ -873,6 +1277,11 @@ public class ElectrumX extends BitcoinyBlockchainProvider {
 		}
 	}
 
+	/** Enables or disables hedged requests, overriding setting. */
+	public void setHedgingEnabled(boolean isHedgingEnabled) {
+		this.isHedgingEnabled = isHedgingEnabled;
+	}
+
 	@Override
 	public Set<ChainableServer> getServers() {
 		LOGGER.info("getting servers");
@@ -0,0 +1,382 @@
+package org.qortal.crosschain;
+
+import com.google.common.io.CountingInputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.settings.Settings;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * Size-bounded cache of confirmed foreign blockchain data, persisted to disk so it survives restarts.
+ * <p>
+ * Block headers (by height) and transactions (by hash) are only cached once they're at least
+ * {@link #REORG_SAFETY_DEPTH} blocks deep, so they're very unlikely to change. If a cached header
+ * is ever found to differ from one freshly fetched, a deeper reorg has happened: cached headers from
+ * that height, and all cached transactions, are dropped.
+ * <p>
+ * There's one cache per foreign blockchain network, shared by everything using that network.
+ */
+public class ForeignBlockchainCache {
+
+	private static final Logger LOGGER = LogManager.getLogger(ForeignBlockchainCache.class);
+
+	/** Number of blocks below tip before headers and transactions are considered safe from reorgs, and so cacheable */
+	public static final int REORG_SAFETY_DEPTH = 10;
+	/** Maximum number of block headers cached, per foreign blockchain network */
+	private static final int MAX_HEADERS = 10_000;
+	/** Minimum interval between saves to disk, unless forced. 5 mins in ms. */
+	private static final long SAVE_INTERVAL = 5 * 60 * 1000L;
+
+	private static final int FILE_VERSION = 1;
+	/** Sanity limits when loading, so a corrupt file can't cause huge allocations */
+	private static final int MAX_HEADER_LENGTH = 64 * 1024; // bytes, allowing for AuxPoW headers
+	private static final int MAX_STRING_LENGTH = 1024 * 1024; // bytes
+	private static final int MAX_TRANSACTIONS = 1_000_000;
+	private static final int MAX_INPUTS_OR_OUTPUTS = 100_000;
+
+	private static final Map<String, ForeignBlockchainCache> caches = new HashMap<>();
+
+	private final String netId;
+	private final Path path;
+	private final int maxTransactions;
+
+	private final TreeMap<Integer, byte[]> headersByHeight = new TreeMap<>();
+	private final Map<String, BitcoinyTransaction> transactionsByHash;
+
+	/** Highest chain tip height seen, or 0 if unknown */
+	private int tipHeight = 0;
+	private boolean isDirty = false;
+	private long lastSaveTimestamp = System.currentTimeMillis();
+
+	public ForeignBlockchainCache(String netId, Path path, int maxTransactions) {
+		this.netId = netId;
+		this.path = path;
+		this.maxTransactions = maxTransactions;
+
+		// Least recently used transactions are evicted first
+		this.transactionsByHash = new LinkedHashMap<>(16, 0.75F, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, BitcoinyTransaction> eldest) {
+				return size() > ForeignBlockchainCache.this.maxTransactions;
+			}
+		};
+
+		this.load();
+	}
+
+	/** Returns shared cache for foreign blockchain network, loading from disk if needed. */
+	public static ForeignBlockchainCache getInstance(String netId) {
+		synchronized (caches) {
+			return caches.computeIfAbsent(netId, key -> {
+				Path path = Paths.get(Settings.getInstance().getForeignCachePath(), key + ".dat");
+				return new ForeignBlockchainCache(key, path, Settings.getInstance().getForeignCacheMaxTransactions());
+			});
+		}
+	}
+
+	/** Saves all shared caches with unsaved changes, e.g. at shutdown. */
+	public static void saveAll() {
+		List<ForeignBlockchainCache> cachesToSave;
+		synchronized (caches) {
+			cachesToSave = new ArrayList<>(caches.values());
+		}
+
+		for (ForeignBlockchainCache cache : cachesToSave)
+			cache.save(true);
+	}
+
+	/** Records latest chain tip height, which decides what is deep enough to cache. */
+	public synchronized void setTipHeight(int height) {
+		if (height > this.tipHeight)
+			this.tipHeight = height;
+	}
+
+	private boolean isSafeFromReorg(int height) {
+		return this.tipHeight > 0 && height <= this.tipHeight - REORG_SAFETY_DEPTH;
+	}
+
+	// Block headers
+
+	/**
+	 * Returns cached block headers starting from <tt>startHeight</tt>, stopping at first height not in cache.
+	 * <p>
+	 * Returned list may be shorter than <tt>count</tt>, or empty.
+	 */
+	public synchronized List<byte[]> getHeaders(int startHeight, int count) {
+		List<byte[]> headers = new ArrayList<>();
+
+		for (int height = startHeight; height < startHeight + count; ++height) {
+			byte[] header = this.headersByHeight.get(height);
+			if (header == null)
+				break;
+
+			headers.add(header);
+		}
+
+		return headers;
+	}
+
+	/**
+	 * Caches any headers, starting from <tt>startHeight</tt>, that are deep enough.
+	 *
+	 * @return false if a header differs from that already cached, in which case cache has been invalidated from that height
+	 */
+	public synchronized boolean putHeaders(int startHeight, List<byte[]> headers) {
+		for (int i = 0; i < headers.size(); ++i) {
+			int height = startHeight + i;
+			byte[] header = headers.get(i);
+
+			byte[] cachedHeader = this.headersByHeight.get(height);
+			if (cachedHeader != null) {
+				if (!Arrays.equals(cachedHeader, header)) {
+					this.invalidateFrom(height);
+					return false;
+				}
+
+				continue;
+			}
+
+			if (!this.isSafeFromReorg(height))
+				// Any later headers are even less safe
+				break;
+
+			this.headersByHeight.put(height, header);
+			this.isDirty = true;
+		}
+
+		// Keep most recent headers, which are more likely to be needed
+		while (this.headersByHeight.size() > MAX_HEADERS)
+			this.headersByHeight.pollFirstEntry();
+
+		this.save(false);
+		return true;
+	}
+
+	// Transactions
+
+	/** Returns cached transaction, or null if not cached. */
+	public synchronized BitcoinyTransaction getTransaction(String txHash) {
+		return this.transactionsByHash.get(txHash);
+	}
+
+	/** Caches transaction if it has enough confirmations. */
+	public synchronized void putTransaction(BitcoinyTransaction transaction, int confirmations) {
+		if (this.maxTransactions <= 0 || confirmations < REORG_SAFETY_DEPTH)
+			return;
+
+		if (this.transactionsByHash.putIfAbsent(transaction.txHash, transaction) != null)
+			return;
+
+		this.isDirty = true;
+		this.save(false);
+	}
+
+	private void invalidateFrom(int height) {
+		LOGGER.info("{} reorg detected at height {} - invalidating cached headers and transactions", this.netId, height);
+
+		this.headersByHeight.tailMap(height, true).clear();
+		// We don't know which blocks cached transactions were in, so drop them all
+		this.transactionsByHash.clear();
+		this.isDirty = true;
+	}
+
+	// Persistence
+
+	/** Saves cache to disk if there are unsaved changes, and either it's been a while since last save, or <tt>force</tt> is true. */
+	public synchronized void save(boolean force) {
+		if (!this.isDirty)
+			return;
+
+		long now = System.currentTimeMillis();
+		if (!force && now - this.lastSaveTimestamp < SAVE_INTERVAL)
+			return;
+
+		this.lastSaveTimestamp = now;
+
+		try {
+			Files.createDirectories(this.path.toAbsolutePath().getParent());
+
+			// Write to temporary file first, so a crash doesn't leave a truncated cache
+			Path tempPath = Paths.get(this.path + ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+				this.write(out);
+			}
+
+			Files.move(tempPath, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			this.isDirty = false;
+
+			LOGGER.debug("Saved {} cache with {} headers and {} transactions", this.netId, this.headersByHeight.size(), this.transactionsByHash.size());
+		} catch (IOException e) {
+			LOGGER.warn("Unable to save {} cache: {}", this.netId, e.getMessage());
+		}
+	}
+
+	private void load() {
+		if (!Files.exists(this.path))
+			return;
+
+		try (CountingInputStream countingIn = new CountingInputStream(new BufferedInputStream(Files.newInputStream(this.path)));
+				DataInputStream in = new DataInputStream(countingIn)) {
+			final long fileSize = Files.size(this.path);
+			this.read(in, () -> fileSize - countingIn.getCount());
+
+			LOGGER.debug("Loaded {} cache with {} headers and {} transactions", this.netId, this.headersByHeight.size(), this.transactionsByHash.size());
+		} catch (IOException | RuntimeException e) {
+			// Cache is only an optimization, so start afresh
+			LOGGER.info("Ignoring unreadable {} cache: {}", this.netId, e.getMessage());
+
+			this.headersByHeight.clear();
+			this.transactionsByHash.clear();
+			this.tipHeight = 0;
+		}
+	}
+
+	private void write(DataOutputStream out) throws IOException {
+		out.writeInt(FILE_VERSION);
+		writeString(out, this.netId);
+		out.writeInt(this.tipHeight);
+
+		out.writeInt(this.headersByHeight.size());
+		for (Map.Entry<Integer, byte[]> entry : this.headersByHeight.entrySet()) {
+			out.writeInt(entry.getKey());
+			out.writeInt(entry.getValue().length);
+			out.write(entry.getValue());
+		}
+
+		// Least recently used first, so LRU order is restored on load
+		out.writeInt(this.transactionsByHash.size());
+		for (BitcoinyTransaction transaction : this.transactionsByHash.values()) {
+			writeString(out, transaction.txHash);
+			out.writeInt(transaction.size);
+			out.writeInt(transaction.locktime);
+
+			out.writeBoolean(transaction.timestamp != null);
+			if (transaction.timestamp != null)
+				out.writeInt(transaction.timestamp);
+
+			out.writeInt(transaction.inputs.size());
+			for (BitcoinyTransaction.Input input : transaction.inputs) {
+				writeString(out, input.scriptSig);
+				out.writeInt(input.sequence);
+				writeString(out, input.outputTxHash);
+				out.writeInt(input.outputVout);
+			}
+
+			out.writeInt(transaction.outputs.size());
+			for (BitcoinyTransaction.Output output : transaction.outputs) {
+				writeString(out, output.scriptPubKey);
+				out.writeLong(output.value);
+
+				out.writeInt(output.addresses != null ? output.addresses.size() : -1);
+				if (output.addresses != null)
+					for (String address : output.addresses)
+						writeString(out, address);
+			}
+		}
+	}
+
+	/** Reads cache, checking lengths against sanity limits, and <tt>remainingBytes</tt> in file, before allocating. */
+	private void read(DataInputStream in, LongSupplier remainingBytes) throws IOException {
+		int version = in.readInt();
+		if (version != FILE_VERSION)
+			throw new IOException(String.format("unsupported version %d", version));
+
+		String fileNetId = readString(in, remainingBytes);
+		if (!this.netId.equals(fileNetId))
+			throw new IOException(String.format("cache is for %s", fileNetId));
+
+		this.tipHeight = in.readInt();
+
+		int headerCount = readLength(in, MAX_HEADERS, remainingBytes);
+		for (int i = 0; i < headerCount; ++i) {
+			int height = in.readInt();
+			byte[] header = new byte[readLength(in, MAX_HEADER_LENGTH, remainingBytes)];
+			in.readFully(header);
+
+			this.headersByHeight.put(height, header);
+		}
+
+		int transactionCount = readLength(in, MAX_TRANSACTIONS, remainingBytes);
+		for (int i = 0; i < transactionCount; ++i) {
+			String txHash = readString(in, remainingBytes);
+			int size = in.readInt();
+			int locktime = in.readInt();
+			Integer timestamp = in.readBoolean() ? in.readInt() : null;
+
+			int inputCount = readLength(in, MAX_INPUTS_OR_OUTPUTS, remainingBytes);
+			List<BitcoinyTransaction.Input> inputs = new ArrayList<>(inputCount);
+			for (int j = 0; j < inputCount; ++j) {
+				String scriptSig = readString(in, remainingBytes);
+				int sequence = in.readInt();
+				String outputTxHash = readString(in, remainingBytes);
+				int outputVout = in.readInt();
+
+				inputs.add(new BitcoinyTransaction.Input(scriptSig, sequence, outputTxHash, outputVout));
+			}
+
+			int outputCount = readLength(in, MAX_INPUTS_OR_OUTPUTS, remainingBytes);
+			List<BitcoinyTransaction.Output> outputs = new ArrayList<>(outputCount);
+			for (int j = 0; j < outputCount; ++j) {
+				String scriptPubKey = readString(in, remainingBytes);
+				long value = in.readLong();
+
+				int addressCount = in.readInt();
+				List<String> addresses = null;
+				if (addressCount != -1) {
+					checkLength(addressCount, MAX_INPUTS_OR_OUTPUTS, remainingBytes);
+					addresses = new ArrayList<>(addressCount);
+					for (int k = 0; k < addressCount; ++k)
+						addresses.add(readString(in, remainingBytes));
+				}
+
+				outputs.add(new BitcoinyTransaction.Output(scriptPubKey, value, addresses));
+			}
+
+			this.transactionsByHash.put(txHash, new BitcoinyTransaction(txHash, size, locktime, timestamp, inputs, outputs));
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		if (string == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in, LongSupplier remainingBytes) throws IOException {
+		int length = in.readInt();
+		if (length == -1)
+			return null;
+
+		byte[] bytes = new byte[checkLength(length, MAX_STRING_LENGTH, remainingBytes)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int readLength(DataInputStream in, int maxLength, LongSupplier remainingBytes) throws IOException {
+		return checkLength(in.readInt(), maxLength, remainingBytes);
+	}
+
+	/** Returns <tt>length</tt> if it's sane, i.e. not negative, not above <tt>maxLength</tt>, and not more than rest of file. */
+	private static int checkLength(int length, int maxLength, LongSupplier remainingBytes) throws IOException {
+		if (length < 0 || length > maxLength || length > remainingBytes.getAsLong())
+			throw new IOException(String.format("invalid length %d", length));
+
+		return length;
+	}
+
+}
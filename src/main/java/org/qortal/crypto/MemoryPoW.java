@@ -17,8 +17,21 @@ public class MemoryPoW {
 	 * @throws TimeoutException
 	 */
 	public static Integer compute2(byte[] data, int workBufferLength, long difficulty) {
+		return MemoryPoW.compute2(data, null, workBufferLength, difficulty);
+	}
+
+	/**
+	 * Compute a MemoryPoW nonce, using caller's work buffer
+	 *
+	 * @param data
+	 * @param workBuffer buffer of <tt>workBufferLength / 8</tt> longs to reuse,<br>or null to allocate a new one
+	 * @param workBufferLength
+	 * @param difficulty
+	 * @return
+	 */
+	public static Integer compute2(byte[] data, long[] workBuffer, int workBufferLength, long difficulty) {
 		try {
-			return MemoryPoW.compute2(data, workBufferLength, difficulty, null);
+			return MemoryPoW.compute2(data, workBuffer, workBufferLength, difficulty, null);
 
 		} catch (TimeoutException e) {
 			// This won't happen, because above timeout is null
@@ -37,6 +50,21 @@ public class MemoryPoW {
 	 * @throws TimeoutException
 	 */
 	public static Integer compute2(byte[] data, int workBufferLength, long difficulty, Long timeout) throws TimeoutException {
+		return MemoryPoW.compute2(data, null, workBufferLength, difficulty, timeout);
+	}
+
+	/**
+	 * Compute a MemoryPoW nonce, using caller's work buffer, with optional timeout
+	 *
+	 * @param data
+	 * @param workBuffer buffer of <tt>workBufferLength / 8</tt> longs to reuse,<br>or null to allocate a new one
+	 * @param workBufferLength
+	 * @param difficulty
+	 * @param timeout maximum number of milliseconds to compute for before giving up,<br>or null if no timeout
+	 * @return
+	 * @throws TimeoutException
+	 */
+	public static Integer compute2(byte[] data, long[] workBuffer, int workBufferLength, long difficulty, Long timeout) throws TimeoutException {
 		long startTime = NTP.getTime();
 
 		// Hash data with SHA256
@@ -51,7 +79,10 @@ public class MemoryPoW {
 		byteBuffer = null;
 
 		int longBufferLength = workBufferLength / 8;
-		long[] workBuffer = new long[longBufferLength];
+
+		if (workBuffer == null)
+			workBuffer = new long[longBufferLength];
+
 		long[] state = new long[4];
 
 		long seed = 8682522807148012L;
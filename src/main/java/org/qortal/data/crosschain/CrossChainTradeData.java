@@ -105,6 +105,37 @@ public class CrossChainTradeData {
 	public CrossChainTradeData() {
 	}
 
+	/** Shallow copy, e.g. so presence info can be added to shared trade data. */
+	public CrossChainTradeData(CrossChainTradeData other) {
+		this.qortalAtAddress = other.qortalAtAddress;
+		this.qortalCreator = other.qortalCreator;
+		this.qortalCreatorTradeAddress = other.qortalCreatorTradeAddress;
+		this.creatorBitcoinPKH = other.creatorBitcoinPKH;
+		this.creatorForeignPKH = other.creatorForeignPKH;
+		this.creationTimestamp = other.creationTimestamp;
+		this.tradeTimeout = other.tradeTimeout;
+		this.qortBalance = other.qortBalance;
+		this.hashOfSecretA = other.hashOfSecretA;
+		this.hashOfSecretB = other.hashOfSecretB;
+		this.qortAmount = other.qortAmount;
+		this.qortalPartnerAddress = other.qortalPartnerAddress;
+		this.tradeModeTimestamp = other.tradeModeTimestamp;
+		this.refundTimeout = other.refundTimeout;
+		this.tradeRefundHeight = other.tradeRefundHeight;
+		this.expectedBitcoin = other.expectedBitcoin;
+		this.expectedForeignAmount = other.expectedForeignAmount;
+		this.mode = other.mode;
+		this.lockTimeA = other.lockTimeA;
+		this.lockTimeB = other.lockTimeB;
+		this.partnerBitcoinPKH = other.partnerBitcoinPKH;
+		this.partnerForeignPKH = other.partnerForeignPKH;
+		this.qortalPartnerReceivingAddress = other.qortalPartnerReceivingAddress;
+		this.foreignBlockchain = other.foreignBlockchain;
+		this.acctName = other.acctName;
+		this.creatorPresenceExpiry = other.creatorPresenceExpiry;
+		this.partnerPresenceExpiry = other.partnerPresenceExpiry;
+	}
+
 	public void duplicateDeprecated() {
 		this.creatorBitcoinPKH = this.creatorForeignPKH;
 		this.expectedBitcoin = this.expectedForeignAmount;
@@ -0,0 +1,218 @@
+package org.qortal.data.market;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.qortal.market.CandleInterval;
+import org.qortal.utils.Amounts;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+// All properties to be converted to JSON via JAXB
+@XmlAccessorType(XmlAccessType.FIELD)
+public class CandleData {
+
+	// Properties
+
+	@XmlTransient
+	@Schema(hidden = true)
+	private String market;
+
+	@XmlTransient
+	@Schema(hidden = true)
+	private CandleInterval interval;
+
+	@Schema(description = "start of time bucket (milliseconds since epoch)")
+	private long timestamp;
+
+	@Schema(description = "price of first trade in bucket, in quote units per base unit")
+	@XmlJavaTypeAdapter(value = org.qortal.api.AmountTypeAdapter.class)
+	private long open;
+
+	@XmlJavaTypeAdapter(value = org.qortal.api.AmountTypeAdapter.class)
+	private long high;
+
+	@XmlJavaTypeAdapter(value = org.qortal.api.AmountTypeAdapter.class)
+	private long low;
+
+	@Schema(description = "price of last trade in bucket, in quote units per base unit")
+	@XmlJavaTypeAdapter(value = org.qortal.api.AmountTypeAdapter.class)
+	private long close;
+
+	@Schema(description = "total amount of base asset traded")
+	@XmlJavaTypeAdapter(value = org.qortal.api.AmountTypeAdapter.class)
+	private long volume;
+
+	@Schema(description = "total amount of quote asset traded")
+	@XmlJavaTypeAdapter(value = org.qortal.api.AmountTypeAdapter.class)
+	private long quoteVolume;
+
+	private int tradeCount;
+
+	// First and last trades, in trade order, so trades can be merged in any order
+
+	@XmlTransient
+	@Schema(hidden = true)
+	private long firstTradeTimestamp;
+
+	@XmlTransient
+	@Schema(hidden = true)
+	private byte[] firstTradeKey;
+
+	@XmlTransient
+	@Schema(hidden = true)
+	private long lastTradeTimestamp;
+
+	@XmlTransient
+	@Schema(hidden = true)
+	private byte[] lastTradeKey;
+
+	// Constructors
+
+	// necessary for JAXB serialization
+	protected CandleData() {
+	}
+
+	public CandleData(String market, CandleInterval interval, long timestamp, long open, long high, long low, long close,
+			long volume, long quoteVolume, int tradeCount,
+			long firstTradeTimestamp, byte[] firstTradeKey, long lastTradeTimestamp, byte[] lastTradeKey) {
+		this.market = market;
+		this.interval = interval;
+		this.timestamp = timestamp;
+		this.open = open;
+		this.high = high;
+		this.low = low;
+		this.close = close;
+		this.volume = volume;
+		this.quoteVolume = quoteVolume;
+		this.tradeCount = tradeCount;
+		this.firstTradeTimestamp = firstTradeTimestamp;
+		this.firstTradeKey = firstTradeKey;
+		this.lastTradeTimestamp = lastTradeTimestamp;
+		this.lastTradeKey = lastTradeKey;
+	}
+
+	/** Returns new candle for bucket containing <tt>tradeData</tt>, holding just that trade. */
+	public static CandleData fromTrade(CandleInterval interval, MarketTradeData tradeData) {
+		long price = priceOf(tradeData);
+
+		return new CandleData(tradeData.getMarket(), interval, interval.getBucketStart(tradeData.getTimestamp()),
+				price, price, price, price, tradeData.getBaseAmount(), tradeData.getQuoteAmount(), 1,
+				tradeData.getTimestamp(), tradeData.getTradeKey(), tradeData.getTimestamp(), tradeData.getTradeKey());
+	}
+
+	// Getters/setters
+
+	public String getMarket() {
+		return this.market;
+	}
+
+	public CandleInterval getInterval() {
+		return this.interval;
+	}
+
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	public long getOpen() {
+		return this.open;
+	}
+
+	public long getHigh() {
+		return this.high;
+	}
+
+	public long getLow() {
+		return this.low;
+	}
+
+	public long getClose() {
+		return this.close;
+	}
+
+	public long getVolume() {
+		return this.volume;
+	}
+
+	public long getQuoteVolume() {
+		return this.quoteVolume;
+	}
+
+	public int getTradeCount() {
+		return this.tradeCount;
+	}
+
+	public long getFirstTradeTimestamp() {
+		return this.firstTradeTimestamp;
+	}
+
+	public byte[] getFirstTradeKey() {
+		return this.firstTradeKey;
+	}
+
+	public long getLastTradeTimestamp() {
+		return this.lastTradeTimestamp;
+	}
+
+	public byte[] getLastTradeKey() {
+		return this.lastTradeKey;
+	}
+
+	// Helpers
+
+	/**
+	 * Adds trade, from same bucket, into this candle.
+	 * <p>
+	 * Trades can be merged in any order, as open and close prices are only replaced by trades
+	 * that come before the first, or after the last, trade so far.
+	 * See {@link MarketTradeData#compareTradeOrder(long, byte[], long, byte[])}.
+	 */
+	public void merge(MarketTradeData tradeData) {
+		long price = priceOf(tradeData);
+
+		this.high = Math.max(this.high, price);
+		this.low = Math.min(this.low, price);
+
+		if (MarketTradeData.compareTradeOrder(tradeData.getTimestamp(), tradeData.getTradeKey(), this.firstTradeTimestamp, this.firstTradeKey) < 0) {
+			this.open = price;
+			this.firstTradeTimestamp = tradeData.getTimestamp();
+			this.firstTradeKey = tradeData.getTradeKey();
+		}
+
+		if (MarketTradeData.compareTradeOrder(tradeData.getTimestamp(), tradeData.getTradeKey(), this.lastTradeTimestamp, this.lastTradeKey) > 0) {
+			this.close = price;
+			this.lastTradeTimestamp = tradeData.getTimestamp();
+			this.lastTradeKey = tradeData.getTradeKey();
+		}
+
+		this.volume += tradeData.getBaseAmount();
+		this.quoteVolume += tradeData.getQuoteAmount();
+		this.tradeCount++;
+	}
+
+	/** Returns copy of this candle with base and quote swapped, i.e. with prices inverted. */
+	public CandleData inverted() {
+		return new CandleData(this.market, this.interval, this.timestamp,
+				invertPrice(this.open), invertPrice(this.low), invertPrice(this.high), invertPrice(this.close),
+				this.quoteVolume, this.volume, this.tradeCount,
+				this.firstTradeTimestamp, this.firstTradeKey, this.lastTradeTimestamp, this.lastTradeKey);
+	}
+
+	/** Returns trade's price, in quote units per base unit, scaled by {@link Amounts#MULTIPLIER}. */
+	public static long priceOf(MarketTradeData tradeData) {
+		if (tradeData.getBaseAmount() == 0)
+			return 0;
+
+		return Amounts.scaledDivide(tradeData.getQuoteAmount(), tradeData.getBaseAmount());
+	}
+
+	private static long invertPrice(long price) {
+		if (price == 0)
+			return 0;
+
+		return Amounts.scaledDivide(Amounts.MULTIPLIER, price);
+	}
+
+}
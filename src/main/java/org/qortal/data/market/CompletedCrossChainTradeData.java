@@ -0,0 +1,53 @@
+package org.qortal.data.market;
+
+/** A cross-chain trade AT that reached REDEEMED mode, i.e. a successfully completed trade. */
+public class CompletedCrossChainTradeData {
+
+	// Properties
+	private final String atAddress;
+	private final String foreignBlockchain;
+	/** Height of block where AT was redeemed */
+	private final int height;
+	/** Timestamp of block where AT was redeemed */
+	private final long timestamp;
+	private final long qortAmount;
+	private final long foreignAmount;
+
+	// Constructors
+
+	public CompletedCrossChainTradeData(String atAddress, String foreignBlockchain, int height, long timestamp, long qortAmount, long foreignAmount) {
+		this.atAddress = atAddress;
+		this.foreignBlockchain = foreignBlockchain;
+		this.height = height;
+		this.timestamp = timestamp;
+		this.qortAmount = qortAmount;
+		this.foreignAmount = foreignAmount;
+	}
+
+	// Getters/setters
+
+	public String getAtAddress() {
+		return this.atAddress;
+	}
+
+	public String getForeignBlockchain() {
+		return this.foreignBlockchain;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	public long getQortAmount() {
+		return this.qortAmount;
+	}
+
+	public long getForeignAmount() {
+		return this.foreignAmount;
+	}
+
+}
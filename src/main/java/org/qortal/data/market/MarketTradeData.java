@@ -0,0 +1,67 @@
+package org.qortal.data.market;
+
+import com.google.common.primitives.UnsignedBytes;
+
+/**
+ * A completed trade, as seen by a market: an amount of market's base asset
+ * exchanged for an amount of its quote asset.
+ */
+public class MarketTradeData {
+
+	// Properties
+	private final String market;
+	private final long timestamp;
+	/** Orders trades with same timestamp: initiating then target order IDs for asset trades, AT address for cross-chain trades */
+	private final byte[] tradeKey;
+	private final long baseAmount;
+	private final long quoteAmount;
+
+	// Constructors
+
+	public MarketTradeData(String market, long timestamp, byte[] tradeKey, long baseAmount, long quoteAmount) {
+		this.market = market;
+		this.timestamp = timestamp;
+		this.tradeKey = tradeKey;
+		this.baseAmount = baseAmount;
+		this.quoteAmount = quoteAmount;
+	}
+
+	// Getters/setters
+
+	public String getMarket() {
+		return this.market;
+	}
+
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	public byte[] getTradeKey() {
+		return this.tradeKey;
+	}
+
+	public long getBaseAmount() {
+		return this.baseAmount;
+	}
+
+	public long getQuoteAmount() {
+		return this.quoteAmount;
+	}
+
+	// Helpers
+
+	/**
+	 * Compares trades by timestamp, then trade key, same as repository orders trades when fetching them.
+	 * <p>
+	 * Trades aren't necessarily processed in this order, e.g. an order matching several others
+	 * produces trades in price order.
+	 */
+	public static int compareTradeOrder(long timestamp, byte[] tradeKey, long otherTimestamp, byte[] otherTradeKey) {
+		int result = Long.compare(timestamp, otherTimestamp);
+		if (result != 0)
+			return result;
+
+		return UnsignedBytes.lexicographicalComparator().compare(tradeKey, otherTradeKey);
+	}
+
+}
@@ -16,13 +16,27 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ResourceList {
 
     private static final Logger LOGGER = LogManager.getLogger(ResourceList.class);
 
     private String name;
-    private List<String> list = Collections.synchronizedList(new ArrayList<>());
+
+    /** Entries in insertion order, as saved to file. Only accessed while holding lock on <tt>this</tt>. */
+    private final List<String> entries = new ArrayList<>();
+
+    /** Exact entries, for case-sensitive lookups without locking */
+    private final Set<String> entrySet = ConcurrentHashMap.newKeySet();
+
+    /** Case-folded entries, mapped to number of entries that normalise to each, for case-insensitive lookups */
+    private final Map<String, Integer> normalisedEntries = new ConcurrentHashMap<>();
+
+    /** Immutable copy of entries for readers, rebuilt lazily after modification */
+    private volatile List<String> snapshot = Collections.emptyList();
 
     /**
      * ResourceList
@@ -50,11 +64,12 @@ public class ResourceList {
         if (this.name == null) {
             throw new IllegalStateException("Can't save list with missing name");
         }
-        String jsonString = ResourceList.listToJSONString(this.list);
+        List<String> list = this.getList();
+        String jsonString = ResourceList.listToJSONString(list);
         Path filePath = this.getFilePath();
 
         // Don't create list if it's empty
-        if (this.list != null && this.list.isEmpty()) {
+        if (list.isEmpty()) {
             if (filePath != null && Files.exists(filePath)) {
                 // Delete empty list
                 Files.delete(filePath);
@@ -83,7 +98,7 @@ public class ResourceList {
 
         try {
             String jsonString = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
-            this.list = ResourceList.listFromJSONString(jsonString);
+            this.replaceAll(ResourceList.listFromJSONString(jsonString));
         } catch (IOException e) {
             throw new IOException(String.format("Couldn't read contents from file %s", path.toString()));
         }
@@ -103,42 +118,69 @@ public class ResourceList {
 
     /* List management */
 
-    public void add(String resource) {
-        if (resource == null || this.list == null) {
+    public synchronized void add(String resource) {
+        if (resource == null) {
             return;
         }
-        if (!this.contains(resource, true)) {
-            this.list.add(resource);
+        if (this.entrySet.add(resource)) {
+            this.entries.add(resource);
+            this.normalisedEntries.merge(normalise(resource), 1, Integer::sum);
+            this.snapshot = null;
         }
     }
 
-    public void remove(String resource) {
-        if (resource == null || this.list == null) {
+    public synchronized void remove(String resource) {
+        if (resource == null) {
             return;
         }
-        this.list.remove(resource);
+        if (this.entrySet.remove(resource)) {
+            this.entries.remove(resource);
+            this.normalisedEntries.computeIfPresent(normalise(resource), (key, count) -> count > 1 ? count - 1 : null);
+            this.snapshot = null;
+        }
     }
 
-    public void clear() {
-        if (this.list == null) {
-            return;
+    public synchronized void clear() {
+        this.entries.clear();
+        this.entrySet.clear();
+        this.normalisedEntries.clear();
+        this.snapshot = Collections.emptyList();
+    }
+
+    private synchronized void replaceAll(List<String> resources) {
+        this.clear();
+        for (String resource : resources) {
+            this.add(resource);
         }
-        this.list.clear();
     }
 
     public boolean contains(String resource, boolean caseSensitive) {
-        if (resource == null || this.list == null) {
+        if (resource == null) {
             return false;
         }
 
         if (caseSensitive) {
-            return this.list.contains(resource);
+            return this.entrySet.contains(resource);
         }
         else {
-            return this.list.stream().anyMatch(resource::equalsIgnoreCase);
+            return this.normalisedEntries.containsKey(normalise(resource));
         }
     }
 
+    /**
+     * Returns key that's equal for two strings exactly when {@link String#equalsIgnoreCase(String)} is true.
+     * <p>
+     * Folds each char separately, as equalsIgnoreCase does, because whole-string case mapping
+     * can change length (e.g. "ß" upper-cases to "SS") or differ for chars like dotless 'ı' and dotted 'İ'.
+     */
+    private static String normalise(String resource) {
+        char[] chars = resource.toCharArray();
+        for (int i = 0; i < chars.length; ++i)
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+
+        return new String(chars);
+    }
+
 
     /* Utils */
 
@@ -167,15 +209,34 @@ public class ResourceList {
     }
 
     public String getJSONString() {
-        return ResourceList.listToJSONString(this.list);
+        return ResourceList.listToJSONString(this.getList());
     }
 
     public String getName() {
         return this.name;
     }
 
+    /**
+     * Returns an unmodifiable snapshot of entries, in insertion order.
+     * <p>
+     * Snapshot is shared between readers until the list is next modified.
+     */
     public List<String> getList() {
-        return this.list;
+        List<String> list = this.snapshot;
+        if (list != null) {
+            return list;
+        }
+
+        synchronized (this) {
+            if (this.snapshot == null) {
+                this.snapshot = Collections.unmodifiableList(new ArrayList<>(this.entries));
+            }
+            return this.snapshot;
+        }
+    }
+
+    public int size() {
+        return this.entrySet.size();
     }
 
     public String toString() {
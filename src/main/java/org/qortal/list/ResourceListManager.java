@@ -8,20 +8,22 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ResourceListManager {
 
     private static final Logger LOGGER = LogManager.getLogger(ResourceListManager.class);
 
     private static ResourceListManager instance;
-    private List<ResourceList> lists = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, ResourceList> lists = new ConcurrentHashMap<>();
 
 
     public ResourceListManager() {
-        this.lists = this.fetchLists();
+        for (ResourceList list : this.fetchLists()) {
+            this.lists.put(list.getName(), list);
+        }
     }
 
     public static synchronized ResourceListManager getInstance() {
@@ -64,31 +66,40 @@ public class ResourceListManager {
     }
 
     private ResourceList getList(String listName) {
-        for (ResourceList list : this.lists) {
-            if (Objects.equals(list.getName(), listName)) {
-                return list;
-            }
+        if (listName == null) {
+            return null;
         }
 
-        // List doesn't exist in array yet, so create it
-        // This will load any existing data from the filesystem
-        try {
-            ResourceList list = new ResourceList(listName);
-            this.lists.add(list);
+        ResourceList list = this.lists.get(listName);
+        if (list != null) {
             return list;
-
-        } catch (IOException e) {
-            LOGGER.info("Unable to load or create list {}: {}", listName, e.getMessage());
-            return null;
         }
 
+        // List doesn't exist in map yet, so create it
+        // This will load any existing data from the filesystem
+        synchronized (this.lists) {
+            list = this.lists.get(listName);
+            if (list != null) {
+                return list;
+            }
+
+            try {
+                list = new ResourceList(listName);
+                this.lists.put(listName, list);
+                return list;
+
+            } catch (IOException e) {
+                LOGGER.info("Unable to load or create list {}: {}", listName, e.getMessage());
+                return null;
+            }
+        }
     }
 
     private List<ResourceList> getListsByPrefix(String listNamePrefix) {
         List<ResourceList> lists = new ArrayList<>();
 
-        for (ResourceList list : this.lists) {
-            if (list != null && list.getName() != null && list.getName().startsWith(listNamePrefix)) {
+        for (ResourceList list : this.lists.values()) {
+            if (list.getName() != null && list.getName().startsWith(listNamePrefix)) {
                 lists.add(list);
             }
         }
@@ -205,7 +216,7 @@ public class ResourceListManager {
         if (list == null) {
             return 0;
         }
-        return list.getList().size();
+        return list.size();
     }
 
 }
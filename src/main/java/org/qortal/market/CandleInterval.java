@@ -0,0 +1,30 @@
+package org.qortal.market;
+
+import java.util.Map;
+
+import static java.util.Arrays.stream;
+import static java.util.stream.Collectors.toMap;
+
+/** Time bucket sizes for trade candles. */
+public enum CandleInterval {
+	MINUTE(1, 60 * 1000L), HOUR(2, 60 * 60 * 1000L), DAY(3, 24 * 60 * 60 * 1000L);
+
+	public final int value;
+	/** Bucket length (ms) */
+	public final long duration;
+	private static final Map<Integer, CandleInterval> map = stream(CandleInterval.values()).collect(toMap(interval -> interval.value, interval -> interval));
+
+	CandleInterval(int value, long duration) {
+		this.value = value;
+		this.duration = duration;
+	}
+
+	public static CandleInterval valueOf(int value) {
+		return map.get(value);
+	}
+
+	/** Returns start of bucket containing <tt>timestamp</tt>. */
+	public long getBucketStart(long timestamp) {
+		return timestamp - Math.floorMod(timestamp, this.duration);
+	}
+}
@@ -0,0 +1,270 @@
+package org.qortal.market;
+
+import com.google.common.primitives.Bytes;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.crosschain.ACCT;
+import org.qortal.crosschain.AcctMode;
+import org.qortal.crosschain.SupportedBlockchain;
+import org.qortal.data.at.ATData;
+import org.qortal.data.at.ATStateData;
+import org.qortal.data.crosschain.CrossChainTradeData;
+import org.qortal.data.market.CandleData;
+import org.qortal.data.market.CompletedCrossChainTradeData;
+import org.qortal.data.market.MarketTradeData;
+import org.qortal.gui.SplashFrame;
+import org.qortal.repository.DataException;
+import org.qortal.repository.MarketRepository;
+import org.qortal.repository.Repository;
+import org.qortal.utils.ByteArray;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Maintains time-bucketed trade history (OHLCV candles) for asset and cross-chain markets.
+ * <p>
+ * Candles are updated as trades are processed during block processing.
+ * As open/close prices can't be "subtracted", orphaning a trade instead
+ * rebuilds the affected buckets from the trades that remain.
+ * <p>
+ * Asset markets are named "<tt>lowerAssetId/higherAssetId</tt>", with lower asset ID as base.
+ * Cross-chain markets are named after the foreign blockchain, with foreign coin as base and QORT as quote.
+ */
+public abstract class TradeHistory {
+
+	private static final Logger LOGGER = LogManager.getLogger(TradeHistory.class);
+
+	/** Maximum number of candles returned by API in one call */
+	public static final int MAX_CANDLES = 1000;
+
+	private TradeHistory() {
+	}
+
+	/** Returns number of candles to fetch for API <tt>limit</tt>, where null or 0 means the maximum. */
+	public static int getCandleLimit(Integer limit) {
+		if (limit == null || limit <= 0)
+			return MAX_CANDLES;
+
+		return Math.min(limit, MAX_CANDLES);
+	}
+
+	/** Returns market name for trades between assets, regardless of order. */
+	public static String getAssetMarket(long assetId, long otherAssetId) {
+		return Math.min(assetId, otherAssetId) + "/" + Math.max(assetId, otherAssetId);
+	}
+
+	/** Returns asset trade as seen by its market, i.e. with lower asset ID as base. */
+	public static MarketTradeData toMarketTrade(long haveAssetId, long wantAssetId, byte[] initiatingOrderId, byte[] targetOrderId,
+			long initiatorAmount, long targetAmount, long timestamp) {
+		String market = getAssetMarket(haveAssetId, wantAssetId);
+		byte[] tradeKey = Bytes.concat(initiatingOrderId, targetOrderId);
+
+		// Initiator gives 'have' asset, target gives 'want' asset
+		if (haveAssetId < wantAssetId)
+			return new MarketTradeData(market, timestamp, tradeKey, initiatorAmount, targetAmount);
+		else
+			return new MarketTradeData(market, timestamp, tradeKey, targetAmount, initiatorAmount);
+	}
+
+	// Asset trades
+
+	/** Merges newly processed asset trade into market's candles. */
+	public static void processAssetTrade(Repository repository, long haveAssetId, long wantAssetId, byte[] initiatingOrderId, byte[] targetOrderId,
+			long initiatorAmount, long targetAmount, long timestamp) throws DataException {
+		mergeTrade(repository, toMarketTrade(haveAssetId, wantAssetId, initiatingOrderId, targetOrderId, initiatorAmount, targetAmount, timestamp));
+	}
+
+	/** Rebuilds candles affected by asset trade, which must already be deleted from repository. */
+	public static void orphanAssetTrade(Repository repository, long haveAssetId, long wantAssetId, long timestamp) throws DataException {
+		long baseAssetId = Math.min(haveAssetId, wantAssetId);
+		long quoteAssetId = Math.max(haveAssetId, wantAssetId);
+		String market = getAssetMarket(haveAssetId, wantAssetId);
+
+		for (CandleInterval interval : CandleInterval.values()) {
+			long bucketStart = interval.getBucketStart(timestamp);
+
+			List<MarketTradeData> trades = repository.getMarketRepository().getAssetTrades(baseAssetId, quoteAssetId,
+					bucketStart, bucketStart + interval.duration);
+
+			rebuildBucket(repository, market, interval, bucketStart, trades);
+		}
+	}
+
+	// Cross-chain trades
+
+	/**
+	 * Records cross-chain trade if AT state, produced by block at <tt>height</tt>, shows trade AT has just redeemed.
+	 * <p>
+	 * Called for every AT state during block processing, so non-trade ATs are rejected as cheaply as possible.
+	 */
+	public static void processCrossChainTrade(Repository repository, ATData atData, ATStateData atStateData,
+			int height, long timestamp) throws DataException {
+		if (!atData.getIsFinished() || atStateData.getStateData() == null)
+			return;
+
+		ACCT acct = SupportedBlockchain.getAcctByCodeHash(atData.getCodeHash());
+		if (acct == null)
+			return;
+
+		if (!isRedeemed(acct, atStateData.getStateData()))
+			return;
+
+		MarketRepository marketRepository = repository.getMarketRepository();
+
+		// Only count each trade once
+		if (marketRepository.getCompletedCrossChainTrade(atData.getATAddress()) != null)
+			return;
+
+		CompletedCrossChainTradeData tradeData = toCompletedTrade(acct.populateTradeData(repository, atStateData), height, timestamp);
+		marketRepository.save(tradeData);
+
+		mergeTrade(repository, toMarketTrade(tradeData));
+	}
+
+	/** Removes cross-chain trades recorded at <tt>height</tt> and rebuilds affected candles. */
+	public static void orphanCrossChainTrades(Repository repository, int height) throws DataException {
+		MarketRepository marketRepository = repository.getMarketRepository();
+
+		List<CompletedCrossChainTradeData> tradesData = marketRepository.getCompletedCrossChainTradesAtHeight(height);
+		if (tradesData.isEmpty())
+			return;
+
+		for (CompletedCrossChainTradeData tradeData : tradesData)
+			marketRepository.delete(tradeData);
+
+		for (CompletedCrossChainTradeData tradeData : tradesData) {
+			String market = tradeData.getForeignBlockchain();
+
+			for (CandleInterval interval : CandleInterval.values()) {
+				long bucketStart = interval.getBucketStart(tradeData.getTimestamp());
+
+				List<MarketTradeData> trades = new ArrayList<>();
+				for (CompletedCrossChainTradeData remainingTrade : marketRepository.getCompletedCrossChainTrades(market, bucketStart, bucketStart + interval.duration))
+					trades.add(toMarketTrade(remainingTrade));
+
+				rebuildBucket(repository, market, interval, bucketStart, trades);
+			}
+		}
+	}
+
+	// Rebuilding
+
+	/**
+	 * Builds candles, and completed cross-chain trades, from existing trades if not already done.
+	 * <p>
+	 * Only needed once, after repository update introduces trade history.
+	 */
+	public static void buildIfNeeded(Repository repository) throws DataException {
+		MarketRepository marketRepository = repository.getMarketRepository();
+
+		if (marketRepository.isTradeHistoryBuilt())
+			return;
+
+		LOGGER.info("Building trade history - this can take a while...");
+		SplashFrame.getInstance().updateStatus("Building trade history - please wait...");
+
+		marketRepository.deleteAllCandles();
+		marketRepository.deleteAllCompletedCrossChainTrades();
+
+		List<MarketTradeData> trades = new ArrayList<>(marketRepository.getAllAssetTrades());
+
+		for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : SupportedBlockchain.getAcctMap().entrySet()) {
+			ACCT acct = acctInfo.getValue().get();
+
+			List<ATStateData> atStates = repository.getATRepository().getMatchingFinalATStates(acctInfo.getKey().value,
+					true, acct.getModeByteOffset(), (long) AcctMode.REDEEMED.value, null,
+					null, null, null);
+
+			if (atStates == null)
+				throw new DataException("Couldn't fetch completed cross-chain trades from repository");
+
+			for (ATStateData atState : atStates) {
+				long timestamp = repository.getBlockRepository().getTimestampFromHeight(atState.getHeight());
+				if (timestamp == 0) {
+					// Try the archive
+					timestamp = repository.getBlockArchiveRepository().getTimestampFromHeight(atState.getHeight());
+				}
+
+				CompletedCrossChainTradeData tradeData = toCompletedTrade(acct.populateTradeData(repository, atState), atState.getHeight(), timestamp);
+				marketRepository.save(tradeData);
+
+				trades.add(toMarketTrade(tradeData));
+			}
+		}
+
+		Map<String, CandleData> candlesByKey = new HashMap<>();
+		for (MarketTradeData trade : trades)
+			for (CandleInterval interval : CandleInterval.values()) {
+				String key = trade.getMarket() + ":" + interval.value + ":" + interval.getBucketStart(trade.getTimestamp());
+
+				CandleData candleData = candlesByKey.get(key);
+				if (candleData == null)
+					candlesByKey.put(key, CandleData.fromTrade(interval, trade));
+				else
+					candleData.merge(trade);
+			}
+
+		for (CandleData candleData : candlesByKey.values())
+			marketRepository.save(candleData);
+
+		marketRepository.setTradeHistoryBuilt(true);
+		repository.saveChanges();
+
+		LOGGER.info(String.format("Built trade history from %d trade%s", trades.size(), (trades.size() != 1 ? "s" : "")));
+	}
+
+	// Utilities
+
+	private static boolean isRedeemed(ACCT acct, byte[] stateData) {
+		int modeByteOffset = acct.getModeByteOffset();
+		if (stateData.length < modeByteOffset + Long.BYTES)
+			return false;
+
+		return ByteBuffer.wrap(stateData).getLong(modeByteOffset) == AcctMode.REDEEMED.value;
+	}
+
+	private static CompletedCrossChainTradeData toCompletedTrade(CrossChainTradeData crossChainTradeData, int height, long timestamp) {
+		return new CompletedCrossChainTradeData(crossChainTradeData.qortalAtAddress, crossChainTradeData.foreignBlockchain,
+				height, timestamp, crossChainTradeData.qortAmount, crossChainTradeData.expectedForeignAmount);
+	}
+
+	private static MarketTradeData toMarketTrade(CompletedCrossChainTradeData tradeData) {
+		return new MarketTradeData(tradeData.getForeignBlockchain(), tradeData.getTimestamp(), tradeData.getAtAddress().getBytes(StandardCharsets.UTF_8),
+				tradeData.getForeignAmount(), tradeData.getQortAmount());
+	}
+
+	private static void mergeTrade(Repository repository, MarketTradeData trade) throws DataException {
+		MarketRepository marketRepository = repository.getMarketRepository();
+
+		for (CandleInterval interval : CandleInterval.values()) {
+			CandleData candleData = marketRepository.getCandle(trade.getMarket(), interval, interval.getBucketStart(trade.getTimestamp()));
+
+			if (candleData == null)
+				candleData = CandleData.fromTrade(interval, trade);
+			else
+				candleData.merge(trade);
+
+			marketRepository.save(candleData);
+		}
+	}
+
+	private static void rebuildBucket(Repository repository, String market, CandleInterval interval, long bucketStart,
+			List<MarketTradeData> trades) throws DataException {
+		MarketRepository marketRepository = repository.getMarketRepository();
+
+		if (trades.isEmpty()) {
+			marketRepository.deleteCandle(market, interval, bucketStart);
+			return;
+		}
+
+		CandleData candleData = CandleData.fromTrade(interval, trades.get(0));
+		for (int i = 1; i < trades.size(); ++i)
+			candleData.merge(trades.get(i));
+
+		marketRepository.save(candleData);
+	}
+
+}
@@ -0,0 +1,25 @@
+package org.qortal.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Monotonically increasing count, cheap to update from many threads. */
+public class Counter {
+
+	private final LongAdder value = new LongAdder();
+
+	Counter() {
+	}
+
+	public void increment() {
+		this.value.increment();
+	}
+
+	public void add(long amount) {
+		this.value.add(amount);
+	}
+
+	public long get() {
+		return this.value.sum();
+	}
+
+}
@@ -0,0 +1,105 @@
+package org.qortal.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with power-of-two microsecond buckets.
+ * <p>
+ * Like HDR histograms, the bucket index is derived directly from the value's
+ * highest set bit, so recording is O(1) and lock-free. Upper bounds run from 1&micro;s
+ * up to 2<sup>{@value #MAX_EXPONENT}</sup>&micro;s (~67s), followed by an overflow bucket.
+ */
+public class Histogram {
+
+	static final int MAX_EXPONENT = 26;
+	static final int BUCKET_COUNT = MAX_EXPONENT + 2; // +1 for 2^0, +1 for overflow
+
+	private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sumNanos = new LongAdder();
+
+	Histogram() {
+		for (int i = 0; i < BUCKET_COUNT; ++i)
+			this.buckets[i] = new LongAdder();
+	}
+
+	/** Records duration in nanoseconds. */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+
+		this.buckets[bucketIndex(nanos / 1000L)].increment();
+		this.count.increment();
+		this.sumNanos.add(nanos);
+	}
+
+	/** Records time elapsed since <tt>startNanos</tt>, as returned by {@link System#nanoTime()}. */
+	public void recordSince(long startNanos) {
+		this.record(System.nanoTime() - startNanos);
+	}
+
+	/** Returns index of smallest bucket whose upper bound is &ge; <tt>micros</tt>. */
+	static int bucketIndex(long micros) {
+		if (micros <= 1)
+			return 0;
+
+		// ceil(log2(micros))
+		int exponent = 64 - Long.numberOfLeadingZeros(micros - 1);
+		return Math.min(exponent, BUCKET_COUNT - 1);
+	}
+
+	/** Upper bound of bucket, in microseconds, or Long.MAX_VALUE for overflow bucket. */
+	static long bucketUpperBound(int index) {
+		if (index > MAX_EXPONENT)
+			return Long.MAX_VALUE;
+
+		return 1L << index;
+	}
+
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	public long getSumNanos() {
+		return this.sumNanos.sum();
+	}
+
+	/** Returns (non-cumulative) per-bucket counts. */
+	public long[] getBucketCounts() {
+		long[] counts = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; ++i)
+			counts[i] = this.buckets[i].sum();
+
+		return counts;
+	}
+
+	/**
+	 * Returns approximate value at given percentile, in microseconds.
+	 * <p>
+	 * Result is the upper bound of the bucket containing the percentile, so may overestimate by up to 2x.
+	 *
+	 * @param percentile e.g. 95.0
+	 * @return upper bound of bucket in microseconds, or 0 if no values recorded
+	 */
+	public long getPercentileMicros(double percentile) {
+		long[] counts = this.getBucketCounts();
+
+		long total = 0;
+		for (long bucketCount : counts)
+			total += bucketCount;
+
+		if (total == 0)
+			return 0;
+
+		long threshold = (long) Math.ceil(total * percentile / 100.0);
+		long cumulative = 0;
+		for (int i = 0; i < BUCKET_COUNT; ++i) {
+			cumulative += counts[i];
+			if (cumulative >= threshold)
+				return bucketUpperBound(i);
+		}
+
+		return bucketUpperBound(BUCKET_COUNT - 1);
+	}
+
+}
@@ -0,0 +1,172 @@
+package org.qortal.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Node-wide registry of counters, gauges and latency histograms,
+ * rendered in Prometheus text exposition format by {@link #toPrometheusText()}.
+ * <p>
+ * Metrics are registered once, typically into a <tt>static final</tt> field of the instrumented class,
+ * and then updated without any locking. Registering the same name and label again returns the existing metric.
+ */
+public class Metrics {
+
+	private enum Type {
+		COUNTER("counter"),
+		GAUGE("gauge"),
+		HISTOGRAM("histogram");
+
+		private final String prometheusName;
+
+		Type(String prometheusName) {
+			this.prometheusName = prometheusName;
+		}
+	}
+
+	private static class Family {
+		private final Type type;
+		private final String help;
+		/** Metric (Counter, Histogram or LongSupplier) keyed by rendered label string, e.g. <tt>type="PING"</tt> */
+		private final Map<String, Object> children = new ConcurrentSkipListMap<>();
+
+		private Family(Type type, String help) {
+			this.type = type;
+			this.help = help;
+		}
+	}
+
+	private static Metrics instance;
+
+	private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+	private Metrics() {
+	}
+
+	public static synchronized Metrics getInstance() {
+		if (instance == null)
+			instance = new Metrics();
+
+		return instance;
+	}
+
+	// Registration
+
+	public Counter counter(String name, String help) {
+		return this.counter(name, help, null, null);
+	}
+
+	public Counter counter(String name, String help, String labelName, String labelValue) {
+		return (Counter) this.register(name, help, Type.COUNTER, labelName, labelValue, Counter::new);
+	}
+
+	public Histogram histogram(String name, String help) {
+		return this.histogram(name, help, null, null);
+	}
+
+	public Histogram histogram(String name, String help, String labelName, String labelValue) {
+		return (Histogram) this.register(name, help, Type.HISTOGRAM, labelName, labelValue, Histogram::new);
+	}
+
+	/** Registers gauge whose value is read from <tt>supplier</tt> at export time. Replaces any existing supplier. */
+	public void gauge(String name, String help, LongSupplier supplier) {
+		this.gauge(name, help, null, null, supplier);
+	}
+
+	public void gauge(String name, String help, String labelName, String labelValue, LongSupplier supplier) {
+		Family family = this.getFamily(name, help, Type.GAUGE);
+		family.children.put(labels(labelName, labelValue), supplier);
+	}
+
+	private Object register(String name, String help, Type type, String labelName, String labelValue, Supplier<Object> factory) {
+		Family family = this.getFamily(name, help, type);
+		return family.children.computeIfAbsent(labels(labelName, labelValue), key -> factory.get());
+	}
+
+	private Family getFamily(String name, String help, Type type) {
+		Family family = this.families.computeIfAbsent(name, key -> new Family(type, help));
+
+		if (family.type != type)
+			throw new IllegalArgumentException(String.format("Metric %s already registered as %s", name, family.type.prometheusName));
+
+		return family;
+	}
+
+	private static String labels(String labelName, String labelValue) {
+		if (labelName == null)
+			return "";
+
+		String escapedValue = labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+		return String.format("%s=\"%s\"", labelName, escapedValue);
+	}
+
+	// Export
+
+	/** Returns all metrics in Prometheus text exposition format (version 0.0.4). */
+	public String toPrometheusText() {
+		StringBuilder sb = new StringBuilder(16 * 1024);
+
+		for (Map.Entry<String, Family> familyEntry : this.families.entrySet()) {
+			String name = familyEntry.getKey();
+			Family family = familyEntry.getValue();
+
+			sb.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+			sb.append("# TYPE ").append(name).append(' ').append(family.type.prometheusName).append('\n');
+
+			for (Map.Entry<String, Object> childEntry : family.children.entrySet()) {
+				String labels = childEntry.getKey();
+				Object metric = childEntry.getValue();
+
+				switch (family.type) {
+					case COUNTER:
+						appendSample(sb, name, labels, ((Counter) metric).get());
+						break;
+
+					case GAUGE:
+						appendSample(sb, name, labels, ((LongSupplier) metric).getAsLong());
+						break;
+
+					case HISTOGRAM:
+						appendHistogram(sb, name, labels, (Histogram) metric);
+						break;
+				}
+			}
+		}
+
+		return sb.toString();
+	}
+
+	private static void appendSample(StringBuilder sb, String name, String labels, long value) {
+		sb.append(name);
+		if (!labels.isEmpty())
+			sb.append('{').append(labels).append('}');
+		sb.append(' ').append(value).append('\n');
+	}
+
+	private static void appendHistogram(StringBuilder sb, String name, String labels, Histogram histogram) {
+		String labelPrefix = labels.isEmpty() ? "" : labels + ",";
+
+		long[] bucketCounts = histogram.getBucketCounts();
+		long cumulative = 0;
+
+		for (int i = 0; i < bucketCounts.length; ++i) {
+			cumulative += bucketCounts[i];
+
+			long upperBound = Histogram.bucketUpperBound(i);
+			String le = upperBound == Long.MAX_VALUE ? "+Inf" : String.format(Locale.ROOT, "%.6f", upperBound / 1_000_000.0);
+
+			sb.append(name).append("_bucket{").append(labelPrefix).append("le=\"").append(le).append("\"} ")
+					.append(cumulative).append('\n');
+		}
+
+		String suffixLabels = labels.isEmpty() ? "" : "{" + labels + "}";
+		sb.append(name).append("_sum").append(suffixLabels).append(' ')
+				.append(String.format(Locale.ROOT, "%.9f", histogram.getSumNanos() / 1_000_000_000.0)).append('\n');
+		// Use cumulative total so _count always matches +Inf bucket, even if updated concurrently
+		sb.append(name).append("_count").append(suffixLabels).append(' ').append(cumulative).append('\n');
+	}
+
+}
@@ -8,12 +8,9 @@ import org.qortal.crypto.Crypto;
 import org.qortal.crypto.MemoryPoW;
 import org.qortal.network.message.*;
 import org.qortal.settings.Settings;
-import org.qortal.utils.DaemonThreadFactory;
 import org.qortal.utils.NTP;
 
 import java.util.Arrays;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 
 public enum Handshake {
@@ -156,6 +153,12 @@ public enum Handshake {
 			if (!peer.sendMessage(challengeMessage))
 				peer.disconnect("failed to send CHALLENGE");
 		}
+
+		@Override
+		public boolean involvesPoW(Peer peer) {
+			// Outbound peers compute their RESPONSE straight after receiving CHALLENGE
+			return peer.isOutbound();
+		}
 	},
 	RESPONSE(MessageType.RESPONSE) {
 		@Override
@@ -177,18 +180,15 @@ public enum Handshake {
 			int nonce = responseMessage.getNonce();
 			int powBufferSize = peer.getPeersVersion() < PEER_VERSION_131 ? POW_BUFFER_SIZE_PRE_131 : POW_BUFFER_SIZE_POST_131;
 			int powDifficulty = peer.getPeersVersion() < PEER_VERSION_131 ? POW_DIFFICULTY_PRE_131 : POW_DIFFICULTY_POST_131;
-			if (!MemoryPoW.verify2(data, powBufferSize, powDifficulty, nonce)) {
+			// Called on handshake PoW thread, so we can reuse its work buffer
+			if (!MemoryPoW.verify2(data, HandshakePoWExecutor.getWorkBuffer(powBufferSize), powBufferSize, powDifficulty, nonce)) {
 				LOGGER.debug(() -> String.format("Peer %s sent incorrect RESPONSE nonce", peer));
 				return null;
 			}
 
 			peer.setPeersNodeId(Crypto.toNodeAddress(peersPublicKey));
 
-			// For inbound peers, we need to go into interim holding state while we compute RESPONSE
-			if (!peer.isOutbound())
-				return RESPONDING;
-
-			// Handshake completed!
+			// Handshake completed! (For inbound peers, once we've sent our RESPONSE too)
 			return COMPLETED;
 		}
 
@@ -202,41 +202,28 @@ public enum Handshake {
 			byte[] sharedSecret = Network.getInstance().getSharedSecret(peersPublicKey);
 			final byte[] data = Crypto.digest(Bytes.concat(sharedSecret, peersChallenge));
 
-			// We do this in a new thread as it can take a while...
-			responseExecutor.execute(() -> {
-				// Are we still connected?
-				if (peer.isStopping())
-					// No point computing for dead peer
-					return;
-
-				int powBufferSize = peer.getPeersVersion() < PEER_VERSION_131 ? POW_BUFFER_SIZE_PRE_131 : POW_BUFFER_SIZE_POST_131;
-				int powDifficulty = peer.getPeersVersion() < PEER_VERSION_131 ? POW_DIFFICULTY_PRE_131 : POW_DIFFICULTY_POST_131;
-				Integer nonce = MemoryPoW.compute2(data, powBufferSize, powDifficulty);
-
-				Message responseMessage = new ResponseMessage(nonce, data);
-				if (!peer.sendMessage(responseMessage))
-					peer.disconnect("failed to send RESPONSE");
-
-				// For inbound peers, we should actually be in RESPONDING state.
-				// So we need to do the extra work to move to COMPLETED state.
-				if (!peer.isOutbound()) {
-					peer.setHandshakeStatus(COMPLETED);
-					Network.getInstance().onHandshakeCompleted(peer);
-				}
-			});
-		}
-	},
-	// Interim holding state while we compute RESPONSE to send to inbound peer
-	RESPONDING(null) {
-		@Override
-		public Handshake onMessage(Peer peer, Message message) {
-			// Should never be called
-			return null;
+			// Are we still connected?
+			if (peer.isStopping())
+				// No point computing for dead peer
+				return;
+
+			// Called on handshake PoW thread, as this can take a while, so we can reuse its work buffer
+			int powBufferSize = peer.getPeersVersion() < PEER_VERSION_131 ? POW_BUFFER_SIZE_PRE_131 : POW_BUFFER_SIZE_POST_131;
+			int powDifficulty = peer.getPeersVersion() < PEER_VERSION_131 ? POW_DIFFICULTY_PRE_131 : POW_DIFFICULTY_POST_131;
+			Integer nonce = MemoryPoW.compute2(data, HandshakePoWExecutor.getWorkBuffer(powBufferSize), powBufferSize, powDifficulty);
+			if (nonce < 0)
+				// Interrupted, e.g. shutting down
+				return;
+
+			Message responseMessage = new ResponseMessage(nonce, data);
+			if (!peer.sendMessage(responseMessage))
+				peer.disconnect("failed to send RESPONSE");
 		}
 
 		@Override
-		public void action(Peer peer) {
-			// Should never be called
+		public boolean involvesPoW(Peer peer) {
+			// Verifying peer's RESPONSE, and for inbound peers, computing ours
+			return true;
 		}
 	},
 	COMPLETED(null) {
@@ -269,8 +256,6 @@ public enum Handshake {
 	private static final int POW_DIFFICULTY_POST_131 = 2; // leading zero bits
 
 
-	private static final ExecutorService responseExecutor = Executors.newFixedThreadPool(Settings.getInstance().getNetworkPoWComputePoolSize(), new DaemonThreadFactory("Network-PoW"));
-
 	private static final byte[] ZERO_CHALLENGE = new byte[ChallengeMessage.CHALLENGE_LENGTH];
 
 	public final MessageType expectedMessageType;
@@ -283,4 +268,12 @@ public enum Handshake {
 
 	public abstract void action(Peer peer);
 
+	/**
+	 * Returns whether handling a message in this state computes or verifies memory-hard proof-of-work,
+	 * in which case it should be run on a {@link HandshakePoWExecutor} thread.
+	 */
+	public boolean involvesPoW(Peer peer) {
+		return false;
+	}
+
 }
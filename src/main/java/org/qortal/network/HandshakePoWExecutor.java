@@ -0,0 +1,101 @@
+package org.qortal.network;
+
+import org.qortal.metrics.Counter;
+import org.qortal.metrics.Histogram;
+import org.qortal.metrics.Metrics;
+import org.qortal.utils.DaemonThreadFactory;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Small, fixed-size pool for handshake steps that compute or verify memory-hard proof-of-work.
+ * <p>
+ * Proof-of-work needs a multi-MB work buffer, so each pool thread keeps its own buffer for reuse,
+ * via {@link #getWorkBuffer(int)}, instead of allocating one per handshake.
+ * <p>
+ * Waiting steps are queued, up to a limit. Once the queue is full, further steps are rejected so the
+ * caller can drop the connection, instead of a connection storm tying up memory and network threads.
+ */
+public class HandshakePoWExecutor {
+
+	/** Work buffer for current pool thread, reused across handshakes */
+	private static final ThreadLocal<long[]> WORK_BUFFER = new ThreadLocal<>();
+
+	private final ThreadPoolExecutor executor;
+
+	private final Histogram queueWaitTime;
+	private final Counter rejections;
+
+	/**
+	 * @param threadCount number of threads computing proof-of-work
+	 * @param maxQueued maximum number of handshake steps waiting for a thread
+	 */
+	public HandshakePoWExecutor(int threadCount, int maxQueued) {
+		this.executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, maxQueued)), new DaemonThreadFactory("Network-PoW"));
+
+		this.queueWaitTime = Metrics.getInstance().histogram("qortal_network_handshake_pow_queue_wait_seconds",
+				"Time handshake step waited for a proof-of-work thread");
+		this.rejections = Metrics.getInstance().counter("qortal_network_handshake_pow_rejected_total",
+				"Number of handshake steps rejected as proof-of-work queue was full");
+		Metrics.getInstance().gauge("qortal_network_handshake_pow_queue_depth",
+				"Number of handshake steps waiting for a proof-of-work thread", this::getQueuedCount);
+	}
+
+	/**
+	 * Runs handshake step on a proof-of-work thread.
+	 *
+	 * @return false if step was rejected as queue is full, or executor is shut down
+	 */
+	public boolean execute(Runnable step) {
+		final long queuedTime = System.nanoTime();
+
+		try {
+			this.executor.execute(() -> {
+				this.queueWaitTime.recordSince(queuedTime);
+				step.run();
+			});
+
+			return true;
+		} catch (RejectedExecutionException e) {
+			this.rejections.increment();
+			return false;
+		}
+	}
+
+	public int getQueuedCount() {
+		return this.executor.getQueue().size();
+	}
+
+	public int getActiveCount() {
+		return this.executor.getActiveCount();
+	}
+
+	public List<Runnable> shutdownNow() {
+		return this.executor.shutdownNow();
+	}
+
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Returns current thread's work buffer for <tt>workBufferLength</tt> bytes of proof-of-work,
+	 * allocating a new one only if current thread doesn't have one of the right size.
+	 * <p>
+	 * Buffers are kept for the lifetime of the thread, so should only be requested by pool threads.
+	 */
+	public static long[] getWorkBuffer(int workBufferLength) {
+		final int longBufferLength = workBufferLength / 8;
+
+		long[] workBuffer = WORK_BUFFER.get();
+		if (workBuffer == null || workBuffer.length != longBufferLength) {
+			workBuffer = new long[longBufferLength];
+			WORK_BUFFER.set(workBuffer);
+		}
+
+		return workBuffer;
+	}
+
+}
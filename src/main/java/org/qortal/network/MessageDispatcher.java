@@ -0,0 +1,305 @@
+package org.qortal.network;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.metrics.Counter;
+import org.qortal.metrics.Histogram;
+import org.qortal.metrics.Metrics;
+import org.qortal.network.message.MessageType;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Limits how many threads handle each type of incoming message, queuing messages that arrive while
+ * their type is at its limit, instead of discarding them.
+ * <p>
+ * Queued messages are handled by whichever handler thread next becomes free, highest priority first.
+ * Consensus-critical messages (blocks, signatures, online accounts, peers) can use every handler thread,
+ * while less important messages are queued once most handler threads are busy, so there's always
+ * room for consensus-critical messages.
+ * <p>
+ * A thread only takes on one queued message after handling its own, then hands any further work to the executor,
+ * so no thread is kept busy indefinitely with other peers' messages.
+ * <p>
+ * Queues are bounded. A message that doesn't fit is rejected, which is counted and reported to the
+ * caller. Queued messages that have waited too long are discarded, and counted as rejected too.
+ */
+public class MessageDispatcher {
+
+	private static final Logger LOGGER = LogManager.getLogger(MessageDispatcher.class);
+
+	public enum Priority {
+		// In order of precedence
+		CRITICAL(1.0f),
+		NORMAL(0.9f),
+		BULK(0.75f);
+
+		/** Share of all handler threads that messages of this priority can use */
+		private final float workerShare;
+
+		Priority(float workerShare) {
+			this.workerShare = workerShare;
+		}
+	}
+
+	/** Number of queued messages a thread handles after its own, before handing over to executor */
+	private static final int MAX_INLINE_HANDOFFS = 1;
+
+	private static final Set<MessageType> CRITICAL_TYPES = EnumSet.of(
+			MessageType.GOODBYE, MessageType.HEIGHT_V2, MessageType.PING, MessageType.PONG,
+			MessageType.GET_PEERS, MessageType.PEERS_V2,
+			MessageType.BLOCK, MessageType.GET_BLOCK, MessageType.BLOCK_V2, MessageType.BLOCKS, MessageType.GET_BLOCKS,
+			MessageType.SIGNATURES, MessageType.GET_SIGNATURES_V2,
+			MessageType.BLOCK_SUMMARIES, MessageType.GET_BLOCK_SUMMARIES, MessageType.BLOCK_SUMMARIES_V2,
+			MessageType.ONLINE_ACCOUNTS_V3, MessageType.GET_ONLINE_ACCOUNTS_V3);
+
+	private static final Set<MessageType> BULK_TYPES = EnumSet.of(
+			MessageType.ARBITRARY_DATA, MessageType.GET_ARBITRARY_DATA,
+			MessageType.ARBITRARY_DATA_FILE, MessageType.GET_ARBITRARY_DATA_FILE,
+			MessageType.ARBITRARY_DATA_FILE_LIST, MessageType.GET_ARBITRARY_DATA_FILE_LIST,
+			MessageType.ARBITRARY_SIGNATURES,
+			MessageType.ARBITRARY_METADATA, MessageType.GET_ARBITRARY_METADATA);
+
+	private static class TypeState {
+		private final MessageType messageType;
+		private final Priority priority;
+		/** Maximum number of threads handling this message type, or null if only limited by priority */
+		private final Integer maxWorkers;
+		private final Deque<Job> queue = new ArrayDeque<>();
+		private int activeWorkers = 0;
+
+		private final Histogram queueWaitTime;
+		private final Counter rejections;
+
+		private TypeState(MessageType messageType, Integer maxWorkers) {
+			this.messageType = messageType;
+			this.priority = getPriority(messageType);
+			this.maxWorkers = maxWorkers;
+
+			this.queueWaitTime = Metrics.getInstance().histogram("qortal_network_message_queue_wait_seconds",
+					"Time incoming network message waited for a handler thread", "type", messageType.name());
+			this.rejections = Metrics.getInstance().counter("qortal_network_messages_rejected_total",
+					"Number of incoming network messages rejected as their queue was full, or they waited too long", "type", messageType.name());
+		}
+	}
+
+	private static class Job {
+		private final TypeState state;
+		private final Runnable handler;
+		private final long queuedTime; // ns
+
+		private Job(TypeState state, Runnable handler, long queuedTime) {
+			this.state = state;
+			this.handler = handler;
+			this.queuedTime = queuedTime;
+		}
+	}
+
+	/** Guarded by this */
+	private final Map<MessageType, TypeState> states = new EnumMap<>(MessageType.class);
+	/** Message type states grouped by priority, for picking next queued message. Guarded by this. */
+	private final Map<Priority, List<TypeState>> statesByPriority = new EnumMap<>(Priority.class);
+	/** Where to start looking for next queued message, per priority, so message types take turns. Guarded by this. */
+	private final Map<Priority, Integer> nextQueueIndexes = new EnumMap<>(Priority.class);
+	/** Maximum number of handler threads for each priority. */
+	private final Map<Priority, Integer> priorityMaxWorkers = new EnumMap<>(Priority.class);
+
+	/** For handling queued messages beyond a thread's single handoff */
+	private final Executor executor;
+	private final int maxQueuedPerType;
+	private final long maxQueueTime; // ns
+	/** Guarded by this */
+	private int totalActiveWorkers = 0;
+
+	/**
+	 * @param maxWorkersPerType returns maximum number of threads for a message type, or null if unlimited
+	 * @param maxWorkers total number of threads available for handling messages
+	 * @param maxQueuedPerType maximum number of messages queued per message type
+	 * @param maxQueueTime maximum time a message can wait in queue before being discarded (ms)
+	 * @param executor runs queued messages that the finishing thread doesn't handle itself
+	 */
+	public MessageDispatcher(Function<MessageType, Integer> maxWorkersPerType, int maxWorkers, int maxQueuedPerType,
+			long maxQueueTime, Executor executor) {
+		this.executor = executor;
+		this.maxQueuedPerType = maxQueuedPerType;
+		this.maxQueueTime = TimeUnit.MILLISECONDS.toNanos(maxQueueTime);
+
+		for (Priority priority : Priority.values()) {
+			this.statesByPriority.put(priority, new ArrayList<>());
+			this.nextQueueIndexes.put(priority, 0);
+			this.priorityMaxWorkers.put(priority, Math.max(1, (int) (maxWorkers * priority.workerShare)));
+		}
+
+		for (MessageType messageType : MessageType.values()) {
+			TypeState state = new TypeState(messageType, maxWorkersPerType.apply(messageType));
+			this.states.put(messageType, state);
+			this.statesByPriority.get(state.priority).add(state);
+
+			Metrics.getInstance().gauge("qortal_network_message_queue_depth", "Number of incoming network messages waiting for a handler thread",
+					"type", messageType.name(), () -> this.getQueuedCount(messageType));
+		}
+	}
+
+	public static Priority getPriority(MessageType messageType) {
+		if (CRITICAL_TYPES.contains(messageType))
+			return Priority.CRITICAL;
+
+		if (BULK_TYPES.contains(messageType))
+			return Priority.BULK;
+
+		return Priority.NORMAL;
+	}
+
+	/**
+	 * Handles message using calling thread, or queues message if its type is at its thread limit.
+	 * <p>
+	 * After handling, calling thread handles at most one queued message that is now allowed to run,
+	 * passing any further queued messages to the executor.
+	 *
+	 * @return false if message was rejected as its type's queue is full
+	 */
+	public boolean dispatch(MessageType messageType, Runnable handler) {
+		Job job;
+
+		synchronized (this) {
+			TypeState state = this.states.get(messageType);
+
+			if (!this.canStart(state)) {
+				final long now = System.nanoTime();
+				this.discardStaleJobs(state, now);
+
+				if (state.queue.size() >= this.maxQueuedPerType) {
+					state.rejections.increment();
+					return false;
+				}
+
+				state.queue.addLast(new Job(state, handler, now));
+				return true;
+			}
+
+			this.start(state);
+			job = new Job(state, handler, 0L);
+		}
+
+		this.run(job);
+		return true;
+	}
+
+	/** Handles job, then at most one queued job, then passes next queued job, if any, to executor. */
+	private void run(Job job) {
+		for (int handoffs = 0; ; ++handoffs) {
+			try {
+				job.handler.run();
+			} catch (RuntimeException e) {
+				LOGGER.warn(String.format("Exception while handling %s message", job.state.messageType.name()), e);
+			}
+
+			Job nextJob = this.finishAndTakeNext(job.state);
+			if (nextJob == null)
+				return;
+
+			if (handoffs >= MAX_INLINE_HANDOFFS) {
+				this.handOff(nextJob);
+				return;
+			}
+
+			job = nextJob;
+		}
+	}
+
+	private void handOff(Job job) {
+		try {
+			this.executor.execute(() -> this.run(job));
+		} catch (RejectedExecutionException e) {
+			// No spare threads, so leave job at front of its queue for next thread to finish
+			this.requeue(job);
+		}
+	}
+
+	private synchronized void requeue(Job job) {
+		--job.state.activeWorkers;
+		--this.totalActiveWorkers;
+
+		job.state.queue.addFirst(job);
+	}
+
+	/** Discards jobs that have waited longer than allowed, as their peer has probably given up on a response. */
+	private void discardStaleJobs(TypeState state, long now) {
+		while (!state.queue.isEmpty() && now - state.queue.peekFirst().queuedTime > this.maxQueueTime) {
+			state.queue.pollFirst();
+			state.rejections.increment();
+		}
+	}
+
+	private boolean canStart(TypeState state) {
+		if (state.maxWorkers != null && state.activeWorkers >= state.maxWorkers)
+			return false;
+
+		return this.totalActiveWorkers < this.priorityMaxWorkers.get(state.priority);
+	}
+
+	private void start(TypeState state) {
+		++state.activeWorkers;
+		++this.totalActiveWorkers;
+	}
+
+	/** Records end of handling a message, then returns next queued message that can start, or null if none. */
+	private synchronized Job finishAndTakeNext(TypeState finishedState) {
+		--finishedState.activeWorkers;
+		--this.totalActiveWorkers;
+
+		final long now = System.nanoTime();
+
+		for (Priority priority : Priority.values()) {
+			List<TypeState> priorityStates = this.statesByPriority.get(priority);
+			int startIndex = this.nextQueueIndexes.get(priority);
+
+			for (int i = 0; i < priorityStates.size(); ++i) {
+				int index = (startIndex + i) % priorityStates.size();
+				TypeState state = priorityStates.get(index);
+
+				this.discardStaleJobs(state, now);
+
+				if (state.queue.isEmpty() || !this.canStart(state))
+					continue;
+
+				this.nextQueueIndexes.put(priority, (index + 1) % priorityStates.size());
+
+				Job job = state.queue.pollFirst();
+				state.queueWaitTime.recordSince(job.queuedTime);
+				this.start(state);
+				return job;
+			}
+		}
+
+		return null;
+	}
+
+	public synchronized int getActiveCount(MessageType messageType) {
+		return this.states.get(messageType).activeWorkers;
+	}
+
+	public synchronized int getTotalActiveCount() {
+		return this.totalActiveWorkers;
+	}
+
+	public synchronized int getQueuedCount(MessageType messageType) {
+		return this.states.get(messageType).queue.size();
+	}
+
+	/** Returns number of threads handling each message type, omitting types with none. */
+	public synchronized Map<MessageType, Integer> getActiveCounts() {
+		Map<MessageType, Integer> activeCounts = new EnumMap<>(MessageType.class);
+
+		for (TypeState state : this.states.values())
+			if (state.activeWorkers > 0)
+				activeCounts.put(state.messageType, state.activeWorkers);
+
+		return activeCounts;
+	}
+
+}
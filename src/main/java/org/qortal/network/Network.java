@@ -13,6 +13,8 @@ import org.qortal.data.block.BlockData;
 import org.qortal.data.block.BlockSummaryData;
 import org.qortal.data.network.PeerData;
 import org.qortal.data.transaction.TransactionData;
+import org.qortal.metrics.Histogram;
+import org.qortal.metrics.Metrics;
 import org.qortal.network.message.*;
 import org.qortal.network.task.*;
 import org.qortal.repository.DataException;
@@ -24,6 +26,8 @@ import org.qortal.utils.ExecuteProduceConsume;
 import org.qortal.utils.ExecuteProduceConsume.StatsSnapshot;
 import org.qortal.utils.NTP;
 import org.qortal.utils.NamedThreadFactory;
+import org.qortal.utils.ReadyQueue;
+import org.qortal.utils.VirtualThreads;
 
 import java.io.IOException;
 import java.net.InetAddress;
@@ -122,14 +126,24 @@ public class Network {
 
 
     /**
-     * Count threads per message type in order to enforce limits
+     * Limits threads per message type, queuing messages that arrive while their type is at its limit
      */
-    private final Map<MessageType, Integer> threadsPerMessageType = Collections.synchronizedMap(new HashMap<>());
+    private final MessageDispatcher messageDispatcher;
 
     /**
-     * Keep track of total thread count, to warn when the thread pool is getting low
+     * Message handling latency per message type, pre-populated so lookups are lock-free
      */
-    private int totalThreadCount = 0;
+    private final Map<MessageType, Histogram> messageHandlingTimes = new EnumMap<>(MessageType.class);
+
+    /**
+     * Runs handshake steps that compute or verify memory-hard proof-of-work, off network threads
+     */
+    private final HandshakePoWExecutor handshakePoWExecutor;
+
+    /**
+     * Time from connection to handshake completion
+     */
+    private final Histogram handshakeTime;
 
     /**
      * Thresholds at which to warn about the number of active threads
@@ -147,6 +161,11 @@ public class Network {
     private SelectionKey serverSelectionKey;
     private final Set<SelectableChannel> channelsPendingWrite = ConcurrentHashMap.newKeySet();
 
+    /** Peers with received messages waiting to be processed, served round-robin */
+    private final ReadyQueue<Peer> peersWithPendingMessages = new ReadyQueue<>();
+    /** Peers with pings enabled, in order of when they are next due a ping */
+    private final ReadyQueue<Peer> peersByPingDue = new ReadyQueue<>();
+
     private final Lock mergePeersLock = new ReentrantLock();
 
     private List<String> ourExternalIpAddressHistory = new ArrayList<>();
@@ -163,13 +182,41 @@ public class Network {
         minOutboundPeers = Settings.getInstance().getMinOutboundPeers();
         maxPeers = Settings.getInstance().getMaxPeers();
 
-        // We'll use a cached thread pool but with more aggressive timeout.
-        ExecutorService networkExecutor = new ThreadPoolExecutor(1,
-                Settings.getInstance().getMaxNetworkThreadPoolSize(),
-                NETWORK_EPC_KEEPALIVE, TimeUnit.SECONDS,
-                new SynchronousQueue<Runnable>(),
-                new NamedThreadFactory("Network-EPC"));
+        ExecutorService networkExecutor = null;
+        if (Settings.getInstance().isVirtualThreadsEnabled()) {
+            networkExecutor = VirtualThreads.newThreadPerTaskExecutor("Network-EPC", Settings.getInstance().getMaxNetworkThreadPoolSize());
+
+            if (networkExecutor == null) {
+                LOGGER.warn("Virtual threads need Java 21 or later - using platform threads for network");
+            }
+        }
+
+        if (networkExecutor == null) {
+            // We'll use a cached thread pool but with more aggressive timeout.
+            networkExecutor = new ThreadPoolExecutor(1,
+                    Settings.getInstance().getMaxNetworkThreadPoolSize(),
+                    NETWORK_EPC_KEEPALIVE, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(),
+                    new NamedThreadFactory("Network-EPC"));
+        }
         networkEPC = new NetworkProcessor(networkExecutor);
+
+        messageDispatcher = new MessageDispatcher(Settings.getInstance()::getMaxThreadsForMessageType,
+                Settings.getInstance().getMaxNetworkThreadPoolSize(), Settings.getInstance().getMaxQueuedMessagesPerType(),
+                Settings.getInstance().getMaxMessageQueueTime(), networkExecutor);
+
+        handshakePoWExecutor = new HandshakePoWExecutor(Settings.getInstance().getNetworkPoWComputePoolSize(),
+                Settings.getInstance().getNetworkPoWComputeQueueSize());
+
+        handshakeTime = Metrics.getInstance().histogram("qortal_network_handshake_seconds",
+                "Time taken from connection to handshake completion");
+
+        for (MessageType messageType : MessageType.values())
+            messageHandlingTimes.put(messageType, Metrics.getInstance().histogram("qortal_network_message_handling_seconds",
+                    "Time taken to handle an incoming network message", "type", messageType.name()));
+
+        Metrics.getInstance().gauge("qortal_network_connected_peers", "Number of connected peers", () -> this.connectedPeers.size());
+        Metrics.getInstance().gauge("qortal_network_handshaked_peers", "Number of handshaked peers", () -> this.handshakedPeers.size());
     }
 
     public void start() throws IOException, DataException {
@@ -256,13 +303,11 @@ public class Network {
     }
 
     public Map<MessageType, Integer> getThreadsPerMessageType() {
-        return this.threadsPerMessageType;
+        return this.messageDispatcher.getActiveCounts();
     }
 
     public int getTotalThreadCount() {
-        synchronized (this) {
-            return this.totalThreadCount;
-        }
+        return this.messageDispatcher.getTotalActiveCount();
     }
 
     public static Network getInstance() {
@@ -569,19 +614,51 @@ public class Network {
         }
 
         private Task maybeProducePeerMessageTask() {
-            return getImmutableConnectedPeers().stream()
-                    .map(Peer::getMessageTask)
-                    .filter(Objects::nonNull)
-                    .findFirst()
-                    .orElse(null);
+            Peer peer;
+            while ((peer = peersWithPendingMessages.poll()) != null) {
+                if (peer.isStopping()) {
+                    continue;
+                }
+
+                Task task = peer.getMessageTask();
+
+                // If peer has more messages, put it to the back of the queue so other peers get a turn
+                if (peer.hasProcessableMessages()) {
+                    peersWithPendingMessages.offer(peer);
+                }
+
+                if (task != null) {
+                    return task;
+                }
+            }
+
+            return null;
         }
 
         private Task maybeProducePeerPingTask(Long now) {
-            return getImmutableHandshakedPeers().stream()
-                    .map(peer -> peer.getPingTask(now))
-                    .filter(Objects::nonNull)
-                    .findFirst()
-                    .orElse(null);
+            if (now == null) {
+                return null;
+            }
+
+            Peer peer;
+            while ((peer = peersByPingDue.peek()) != null) {
+                if (peer.isStopping()) {
+                    peersByPingDue.remove(peer);
+                    continue;
+                }
+
+                Task task = peer.getPingTask(now);
+
+                // Peers are queued in order of when they're due, so if this peer isn't due then neither are the others
+                if (task == null) {
+                    return null;
+                }
+
+                peersByPingDue.requeue(peer);
+                return task;
+            }
+
+            return null;
         }
 
         private Task maybeProduceConnectPeerTask(Long now) throws InterruptedException {
@@ -895,6 +972,20 @@ public class Network {
         this.channelSelector.wakeup();
     }
 
+    /**
+     * Called when peer has received messages that are ready to be processed.
+     */
+    protected void notifyMessagesPending(Peer peer) {
+        this.peersWithPendingMessages.offer(peer);
+    }
+
+    /**
+     * Called when peer's next ping time is reset, moving it to the back of the ping queue.
+     */
+    protected void notifyPingsRescheduled(Peer peer) {
+        this.peersByPingDue.requeue(peer);
+    }
+
     protected boolean verify(byte[] signature, byte[] message) {
         return Crypto.verify(this.edPublicKeyParams.getEncoded(), signature, message);
     }
@@ -923,6 +1014,8 @@ public class Network {
 
         this.removeConnectedPeer(peer);
         this.channelsPendingWrite.remove(peer.getSocketChannel());
+        this.peersWithPendingMessages.remove(peer);
+        this.peersByPingDue.remove(peer);
 
         if (this.isShuttingDown)
             // No need to do any further processing, like re-enabling listen socket or notifying Controller
@@ -977,36 +1070,35 @@ public class Network {
 
         // Should be non-handshaking messages from now on
 
-        // Limit threads per message type and discard if there are already too many
-        Integer maxThreadsForMessageType = Settings.getInstance().getMaxThreadsForMessageType(message.getType());
-        if (maxThreadsForMessageType != null) {
-            Integer threadCount = threadsPerMessageType.get(message.getType());
-            if (threadCount != null && threadCount >= maxThreadsForMessageType) {
-                LOGGER.trace("Discarding {} message as there are already {} active threads", message.getType().name(), threadCount);
-                return;
-            }
-        }
-
         // Warn if necessary
         if (threadCountPerMessageTypeWarningThreshold != null) {
-            Integer threadCount = threadsPerMessageType.get(message.getType());
-            if (threadCount != null && threadCount > threadCountPerMessageTypeWarningThreshold) {
+            int threadCount = messageDispatcher.getActiveCount(message.getType());
+            if (threadCount > threadCountPerMessageTypeWarningThreshold) {
                 LOGGER.info("Warning: high thread count for {} message type: {}", message.getType().name(), threadCount);
             }
         }
 
-        // Add to per-message thread count (first initializing to 0 if not already present)
-        threadsPerMessageType.computeIfAbsent(message.getType(), key -> 0);
-        threadsPerMessageType.computeIfPresent(message.getType(), (key, value) -> value + 1);
-        
-        // Add to total thread count
-        synchronized (this) {
-            totalThreadCount++;
+        int totalThreadCount = messageDispatcher.getTotalActiveCount();
+        if (totalThreadCount >= threadCountWarningThreshold) {
+            LOGGER.info("Warning: high total thread count: {} / {}", totalThreadCount, Settings.getInstance().getMaxNetworkThreadPoolSize());
+        }
 
-            if (totalThreadCount >= threadCountWarningThreshold) {
-                LOGGER.info("Warning: high total thread count: {} / {}", totalThreadCount, Settings.getInstance().getMaxNetworkThreadPoolSize());
+        // Handle now, or queue if there are already too many threads handling this message type
+        boolean isAccepted = messageDispatcher.dispatch(message.getType(), () -> {
+            // Peer might have disconnected while message was queued
+            if (!peer.isStopping()) {
+                handleMessage(peer, message);
             }
+        });
+
+        if (!isAccepted) {
+            LOGGER.debug("[{}] Rejected {} message from peer {} as {} are already queued", peer.getPeerConnectionId(),
+                    message.getType().name(), peer, messageDispatcher.getQueuedCount(message.getType()));
         }
+    }
+
+    private void handleMessage(Peer peer, Message message) {
+        final long startTime = System.nanoTime();
 
         // Ordered by message type value
         switch (message.getType()) {
@@ -1036,18 +1128,32 @@ public class Network {
                 break;
         }
 
-        // Remove from per-message thread count (first initializing to 0 if not already present)
-        threadsPerMessageType.computeIfAbsent(message.getType(), key -> 0);
-        threadsPerMessageType.computeIfPresent(message.getType(), (key, value) -> value - 1);
+        messageHandlingTimes.get(message.getType()).recordSince(startTime);
+    }
+
+    private void onHandshakingMessage(Peer peer, Message message, Handshake handshakeStatus) {
+        if (handshakeStatus.involvesPoW(peer)) {
+            // Proof-of-work is CPU and memory heavy, so use dedicated pool instead of holding up network thread.
+            // Peer's handshake message is still pending, so its next message waits until this one is done.
+            if (!this.handshakePoWExecutor.execute(() -> this.processHandshakingMessage(peer, message, handshakeStatus))) {
+                LOGGER.debug("[{}] Too many handshakes in progress - dropping peer {}", peer.getPeerConnectionId(), peer);
+                peer.disconnect("handshake proof-of-work queue full");
+                peer.resetHandshakeMessagePending();
+            }
 
-        // Remove from total thread count
-        synchronized (this) {
-            totalThreadCount--;
+            return;
         }
+
+        this.processHandshakingMessage(peer, message, handshakeStatus);
     }
 
-    private void onHandshakingMessage(Peer peer, Message message, Handshake handshakeStatus) {
+    private void processHandshakingMessage(Peer peer, Message message, Handshake handshakeStatus) {
         try {
+            if (peer.isStopping()) {
+                // Peer disconnected while this message was waiting
+                return;
+            }
+
             // Still handshaking
             LOGGER.trace("[{}] Handshake status {}, message {} from peer {}", peer.getPeerConnectionId(),
                     handshakeStatus.name(), (message != null ? message.getType().name() : "null"), peer);
@@ -1080,7 +1186,7 @@ public class Network {
             }
             peer.setHandshakeStatus(newHandshakeStatus);
 
-            if (newHandshakeStatus == Handshake.COMPLETED) {
+            if (newHandshakeStatus == Handshake.COMPLETED && !peer.isStopping()) {
                 this.onHandshakeCompleted(peer);
             }
         } finally {
@@ -1145,7 +1251,13 @@ public class Network {
         this.addHandshakedPeer(peer);
 
         // Make a note that we've successfully completed handshake (and when)
-        peer.getPeerData().setLastConnected(NTP.getTime());
+        Long now = NTP.getTime();
+        peer.getPeerData().setLastConnected(now);
+
+        Long connectionTimestamp = peer.getConnectionTimestamp();
+        if (now != null && connectionTimestamp != null) {
+            handshakeTime.record((now - connectionTimestamp) * 1_000_000L);
+        }
 
         // Update connection info for outbound peers only
         if (peer.isOutbound()) {
@@ -1662,6 +1774,8 @@ public class Network {
             LOGGER.warn("Interrupted while waiting for networking threads to terminate");
         }
 
+        this.handshakePoWExecutor.shutdownNow();
+
         // Close all peer connections
         for (Peer peer : this.getImmutableConnectedPeers()) {
             peer.shutdown();
@@ -260,6 +260,11 @@ public class Peer {
 
     protected void resetHandshakeMessagePending() {
         this.handshakeMessagePending = false;
+
+        // Messages may have arrived while we were processing handshake message
+        if (this.hasProcessableMessages()) {
+            Network.getInstance().notifyMessagesPending(this);
+        }
     }
 
     public PeerData getPeerData() {
@@ -605,6 +610,8 @@ public class Peer {
                         return;
                     }
 
+                    Network.getInstance().notifyMessagesPending(this);
+
                     // Prematurely end any blocking channel select so that new messages can be processed.
                     // This might cause this.socketChannel.read() above to return zero into bytesRead.
                     Network.getInstance().wakeupChannelSelector();
@@ -679,6 +686,13 @@ public class Peer {
         }
     }
 
+    /**
+     * Returns whether there are received messages that {@link #getMessageTask()} can produce a task for.
+     */
+    protected boolean hasProcessableMessages() {
+        return !this.handshakeMessagePending && !this.pendingMessages.isEmpty();
+    }
+
     protected Task getMessageTask() {
         /*
          * If we are still handshaking and there is a message yet to be processed then
@@ -812,6 +826,10 @@ public class Peer {
         // Replacing initial null value allows getPingTask() to start sending pings.
         LOGGER.trace("[{}] Enabling pings for peer {}", this.peerConnectionId, this);
         this.lastPingSent = NTP.getTime();
+
+        if (this.lastPingSent != null) {
+            Network.getInstance().notifyPingsRescheduled(this);
+        }
     }
 
     protected Task getPingTask(Long now) {
@@ -23,6 +23,17 @@ public interface ATRepository {
 	/** Returns list of executable ATs, empty if none found */
 	public List<ATData> getAllExecutableATs() throws DataException;
 
+	/**
+	 * Returns list of executable ATs that might run at given block height, ordered by creation timestamp.
+	 * <p>
+	 * Unlike {@link #getAllExecutableATs()}, this omits ATs that are known to be sleeping until a later height,
+	 * as running them would not change their state. ATs sleeping until a message are still included,
+	 * as checking for new messages requires AT-specific queries.
+	 * <p>
+	 * Code bytes are served from a cache, keyed by code hash, where possible.
+	 */
+	public List<ATData> getExecutableATs(int blockHeight) throws DataException;
+
 	/** Returns list of ATs with matching code hash, optionally executable only. */
 	public List<ATData> getATsByFunctionality(byte[] codeHash, Boolean isExecutable, Integer limit, Integer offset, Boolean reverse) throws DataException;
 
@@ -2,7 +2,9 @@ package org.qortal.repository;
 
 import org.qortal.data.account.*;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface AccountRepository {
@@ -12,6 +14,15 @@ public interface AccountRepository {
 	/** Returns all general information about account, e.g. public key, last reference, default group ID. */
 	public AccountData getAccount(String address) throws DataException;
 
+	/**
+	 * Returns general information about many accounts, using as few queries as possible.
+	 * <p>
+	 * Accounts that don't exist in the repository are omitted from the result.
+	 *
+	 * @return map of address to account data
+	 */
+	public Map<String, AccountData> getAccounts(Collection<String> addresses) throws DataException;
+
 	/** Returns accounts with <b>any</b> bit set in given mask. */
 	public List<AccountData> getFlaggedAccounts(int mask) throws DataException;
 
@@ -144,6 +155,9 @@ public interface AccountRepository {
 	/** Returns account balances for matching addresses / assetIDs, optionally excluding zero balances, with pagination, used by API. */
 	public List<AccountBalanceData> getAssetBalances(List<String> addresses, List<Long> assetIds, BalanceOrdering balanceOrdering, Boolean excludeZero, Integer limit, Integer offset, Boolean reverse) throws DataException;
 
+	/** As {@link #getAssetBalances(List, List, BalanceOrdering, Boolean, Integer, Integer, Boolean)}, but returns balances as they're read, for streaming. */
+	public ResultCursor<AccountBalanceData> getAssetBalancesCursor(List<String> addresses, List<Long> assetIds, BalanceOrdering balanceOrdering, Boolean excludeZero, Integer limit, Integer offset, Boolean reverse) throws DataException;
+
 	/** Modifies account's asset balance by <tt>deltaBalance</tt>. */
 	public void modifyAssetBalance(String address, long assetId, long deltaBalance) throws DataException;
 
@@ -206,6 +220,13 @@ public interface AccountRepository {
 	/** Delete reward-share from repository using passed minting account's public key and recipient's address. */
 	public void delete(byte[] mintingAccountPublickey, String recipient) throws DataException;
 
+	/**
+	 * Rebuilds in-memory index of reward-shares (sorted by reward-share public key) from repository.
+	 * <p>
+	 * Index is used by the reward-share index lookups above. Called at startup so the first block doesn't pay for it.
+	 */
+	public void rebuildRewardShareIndex() throws DataException;
+
 	// Minting accounts used by BlockMinter, potentially includes reward-shares
 
 	public List<MintingAccountData> getMintingAccounts() throws DataException;
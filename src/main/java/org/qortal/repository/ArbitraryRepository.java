@@ -42,8 +42,14 @@ public interface ArbitraryRepository {
 
 	public List<ArbitraryResourceData> getArbitraryResources(Service service, String identifier, List<String> names, boolean defaultResource, Boolean followedOnly, Boolean excludeBlocked, Boolean includeMetadata, Boolean includeStatus, Integer limit, Integer offset, Boolean reverse) throws DataException;
 
+	/** As {@link #getArbitraryResources(Service, String, List, boolean, Boolean, Boolean, Boolean, Boolean, Integer, Integer, Boolean)}, but returns resources as they're read, for streaming. */
+	public ResultCursor<ArbitraryResourceData> getArbitraryResourcesCursor(Service service, String identifier, List<String> names, boolean defaultResource, Boolean followedOnly, Boolean excludeBlocked, Boolean includeMetadata, Boolean includeStatus, Integer limit, Integer offset, Boolean reverse) throws DataException;
+
 	public List<ArbitraryResourceData> searchArbitraryResources(Service service, String query, String identifier, List<String> names, String title, String description, boolean prefixOnly, List<String> namesFilter, boolean defaultResource, SearchMode mode, Integer minLevel, Boolean followedOnly, Boolean excludeBlocked, Boolean includeMetadata, Boolean includeStatus, Long before, Long after, Integer limit, Integer offset, Boolean reverse) throws DataException;
 
+	/** As {@link #searchArbitraryResources(Service, String, String, List, String, String, boolean, List, boolean, SearchMode, Integer, Boolean, Boolean, Boolean, Boolean, Long, Long, Integer, Integer, Boolean)}, but returns resources as they're read, for streaming. */
+	public ResultCursor<ArbitraryResourceData> searchArbitraryResourcesCursor(Service service, String query, String identifier, List<String> names, String title, String description, boolean prefixOnly, List<String> namesFilter, boolean defaultResource, SearchMode mode, Integer minLevel, Boolean followedOnly, Boolean excludeBlocked, Boolean includeMetadata, Boolean includeStatus, Long before, Long after, Integer limit, Integer offset, Boolean reverse) throws DataException;
+
 
 	// Arbitrary resources cache save/load
 
@@ -46,6 +46,13 @@ public interface AssetRepository {
 		return getOpenOrders(haveAssetId, wantAssetId, null, null, null);
 	}
 
+	/**
+	 * Returns open orders that could match an order wanting <tt>haveAssetId</tt> for <tt>wantAssetId</tt>,
+	 * best price first, then oldest first.
+	 * <p>
+	 * If <tt>minimumPrice</tt> is given, only orders with acceptable prices are returned,
+	 * usually from an in-memory order book. See {@link #rebuildOrderBook()}.
+	 */
 	public List<OrderData> getOpenOrdersForTrading(long haveAssetId, long wantAssetId, Long minimumPrice) throws DataException;
 
 	public List<OrderData> getAggregatedOpenOrders(long haveAssetId, long wantAssetId, Integer limit, Integer offset, Boolean reverse) throws DataException;
@@ -65,6 +72,13 @@ public interface AssetRepository {
 
 	public void delete(byte[] orderId) throws DataException;
 
+	/**
+	 * Rebuilds in-memory order book of open orders from repository.
+	 * <p>
+	 * Order book is used by order matching. Called at startup so the first asset order doesn't pay for it.
+	 */
+	public void rebuildOrderBook() throws DataException;
+
 	// Trades
 
 	public List<TradeData> getTrades(long haveAssetId, long wantAssetId, Integer limit, Integer offset, Boolean reverse) throws DataException;
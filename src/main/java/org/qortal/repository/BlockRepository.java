@@ -5,8 +5,10 @@ import org.qortal.data.block.BlockData;
 import org.qortal.data.block.BlockSummaryData;
 import org.qortal.data.block.BlockTransactionData;
 import org.qortal.data.transaction.TransactionData;
+import org.qortal.transaction.Transaction.TransactionType;
 
 import java.util.List;
+import java.util.Map;
 
 public interface BlockRepository {
 
@@ -186,6 +188,36 @@ public interface BlockRepository {
 	public int pruneBlocks(int minHeight, int maxHeight) throws DataException;
 
 
+	/**
+	 * Saves per-transaction-type counts for block at given height, adding them to all-time totals.
+	 * <p>
+	 * Called when processing a block, so activity summaries can be answered without scanning transactions.
+	 */
+	public void saveActivitySummary(int height, Map<TransactionType, Integer> transactionCounts) throws DataException;
+
+	/**
+	 * Deletes per-transaction-type counts for block at given height, subtracting them from all-time totals.
+	 */
+	public void deleteActivitySummary(int height) throws DataException;
+
+	/**
+	 * Returns transaction counts by type for blocks within height range, from activity summaries.
+	 */
+	public Map<TransactionType, Integer> getActivitySummary(int firstBlockHeight, int lastBlockHeight) throws DataException;
+
+	/**
+	 * Returns all-time transaction counts by type, from activity summaries.
+	 */
+	public Map<TransactionType, Integer> getActivityTotals() throws DataException;
+
+	/**
+	 * Rebuilds activity summaries, and all-time totals, from confirmed transactions.
+	 * <p>
+	 * This can take a while on a full node.
+	 */
+	public void rebuildActivitySummaries() throws DataException;
+
+
 	/**
 	 * Saves block into repository.
 	 * 
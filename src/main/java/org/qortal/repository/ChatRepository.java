@@ -24,4 +24,10 @@ public interface ChatRepository {
 
 	public ActiveChats getActiveChats(String address, Encoding encoding) throws DataException;
 
+	/** Returns group's entry for {@link #getActiveChats(String, Encoding)}, or null if group doesn't exist. */
+	public ActiveChats.GroupChat getActiveGroupChat(int groupId, Encoding encoding) throws DataException;
+
+	/** Returns <tt>otherAddress</tt>'s entry for <tt>address</tt>'s {@link #getActiveChats(String, Encoding)}, or null if they haven't chatted. */
+	public ActiveChats.DirectChat getActiveDirectChat(String address, String otherAddress) throws DataException;
+
 }
@@ -0,0 +1,56 @@
+package org.qortal.repository;
+
+import org.qortal.data.market.CandleData;
+import org.qortal.data.market.CompletedCrossChainTradeData;
+import org.qortal.data.market.MarketTradeData;
+import org.qortal.market.CandleInterval;
+
+import java.util.List;
+
+public interface MarketRepository {
+
+	// Candles
+
+	public CandleData getCandle(String market, CandleInterval interval, long timestamp) throws DataException;
+
+	/** Returns market's candles with start timestamps between <tt>fromTimestamp</tt> (inclusive) and <tt>toTimestamp</tt> (exclusive). */
+	public List<CandleData> getCandles(String market, CandleInterval interval, long fromTimestamp, long toTimestamp, Integer limit, Boolean reverse) throws DataException;
+
+	public void save(CandleData candleData) throws DataException;
+
+	public void deleteCandle(String market, CandleInterval interval, long timestamp) throws DataException;
+
+	public void deleteAllCandles() throws DataException;
+
+	// Trades
+
+	/**
+	 * Returns trades between assets, from <tt>fromTimestamp</tt> (inclusive) to <tt>toTimestamp</tt> (exclusive),
+	 * in trade order, with <tt>assetId</tt> as base and <tt>otherAssetId</tt> as quote.
+	 */
+	public List<MarketTradeData> getAssetTrades(long assetId, long otherAssetId, long fromTimestamp, long toTimestamp) throws DataException;
+
+	/** Returns all asset trades in trade order, with lower asset ID as base. See {@link org.qortal.market.TradeHistory#getAssetMarket(long, long)}. */
+	public List<MarketTradeData> getAllAssetTrades() throws DataException;
+
+	public CompletedCrossChainTradeData getCompletedCrossChainTrade(String atAddress) throws DataException;
+
+	/** Returns completed cross-chain trades for blockchain, from <tt>fromTimestamp</tt> (inclusive) to <tt>toTimestamp</tt> (exclusive), in trade order. */
+	public List<CompletedCrossChainTradeData> getCompletedCrossChainTrades(String foreignBlockchain, long fromTimestamp, long toTimestamp) throws DataException;
+
+	public List<CompletedCrossChainTradeData> getCompletedCrossChainTradesAtHeight(int height) throws DataException;
+
+	public void save(CompletedCrossChainTradeData tradeData) throws DataException;
+
+	public void delete(CompletedCrossChainTradeData tradeData) throws DataException;
+
+	public void deleteAllCompletedCrossChainTrades() throws DataException;
+
+	// Rebuilding
+
+	/** Returns whether candles and completed cross-chain trades have been built from existing trades. */
+	public boolean isTradeHistoryBuilt() throws DataException;
+
+	public void setTradeHistoryBuilt(boolean isBuilt) throws DataException;
+
+}
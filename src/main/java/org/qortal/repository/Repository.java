@@ -23,6 +23,8 @@ public interface Repository extends AutoCloseable {
 
 	public GroupRepository getGroupRepository();
 
+	public MarketRepository getMarketRepository();
+
 	public MessageRepository getMessageRepository();
 
 	public NameRepository getNameRepository();
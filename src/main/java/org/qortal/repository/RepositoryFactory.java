@@ -12,6 +12,11 @@ public interface RepositoryFactory {
 
 	public Repository tryRepository() throws DataException;
 
+	/** Returns repository session that can only read, e.g. for API use. Defaults to a normal session. */
+	public default Repository getReadOnlyRepository() throws DataException {
+		return this.getRepository();
+	}
+
 	public void close() throws DataException;
 
 	// Not ideal place for this but implementating class will know the answer without having to open a new DB session
@@ -50,6 +50,19 @@ public abstract class RepositoryManager {
 		return repositoryFactory.getRepository();
 	}
 
+	/**
+	 * Returns repository session that can only read, served from a separate pool (if configured)
+	 * so heavy API reads don't compete with synchronizer, minter, etc. for sessions.
+	 * <p>
+	 * Any attempt to write using returned session results in <tt>DataException</tt>.
+	 */
+	public static Repository getReadOnlyRepository() throws DataException {
+		if (repositoryFactory == null)
+			throw new DataException("No repository available");
+
+		return repositoryFactory.getReadOnlyRepository();
+	}
+
 	public static Repository tryRepository() throws DataException {
 		if (repositoryFactory == null)
 			throw new DataException("No repository available");
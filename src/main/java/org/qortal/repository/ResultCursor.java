@@ -0,0 +1,31 @@
+package org.qortal.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Iterates through query results one row at a time, instead of building them all into a list first.
+ * <p>
+ * Holds the underlying result set open, so must be closed once finished with.
+ * Until then, the repository it came from must stay open, and shouldn't re-run the same query.
+ */
+public interface ResultCursor<T> extends AutoCloseable {
+
+	/** Returns next result, or null if there are no more results. */
+	public T next() throws DataException;
+
+	@Override
+	public void close() throws DataException;
+
+	/** Returns all remaining results as a list. */
+	public default List<T> toList() throws DataException {
+		List<T> results = new ArrayList<>();
+
+		T result;
+		while ((result = this.next()) != null)
+			results.add(result);
+
+		return results;
+	}
+
+}
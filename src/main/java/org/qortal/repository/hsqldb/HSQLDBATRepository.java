@@ -4,6 +4,7 @@ import com.google.common.primitives.Longs;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.controller.Controller;
+import org.qortal.crypto.Crypto;
 import org.qortal.data.at.ATData;
 import org.qortal.data.at.ATStateData;
 import org.qortal.repository.ATRepository;
@@ -12,14 +13,25 @@ import org.qortal.utils.ByteArray;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 public class HSQLDBATRepository implements ATRepository {
 
 	private static final Logger LOGGER = LogManager.getLogger(HSQLDBATRepository.class);
 
+	/** Most ATs are deployed from the same few programs, e.g. trade ATs, so this only needs to be small */
+	private static final int MAX_CODE_CACHE_ENTRIES = 100;
+
+	/** AT code bytes, keyed by code hash. Only contains code that actually matches its hash. */
+	@SuppressWarnings("serial")
+	private static final Map<ByteArray, byte[]> CODE_CACHE = Collections.synchronizedMap(new LinkedHashMap<>(MAX_CODE_CACHE_ENTRIES + 1, 0.75F, true) {
+		// This method is called just after a new entry has been added
+		@Override
+		public boolean removeEldestEntry(Map.Entry<ByteArray, byte[]> eldest) {
+			return size() > MAX_CODE_CACHE_ENTRIES;
+		}
+	});
+
 	protected HSQLDBRepository repository;
 
 	public HSQLDBATRepository(HSQLDBRepository repository) {
@@ -150,6 +162,92 @@ public class HSQLDBATRepository implements ATRepository {
 		}
 	}
 
+	@Override
+	public List<ATData> getExecutableATs(int blockHeight) throws DataException {
+		// Skip ATs sleeping until a later height, unless frozen (which are still run for backwards support)
+		// or also sleeping until a message. Note: no code_bytes here.
+		String sql = "SELECT AT_address, creator, created_when, version, asset_id, code_hash, "
+				+ "is_sleeping, sleep_until_height, had_fatal_error, "
+				+ "is_frozen, frozen_balance, sleep_until_message_timestamp "
+				+ "FROM ATs "
+				+ "WHERE is_finished = false "
+				+ "AND (is_sleeping = false OR sleep_until_height IS NULL OR sleep_until_height <= ? "
+				+ "OR is_frozen = true OR sleep_until_message_timestamp IS NOT NULL) "
+				+ "ORDER BY created_when ASC";
+
+		List<ATData> executableATs = new ArrayList<>();
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, blockHeight)) {
+			if (resultSet == null)
+				return executableATs;
+
+			boolean isFinished = false;
+
+			do {
+				String atAddress = resultSet.getString(1);
+				byte[] creatorPublicKey = resultSet.getBytes(2);
+				long created = resultSet.getLong(3);
+				int version = resultSet.getInt(4);
+				long assetId = resultSet.getLong(5);
+				byte[] codeHash = resultSet.getBytes(6);
+				boolean isSleeping = resultSet.getBoolean(7);
+
+				Integer sleepUntilHeight = resultSet.getInt(8);
+				if (sleepUntilHeight == 0 && resultSet.wasNull())
+					sleepUntilHeight = null;
+
+				boolean hadFatalError = resultSet.getBoolean(9);
+				boolean isFrozen = resultSet.getBoolean(10);
+
+				Long frozenBalance = resultSet.getLong(11);
+				if (frozenBalance == 0 && resultSet.wasNull())
+					frozenBalance = null;
+
+				Long sleepUntilMessageTimestamp = resultSet.getLong(12);
+				if (sleepUntilMessageTimestamp == 0 && resultSet.wasNull())
+					sleepUntilMessageTimestamp = null;
+
+				byte[] codeBytes = this.getCodeBytes(atAddress, codeHash);
+
+				ATData atData = new ATData(atAddress, creatorPublicKey, created, version, assetId, codeBytes, codeHash,
+						isSleeping, sleepUntilHeight, isFinished, hadFatalError, isFrozen, frozenBalance,
+						sleepUntilMessageTimestamp);
+
+				executableATs.add(atData);
+			} while (resultSet.next());
+
+			return executableATs;
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch executable ATs from repository", e);
+		}
+	}
+
+	/** Returns (copy of) AT's code bytes, from cache if possible. */
+	private byte[] getCodeBytes(String atAddress, byte[] codeHash) throws DataException {
+		ByteArray cacheKey = ByteArray.wrap(codeHash);
+
+		byte[] codeBytes = CODE_CACHE.get(cacheKey);
+		if (codeBytes != null)
+			return codeBytes.clone();
+
+		String sql = "SELECT code_bytes FROM ATs WHERE AT_address = ?";
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, atAddress)) {
+			if (resultSet == null)
+				throw new DataException(String.format("Missing code bytes for AT %s", atAddress));
+
+			codeBytes = resultSet.getBytes(1);
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch AT code bytes from repository", e);
+		}
+
+		// Only cache code bytes that match their hash, so ATs sharing a code hash are guaranteed to share code
+		if (Arrays.equals(Crypto.digest(codeBytes), codeHash))
+			CODE_CACHE.put(cacheKey, codeBytes.clone());
+
+		return codeBytes;
+	}
+
 	@Override
 	public List<ATData> getATsByFunctionality(byte[] codeHash, Boolean isExecutable, Integer limit, Integer offset, Boolean reverse) throws DataException {
 		StringBuilder sql = new StringBuilder(512);
@@ -4,18 +4,20 @@ import org.qortal.asset.Asset;
 import org.qortal.data.account.*;
 import org.qortal.repository.AccountRepository;
 import org.qortal.repository.DataException;
+import org.qortal.repository.ResultCursor;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 import static org.qortal.utils.Amounts.prettyAmount;
 
 public class HSQLDBAccountRepository implements AccountRepository {
 
+	/** Maximum number of addresses looked up per query by {@link #getAccounts(Collection)} */
+	private static final int GET_ACCOUNTS_CHUNK_SIZE = 1000;
+
 	protected HSQLDBRepository repository;
 
 	public HSQLDBAccountRepository(HSQLDBRepository repository) {
@@ -47,6 +49,55 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		}
 	}
 
+	@Override
+	public Map<String, AccountData> getAccounts(Collection<String> addresses) throws DataException {
+		Map<String, AccountData> accounts = new HashMap<>(addresses.size() * 2);
+
+		// De-duplicate and split into fixed-size chunks so statements stay a sensible size
+		List<String> uniqueAddresses = new ArrayList<>(new LinkedHashSet<>(addresses));
+		if (uniqueAddresses.isEmpty())
+			return accounts;
+
+		// Small lookups use a smaller statement; larger lookups always use the same statement, padded with NULLs, so it's only prepared once
+		final int chunkSize = Math.min(uniqueAddresses.size(), GET_ACCOUNTS_CHUNK_SIZE);
+
+		StringBuilder sqlBuilder = new StringBuilder(256 + chunkSize * 3);
+		sqlBuilder.append("SELECT reference, public_key, default_group_id, flags, level, blocks_minted, blocks_minted_adjustment, blocks_minted_penalty, account FROM Accounts WHERE account IN (");
+		for (int i = 0; i < chunkSize; ++i)
+			sqlBuilder.append(i == 0 ? "?" : ", ?");
+		sqlBuilder.append(")");
+		final String sql = sqlBuilder.toString();
+
+		for (int fromIndex = 0; fromIndex < uniqueAddresses.size(); fromIndex += chunkSize) {
+			Object[] bindParams = new Object[chunkSize];
+			for (int i = 0; i < chunkSize && fromIndex + i < uniqueAddresses.size(); ++i)
+				bindParams[i] = uniqueAddresses.get(fromIndex + i);
+
+			try (ResultSet resultSet = this.repository.checkedExecute(sql, bindParams)) {
+				if (resultSet == null)
+					continue;
+
+				do {
+					byte[] reference = resultSet.getBytes(1);
+					byte[] publicKey = resultSet.getBytes(2);
+					int defaultGroupId = resultSet.getInt(3);
+					int flags = resultSet.getInt(4);
+					int level = resultSet.getInt(5);
+					int blocksMinted = resultSet.getInt(6);
+					int blocksMintedAdjustment = resultSet.getInt(7);
+					int blocksMintedPenalty = resultSet.getInt(8);
+					String address = resultSet.getString(9);
+
+					accounts.put(address, new AccountData(address, reference, publicKey, defaultGroupId, flags, level, blocksMinted, blocksMintedAdjustment, blocksMintedPenalty));
+				} while (resultSet.next());
+			} catch (SQLException e) {
+				throw new DataException("Unable to fetch accounts from repository", e);
+			}
+		}
+
+		return accounts;
+	}
+
 	@Override
 	public List<AccountData> getFlaggedAccounts(int mask) throws DataException {
 		String sql = "SELECT reference, public_key, default_group_id, flags, level, blocks_minted, blocks_minted_adjustment, blocks_minted_penalty, account FROM Accounts WHERE BITAND(flags, ?) != 0";
@@ -427,6 +478,14 @@ public class HSQLDBAccountRepository implements AccountRepository {
 	@Override
 	public List<AccountBalanceData> getAssetBalances(List<String> addresses, List<Long> assetIds, BalanceOrdering balanceOrdering, Boolean excludeZero,
 			Integer limit, Integer offset, Boolean reverse) throws DataException {
+		try (ResultCursor<AccountBalanceData> cursor = this.getAssetBalancesCursor(addresses, assetIds, balanceOrdering, excludeZero, limit, offset, reverse)) {
+			return cursor.toList();
+		}
+	}
+
+	@Override
+	public ResultCursor<AccountBalanceData> getAssetBalancesCursor(List<String> addresses, List<Long> assetIds, BalanceOrdering balanceOrdering, Boolean excludeZero,
+			Integer limit, Integer offset, Boolean reverse) throws DataException {
 		StringBuilder sql = new StringBuilder(1024);
 
 		sql.append("SELECT account, asset_id, balance, asset_name FROM ");
@@ -508,22 +567,18 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		HSQLDBRepository.limitOffsetSql(sql, limit, offset);
 
 		String[] addressesArray = addresses == null ? new String[0] : addresses.toArray(new String[addresses.size()]);
-		List<AccountBalanceData> accountBalances = new ArrayList<>();
 
-		try (ResultSet resultSet = this.repository.checkedExecute(sql.toString(), (Object[]) addressesArray)) {
-			if (resultSet == null)
-				return accountBalances;
-
-			do {
-				String address = resultSet.getString(1);
-				long assetId = resultSet.getLong(2);
-				long balance = resultSet.getLong(3);
-				String assetName = resultSet.getString(4);
+		try {
+			ResultSet resultSet = this.repository.checkedExecute(sql.toString(), (Object[]) addressesArray);
 
-				accountBalances.add(new AccountBalanceData(address, assetId, balance, assetName));
-			} while (resultSet.next());
+			return new HSQLDBResultCursor<>(resultSet, rs -> {
+				String address = rs.getString(1);
+				long assetId = rs.getLong(2);
+				long balance = rs.getLong(3);
+				String assetName = rs.getString(4);
 
-			return accountBalances;
+				return new AccountBalanceData(address, assetId, balance, assetName);
+			}, "Unable to fetch asset balances from repository");
 		} catch (SQLException e) {
 			throw new DataException("Unable to fetch asset balances from repository", e);
 		}
@@ -710,6 +765,18 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public List<byte[]> getRewardSharePublicKeys() throws DataException {
+		RewardShareData[] indexedRewardShares = HSQLDBRewardShareIndex.getRewardShares(this.repository);
+		if (indexedRewardShares != null) {
+			if (indexedRewardShares.length == 0)
+				return null;
+
+			List<byte[]> rewardSharePublicKeys = new ArrayList<>(indexedRewardShares.length);
+			for (RewardShareData rewardShareData : indexedRewardShares)
+				rewardSharePublicKeys.add(rewardShareData.getRewardSharePublicKey());
+
+			return rewardSharePublicKeys;
+		}
+
 		String sql = "SELECT reward_share_public_key FROM RewardShares ORDER BY reward_share_public_key";
 
 		List<byte[]> rewardSharePublicKeys = new ArrayList<>();
@@ -876,6 +943,12 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public Integer getRewardShareIndex(byte[] rewardSharePublicKey) throws DataException {
+		RewardShareData[] indexedRewardShares = HSQLDBRewardShareIndex.getRewardShares(this.repository);
+		if (indexedRewardShares != null) {
+			int index = HSQLDBRewardShareIndex.indexOf(indexedRewardShares, rewardSharePublicKey);
+			return index >= 0 ? index : null;
+		}
+
 		if (!this.rewardShareExists(rewardSharePublicKey))
 			return null;
 
@@ -890,6 +963,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public RewardShareData getRewardShareByIndex(int index) throws DataException {
+		RewardShareData[] indexedRewardShares = HSQLDBRewardShareIndex.getRewardShares(this.repository);
+		if (indexedRewardShares != null)
+			return index >= 0 && index < indexedRewardShares.length ? indexedRewardShares[index] : null;
+
 		String sql = "SELECT minter_public_key, minter, recipient, share_percent, reward_share_public_key FROM RewardShares "
 				+ "ORDER BY reward_share_public_key ASC "
 				+ "OFFSET ? LIMIT 1";
@@ -922,6 +999,19 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		if (indexes.length == 0)
 			return rewardShares;
 
+		RewardShareData[] indexedRewardShares = HSQLDBRewardShareIndex.getRewardShares(this.repository);
+		if (indexedRewardShares != null) {
+			for (int index : indexes) {
+				if (index < 0 || index >= indexedRewardShares.length)
+					// Index is out of bounds
+					return null;
+
+				rewardShares.add(indexedRewardShares[index]);
+			}
+
+			return rewardShares;
+		}
+
 		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
 			if (resultSet == null)
 				return null;
@@ -977,15 +1067,28 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		} catch (SQLException e) {
 			throw new DataException("Unable to save reward-share info into repository", e);
 		}
+
+		this.repository.recordRewardShareChange(rewardShareData.getRewardSharePublicKey(), rewardShareData);
 	}
 
 	@Override
 	public void delete(byte[] minterPublickey, String recipient) throws DataException {
+		// We need reward-share public key to keep in-memory index up to date
+		RewardShareData rewardShareData = this.getRewardShare(minterPublickey, recipient);
+
 		try {
 			this.repository.delete("RewardShares", "minter_public_key = ? and recipient = ?", minterPublickey, recipient);
 		} catch (SQLException e) {
 			throw new DataException("Unable to delete reward-share info from repository", e);
 		}
+
+		if (rewardShareData != null)
+			this.repository.recordRewardShareChange(rewardShareData.getRewardSharePublicKey(), null);
+	}
+
+	@Override
+	public void rebuildRewardShareIndex() throws DataException {
+		HSQLDBRewardShareIndex.rebuild(this.repository);
 	}
 
 	// Minting accounts used by BlockMinter
@@ -18,6 +18,7 @@ import org.qortal.data.transaction.BaseTransactionData;
 import org.qortal.data.transaction.TransactionData;
 import org.qortal.repository.ArbitraryRepository;
 import org.qortal.repository.DataException;
+import org.qortal.repository.ResultCursor;
 import org.qortal.transaction.ArbitraryTransaction;
 import org.qortal.transaction.Transaction.ApprovalStatus;
 import org.qortal.utils.Base58;
@@ -572,6 +573,17 @@ public class HSQLDBArbitraryRepository implements ArbitraryRepository {
 															 boolean defaultResource, Boolean followedOnly, Boolean excludeBlocked,
 															 Boolean includeMetadata, Boolean includeStatus,
 															 Integer limit, Integer offset, Boolean reverse) throws DataException {
+		try (ResultCursor<ArbitraryResourceData> cursor = this.getArbitraryResourcesCursor(service, identifier, names, defaultResource,
+				followedOnly, excludeBlocked, includeMetadata, includeStatus, limit, offset, reverse)) {
+			return cursor.toList();
+		}
+	}
+
+	@Override
+	public ResultCursor<ArbitraryResourceData> getArbitraryResourcesCursor(Service service, String identifier, List<String> names,
+																		 boolean defaultResource, Boolean followedOnly, Boolean excludeBlocked,
+																		 Boolean includeMetadata, Boolean includeStatus,
+																		 Integer limit, Integer offset, Boolean reverse) throws DataException {
 		StringBuilder sql = new StringBuilder(512);
 		List<Object> bindParams = new ArrayList<>();
 
@@ -640,80 +652,20 @@ public class HSQLDBArbitraryRepository implements ArbitraryRepository {
 			}
 		}
 
-		sql.append(" ORDER BY name COLLATE SQL_TEXT_UCC_NO_PAD");
-
+		// Ordering is fully determined, so results can be fetched in pages
 		if (reverse != null && reverse) {
-			sql.append(" DESC");
+			sql.append(" ORDER BY name COLLATE SQL_TEXT_UCC_NO_PAD DESC, service DESC, identifier DESC");
+		} else {
+			sql.append(" ORDER BY name COLLATE SQL_TEXT_UCC_NO_PAD, service, identifier");
 		}
 
 		HSQLDBRepository.limitOffsetSql(sql, limit, offset);
 
-		List<ArbitraryResourceData> arbitraryResources = new ArrayList<>();
-
-		try (ResultSet resultSet = this.repository.checkedExecute(sql.toString(), bindParams.toArray())) {
-			if (resultSet == null)
-				return arbitraryResources;
-
-			do {
-				String nameResult = resultSet.getString(1);
-				Service serviceResult = Service.valueOf(resultSet.getInt(2));
-				String identifierResult = resultSet.getString(3);
-				Integer sizeResult = resultSet.getInt(4);
-				Integer status = resultSet.getInt(5);
-				Long created = resultSet.getLong(6);
-				Long updated = resultSet.getLong(7);
-
-				// Optional metadata fields
-				String title = resultSet.getString(8);
-				String description = resultSet.getString(9);
-				String category = resultSet.getString(10);
-				String tag1 = resultSet.getString(11);
-				String tag2 = resultSet.getString(12);
-				String tag3 = resultSet.getString(13);
-				String tag4 = resultSet.getString(14);
-				String tag5 = resultSet.getString(15);
-
-				if (Objects.equals(identifierResult, "default")) {
-					// Map "default" back to null. This is optional but probably less confusing than returning "default".
-					identifierResult = null;
-				}
-
-				ArbitraryResourceData arbitraryResourceData = new ArbitraryResourceData();
-				arbitraryResourceData.name = nameResult;
-				arbitraryResourceData.service = serviceResult;
-				arbitraryResourceData.identifier = identifierResult;
-				arbitraryResourceData.size = sizeResult;
-				arbitraryResourceData.created = created;
-				arbitraryResourceData.updated = (updated == 0) ? null : updated;
-
-				if (includeStatus != null && includeStatus) {
-					arbitraryResourceData.setStatus(ArbitraryResourceStatus.Status.valueOf(status));
-				}
-
-				if (includeMetadata != null && includeMetadata) {
-					// TODO: we could avoid the join altogether
-					ArbitraryResourceMetadata metadata = new ArbitraryResourceMetadata();
-					metadata.setTitle(title);
-					metadata.setDescription(description);
-					metadata.setCategory(Category.uncategorizedValueOf(category));
-
-					List<String> tags = new ArrayList<>();
-					if (tag1 != null) tags.add(tag1);
-					if (tag2 != null) tags.add(tag2);
-					if (tag3 != null) tags.add(tag3);
-					if (tag4 != null) tags.add(tag4);
-					if (tag5 != null) tags.add(tag5);
-					metadata.setTags(!tags.isEmpty() ? tags : null);
-
-					if (metadata.hasMetadata()) {
-						arbitraryResourceData.metadata = metadata;
-					}
-				}
-
-				arbitraryResources.add(arbitraryResourceData);
-			} while (resultSet.next());
+		try {
+			ResultSet resultSet = this.repository.checkedExecute(sql.toString(), bindParams.toArray());
 
-			return arbitraryResources;
+			return new HSQLDBResultCursor<>(resultSet, rs -> arbitraryResourceFromResultSet(rs, includeMetadata, includeStatus),
+					"Unable to fetch arbitrary resources from repository");
 		} catch (SQLException e) {
 			throw new DataException("Unable to fetch arbitrary resources from repository", e);
 		}
@@ -723,6 +675,16 @@ public class HSQLDBArbitraryRepository implements ArbitraryRepository {
 	public List<ArbitraryResourceData> searchArbitraryResources(Service service, String query, String identifier, List<String> names, String title, String description, boolean prefixOnly,
 																List<String> exactMatchNames, boolean defaultResource, SearchMode mode, Integer minLevel, Boolean followedOnly, Boolean excludeBlocked,
 																Boolean includeMetadata, Boolean includeStatus, Long before, Long after, Integer limit, Integer offset, Boolean reverse) throws DataException {
+		try (ResultCursor<ArbitraryResourceData> cursor = this.searchArbitraryResourcesCursor(service, query, identifier, names, title, description, prefixOnly,
+				exactMatchNames, defaultResource, mode, minLevel, followedOnly, excludeBlocked, includeMetadata, includeStatus, before, after, limit, offset, reverse)) {
+			return cursor.toList();
+		}
+	}
+
+	@Override
+	public ResultCursor<ArbitraryResourceData> searchArbitraryResourcesCursor(Service service, String query, String identifier, List<String> names, String title, String description, boolean prefixOnly,
+																			List<String> exactMatchNames, boolean defaultResource, SearchMode mode, Integer minLevel, Boolean followedOnly, Boolean excludeBlocked,
+																			Boolean includeMetadata, Boolean includeStatus, Long before, Long after, Integer limit, Integer offset, Boolean reverse) throws DataException {
 		StringBuilder sql = new StringBuilder(512);
 		List<Object> bindParams = new ArrayList<>();
 
@@ -875,83 +837,84 @@ public class HSQLDBArbitraryRepository implements ArbitraryRepository {
 			}
 		}
 
-		sql.append(" ORDER BY created_when");
-
+		// Ordering is fully determined, so results can be fetched in pages
 		if (reverse != null && reverse) {
-			sql.append(" DESC");
+			sql.append(" ORDER BY created_when DESC, name DESC, service DESC, identifier DESC");
+		} else {
+			sql.append(" ORDER BY created_when, name, service, identifier");
 		}
 
 		HSQLDBRepository.limitOffsetSql(sql, limit, offset);
 
-		List<ArbitraryResourceData> arbitraryResources = new ArrayList<>();
-
-		try (ResultSet resultSet = this.repository.checkedExecute(sql.toString(), bindParams.toArray())) {
-			if (resultSet == null)
-				return arbitraryResources;
+		try {
+			ResultSet resultSet = this.repository.checkedExecute(sql.toString(), bindParams.toArray());
 
-			do {
-				String nameResult = resultSet.getString(1);
-				Service serviceResult = Service.valueOf(resultSet.getInt(2));
-				String identifierResult = resultSet.getString(3);
-				Integer sizeResult = resultSet.getInt(4);
-				Integer status = resultSet.getInt(5);
-				Long created = resultSet.getLong(6);
-				Long updated = resultSet.getLong(7);
+			return new HSQLDBResultCursor<>(resultSet, rs -> arbitraryResourceFromResultSet(rs, includeMetadata, includeStatus),
+					"Unable to fetch arbitrary resources from repository");
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch arbitrary resources from repository", e);
+		}
+	}
 
-				// Optional metadata fields
-				String titleResult = resultSet.getString(8);
-				String descriptionResult = resultSet.getString(9);
-				String category = resultSet.getString(10);
-				String tag1 = resultSet.getString(11);
-				String tag2 = resultSet.getString(12);
-				String tag3 = resultSet.getString(13);
-				String tag4 = resultSet.getString(14);
-				String tag5 = resultSet.getString(15);
 
-				if (Objects.equals(identifierResult, "default")) {
-					// Map "default" back to null. This is optional but probably less confusing than returning "default".
-					identifierResult = null;
-				}
+	/** Converts row of name, service, identifier, size, status, created_when, updated_when, then metadata columns. */
+	private static ArbitraryResourceData arbitraryResourceFromResultSet(ResultSet resultSet, Boolean includeMetadata, Boolean includeStatus) throws SQLException {
+		String nameResult = resultSet.getString(1);
+		Service serviceResult = Service.valueOf(resultSet.getInt(2));
+		String identifierResult = resultSet.getString(3);
+		Integer sizeResult = resultSet.getInt(4);
+		Integer status = resultSet.getInt(5);
+		Long created = resultSet.getLong(6);
+		Long updated = resultSet.getLong(7);
+
+		// Optional metadata fields
+		String title = resultSet.getString(8);
+		String description = resultSet.getString(9);
+		String category = resultSet.getString(10);
+		String tag1 = resultSet.getString(11);
+		String tag2 = resultSet.getString(12);
+		String tag3 = resultSet.getString(13);
+		String tag4 = resultSet.getString(14);
+		String tag5 = resultSet.getString(15);
+
+		if (Objects.equals(identifierResult, "default")) {
+			// Map "default" back to null. This is optional but probably less confusing than returning "default".
+			identifierResult = null;
+		}
 
-				ArbitraryResourceData arbitraryResourceData = new ArbitraryResourceData();
-				arbitraryResourceData.name = nameResult;
-				arbitraryResourceData.service = serviceResult;
-				arbitraryResourceData.identifier = identifierResult;
-				arbitraryResourceData.size = sizeResult;
-				arbitraryResourceData.created = created;
-				arbitraryResourceData.updated = (updated == 0) ? null : updated;
+		ArbitraryResourceData arbitraryResourceData = new ArbitraryResourceData();
+		arbitraryResourceData.name = nameResult;
+		arbitraryResourceData.service = serviceResult;
+		arbitraryResourceData.identifier = identifierResult;
+		arbitraryResourceData.size = sizeResult;
+		arbitraryResourceData.created = created;
+		arbitraryResourceData.updated = (updated == 0) ? null : updated;
 
-				if (includeStatus != null && includeStatus) {
-					arbitraryResourceData.setStatus(ArbitraryResourceStatus.Status.valueOf(status));
-				}
+		if (includeStatus != null && includeStatus) {
+			arbitraryResourceData.setStatus(ArbitraryResourceStatus.Status.valueOf(status));
+		}
 
-				if (includeMetadata != null && includeMetadata) {
-					// TODO: we could avoid the join altogether
-					ArbitraryResourceMetadata metadata = new ArbitraryResourceMetadata();
-					metadata.setTitle(titleResult);
-					metadata.setDescription(descriptionResult);
-					metadata.setCategory(Category.uncategorizedValueOf(category));
-
-					List<String> tags = new ArrayList<>();
-					if (tag1 != null) tags.add(tag1);
-					if (tag2 != null) tags.add(tag2);
-					if (tag3 != null) tags.add(tag3);
-					if (tag4 != null) tags.add(tag4);
-					if (tag5 != null) tags.add(tag5);
-					metadata.setTags(!tags.isEmpty() ? tags : null);
-
-					if (metadata.hasMetadata()) {
-						arbitraryResourceData.metadata = metadata;
-					}
-				}
+		if (includeMetadata != null && includeMetadata) {
+			// TODO: we could avoid the join altogether
+			ArbitraryResourceMetadata metadata = new ArbitraryResourceMetadata();
+			metadata.setTitle(title);
+			metadata.setDescription(description);
+			metadata.setCategory(Category.uncategorizedValueOf(category));
 
-				arbitraryResources.add(arbitraryResourceData);
-			} while (resultSet.next());
+			List<String> tags = new ArrayList<>();
+			if (tag1 != null) tags.add(tag1);
+			if (tag2 != null) tags.add(tag2);
+			if (tag3 != null) tags.add(tag3);
+			if (tag4 != null) tags.add(tag4);
+			if (tag5 != null) tags.add(tag5);
+			metadata.setTags(!tags.isEmpty() ? tags : null);
 
-			return arbitraryResources;
-		} catch (SQLException e) {
-			throw new DataException("Unable to fetch arbitrary resources from repository", e);
+			if (metadata.hasMetadata()) {
+				arbitraryResourceData.metadata = metadata;
+			}
 		}
+
+		return arbitraryResourceData;
 	}
 
 
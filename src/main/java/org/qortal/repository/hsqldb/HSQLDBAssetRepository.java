@@ -6,12 +6,15 @@ import org.qortal.data.asset.RecentTradeData;
 import org.qortal.data.asset.TradeData;
 import org.qortal.repository.AssetRepository;
 import org.qortal.repository.DataException;
+import org.qortal.settings.Settings;
+import org.qortal.utils.ByteArray;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class HSQLDBAssetRepository implements AssetRepository {
 
@@ -299,6 +302,53 @@ public class HSQLDBAssetRepository implements AssetRepository {
 
 	@Override
 	public List<OrderData> getOpenOrdersForTrading(long haveAssetId, long wantAssetId, Long minimumPrice) throws DataException {
+		// In-memory order book only supports 'new' pricing scheme
+		if (minimumPrice != null && Settings.getInstance().isAssetOrderBookEnabled()) {
+			List<OrderData> orders = getOpenOrdersForTradingFromBook(haveAssetId, wantAssetId, minimumPrice);
+			if (orders != null)
+				return orders;
+		}
+
+		return getOpenOrdersForTradingFromRepository(haveAssetId, wantAssetId, minimumPrice);
+	}
+
+	/**
+	 * Returns open orders from committed order book, overlaid with this session's uncommitted order changes,
+	 * or null if order book can't be used.
+	 */
+	private List<OrderData> getOpenOrdersForTradingFromBook(long haveAssetId, long wantAssetId, long minimumPrice) throws DataException {
+		List<OrderData> committedOrders = HSQLDBOrderBook.getOpenOrders(this.repository, haveAssetId, wantAssetId, minimumPrice);
+		if (committedOrders == null)
+			return null;
+
+		Map<ByteArray, OrderData> orderChanges = this.repository.getOrderChanges();
+		if (orderChanges.isEmpty())
+			return HSQLDBOrderBook.hasAmbiguousOrdering(committedOrders) ? null : committedOrders;
+
+		List<OrderData> orders = new ArrayList<>(committedOrders.size());
+
+		// Drop committed orders that this session has changed
+		for (OrderData orderData : committedOrders)
+			if (!orderChanges.containsKey(ByteArray.wrap(orderData.getOrderId())))
+				orders.add(orderData);
+
+		// Add this session's open orders, in their latest state
+		boolean hasSessionOrders = false;
+		for (OrderData orderData : orderChanges.values())
+			if (HSQLDBOrderBook.isOpen(orderData)
+					&& orderData.getHaveAssetId() == haveAssetId && orderData.getWantAssetId() == wantAssetId
+					&& HSQLDBOrderBook.isPriceAcceptable(haveAssetId, wantAssetId, orderData.getPrice(), minimumPrice)) {
+				orders.add(HSQLDBOrderBook.copyOf(orderData));
+				hasSessionOrders = true;
+			}
+
+		if (hasSessionOrders)
+			orders.sort(HSQLDBOrderBook.getMatchingOrder(haveAssetId, wantAssetId));
+
+		return HSQLDBOrderBook.hasAmbiguousOrdering(orders) ? null : orders;
+	}
+
+	private List<OrderData> getOpenOrdersForTradingFromRepository(long haveAssetId, long wantAssetId, Long minimumPrice) throws DataException {
 		List<Object> bindParams = new ArrayList<>(3);
 
 		StringBuilder sql = new StringBuilder(512);
@@ -528,6 +578,8 @@ public class HSQLDBAssetRepository implements AssetRepository {
 		} catch (SQLException e) {
 			throw new DataException("Unable to save asset order into repository", e);
 		}
+
+		this.repository.recordOrderChange(orderData.getOrderId(), orderData);
 	}
 
 	@Override
@@ -537,6 +589,13 @@ public class HSQLDBAssetRepository implements AssetRepository {
 		} catch (SQLException e) {
 			throw new DataException("Unable to delete asset order from repository", e);
 		}
+
+		this.repository.recordOrderChange(orderId, null);
+	}
+
+	@Override
+	public void rebuildOrderBook() throws DataException {
+		HSQLDBOrderBook.rebuild(this.repository);
 	}
 
 	// Trades
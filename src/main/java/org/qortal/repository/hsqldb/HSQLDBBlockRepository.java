@@ -8,12 +8,15 @@ import org.qortal.data.transaction.TransactionData;
 import org.qortal.repository.BlockRepository;
 import org.qortal.repository.DataException;
 import org.qortal.repository.TransactionRepository;
+import org.qortal.transaction.Transaction.TransactionType;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 public class HSQLDBBlockRepository implements BlockRepository {
 
@@ -511,6 +514,111 @@ public class HSQLDBBlockRepository implements BlockRepository {
 	}
 
 
+	@Override
+	public void saveActivitySummary(int height, Map<TransactionType, Integer> transactionCounts) throws DataException {
+		// Nothing to do?
+		if (transactionCounts == null || transactionCounts.isEmpty())
+			return;
+
+		List<Object[]> summaryParams = new ArrayList<>(transactionCounts.size());
+		List<Object[]> totalsParams = new ArrayList<>(transactionCounts.size());
+		for (Map.Entry<TransactionType, Integer> entry : transactionCounts.entrySet()) {
+			summaryParams.add(new Object[] { height, entry.getKey().value, entry.getValue() });
+			totalsParams.add(new Object[] { entry.getKey().value, (long) entry.getValue(), (long) entry.getValue() });
+		}
+
+		try {
+			this.repository.executeCheckedBatchUpdate("INSERT INTO ActivitySummaries (height, tx_type, tx_count) VALUES (?, ?, ?)", summaryParams);
+
+			String sql = "INSERT INTO ActivityTotals (tx_type, tx_count) VALUES (?, ?) "
+					+ "ON DUPLICATE KEY UPDATE tx_count = tx_count + ?";
+			this.repository.executeCheckedBatchUpdate(sql, totalsParams);
+		} catch (SQLException e) {
+			throw new DataException("Unable to save activity summary into repository", e);
+		}
+	}
+
+	@Override
+	public void deleteActivitySummary(int height) throws DataException {
+		Map<TransactionType, Integer> transactionCounts = this.getActivitySummary(height, height);
+
+		// Nothing to do?
+		if (transactionCounts.isEmpty())
+			return;
+
+		List<Object[]> totalsParams = new ArrayList<>(transactionCounts.size());
+		for (Map.Entry<TransactionType, Integer> entry : transactionCounts.entrySet())
+			totalsParams.add(new Object[] { (long) entry.getValue(), entry.getKey().value });
+
+		try {
+			this.repository.executeCheckedBatchUpdate("UPDATE ActivityTotals SET tx_count = tx_count - ? WHERE tx_type = ?", totalsParams);
+
+			this.repository.delete("ActivitySummaries", "height = ?", height);
+		} catch (SQLException e) {
+			throw new DataException("Unable to delete activity summary from repository", e);
+		}
+	}
+
+	@Override
+	public Map<TransactionType, Integer> getActivitySummary(int firstBlockHeight, int lastBlockHeight) throws DataException {
+		// Uses (height, tx_type) primary key
+		String sql = "SELECT tx_type, SUM(tx_count) FROM ActivitySummaries "
+				+ "WHERE height BETWEEN ? AND ? "
+				+ "GROUP BY tx_type";
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, firstBlockHeight, lastBlockHeight)) {
+			return getTransactionCountsFromResultSet(resultSet);
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch activity summary from repository", e);
+		}
+	}
+
+	@Override
+	public Map<TransactionType, Integer> getActivityTotals() throws DataException {
+		String sql = "SELECT tx_type, tx_count FROM ActivityTotals WHERE tx_count <> 0";
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
+			return getTransactionCountsFromResultSet(resultSet);
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch activity totals from repository", e);
+		}
+	}
+
+	private static Map<TransactionType, Integer> getTransactionCountsFromResultSet(ResultSet resultSet) throws SQLException {
+		Map<TransactionType, Integer> transactionCounts = new EnumMap<>(TransactionType.class);
+
+		if (resultSet == null)
+			return transactionCounts;
+
+		do {
+			int type = resultSet.getInt(1);
+			long count = resultSet.getLong(2);
+
+			transactionCounts.put(TransactionType.valueOf(type), (int) count);
+		} while (resultSet.next());
+
+		return transactionCounts;
+	}
+
+	@Override
+	public void rebuildActivitySummaries() throws DataException {
+		try {
+			this.repository.delete("ActivitySummaries");
+			this.repository.delete("ActivityTotals");
+
+			this.repository.executeCheckedUpdate("INSERT INTO ActivitySummaries (height, tx_type, tx_count) "
+					+ "SELECT block_height, type, COUNT(*) FROM Transactions "
+					+ "WHERE block_height IS NOT NULL "
+					+ "GROUP BY block_height, type");
+
+			this.repository.executeCheckedUpdate("INSERT INTO ActivityTotals (tx_type, tx_count) "
+					+ "SELECT tx_type, SUM(tx_count) FROM ActivitySummaries "
+					+ "GROUP BY tx_type");
+		} catch (SQLException e) {
+			throw new DataException("Unable to rebuild activity summaries in repository", e);
+		}
+	}
+
 	@Override
 	public BlockData getDetachedBlockSignature(int startHeight) throws DataException {
 		String sql = "SELECT " + BLOCK_DB_COLUMNS + " FROM Blocks "
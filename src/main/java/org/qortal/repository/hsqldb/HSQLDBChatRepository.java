@@ -7,7 +7,6 @@ import org.qortal.data.chat.ChatMessage;
 import org.qortal.data.transaction.ChatTransactionData;
 import org.qortal.repository.ChatRepository;
 import org.qortal.repository.DataException;
-import org.qortal.transaction.Transaction.TransactionType;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -183,120 +182,109 @@ public class HSQLDBChatRepository implements ChatRepository {
 		return new ActiveChats(groupChats, directChats);
 	}
 
+	/** Latest message details, to follow group ID and name. Expects LatestGroupChats and ChatTransactions in FROM clause. */
+	private static final String LATEST_GROUP_CHAT_COLUMNS = "LatestGroupChats.created_when, sender, "
+			+ "(SELECT name FROM Names WHERE Names.owner = sender LIMIT 1), LatestGroupChats.signature, data";
+
+	/** Expects LatestDirectChats and ChatTransactions in FROM clause. */
+	private static final String LATEST_DIRECT_CHAT_COLUMNS = "other_address, OtherNames.name, LatestDirectChats.created_when, sender, "
+			+ "(SELECT name FROM Names WHERE Names.owner = sender LIMIT 1)";
+
 	private List<GroupChat> getActiveGroupChats(String address, Encoding encoding) throws DataException {
 		// Find groups where address is a member and potential latest message details
-		String groupsSql = "SELECT group_id, group_name, latest_timestamp, sender, sender_name, signature, data "
+		String groupsSql = "SELECT Groups.group_id, group_name, " + LATEST_GROUP_CHAT_COLUMNS + " "
 				+ "FROM GroupMembers "
-				+ "JOIN Groups USING (group_id) "
-				+ "LEFT OUTER JOIN LATERAL("
-					+ "SELECT created_when AS latest_timestamp, sender, name AS sender_name, signature, data "
-					+ "FROM ChatTransactions "
-					+ "JOIN Transactions USING (signature) "
-					+ "LEFT OUTER JOIN Names AS SenderNames ON SenderNames.owner = sender "
-					// NOTE: We need to qualify "Groups.group_id" here to avoid "General error" bug in HSQLDB v2.5.0
-					+ "WHERE tx_group_id = Groups.group_id AND type = " + TransactionType.CHAT.value + " "
-					+ "ORDER BY created_when DESC "
-					+ "LIMIT 1"
-				+ ") AS LatestMessages ON TRUE "
-				+ "WHERE address = ?";
+				+ "JOIN Groups ON Groups.group_id = GroupMembers.group_id "
+				+ "LEFT OUTER JOIN LatestGroupChats ON LatestGroupChats.group_id = Groups.group_id "
+				+ "LEFT OUTER JOIN ChatTransactions ON ChatTransactions.signature = LatestGroupChats.signature "
+				+ "WHERE GroupMembers.address = ?";
 
 		List<GroupChat> groupChats = new ArrayList<>();
 		try (ResultSet resultSet = this.repository.checkedExecute(groupsSql, address)) {
 			if (resultSet != null) {
 				do {
-					int groupId = resultSet.getInt(1);
-					String groupName = resultSet.getString(2);
-
-					Long timestamp = resultSet.getLong(3);
-					if (timestamp == 0 && resultSet.wasNull())
-						timestamp = null;
-
-					String sender = resultSet.getString(4);
-					String senderName = resultSet.getString(5);
-					byte[] signature = resultSet.getBytes(6);
-					byte[] data = resultSet.getBytes(7);
-
-					GroupChat groupChat = new GroupChat(groupId, groupName, timestamp, sender, senderName, signature, encoding, data);
-					groupChats.add(groupChat);
+					groupChats.add(getGroupChatFromResultSet(resultSet, encoding));
 				} while (resultSet.next());
 			}
 		} catch (SQLException e) {
 			throw new DataException("Unable to fetch active group chats from repository", e);
 		}
 
-		// We need different SQL to handle group-less chat
-		String grouplessSql = "SELECT created_when, sender, SenderNames.name, signature, data "
-				+ "FROM ChatTransactions "
-				+ "JOIN Transactions USING (signature) "
-				+ "LEFT OUTER JOIN Names AS SenderNames ON SenderNames.owner = sender "
-				+ "WHERE tx_group_id = 0 "
-				+ "AND recipient IS NULL "
-				+ "ORDER BY created_when DESC "
-				+ "LIMIT 1";
+		// Group-less chat isn't in Groups
+		groupChats.add(getGrouplessChat(encoding));
+
+		return groupChats;
+	}
 
-		try (ResultSet resultSet = this.repository.checkedExecute(grouplessSql)) {
-			Long timestamp = null;
-			String sender = null;
-			String senderName = null;
-			byte[] signature = null;
-			byte[] data = null;
+	@Override
+	public GroupChat getActiveGroupChat(int groupId, Encoding encoding) throws DataException {
+		if (groupId == 0)
+			return getGrouplessChat(encoding);
 
-			if (resultSet != null) {
-				// We found a recipient-less, group-less CHAT message, so report its details
-				timestamp = resultSet.getLong(1);
-				sender = resultSet.getString(2);
-				senderName = resultSet.getString(3);
-				signature = resultSet.getBytes(4);
-				data = resultSet.getBytes(5);
-			}
+		String sql = "SELECT Groups.group_id, group_name, " + LATEST_GROUP_CHAT_COLUMNS + " "
+				+ "FROM Groups "
+				+ "LEFT OUTER JOIN LatestGroupChats ON LatestGroupChats.group_id = Groups.group_id "
+				+ "LEFT OUTER JOIN ChatTransactions ON ChatTransactions.signature = LatestGroupChats.signature "
+				+ "WHERE Groups.group_id = ?";
 
-			GroupChat groupChat = new GroupChat(0, null, timestamp, sender, senderName, signature, encoding, data);
-			groupChats.add(groupChat);
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, groupId)) {
+			if (resultSet == null)
+				return null;
+
+			return getGroupChatFromResultSet(resultSet, encoding);
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch active group chat from repository", e);
+		}
+	}
+
+	private GroupChat getGrouplessChat(Encoding encoding) throws DataException {
+		String sql = "SELECT 0, NULL, " + LATEST_GROUP_CHAT_COLUMNS + " "
+				+ "FROM LatestGroupChats "
+				+ "JOIN ChatTransactions ON ChatTransactions.signature = LatestGroupChats.signature "
+				+ "WHERE group_id = 0";
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
+			if (resultSet == null)
+				// No recipient-less, group-less CHAT messages yet
+				return new GroupChat(0, null, null, null, null, null, encoding, null);
+
+			return getGroupChatFromResultSet(resultSet, encoding);
 		} catch (SQLException e) {
 			throw new DataException("Unable to fetch active group chats from repository", e);
 		}
+	}
 
-		return groupChats;
+	private static GroupChat getGroupChatFromResultSet(ResultSet resultSet, Encoding encoding) throws SQLException {
+		int groupId = resultSet.getInt(1);
+		String groupName = resultSet.getString(2);
+
+		Long timestamp = resultSet.getLong(3);
+		if (timestamp == 0 && resultSet.wasNull())
+			timestamp = null;
+
+		String sender = resultSet.getString(4);
+		String senderName = resultSet.getString(5);
+		byte[] signature = resultSet.getBytes(6);
+		byte[] data = resultSet.getBytes(7);
+
+		return new GroupChat(groupId, groupName, timestamp, sender, senderName, signature, encoding, data);
 	}
 
 	private List<DirectChat> getActiveDirectChats(String address) throws DataException {
-		// Find chat messages involving address
-		String directSql = "SELECT other_address, name, latest_timestamp, sender, sender_name "
-				+ "FROM ("
-					+ "SELECT recipient FROM ChatTransactions "
-					+ "WHERE sender = ? AND recipient IS NOT NULL "
-					+ "UNION "
-					+ "SELECT sender FROM ChatTransactions "
-					+ "WHERE recipient = ?"
-				+ ") AS OtherParties (other_address) "
-				+ "CROSS JOIN LATERAL("
-					+ "SELECT created_when AS latest_timestamp, sender, name AS sender_name "
-					+ "FROM ChatTransactions "
-					+ "NATURAL JOIN Transactions "
-					+ "LEFT OUTER JOIN Names AS SenderNames ON SenderNames.owner = sender "
-					+ "WHERE (sender = other_address AND recipient = ?) "
-					+ "OR (sender = ? AND recipient = other_address) "
-					+ "ORDER BY created_when DESC "
-					+ "LIMIT 1"
-				+ ") AS LatestMessages "
-				+ "LEFT OUTER JOIN Names ON owner = other_address";
-
-		Object[] bindParams = new Object[] { address, address, address, address };
+		// Find latest chat messages involving address
+		String directSql = "SELECT " + LATEST_DIRECT_CHAT_COLUMNS + " "
+				+ "FROM LatestDirectChats "
+				+ "JOIN ChatTransactions ON ChatTransactions.signature = LatestDirectChats.signature "
+				+ "LEFT OUTER JOIN Names AS OtherNames ON OtherNames.owner = other_address "
+				+ "WHERE LatestDirectChats.address = ?";
 
 		List<DirectChat> directChats = new ArrayList<>();
-		try (ResultSet resultSet = this.repository.checkedExecute(directSql, bindParams)) {
+		try (ResultSet resultSet = this.repository.checkedExecute(directSql, address)) {
 			if (resultSet == null)
 				return directChats;
 
 			do {
-				String otherAddress = resultSet.getString(1);
-				String name = resultSet.getString(2);
-				long timestamp = resultSet.getLong(3);
-				String sender = resultSet.getString(4);
-				String senderName = resultSet.getString(5);
-
-				DirectChat directChat = new DirectChat(otherAddress, name, timestamp, sender, senderName);
-				directChats.add(directChat);
+				directChats.add(getDirectChatFromResultSet(resultSet));
 			} while (resultSet.next());
 		} catch (SQLException e) {
 			throw new DataException("Unable to fetch active direct chats from repository", e);
@@ -305,4 +293,33 @@ public class HSQLDBChatRepository implements ChatRepository {
 		return directChats;
 	}
 
-}
\ No newline at end of file
+	@Override
+	public DirectChat getActiveDirectChat(String address, String otherAddress) throws DataException {
+		String sql = "SELECT " + LATEST_DIRECT_CHAT_COLUMNS + " "
+				+ "FROM LatestDirectChats "
+				+ "JOIN ChatTransactions ON ChatTransactions.signature = LatestDirectChats.signature "
+				+ "LEFT OUTER JOIN Names AS OtherNames ON OtherNames.owner = other_address "
+				+ "WHERE LatestDirectChats.address = ? AND other_address = ? "
+				+ "LIMIT 1";
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, address, otherAddress)) {
+			if (resultSet == null)
+				return null;
+
+			return getDirectChatFromResultSet(resultSet);
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch active direct chat from repository", e);
+		}
+	}
+
+	private static DirectChat getDirectChatFromResultSet(ResultSet resultSet) throws SQLException {
+		String otherAddress = resultSet.getString(1);
+		String name = resultSet.getString(2);
+		long timestamp = resultSet.getLong(3);
+		String sender = resultSet.getString(4);
+		String senderName = resultSet.getString(5);
+
+		return new DirectChat(otherAddress, name, timestamp, sender, senderName);
+	}
+
+}
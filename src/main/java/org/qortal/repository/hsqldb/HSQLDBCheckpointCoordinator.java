@@ -0,0 +1,192 @@
+package org.qortal.repository.hsqldb;
+
+import org.qortal.metrics.Counter;
+import org.qortal.metrics.Histogram;
+import org.qortal.metrics.Metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lets CHECKPOINTs (and other maintenance needing a quiet repository) drain read-write sessions,
+ * instead of only running when they happen to find no session mid-transaction.
+ * <p>
+ * HSQLDB's CHECKPOINT waits for every other session's transaction to finish, even read-only ones,
+ * and blocks all new statements meanwhile. So read-write sessions report when they begin a transaction
+ * (first statement after COMMIT/ROLLBACK) and when it ends.
+ * <p>
+ * To drain, new transactions are held at a gate while in-flight transactions finish, up to a deadline.
+ * Once none are left, the CHECKPOINT can run without blocking anyone for longer than it takes.
+ * If the deadline passes first, the gate is reopened and the CHECKPOINT is left for later.
+ * <p>
+ * Transactions already in flight are never held, nor are new transactions from a thread that already has one
+ * in flight in another session, as either could stop in-flight transactions from finishing.
+ * Held transactions are also released after the maximum pause, in case they're needed by another thread
+ * to finish its transaction.
+ */
+public class HSQLDBCheckpointCoordinator {
+
+	private static final Histogram BLOCKED_SESSION_TIME = Metrics.getInstance().histogram("qortal_repository_checkpoint_blocked_session_seconds",
+			"Time repository sessions were held back from starting a transaction while draining for a CHECKPOINT");
+	private static final Histogram DRAIN_TIME = Metrics.getInstance().histogram("qortal_repository_checkpoint_drain_seconds",
+			"Time spent waiting for in-flight repository transactions to finish before a CHECKPOINT");
+	private static final Counter DEFERRED_DRAINS = Metrics.getInstance().counter("qortal_repository_checkpoint_deferred_total",
+			"Number of CHECKPOINTs deferred as in-flight repository transactions didn't finish in time");
+
+	/** Number of in-flight transactions started by current thread, in any session */
+	private final ThreadLocal<int[]> threadTransactionCount = ThreadLocal.withInitial(() -> new int[1]);
+
+	private final ReentrantLock lock = new ReentrantLock();
+	/** Signalled when gate reopens */
+	private final Condition gateOpened = this.lock.newCondition();
+	/** Signalled when in-flight transaction count drops while draining */
+	private final Condition transactionEnded = this.lock.newCondition();
+
+	private final long maxPause;
+
+	/** Guarded by lock */
+	private int inFlightCount = 0;
+	/** Whether new transactions are being held back. Guarded by lock. */
+	private boolean isDraining = false;
+
+	/**
+	 * @param maxPause longest time a new transaction is held back while draining, in milliseconds
+	 */
+	public HSQLDBCheckpointCoordinator(long maxPause) {
+		this.maxPause = maxPause;
+	}
+
+	/** Returns number of read-write sessions currently mid-transaction. */
+	public int getInFlightCount() {
+		this.lock.lock();
+		try {
+			return this.inFlightCount;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	public boolean isDraining() {
+		this.lock.lock();
+		try {
+			return this.isDraining;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/** Returns whether current thread has a transaction in flight, in any session. */
+	public boolean hasThreadTransactions() {
+		return this.threadTransactionCount.get()[0] > 0;
+	}
+
+	/** Called by session before it begins a transaction, possibly waiting while sessions are drained. */
+	/* package */ void beginTransaction() {
+		int[] threadCount = this.threadTransactionCount.get();
+
+		this.lock.lock();
+		try {
+			if (this.isDraining && threadCount[0] == 0)
+				this.awaitGate();
+
+			++this.inFlightCount;
+		} finally {
+			this.lock.unlock();
+		}
+
+		++threadCount[0];
+	}
+
+	/** Called by session once its transaction has ended. */
+	/* package */ void endTransaction() {
+		int[] threadCount = this.threadTransactionCount.get();
+		if (threadCount[0] > 0)
+			--threadCount[0];
+
+		this.lock.lock();
+		try {
+			--this.inFlightCount;
+
+			if (this.isDraining)
+				this.transactionEnded.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	private void awaitGate() {
+		final long startTime = System.nanoTime();
+		long remaining = TimeUnit.MILLISECONDS.toNanos(this.maxPause);
+
+		try {
+			while (this.isDraining && remaining > 0)
+				remaining = this.gateOpened.awaitNanos(remaining);
+		} catch (InterruptedException e) {
+			// Let transaction start, but keep interrupt for caller
+			Thread.currentThread().interrupt();
+		}
+
+		BLOCKED_SESSION_TIME.recordSince(startTime);
+	}
+
+	/**
+	 * Holds back new transactions, then waits for other threads' in-flight transactions to finish.
+	 * <p>
+	 * If this returns true, caller <b>must</b> call {@link #reopen()} once finished.
+	 * Callers are expected to serialize drains, e.g. using {@link HSQLDBRepository#CHECKPOINT_LOCK}.
+	 *
+	 * @param timeout how long to wait for in-flight transactions, in milliseconds, or null to wait indefinitely
+	 * @return true if drained, false if deadline passed, or interrupted, with gate already reopened
+	 */
+	/* package */ boolean drain(Long timeout) {
+		// Current thread's own transactions can't finish while we wait
+		final int ownTransactionCount = this.threadTransactionCount.get()[0];
+		final long startTime = System.nanoTime();
+		final long deadline = timeout != null ? startTime + TimeUnit.MILLISECONDS.toNanos(timeout) : 0L;
+
+		this.lock.lock();
+		try {
+			this.isDraining = true;
+
+			try {
+				while (this.inFlightCount > ownTransactionCount) {
+					if (timeout == null) {
+						this.transactionEnded.await();
+						continue;
+					}
+
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						DEFERRED_DRAINS.increment();
+						this.reopen();
+						return false;
+					}
+
+					this.transactionEnded.awaitNanos(remaining);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				this.reopen();
+				return false;
+			}
+
+			DRAIN_TIME.recordSince(startTime);
+			return true;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/** Lets held-back transactions start again. */
+	/* package */ void reopen() {
+		this.lock.lock();
+		try {
+			this.isDraining = false;
+			this.gateOpened.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+}
@@ -1052,6 +1052,84 @@ public class HSQLDBDatabaseUpdates {
 					stmt.execute("UPDATE Accounts SET blocks_minted_penalty = 0 WHERE blocks_minted_penalty <> 0");
 					break;
 
+				case 50:
+					// Materialised per-block transaction counts, so activity summaries don't need to scan Transactions
+					stmt.execute("CREATE TABLE ActivitySummaries (height INT NOT NULL, tx_type TINYINT NOT NULL, "
+							+ "tx_count INT NOT NULL, PRIMARY KEY (height, tx_type))");
+					stmt.execute("CREATE TABLE ActivityTotals (tx_type TINYINT NOT NULL, tx_count BIGINT NOT NULL, "
+							+ "PRIMARY KEY (tx_type))");
+
+					LOGGER.info("Building activity summaries - this can take a while...");
+					stmt.execute("INSERT INTO ActivitySummaries (height, tx_type, tx_count) "
+							+ "SELECT block_height, type, COUNT(*) FROM Transactions "
+							+ "WHERE block_height IS NOT NULL GROUP BY block_height, type");
+					stmt.execute("INSERT INTO ActivityTotals (tx_type, tx_count) "
+							+ "SELECT tx_type, SUM(tx_count) FROM ActivitySummaries GROUP BY tx_type");
+					break;
+
+				case 51:
+					// Time-bucketed trade history (candles) for asset and cross-chain markets
+					stmt.execute("CREATE TABLE TradeCandles (market VARCHAR(40) NOT NULL, candle_interval TINYINT NOT NULL, "
+							+ "bucket_start EpochMillis NOT NULL, open_price BIGINT NOT NULL, high_price BIGINT NOT NULL, "
+							+ "low_price BIGINT NOT NULL, close_price BIGINT NOT NULL, volume BIGINT NOT NULL, "
+							+ "quote_volume BIGINT NOT NULL, trade_count INT NOT NULL, "
+							+ "PRIMARY KEY (market, candle_interval, bucket_start))");
+					// Completed cross-chain trades, as AT states are eventually trimmed
+					stmt.execute("CREATE TABLE CompletedCrossChainTrades (AT_address QortalAddress NOT NULL, "
+							+ "foreign_blockchain VARCHAR(32) NOT NULL, height INT NOT NULL, traded_when EpochMillis NOT NULL, "
+							+ "qort_amount QortalAmount NOT NULL, foreign_amount QortalAmount NOT NULL, PRIMARY KEY (AT_address))");
+					stmt.execute("CREATE INDEX CompletedCrossChainTradesIndex ON CompletedCrossChainTrades (foreign_blockchain, traded_when)");
+					stmt.execute("CREATE INDEX CompletedCrossChainTradesHeightIndex ON CompletedCrossChainTrades (height)");
+					// Candles are built from existing trades on first start-up
+					stmt.execute("ALTER TABLE DatabaseInfo ADD trade_history_built BOOLEAN NOT NULL DEFAULT FALSE");
+					break;
+
+				case 52:
+					// Latest CHAT message per group, and per pair of addresses, so active chats don't need to scan ChatTransactions.
+					// Group 0 only covers recipient-less messages, like the group-less chat it represents.
+					// Rows go when their message is deleted, and are then rebuilt from the remaining messages.
+					stmt.execute("CREATE TABLE LatestGroupChats (group_id GroupID NOT NULL, created_when EpochMillis NOT NULL, "
+							+ "signature Signature NOT NULL, PRIMARY KEY (group_id), "
+							+ "FOREIGN KEY (signature) REFERENCES ChatTransactions (signature) ON DELETE CASCADE)");
+					// Direct chats are stored once for each party, so they can be found by either address
+					stmt.execute("CREATE TABLE LatestDirectChats (address QortalAddress NOT NULL, other_address QortalAddress NOT NULL, "
+							+ "created_when EpochMillis NOT NULL, signature Signature NOT NULL, PRIMARY KEY (address, other_address), "
+							+ "FOREIGN KEY (signature) REFERENCES ChatTransactions (signature) ON DELETE CASCADE)");
+
+					LOGGER.info("Building latest chat messages - this can take a while...");
+					stmt.execute("INSERT INTO LatestGroupChats (group_id, created_when, signature) "
+							+ "SELECT ChatGroups.group_id, created_when, signature "
+							+ "FROM (SELECT DISTINCT tx_group_id FROM ChatTransactions JOIN Transactions USING (signature) "
+								+ "WHERE tx_group_id <> 0 OR recipient IS NULL) AS ChatGroups (group_id) "
+							+ "CROSS JOIN LATERAL ("
+								+ "SELECT created_when, signature FROM ChatTransactions JOIN Transactions USING (signature) "
+								+ "WHERE tx_group_id = ChatGroups.group_id AND (tx_group_id <> 0 OR recipient IS NULL) "
+								+ "ORDER BY created_when DESC LIMIT 1"
+							+ ") AS LatestMessages");
+					stmt.execute("INSERT INTO LatestDirectChats (address, other_address, created_when, signature) "
+							+ "SELECT Parties.address, Parties.other_address, created_when, signature "
+							+ "FROM (SELECT sender, recipient FROM ChatTransactions WHERE recipient IS NOT NULL "
+								+ "UNION SELECT recipient, sender FROM ChatTransactions WHERE recipient IS NOT NULL) AS Parties (address, other_address) "
+							+ "CROSS JOIN LATERAL ("
+								+ "SELECT created_when, signature FROM ChatTransactions JOIN Transactions USING (signature) "
+								+ "WHERE (sender = Parties.address AND recipient = Parties.other_address) "
+								+ "OR (sender = Parties.other_address AND recipient = Parties.address) "
+								+ "ORDER BY created_when DESC LIMIT 1"
+							+ ") AS LatestMessages");
+					break;
+
+				case 53:
+					// Candles track their first and last trades, so trades processed out of trade order
+					// still give the same open/close prices as candles rebuilt from repository.
+					// Existing candles can't be fixed up, so they're rebuilt on next start-up.
+					stmt.execute("DELETE FROM TradeCandles");
+					stmt.execute("ALTER TABLE TradeCandles ADD first_trade_when EpochMillis NOT NULL");
+					stmt.execute("ALTER TABLE TradeCandles ADD first_trade_key VARBINARY(128) NOT NULL");
+					stmt.execute("ALTER TABLE TradeCandles ADD last_trade_when EpochMillis NOT NULL");
+					stmt.execute("ALTER TABLE TradeCandles ADD last_trade_key VARBINARY(128) NOT NULL");
+					stmt.execute("UPDATE DatabaseInfo SET trade_history_built = FALSE");
+					break;
+
 				default:
 					// nothing to do
 					return false;
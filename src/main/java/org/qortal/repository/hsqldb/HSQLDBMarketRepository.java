@@ -0,0 +1,339 @@
+package org.qortal.repository.hsqldb;
+
+import com.google.common.primitives.Bytes;
+import org.qortal.data.market.CandleData;
+import org.qortal.data.market.CompletedCrossChainTradeData;
+import org.qortal.data.market.MarketTradeData;
+import org.qortal.market.CandleInterval;
+import org.qortal.market.TradeHistory;
+import org.qortal.repository.DataException;
+import org.qortal.repository.MarketRepository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class HSQLDBMarketRepository implements MarketRepository {
+
+	protected HSQLDBRepository repository;
+
+	public HSQLDBMarketRepository(HSQLDBRepository repository) {
+		this.repository = repository;
+	}
+
+	// Candles
+
+	@Override
+	public CandleData getCandle(String market, CandleInterval interval, long timestamp) throws DataException {
+		String sql = "SELECT open_price, high_price, low_price, close_price, volume, quote_volume, trade_count, "
+				+ "first_trade_when, first_trade_key, last_trade_when, last_trade_key "
+				+ "FROM TradeCandles "
+				+ "WHERE market = ? AND candle_interval = ? AND bucket_start = ?";
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, market, interval.value, timestamp)) {
+			if (resultSet == null)
+				return null;
+
+			return candleFromResultSet(resultSet, market, interval, timestamp, 1);
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch trade candle from repository", e);
+		}
+	}
+
+	@Override
+	public List<CandleData> getCandles(String market, CandleInterval interval, long fromTimestamp, long toTimestamp, Integer limit, Boolean reverse) throws DataException {
+		StringBuilder sql = new StringBuilder(256);
+		sql.append("SELECT bucket_start, open_price, high_price, low_price, close_price, volume, quote_volume, trade_count, "
+				+ "first_trade_when, first_trade_key, last_trade_when, last_trade_key "
+				+ "FROM TradeCandles "
+				+ "WHERE market = ? AND candle_interval = ? AND bucket_start >= ? AND bucket_start < ? "
+				+ "ORDER BY market, candle_interval, bucket_start");
+
+		if (reverse != null && reverse)
+			sql.append(" DESC");
+
+		HSQLDBRepository.limitOffsetSql(sql, limit, null);
+
+		List<CandleData> candles = new ArrayList<>();
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql.toString(), market, interval.value, fromTimestamp, toTimestamp)) {
+			if (resultSet == null)
+				return candles;
+
+			do {
+				long timestamp = resultSet.getLong(1);
+
+				candles.add(candleFromResultSet(resultSet, market, interval, timestamp, 2));
+			} while (resultSet.next());
+
+			return candles;
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch trade candles from repository", e);
+		}
+	}
+
+	private static CandleData candleFromResultSet(ResultSet resultSet, String market, CandleInterval interval, long timestamp, int firstColumn) throws SQLException {
+		long open = resultSet.getLong(firstColumn);
+		long high = resultSet.getLong(firstColumn + 1);
+		long low = resultSet.getLong(firstColumn + 2);
+		long close = resultSet.getLong(firstColumn + 3);
+		long volume = resultSet.getLong(firstColumn + 4);
+		long quoteVolume = resultSet.getLong(firstColumn + 5);
+		int tradeCount = resultSet.getInt(firstColumn + 6);
+		long firstTradeTimestamp = resultSet.getLong(firstColumn + 7);
+		byte[] firstTradeKey = resultSet.getBytes(firstColumn + 8);
+		long lastTradeTimestamp = resultSet.getLong(firstColumn + 9);
+		byte[] lastTradeKey = resultSet.getBytes(firstColumn + 10);
+
+		return new CandleData(market, interval, timestamp, open, high, low, close, volume, quoteVolume, tradeCount,
+				firstTradeTimestamp, firstTradeKey, lastTradeTimestamp, lastTradeKey);
+	}
+
+	@Override
+	public void save(CandleData candleData) throws DataException {
+		HSQLDBSaver saveHelper = new HSQLDBSaver("TradeCandles");
+
+		saveHelper.bind("market", candleData.getMarket()).bind("candle_interval", candleData.getInterval().value)
+				.bind("bucket_start", candleData.getTimestamp())
+				.bind("open_price", candleData.getOpen()).bind("high_price", candleData.getHigh())
+				.bind("low_price", candleData.getLow()).bind("close_price", candleData.getClose())
+				.bind("volume", candleData.getVolume()).bind("quote_volume", candleData.getQuoteVolume())
+				.bind("trade_count", candleData.getTradeCount())
+				.bind("first_trade_when", candleData.getFirstTradeTimestamp()).bind("first_trade_key", candleData.getFirstTradeKey())
+				.bind("last_trade_when", candleData.getLastTradeTimestamp()).bind("last_trade_key", candleData.getLastTradeKey());
+
+		try {
+			saveHelper.execute(this.repository);
+		} catch (SQLException e) {
+			throw new DataException("Unable to save trade candle into repository", e);
+		}
+	}
+
+	@Override
+	public void deleteCandle(String market, CandleInterval interval, long timestamp) throws DataException {
+		try {
+			this.repository.delete("TradeCandles", "market = ? AND candle_interval = ? AND bucket_start = ?",
+					market, interval.value, timestamp);
+		} catch (SQLException e) {
+			throw new DataException("Unable to delete trade candle from repository", e);
+		}
+	}
+
+	@Override
+	public void deleteAllCandles() throws DataException {
+		try {
+			this.repository.delete("TradeCandles");
+		} catch (SQLException e) {
+			throw new DataException("Unable to delete trade candles from repository", e);
+		}
+	}
+
+	// Trades
+
+	@Override
+	public List<MarketTradeData> getAssetTrades(long assetId, long otherAssetId, long fromTimestamp, long toTimestamp) throws DataException {
+		String sql = "SELECT have_asset_id, initiating_order_id, target_order_id, initiator_amount, target_amount, traded_when "
+				+ "FROM AssetTrades JOIN AssetOrders ON initiating_order_id = asset_order_id "
+				+ "WHERE ((have_asset_id = ? AND want_asset_id = ?) OR (have_asset_id = ? AND want_asset_id = ?)) "
+				+ "AND traded_when >= ? AND traded_when < ? "
+				+ "ORDER BY traded_when, initiating_order_id, target_order_id";
+
+		String market = TradeHistory.getAssetMarket(assetId, otherAssetId);
+		List<MarketTradeData> trades = new ArrayList<>();
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, assetId, otherAssetId, otherAssetId, assetId, fromTimestamp, toTimestamp)) {
+			if (resultSet == null)
+				return trades;
+
+			do {
+				long haveAssetId = resultSet.getLong(1);
+				byte[] tradeKey = Bytes.concat(resultSet.getBytes(2), resultSet.getBytes(3));
+				long initiatorAmount = resultSet.getLong(4);
+				long targetAmount = resultSet.getLong(5);
+				long timestamp = resultSet.getLong(6);
+
+				// Initiator gives 'have' asset, target gives 'want' asset
+				if (haveAssetId == assetId)
+					trades.add(new MarketTradeData(market, timestamp, tradeKey, initiatorAmount, targetAmount));
+				else
+					trades.add(new MarketTradeData(market, timestamp, tradeKey, targetAmount, initiatorAmount));
+			} while (resultSet.next());
+
+			return trades;
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch asset trades from repository", e);
+		}
+	}
+
+	@Override
+	public List<MarketTradeData> getAllAssetTrades() throws DataException {
+		String sql = "SELECT have_asset_id, want_asset_id, initiating_order_id, target_order_id, initiator_amount, target_amount, traded_when "
+				+ "FROM AssetTrades JOIN AssetOrders ON initiating_order_id = asset_order_id "
+				+ "ORDER BY traded_when, initiating_order_id, target_order_id";
+
+		List<MarketTradeData> trades = new ArrayList<>();
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
+			if (resultSet == null)
+				return trades;
+
+			do {
+				long haveAssetId = resultSet.getLong(1);
+				long wantAssetId = resultSet.getLong(2);
+				byte[] initiatingOrderId = resultSet.getBytes(3);
+				byte[] targetOrderId = resultSet.getBytes(4);
+				long initiatorAmount = resultSet.getLong(5);
+				long targetAmount = resultSet.getLong(6);
+				long timestamp = resultSet.getLong(7);
+
+				trades.add(TradeHistory.toMarketTrade(haveAssetId, wantAssetId, initiatingOrderId, targetOrderId, initiatorAmount, targetAmount, timestamp));
+			} while (resultSet.next());
+
+			return trades;
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch asset trades from repository", e);
+		}
+	}
+
+	@Override
+	public CompletedCrossChainTradeData getCompletedCrossChainTrade(String atAddress) throws DataException {
+		String sql = "SELECT foreign_blockchain, height, traded_when, qort_amount, foreign_amount "
+				+ "FROM CompletedCrossChainTrades "
+				+ "WHERE AT_address = ?";
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, atAddress)) {
+			if (resultSet == null)
+				return null;
+
+			String foreignBlockchain = resultSet.getString(1);
+			int height = resultSet.getInt(2);
+			long timestamp = resultSet.getLong(3);
+			long qortAmount = resultSet.getLong(4);
+			long foreignAmount = resultSet.getLong(5);
+
+			return new CompletedCrossChainTradeData(atAddress, foreignBlockchain, height, timestamp, qortAmount, foreignAmount);
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch completed cross-chain trade from repository", e);
+		}
+	}
+
+	@Override
+	public List<CompletedCrossChainTradeData> getCompletedCrossChainTrades(String foreignBlockchain, long fromTimestamp, long toTimestamp) throws DataException {
+		String sql = "SELECT AT_address, height, traded_when, qort_amount, foreign_amount "
+				+ "FROM CompletedCrossChainTrades "
+				+ "WHERE foreign_blockchain = ? AND traded_when >= ? AND traded_when < ? "
+				+ "ORDER BY foreign_blockchain, traded_when, AT_address";
+
+		List<CompletedCrossChainTradeData> trades = new ArrayList<>();
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, foreignBlockchain, fromTimestamp, toTimestamp)) {
+			if (resultSet == null)
+				return trades;
+
+			do {
+				String atAddress = resultSet.getString(1);
+				int height = resultSet.getInt(2);
+				long timestamp = resultSet.getLong(3);
+				long qortAmount = resultSet.getLong(4);
+				long foreignAmount = resultSet.getLong(5);
+
+				trades.add(new CompletedCrossChainTradeData(atAddress, foreignBlockchain, height, timestamp, qortAmount, foreignAmount));
+			} while (resultSet.next());
+
+			return trades;
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch completed cross-chain trades from repository", e);
+		}
+	}
+
+	@Override
+	public List<CompletedCrossChainTradeData> getCompletedCrossChainTradesAtHeight(int height) throws DataException {
+		String sql = "SELECT AT_address, foreign_blockchain, traded_when, qort_amount, foreign_amount "
+				+ "FROM CompletedCrossChainTrades "
+				+ "WHERE height = ?";
+
+		List<CompletedCrossChainTradeData> trades = new ArrayList<>();
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, height)) {
+			if (resultSet == null)
+				return trades;
+
+			do {
+				String atAddress = resultSet.getString(1);
+				String foreignBlockchain = resultSet.getString(2);
+				long timestamp = resultSet.getLong(3);
+				long qortAmount = resultSet.getLong(4);
+				long foreignAmount = resultSet.getLong(5);
+
+				trades.add(new CompletedCrossChainTradeData(atAddress, foreignBlockchain, height, timestamp, qortAmount, foreignAmount));
+			} while (resultSet.next());
+
+			return trades;
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch completed cross-chain trades from repository", e);
+		}
+	}
+
+	@Override
+	public void save(CompletedCrossChainTradeData tradeData) throws DataException {
+		HSQLDBSaver saveHelper = new HSQLDBSaver("CompletedCrossChainTrades");
+
+		saveHelper.bind("AT_address", tradeData.getAtAddress()).bind("foreign_blockchain", tradeData.getForeignBlockchain())
+				.bind("height", tradeData.getHeight()).bind("traded_when", tradeData.getTimestamp())
+				.bind("qort_amount", tradeData.getQortAmount()).bind("foreign_amount", tradeData.getForeignAmount());
+
+		try {
+			saveHelper.execute(this.repository);
+		} catch (SQLException e) {
+			throw new DataException("Unable to save completed cross-chain trade into repository", e);
+		}
+	}
+
+	@Override
+	public void delete(CompletedCrossChainTradeData tradeData) throws DataException {
+		try {
+			this.repository.delete("CompletedCrossChainTrades", "AT_address = ?", tradeData.getAtAddress());
+		} catch (SQLException e) {
+			throw new DataException("Unable to delete completed cross-chain trade from repository", e);
+		}
+	}
+
+	@Override
+	public void deleteAllCompletedCrossChainTrades() throws DataException {
+		try {
+			this.repository.delete("CompletedCrossChainTrades");
+		} catch (SQLException e) {
+			throw new DataException("Unable to delete completed cross-chain trades from repository", e);
+		}
+	}
+
+	// Rebuilding
+
+	@Override
+	public boolean isTradeHistoryBuilt() throws DataException {
+		String sql = "SELECT trade_history_built FROM DatabaseInfo";
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
+			if (resultSet == null)
+				return false;
+
+			return resultSet.getBoolean(1);
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch trade history status from repository", e);
+		}
+	}
+
+	@Override
+	public void setTradeHistoryBuilt(boolean isBuilt) throws DataException {
+		String updateSql = "UPDATE DatabaseInfo SET trade_history_built = ?";
+
+		try {
+			this.repository.executeCheckedUpdate(updateSql, isBuilt);
+		} catch (SQLException e) {
+			this.repository.examineException(e);
+			throw new DataException("Unable to set trade history status in repository", e);
+		}
+	}
+
+}
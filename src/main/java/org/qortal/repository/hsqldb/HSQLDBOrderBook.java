@@ -0,0 +1,281 @@
+package org.qortal.repository.hsqldb;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.data.asset.OrderData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.RepositoryFactory;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.utils.ByteArray;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Node-wide, in-memory copy of the open orders in the <tt>AssetOrders</tt> table, grouped by asset pair
+ * and sorted by price-time priority.
+ * <p>
+ * Every CREATE_ASSET_ORDER looks for matching open orders, which used to be a sorted scan of the repository.
+ * With this book, finding matching orders is a walk along the best-priced end of the pair's orders instead.
+ * <p>
+ * Orders are sorted exactly as {@link HSQLDBAssetRepository#getOpenOrdersForTrading(long, long, Long)} sorts them:
+ * by price (descending if have-asset ID is lower than want-asset ID, otherwise ascending), then by timestamp.
+ * Order ID is only used to keep entries distinct. When two candidate orders share both price and timestamp,
+ * the repository's ordering depends on storage layout, so callers fall back to querying the repository.
+ * <p>
+ * The book only ever reflects <b>committed</b> repository state. Sessions overlay their own uncommitted order
+ * changes on top, and apply them here once committed. See {@link HSQLDBRepository#saveChanges()}.
+ */
+/* package */ class HSQLDBOrderBook {
+
+	private static final Logger LOGGER = LogManager.getLogger(HSQLDBOrderBook.class);
+
+	private static final Comparator<OrderData> ASCENDING_PRICE_ORDER = Comparator.comparingLong(OrderData::getPrice)
+			.thenComparingLong(OrderData::getTimestamp)
+			.thenComparing(OrderData::getOrderId, Arrays::compareUnsigned);
+
+	private static final Comparator<OrderData> DESCENDING_PRICE_ORDER = Comparator.comparingLong(OrderData::getPrice).reversed()
+			.thenComparingLong(OrderData::getTimestamp)
+			.thenComparing(OrderData::getOrderId, Arrays::compareUnsigned);
+
+	private static class AssetPair {
+		private final long haveAssetId;
+		private final long wantAssetId;
+
+		private AssetPair(long haveAssetId, long wantAssetId) {
+			this.haveAssetId = haveAssetId;
+			this.wantAssetId = wantAssetId;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof AssetPair))
+				return false;
+
+			AssetPair otherPair = (AssetPair) other;
+			return this.haveAssetId == otherPair.haveAssetId && this.wantAssetId == otherPair.wantAssetId;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(this.haveAssetId) * 31 + Long.hashCode(this.wantAssetId);
+		}
+	}
+
+	private static class Book {
+		private final RepositoryFactory repositoryFactory;
+		/** Open orders by asset pair, in matching order */
+		private final Map<AssetPair, NavigableSet<OrderData>> ordersByPair = new HashMap<>();
+		/** Open orders by order ID, so changed orders can be found in their pair's set */
+		private final Map<ByteArray, OrderData> ordersById = new HashMap<>();
+
+		private Book(RepositoryFactory repositoryFactory) {
+			this.repositoryFactory = repositoryFactory;
+		}
+
+		private void remove(ByteArray orderId) {
+			OrderData orderData = this.ordersById.remove(orderId);
+			if (orderData == null)
+				return;
+
+			AssetPair assetPair = new AssetPair(orderData.getHaveAssetId(), orderData.getWantAssetId());
+			NavigableSet<OrderData> pairOrders = this.ordersByPair.get(assetPair);
+			pairOrders.remove(orderData);
+
+			if (pairOrders.isEmpty())
+				this.ordersByPair.remove(assetPair);
+		}
+
+		private void add(OrderData orderData) {
+			this.ordersById.put(ByteArray.wrap(orderData.getOrderId()), orderData);
+			this.ordersByPair.computeIfAbsent(new AssetPair(orderData.getHaveAssetId(), orderData.getWantAssetId()),
+					assetPair -> new TreeSet<>(getMatchingOrder(assetPair.haveAssetId, assetPair.wantAssetId)))
+				.add(orderData);
+		}
+	}
+
+	private static final Object LOCK = new Object();
+
+	/** Current book, or null if it needs (re)building. Guarded by LOCK. */
+	private static Book book;
+	/** Incremented whenever committed orders change, so we don't publish stale rebuilds. Guarded by LOCK. */
+	private static long generation;
+	/** Number of sessions between COMMIT of order changes and applying them here. Guarded by LOCK. */
+	private static int pendingCommits;
+
+	private HSQLDBOrderBook() {
+	}
+
+	/** Returns comparator giving same order as repository's matching query, for target orders with passed assets. */
+	/* package */ static Comparator<OrderData> getMatchingOrder(long haveAssetId, long wantAssetId) {
+		return haveAssetId < wantAssetId ? DESCENDING_PRICE_ORDER : ASCENDING_PRICE_ORDER;
+	}
+
+	/** Returns whether target order, with passed assets, has acceptable price given <tt>minimumPrice</tt>. */
+	/* package */ static boolean isPriceAcceptable(long haveAssetId, long wantAssetId, long price, long minimumPrice) {
+		return haveAssetId < wantAssetId ? price >= minimumPrice : price <= minimumPrice;
+	}
+
+	/**
+	 * Returns committed open orders for asset pair, in matching order, with acceptable price, building book if needed,
+	 * or null if book can't be used right now.
+	 * <p>
+	 * Returned orders are copies, so callers may modify them.
+	 */
+	public static List<OrderData> getOpenOrders(HSQLDBRepository repository, long haveAssetId, long wantAssetId, long minimumPrice) throws DataException {
+		final RepositoryFactory repositoryFactory = RepositoryManager.getRepositoryFactory();
+
+		long buildGeneration;
+		synchronized (LOCK) {
+			if (pendingCommits > 0)
+				return null;
+
+			if (book != null && book.repositoryFactory == repositoryFactory)
+				return collectOpenOrders(book, haveAssetId, wantAssetId, minimumPrice);
+
+			buildGeneration = generation;
+		}
+
+		// Building needs to see committed state only
+		if (repository.hasOrderChanges())
+			return null;
+
+		Book newBook = load(repository, repositoryFactory);
+
+		synchronized (LOCK) {
+			// Only publish, and use, if nothing was committed while we were loading
+			if (generation != buildGeneration || pendingCommits > 0)
+				return null;
+
+			book = newBook;
+			return collectOpenOrders(newBook, haveAssetId, wantAssetId, minimumPrice);
+		}
+	}
+
+	private static List<OrderData> collectOpenOrders(Book book, long haveAssetId, long wantAssetId, long minimumPrice) {
+		NavigableSet<OrderData> pairOrders = book.ordersByPair.get(new AssetPair(haveAssetId, wantAssetId));
+		if (pairOrders == null)
+			return new ArrayList<>();
+
+		List<OrderData> orders = new ArrayList<>();
+
+		// Orders are sorted best price first, so we can stop at the first unacceptable price
+		for (OrderData orderData : pairOrders) {
+			if (!isPriceAcceptable(haveAssetId, wantAssetId, orderData.getPrice(), minimumPrice))
+				break;
+
+			orders.add(copyOf(orderData));
+		}
+
+		return orders;
+	}
+
+	private static Book load(HSQLDBRepository repository, RepositoryFactory repositoryFactory) throws DataException {
+		final long before = System.currentTimeMillis();
+
+		String sql = "SELECT asset_order_id, creator, have_asset_id, want_asset_id, amount, fulfilled, price, ordered_when "
+				+ "FROM AssetOrders WHERE NOT is_closed AND NOT is_fulfilled";
+
+		Book newBook = new Book(repositoryFactory);
+
+		try (ResultSet resultSet = repository.checkedExecute(sql)) {
+			if (resultSet != null)
+				do {
+					byte[] orderId = resultSet.getBytes(1);
+					byte[] creatorPublicKey = resultSet.getBytes(2);
+					long haveAssetId = resultSet.getLong(3);
+					long wantAssetId = resultSet.getLong(4);
+					long amount = resultSet.getLong(5);
+					long fulfilled = resultSet.getLong(6);
+					long price = resultSet.getLong(7);
+					long timestamp = resultSet.getLong(8);
+
+					newBook.add(new OrderData(orderId, creatorPublicKey, haveAssetId, wantAssetId, amount, fulfilled,
+							price, timestamp, false, false));
+				} while (resultSet.next());
+		} catch (SQLException e) {
+			throw new DataException("Unable to load open asset orders into order book", e);
+		}
+
+		LOGGER.debug(() -> String.format("Loaded %d open asset orders into order book in %d ms", newBook.ordersById.size(), System.currentTimeMillis() - before));
+
+		return newBook;
+	}
+
+	/** Rebuilds book from repository, e.g. at startup. */
+	public static void rebuild(HSQLDBRepository repository) throws DataException {
+		synchronized (LOCK) {
+			book = null;
+			++generation;
+		}
+
+		// Any pair will do to trigger build
+		getOpenOrders(repository, 0L, 0L, 0L);
+	}
+
+	/** Called just before a session commits order changes. Book is unusable until {@link #endCommit(Map)}. */
+	public static void beginCommit() {
+		synchronized (LOCK) {
+			++pendingCommits;
+			++generation;
+		}
+	}
+
+	/**
+	 * Applies committed order changes to book.
+	 *
+	 * @param changes map of order ID to new order data, or to null if deleted;
+	 * or null if commit failed and book should be rebuilt
+	 */
+	public static void endCommit(Map<ByteArray, OrderData> changes) {
+		synchronized (LOCK) {
+			--pendingCommits;
+
+			if (book == null)
+				return;
+
+			if (changes == null) {
+				book = null;
+				return;
+			}
+
+			for (Map.Entry<ByteArray, OrderData> change : changes.entrySet()) {
+				book.remove(change.getKey());
+
+				OrderData orderData = change.getValue();
+				if (isOpen(orderData))
+					book.add(orderData);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether any adjacent orders share both price and timestamp.
+	 * <p>
+	 * Repository returns such orders in storage order, which we can't reproduce, so repository must be used instead.
+	 */
+	/* package */ static boolean hasAmbiguousOrdering(List<OrderData> orders) {
+		for (int i = 1; i < orders.size(); ++i) {
+			OrderData previous = orders.get(i - 1);
+			OrderData current = orders.get(i);
+
+			if (previous.getPrice() == current.getPrice() && previous.getTimestamp() == current.getTimestamp())
+				return true;
+		}
+
+		return false;
+	}
+
+	/* package */ static boolean isOpen(OrderData orderData) {
+		return orderData != null && !orderData.getIsClosed() && !orderData.getIsFulfilled();
+	}
+
+	/** Returns copy of order data, as order data is mutable but book's entries must not change. */
+	/* package */ static OrderData copyOf(OrderData orderData) {
+		return new OrderData(orderData.getOrderId(), orderData.getCreatorPublicKey(), orderData.getHaveAssetId(), orderData.getWantAssetId(),
+				orderData.getAmount(), orderData.getFulfilled(), orderData.getPrice(), orderData.getTimestamp(),
+				orderData.getIsClosed(), orderData.getIsFulfilled());
+	}
+
+}
@@ -3,11 +3,16 @@ package org.qortal.repository.hsqldb;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.crypto.Crypto;
+import org.qortal.data.account.RewardShareData;
+import org.qortal.data.asset.OrderData;
 import org.qortal.globalization.Translator;
 import org.qortal.gui.SysTray;
+import org.qortal.metrics.Histogram;
+import org.qortal.metrics.Metrics;
 import org.qortal.repository.*;
 import org.qortal.repository.hsqldb.transaction.HSQLDBTransactionRepository;
 import org.qortal.settings.Settings;
+import org.qortal.utils.ByteArray;
 
 import java.awt.TrayIcon.MessageType;
 import java.io.File;
@@ -20,6 +25,7 @@ import java.nio.file.Paths;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -28,7 +34,11 @@ public class HSQLDBRepository implements Repository {
 
 	private static final Logger LOGGER = LogManager.getLogger(HSQLDBRepository.class);
 
-	public static final Object CHECKPOINT_LOCK = new Object();
+	/** Serializes CHECKPOINTs, backups and other maintenance. A lock rather than monitor so virtual threads don't pin their carriers during I/O. */
+	public static final ReentrantLock CHECKPOINT_LOCK = new ReentrantLock();
+
+	private static final Histogram COMMIT_TIME = Metrics.getInstance().histogram("qortal_repository_commit_seconds", "Time taken to COMMIT a repository transaction");
+	private static final Histogram CHECKPOINT_TIME = Metrics.getInstance().histogram("qortal_repository_checkpoint_seconds", "Time taken to perform a repository CHECKPOINT");
 
 	// "serialization failure"
 	private static final Integer DEADLOCK_ERROR_CODE = Integer.valueOf(-4861);
@@ -39,10 +49,19 @@ public class HSQLDBRepository implements Repository {
 	protected Long slowQueryThreshold = null;
 	protected List<String> sqlStatements;
 	protected long sessionId;
+	/** Whether session was obtained from read-only pool, so can't write, and doesn't perform CHECKPOINTs */
+	protected final boolean isReadOnly;
+	protected final HSQLDBCheckpointCoordinator checkpointCoordinator;
+	/** Whether checkpoint coordinator has been told this session is mid-transaction */
+	private boolean isInTransaction = false;
 	protected final Map<String, PreparedStatement> preparedStatementCache = new HashMap<>();
 	// We want the same object corresponding to the actual DB
 	protected final Object trimHeightsLock = RepositoryManager.getRepositoryFactory();
 	protected final Object latestATStatesLock = RepositoryManager.getRepositoryFactory();
+	/** Uncommitted reward-share changes, keyed by reward-share public key (null value if deleted), one layer per savepoint */
+	private final Deque<Map<ByteArray, RewardShareData>> rewardShareChanges = new ArrayDeque<>(3);
+	/** Uncommitted asset order changes, keyed by order ID (null value if deleted), one layer per savepoint */
+	private final Deque<Map<ByteArray, OrderData>> orderChanges = new ArrayDeque<>(3);
 
 	private final ATRepository atRepository = new HSQLDBATRepository(this);
 	private final AccountRepository accountRepository = new HSQLDBAccountRepository(this);
@@ -53,6 +72,7 @@ public class HSQLDBRepository implements Repository {
 	private final ChatRepository chatRepository = new HSQLDBChatRepository(this);
 	private final CrossChainRepository crossChainRepository = new HSQLDBCrossChainRepository(this);
 	private final GroupRepository groupRepository = new HSQLDBGroupRepository(this);
+	private final MarketRepository marketRepository = new HSQLDBMarketRepository(this);
 	private final MessageRepository messageRepository = new HSQLDBMessageRepository(this);
 	private final NameRepository nameRepository = new HSQLDBNameRepository(this);
 	private final NetworkRepository networkRepository = new HSQLDBNetworkRepository(this);
@@ -62,8 +82,10 @@ public class HSQLDBRepository implements Repository {
 	// Constructors
 
 	// NB: no visibility modifier so only callable from within same package
-	/* package */ HSQLDBRepository(Connection connection) throws DataException {
+	/* package */ HSQLDBRepository(Connection connection, HSQLDBCheckpointCoordinator checkpointCoordinator, boolean isReadOnly) throws DataException {
 		this.connection = connection;
+		this.checkpointCoordinator = checkpointCoordinator;
+		this.isReadOnly = isReadOnly;
 
 		this.slowQueryThreshold = Settings.getInstance().getSlowQueryThreshold();
 		if (this.slowQueryThreshold != null)
@@ -84,10 +106,8 @@ public class HSQLDBRepository implements Repository {
 			throw new DataException("Unable to fetch session ID from repository", e);
 		}
 
-		// synchronize to block new connections if checkpointing in progress 
-		synchronized (CHECKPOINT_LOCK) {
-			assertEmptyTransaction("connection creation");
-		}
+		assertEmptyTransaction("connection creation");
+		this.endTransaction();
 	}
 
 	// Getters / setters
@@ -137,6 +157,11 @@ public class HSQLDBRepository implements Repository {
 		return this.groupRepository;
 	}
 
+	@Override
+	public MarketRepository getMarketRepository() {
+		return this.marketRepository;
+	}
+
 	@Override
 	public MessageRepository getMessageRepository() {
 		return this.messageRepository;
@@ -177,9 +202,23 @@ public class HSQLDBRepository implements Repository {
 	@Override
 	public void saveChanges() throws DataException {
 		long beforeQuery = this.slowQueryThreshold == null ? 0 : System.currentTimeMillis();
+		final long startTime = System.nanoTime();
+
+		Map<ByteArray, RewardShareData> committedRewardShareChanges = this.takeRewardShareChanges();
+		Map<ByteArray, OrderData> committedOrderChanges = this.takeOrderChanges();
+		boolean isCommitted = false;
 
 		try {
+			if (committedRewardShareChanges != null)
+				HSQLDBRewardShareIndex.beginCommit();
+
+			if (committedOrderChanges != null)
+				HSQLDBOrderBook.beginCommit();
+
 			this.connection.commit();
+			isCommitted = true;
+
+			COMMIT_TIME.recordSince(startTime);
 
 			if (this.slowQueryThreshold != null) {
 				long queryTime = System.currentTimeMillis() - beforeQuery;
@@ -193,6 +232,13 @@ public class HSQLDBRepository implements Repository {
 		} catch (SQLException e) {
 			throw new DataException("commit error", e);
 		} finally {
+			if (committedRewardShareChanges != null)
+				// If COMMIT failed then we're not sure what state repository is in, so index will be rebuilt
+				HSQLDBRewardShareIndex.endCommit(isCommitted ? committedRewardShareChanges : null);
+
+			if (committedOrderChanges != null)
+				HSQLDBOrderBook.endCommit(isCommitted ? committedOrderChanges : null);
+
 			this.savepoints.clear();
 
 			// Before clearing statements so we can log what led to assertion error
@@ -200,29 +246,43 @@ public class HSQLDBRepository implements Repository {
 
 			if (this.sqlStatements != null)
 				this.sqlStatements.clear();
+
+			// If COMMIT failed then we're not sure transaction has ended
+			if (isCommitted)
+				this.endTransaction();
 		}
 	}
 
 	@Override
 	public void discardChanges() throws DataException {
+		boolean isRolledBack = false;
+
 		try {
 			this.connection.rollback();
+			isRolledBack = true;
 		} catch (SQLException e) {
 			throw new DataException("rollback error", e);
 		} finally {
 			this.savepoints.clear();
+			this.rewardShareChanges.clear();
+			this.orderChanges.clear();
 
 			// Before clearing statements so we can log what led to assertion error
 			assertEmptyTransaction("transaction rollback");
 
 			if (this.sqlStatements != null)
 				this.sqlStatements.clear();
+
+			if (isRolledBack)
+				this.endTransaction();
 		}
 	}
 
 	@Override
 	public void setSavepoint() throws DataException {
 		try {
+			this.beforeStatement();
+
 			if (this.sqlStatements != null)
 				// We don't know savepoint's ID yet
 				this.sqlStatements.add("SAVEPOINT [?]");
@@ -252,7 +312,131 @@ public class HSQLDBRepository implements Repository {
 			this.connection.rollback(savepoint);
 		} catch (SQLException e) {
 			throw new DataException("savepoint rollback error", e);
+		} finally {
+			// Discard reward-share changes made since savepoint
+			while (this.rewardShareChanges.size() > this.savepoints.size() + 1)
+				this.rewardShareChanges.pop();
+
+			// Likewise asset order changes
+			while (this.orderChanges.size() > this.savepoints.size() + 1)
+				this.orderChanges.pop();
+		}
+	}
+
+	// Checkpoint coordination
+
+	/** Tells checkpoint coordinator, if needed, that this session is about to begin a transaction. Might wait while sessions are drained. */
+	/* package */ void beforeStatement() {
+		if (this.isInTransaction || this.isReadOnly)
+			return;
+
+		this.checkpointCoordinator.beginTransaction();
+		this.isInTransaction = true;
+	}
+
+	/** Ends transaction begun by diagnostic queries, so idle sessions don't hold up CHECKPOINTs. */
+	private void endTransaction() throws DataException {
+		try {
+			this.connection.rollback();
+		} catch (SQLException e) {
+			throw new DataException("rollback error", e);
+		}
+
+		this.notifyTransactionEnded();
+	}
+
+	private void notifyTransactionEnded() {
+		if (!this.isInTransaction)
+			return;
+
+		this.isInTransaction = false;
+		this.checkpointCoordinator.endTransaction();
+	}
+
+	// Reward-share index support
+
+	/** Records uncommitted change to reward-share, for applying to {@link HSQLDBRewardShareIndex} on commit. */
+	/* package */ void recordRewardShareChange(byte[] rewardSharePublicKey, RewardShareData rewardShareData) {
+		// One layer per savepoint, plus base layer, so changes can be discarded by rollbackToSavepoint()
+		while (this.rewardShareChanges.size() < this.savepoints.size() + 1)
+			this.rewardShareChanges.push(new HashMap<>());
+
+		this.rewardShareChanges.peek().put(ByteArray.wrap(rewardSharePublicKey), rewardShareData);
+	}
+
+	/** Returns whether this session has uncommitted reward-share changes. */
+	/* package */ boolean hasRewardShareChanges() {
+		for (Map<ByteArray, RewardShareData> changes : this.rewardShareChanges)
+			if (!changes.isEmpty())
+				return true;
+
+		return false;
+	}
+
+	/** Returns all uncommitted reward-share changes, merged in order, or null if none, clearing them from this session. */
+	private Map<ByteArray, RewardShareData> takeRewardShareChanges() {
+		if (!this.hasRewardShareChanges()) {
+			this.rewardShareChanges.clear();
+			return null;
+		}
+
+		Map<ByteArray, RewardShareData> mergedChanges = new HashMap<>();
+		// Oldest layer first, so later changes win
+		Iterator<Map<ByteArray, RewardShareData>> iterator = this.rewardShareChanges.descendingIterator();
+		while (iterator.hasNext())
+			mergedChanges.putAll(iterator.next());
+
+		this.rewardShareChanges.clear();
+		return mergedChanges;
+	}
+
+	// Asset order book support
+
+	/** Records uncommitted change to asset order, for overlaying on, and applying to, {@link HSQLDBOrderBook}. */
+	/* package */ void recordOrderChange(byte[] orderId, OrderData orderData) {
+		// One layer per savepoint, plus base layer, so changes can be discarded by rollbackToSavepoint()
+		while (this.orderChanges.size() < this.savepoints.size() + 1)
+			this.orderChanges.push(new HashMap<>());
+
+		this.orderChanges.peek().put(ByteArray.wrap(orderId), orderData != null ? HSQLDBOrderBook.copyOf(orderData) : null);
+	}
+
+	/** Returns whether this session has uncommitted asset order changes. */
+	/* package */ boolean hasOrderChanges() {
+		for (Map<ByteArray, OrderData> changes : this.orderChanges)
+			if (!changes.isEmpty())
+				return true;
+
+		return false;
+	}
+
+	/** Returns all uncommitted asset order changes, merged in order. Returned map must not be modified. */
+	/* package */ Map<ByteArray, OrderData> getOrderChanges() {
+		if (this.orderChanges.isEmpty())
+			return Collections.emptyMap();
+
+		if (this.orderChanges.size() == 1)
+			return this.orderChanges.peek();
+
+		Map<ByteArray, OrderData> mergedChanges = new HashMap<>();
+		// Oldest layer first, so later changes win
+		Iterator<Map<ByteArray, OrderData>> iterator = this.orderChanges.descendingIterator();
+		while (iterator.hasNext())
+			mergedChanges.putAll(iterator.next());
+
+		return mergedChanges;
+	}
+
+	/** Returns all uncommitted asset order changes, merged in order, or null if none, clearing them from this session. */
+	private Map<ByteArray, OrderData> takeOrderChanges() {
+		if (!this.hasOrderChanges()) {
+			this.orderChanges.clear();
+			return null;
 		}
+
+		Map<ByteArray, OrderData> mergedChanges = new HashMap<>(this.getOrderChanges());
+		this.orderChanges.clear();
+		return mergedChanges;
 	}
 
 	// Close / backup / rebuild / restore
@@ -272,9 +456,19 @@ public class HSQLDBRepository implements Repository {
 			this.preparedStatementCache.clear();
 			this.sqlStatements = null;
 			this.savepoints.clear();
+			this.rewardShareChanges.clear();
+			this.orderChanges.clear();
+
+			// Pool would roll back anyway, but our transaction needs to end before any CHECKPOINT
+			try {
+				this.endTransaction();
+			} finally {
+				this.notifyTransactionEnded();
+			}
 
-			// If a checkpoint has been requested, we could perform that now
-			this.maybeCheckpoint();
+			// If a checkpoint has been requested, we could perform that now (leaving it to read-write sessions)
+			if (!this.isReadOnly)
+				this.maybeCheckpoint();
 
 			// Give connection back to the pool
 			this.connection.close();
@@ -285,37 +479,31 @@ public class HSQLDBRepository implements Repository {
 	}
 
 	private void maybeCheckpoint() throws DataException {
-		// To serialize checkpointing and to block new sessions when checkpointing in progress
-		synchronized (CHECKPOINT_LOCK) {
+		if (RepositoryManager.getRequestedCheckpoint() == null)
+			return;
+
+		// CHECKPOINT would wait forever for this thread's transactions in other sessions, so leave it to another thread
+		if (this.checkpointCoordinator.hasThreadTransactions())
+			return;
+
+		// Only one session needs to perform CHECKPOINT, others can carry on closing
+		if (!CHECKPOINT_LOCK.tryLock())
+			return;
+
+		try {
 			Boolean quickCheckpointRequest = RepositoryManager.getRequestedCheckpoint();
 			if (quickCheckpointRequest == null)
 				return;
 
-			// We can only perform a CHECKPOINT if no other HSQLDB session is mid-transaction,
-			// otherwise the CHECKPOINT blocks for COMMITs and other threads can't open HSQLDB sessions
-			// due to HSQLDB blocking until CHECKPOINT finishes - i.e. deadlock
-			String sql = "SELECT COUNT(*) "
-					+ "FROM Information_schema.system_sessions "
-					+ "WHERE transaction = TRUE";
+			// CHECKPOINT blocks until all other sessions' transactions finish, and blocks new statements meanwhile,
+			// so hold back new transactions until in-flight ones finish, or give up and try again later
+			if (!this.checkpointCoordinator.drain(Settings.getInstance().getRepositoryCheckpointDrainTimeout())) {
+				LOGGER.debug(() -> String.format("Deferring repository CHECKPOINT as %d session%s still mid-transaction",
+						this.checkpointCoordinator.getInFlightCount(), (this.checkpointCoordinator.getInFlightCount() != 1 ? "s" : "")));
+				return;
+			}
 
 			try {
-				PreparedStatement pstmt = this.cachePreparedStatement(sql);
-
-				if (!pstmt.execute())
-					throw new DataException("Unable to check repository session status");
-
-				try (ResultSet resultSet = pstmt.getResultSet()) {
-					if (resultSet == null || !resultSet.next())
-						// Failed to even find HSQLDB session info!
-						throw new DataException("No results when checking repository session status");
-
-					int transactionCount = resultSet.getInt(1);
-
-					if (transactionCount > 0)
-						// We can't safely perform CHECKPOINT due to ongoing SQL transactions
-						return;
-				}
-
 				LOGGER.info("Performing repository CHECKPOINT...");
 
 				if (Settings.getInstance().getShowCheckpointNotification())
@@ -323,16 +511,22 @@ public class HSQLDBRepository implements Repository {
 							Translator.INSTANCE.translate("SysTray", "PERFORMING_DB_CHECKPOINT"),
 							MessageType.INFO);
 
+				final long startTime = System.nanoTime();
 				try (Statement stmt = this.connection.createStatement()) {
 					stmt.execute(Boolean.TRUE.equals(quickCheckpointRequest) ? "CHECKPOINT" : "CHECKPOINT DEFRAG");
 				}
+				CHECKPOINT_TIME.recordSince(startTime);
 
 				// Completed!
 				LOGGER.info("Repository CHECKPOINT completed!");
 				RepositoryManager.setRequestedCheckpoint(null);
 			} catch (SQLException e) {
-				throw new DataException("Unable to check repository session status", e);
+				throw new DataException("Unable to perform repository CHECKPOINT", e);
+			} finally {
+				this.checkpointCoordinator.reopen();
 			}
+		} finally {
+			CHECKPOINT_LOCK.unlock();
 		}
 	}
 
@@ -374,14 +568,17 @@ public class HSQLDBRepository implements Repository {
 
 	@Override
 	public void backup(boolean quick, String name, Long timeout) throws DataException, TimeoutException {
-		synchronized (CHECKPOINT_LOCK) {
+		CHECKPOINT_LOCK.lock();
+		boolean isDrained = false;
+		try {
 
 			// We can only perform a CHECKPOINT if no other HSQLDB session is mid-transaction,
 			// otherwise the CHECKPOINT blocks for COMMITs and other threads can't open HSQLDB sessions
 			// due to HSQLDB blocking until CHECKPOINT finishes - i.e. deadlock.
-			// Since we don't want to give up too easily, it's best to wait until the other transaction
-			// count reaches zero, and then continue.
-			this.blockUntilNoOtherTransactions(timeout);
+			// Since we don't want to give up too easily, it's best to hold back new transactions
+			// and wait until the other transaction count reaches zero, and then continue.
+			this.drainOtherTransactions(timeout);
+			isDrained = true;
 
 			if (!quick)
 				// First perform a CHECKPOINT
@@ -436,19 +633,27 @@ public class HSQLDBRepository implements Repository {
 				throw new DataException("Unable to backup repository");
 			}
 
+		} finally {
+			if (isDrained)
+				this.checkpointCoordinator.reopen();
+
+			CHECKPOINT_LOCK.unlock();
 		}
 	}
 
 	@Override
 	public void performPeriodicMaintenance(Long timeout) throws DataException, TimeoutException {
-		synchronized (CHECKPOINT_LOCK) {
+		CHECKPOINT_LOCK.lock();
+		boolean isDrained = false;
+		try {
 
 			// We can only perform a CHECKPOINT if no other HSQLDB session is mid-transaction,
 			// otherwise the CHECKPOINT blocks for COMMITs and other threads can't open HSQLDB sessions
 			// due to HSQLDB blocking until CHECKPOINT finishes - i.e. deadlock.
-			// Since we don't want to give up too easily, it's best to wait until the other transaction
-			// count reaches zero, and then continue.
-			this.blockUntilNoOtherTransactions(timeout);
+			// Since we don't want to give up too easily, it's best to hold back new transactions
+			// and wait until the other transaction count reaches zero, and then continue.
+			this.drainOtherTransactions(timeout);
+			isDrained = true;
 
 			// Defrag DB - takes a while!
 			try (Statement stmt = this.connection.createStatement()) {
@@ -459,6 +664,11 @@ public class HSQLDBRepository implements Repository {
 			} catch (SQLException e) {
 				throw new DataException("Unable to defrag repository");
 			}
+		} finally {
+			if (isDrained)
+				this.checkpointCoordinator.reopen();
+
+			CHECKPOINT_LOCK.unlock();
 		}
 	}
 
@@ -654,11 +864,11 @@ public class HSQLDBRepository implements Repository {
 	private ResultSet checkedExecuteResultSet(PreparedStatement preparedStatement, Object... objects) throws SQLException {
 		bindStatementParams(preparedStatement, objects);
 
-		// synchronize to block new executions if checkpointing in progress
-		synchronized (CHECKPOINT_LOCK) {
-			if (!preparedStatement.execute())
-				throw new SQLException("Fetching from database produced no results");
-		}
+		// Might wait if sessions are being drained for a CHECKPOINT
+		this.beforeStatement();
+
+		if (!preparedStatement.execute())
+			throw new SQLException("Fetching from database produced no results");
 
 		ResultSet resultSet = preparedStatement.getResultSet();
 		if (resultSet == null)
@@ -703,6 +913,8 @@ public class HSQLDBRepository implements Repository {
 
 		long beforeQuery = this.slowQueryThreshold == null ? 0 : System.currentTimeMillis();
 
+		this.beforeStatement();
+
 		int[] updateCounts = null;
 		try {
 			updateCounts = preparedStatement.executeBatch();
@@ -1010,51 +1222,18 @@ public class HSQLDBRepository implements Repository {
 		return DEADLOCK_ERROR_CODE.equals(e.getErrorCode());
 	}
 
-	private int otherTransactionsCount() throws DataException {
-		// We can only perform a CHECKPOINT if no other HSQLDB session is mid-transaction,
-		// otherwise the CHECKPOINT blocks for COMMITs and other threads can't open HSQLDB sessions
-		// due to HSQLDB blocking until CHECKPOINT finishes - i.e. deadlock
-		String sql = "SELECT COUNT(*) "
-				+ "FROM Information_schema.system_sessions "
-				+ "WHERE transaction = TRUE AND session_id != ?";
-		try {
-			PreparedStatement pstmt = this.cachePreparedStatement(sql);
-			pstmt.setLong(1, this.sessionId);
-
-			if (!pstmt.execute())
-				throw new DataException("Unable to check repository session status");
-
-			try (ResultSet resultSet = pstmt.getResultSet()) {
-				if (resultSet == null || !resultSet.next())
-					// Failed to even find HSQLDB session info!
-					throw new DataException("No results when checking repository session status");
-
-				int transactionCount = resultSet.getInt(1);
-
-				return transactionCount;
-			}
-		} catch (SQLException e) {
-			throw new DataException("Unable to check repository session status", e);
-		}
-	}
+	/**
+	 * Holds back new transactions in other sessions, and waits for their in-flight transactions to finish.
+	 * Caller must reopen checkpoint coordinator afterwards.
+	 */
+	private void drainOtherTransactions(Long timeout) throws DataException, TimeoutException {
+		if (this.checkpointCoordinator.drain(timeout))
+			return;
 
-	private void blockUntilNoOtherTransactions(Long timeout) throws DataException, TimeoutException {
-		try {
-			long startTime = System.currentTimeMillis();
-			while (this.otherTransactionsCount() > 0) {
-				// Wait and try again
-				LOGGER.debug("Waiting for repository...");
-				Thread.sleep(1000L);
-
-				if (timeout != null) {
-					if (System.currentTimeMillis() - startTime >= timeout) {
-						throw new TimeoutException("Timed out waiting for repository to become available");
-					}
-				}
-			}
-		} catch (InterruptedException e) {
+		if (Thread.currentThread().isInterrupted())
 			throw new DataException("Interrupted before repository became available");
-		}
+
+		throw new TimeoutException("Timed out waiting for repository to become available");
 	}
 
 }
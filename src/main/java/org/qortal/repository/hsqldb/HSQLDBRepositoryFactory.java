@@ -5,11 +5,16 @@ import org.apache.logging.log4j.Logger;
 import org.hsqldb.HsqlException;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.jdbc.HSQLDBPool;
+import org.qortal.metrics.Histogram;
+import org.qortal.metrics.Metrics;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryFactory;
 import org.qortal.settings.Settings;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
@@ -23,9 +28,55 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 	/** Log getConnection() calls that take longer than this. (ms) */
 	private static final long SLOW_CONNECTION_THRESHOLD = 1000L;
 
+	private static final Histogram CONNECTION_WAIT_TIME = Metrics.getInstance().histogram("qortal_repository_connection_wait_seconds",
+			"Time spent waiting for a repository connection from pool", "pool", "main");
+	private static final Histogram READ_ONLY_CONNECTION_WAIT_TIME = Metrics.getInstance().histogram("qortal_repository_connection_wait_seconds",
+			"Time spent waiting for a repository connection from pool", "pool", "readonly");
+
+	/** Kinds of repository user, told apart by thread name, so pools can be sized from their wait times. */
+	private enum Caller {
+		SYNC("sync"),
+		MINTING("minting"),
+		API("api"),
+		QDN("qdn"),
+		NETWORK("network"),
+		OTHER("other");
+
+		private final Histogram waitTime;
+
+		Caller(String label) {
+			this.waitTime = Metrics.getInstance().histogram("qortal_repository_connection_caller_wait_seconds",
+					"Time spent waiting for a repository connection from pool, by type of caller", "caller", label);
+		}
+
+		private static Caller fromThreadName(String threadName) {
+			if (threadName.startsWith("Synchronizer"))
+				return SYNC;
+
+			if (threadName.startsWith("BlockMinter"))
+				return MINTING;
+
+			// Jetty's own threads are "qtp..." if API isn't using virtual threads
+			if (threadName.startsWith("API") || threadName.startsWith("qtp"))
+				return API;
+
+			if (threadName.startsWith("Arbitrary"))
+				return QDN;
+
+			// Includes NetworkProcessor
+			if (threadName.startsWith("Network"))
+				return NETWORK;
+
+			return OTHER;
+		}
+	}
+
 	private String connectionUrl;
 	private HSQLDBPool connectionPool;
+	/** Separate pool of read-only connections, mostly for API use, or null if read-only sessions share main pool */
+	private HSQLDBPool readOnlyConnectionPool;
 	private final boolean wasPristine;
+	private final HSQLDBCheckpointCoordinator checkpointCoordinator;
 
 	/**
 	 * Constructs new RepositoryFactory using passed <tt>connectionUrl</tt>.
@@ -57,12 +108,35 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 			HSQLDBRepository.attemptRecovery(connectionUrl, "backup");
 		}
 
+		this.checkpointCoordinator = new HSQLDBCheckpointCoordinator(Settings.getInstance().getRepositoryCheckpointDrainTimeout());
+		Metrics.getInstance().gauge("qortal_repository_transactions_in_flight", "Number of read-write repository sessions mid-transaction",
+				this.checkpointCoordinator::getInFlightCount);
+		Metrics.getInstance().gauge("qortal_repository_log_size_bytes", "Size of repository's redo log, emptied by CHECKPOINT",
+				() -> getLogSize(connectionUrl));
+
 		this.connectionPool = new HSQLDBPool(Settings.getInstance().getRepositoryConnectionPoolSize());
 		this.connectionPool.setUrl(this.connectionUrl);
 
 		Properties properties = new Properties();
 		properties.setProperty("close_result", "true"); // Auto-close old ResultSet if Statement creates new ResultSet
 		this.connectionPool.setProperties(properties);
+		registerPoolGauges("main", this.connectionPool);
+
+		int readOnlyPoolSize = Settings.getInstance().getRepositoryReadOnlyConnectionPoolSize();
+		if (readOnlyPoolSize > 0) {
+			this.readOnlyConnectionPool = new HSQLDBPool(readOnlyPoolSize);
+			this.readOnlyConnectionPool.setUrl(this.connectionUrl);
+			this.readOnlyConnectionPool.setProperties(properties);
+
+			// Callers wait this long for a free connection, instead of queuing indefinitely
+			try {
+				this.readOnlyConnectionPool.setLoginTimeout(Settings.getInstance().getRepositoryReadOnlyConnectionTimeout());
+			} catch (SQLException e) {
+				throw new DataException("Repository initialization error", e);
+			}
+
+			registerPoolGauges("readonly", this.readOnlyConnectionPool);
+		}
 
 		// Perform DB updates?
 		try (final Connection connection = this.connectionPool.getConnection()) {
@@ -77,6 +151,10 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 		return this.wasPristine;
 	}
 
+	public HSQLDBCheckpointCoordinator getCheckpointCoordinator() {
+		return this.checkpointCoordinator;
+	}
+
 	@Override
 	public RepositoryFactory reopen() throws DataException {
 		return new HSQLDBRepositoryFactory(this.connectionUrl);
@@ -85,7 +163,22 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 	@Override
 	public Repository getRepository() throws DataException {
 		try {
-			return new HSQLDBRepository(this.getConnection());
+			return new HSQLDBRepository(this.getConnection(), this.checkpointCoordinator, false);
+		} catch (SQLException e) {
+			throw new DataException("Repository instantiation error", e);
+		}
+	}
+
+	@Override
+	public Repository getReadOnlyRepository() throws DataException {
+		if (this.readOnlyConnectionPool == null)
+			return this.getRepository();
+
+		try {
+			Connection connection = this.getConnection(this.readOnlyConnectionPool, READ_ONLY_CONNECTION_WAIT_TIME);
+			setupReadOnlyConnection(connection);
+
+			return new HSQLDBRepository(connection, this.checkpointCoordinator, true);
 		} catch (SQLException e) {
 			throw new DataException("Repository instantiation error", e);
 		}
@@ -98,22 +191,30 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 			if (connection == null)
 				return null;
 
-			return new HSQLDBRepository(connection);
+			return new HSQLDBRepository(connection, this.checkpointCoordinator, false);
 		} catch (SQLException e) {
 			throw new DataException("Repository instantiation error", e);
 		}
 	}
 
 	private Connection getConnection() throws SQLException {
-		final long before = System.currentTimeMillis();
-		Connection connection = this.connectionPool.getConnection();
-		final long delay = System.currentTimeMillis() - before;
+		Connection connection = this.getConnection(this.connectionPool, CONNECTION_WAIT_TIME);
+
+		setupConnection(connection);
+		return connection;
+	}
+
+	private Connection getConnection(HSQLDBPool pool, Histogram waitTime) throws SQLException {
+		final long startTime = System.nanoTime();
+		Connection connection = pool.getConnection();
+		waitTime.recordSince(startTime);
+		Caller.fromThreadName(Thread.currentThread().getName()).waitTime.recordSince(startTime);
 
+		final long delay = (System.nanoTime() - startTime) / 1_000_000L;
 		if (delay > SLOW_CONNECTION_THRESHOLD)
 			// This could be an indication of excessive repository use, or insufficient pool size
 			LOGGER.warn(() -> String.format("Fetching repository connection from pool took %dms (threshold: %dms)", delay, SLOW_CONNECTION_THRESHOLD));
 
-		setupConnection(connection);
 		return connection;
 	}
 
@@ -132,12 +233,45 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 		connection.setAutoCommit(false);
 	}
 
+	private void setupReadOnlyConnection(Connection connection) throws SQLException {
+		connection.setReadOnly(true);
+		// Reads can see other sessions' committed changes, without holding up their writes
+		connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+		// Each statement ends its own transaction, so idle read-only sessions never block CHECKPOINTs
+		connection.setAutoCommit(true);
+	}
+
+	/** Returns size of redo log for repository at <tt>connectionUrl</tt>, or 0 if not found, e.g. in-memory repository. */
+	private static long getLogSize(String connectionUrl) {
+		String dbPathname = HSQLDBRepository.getDbPathname(connectionUrl);
+		if (dbPathname == null || dbPathname.equals("mem"))
+			return 0L;
+
+		try {
+			return Files.size(Paths.get(dbPathname + ".log"));
+		} catch (IOException e) {
+			return 0L;
+		}
+	}
+
+	private static void registerPoolGauges(String poolName, HSQLDBPool pool) {
+		Metrics.getInstance().gauge("qortal_repository_connections_in_use", "Number of repository connections handed out from pool",
+				"pool", poolName, pool::getAllocatedCount);
+		Metrics.getInstance().gauge("qortal_repository_connection_pool_size", "Maximum number of repository connections in pool",
+				"pool", poolName, pool::getPoolSize);
+		Metrics.getInstance().gauge("qortal_repository_connection_waiters", "Number of callers queued for a repository connection from pool",
+				"pool", poolName, pool::getWaitingCount);
+	}
+
 	@Override
 	public void close() throws DataException {
 		try {
 			// Close all existing connections immediately
 			this.connectionPool.close(0);
 
+			if (this.readOnlyConnectionPool != null)
+				this.readOnlyConnectionPool.close(0);
+
 			// Now that all connections are closed, create a dedicated connection to shut down repository
 			try (Connection connection = DriverManager.getConnection(this.connectionUrl);
 					Statement stmt = connection.createStatement()) {
@@ -0,0 +1,68 @@
+package org.qortal.repository.hsqldb;
+
+import org.qortal.repository.DataException;
+import org.qortal.repository.ResultCursor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/** Cursor over a ResultSet from {@link HSQLDBRepository#checkedExecute(String, Object...)}, converting each row as it's reached. */
+public class HSQLDBResultCursor<T> implements ResultCursor<T> {
+
+	@FunctionalInterface
+	public interface RowMapper<T> {
+		public T map(ResultSet resultSet) throws SQLException;
+	}
+
+	/** Null if there were no rows, or once closed */
+	private ResultSet resultSet;
+	private final RowMapper<T> rowMapper;
+	private final String errorMessage;
+	/** Whether resultSet is still on the row checkedExecute() moved to */
+	private boolean isOnFirstRow = true;
+
+	/**
+	 * @param resultSet result from checkedExecute(), already on first row, or null if there were no rows
+	 * @param rowMapper converts current row
+	 * @param errorMessage message for DataException if a row can't be read
+	 */
+	public HSQLDBResultCursor(ResultSet resultSet, RowMapper<T> rowMapper, String errorMessage) {
+		this.resultSet = resultSet;
+		this.rowMapper = rowMapper;
+		this.errorMessage = errorMessage;
+	}
+
+	@Override
+	public T next() throws DataException {
+		if (this.resultSet == null)
+			return null;
+
+		try {
+			if (this.isOnFirstRow)
+				this.isOnFirstRow = false;
+			else if (!this.resultSet.next()) {
+				this.close();
+				return null;
+			}
+
+			return this.rowMapper.map(this.resultSet);
+		} catch (SQLException e) {
+			throw new DataException(this.errorMessage, e);
+		}
+	}
+
+	@Override
+	public void close() throws DataException {
+		if (this.resultSet == null)
+			return;
+
+		try {
+			this.resultSet.close();
+		} catch (SQLException e) {
+			throw new DataException(this.errorMessage, e);
+		} finally {
+			this.resultSet = null;
+		}
+	}
+
+}
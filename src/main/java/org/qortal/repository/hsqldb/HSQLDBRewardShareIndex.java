@@ -0,0 +1,178 @@
+package org.qortal.repository.hsqldb;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.data.account.RewardShareData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.RepositoryFactory;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.utils.ByteArray;
+
+import java.util.*;
+
+/**
+ * Node-wide, in-memory copy of the <tt>RewardShares</tt> table, sorted by reward-share public key.
+ * <p>
+ * Online accounts are encoded as indexes into this sorted list, so index-to-reward-share and
+ * reward-share-to-index lookups happen for every online account in every block. Answering these from
+ * memory avoids sorting and walking the whole table each time.
+ * <p>
+ * The index only ever reflects <b>committed</b> repository state. Sessions with uncommitted reward-share
+ * changes must query the repository directly, and apply their changes here once committed.
+ * See {@link HSQLDBRepository#saveChanges()}.
+ */
+/* package */ class HSQLDBRewardShareIndex {
+
+	private static final Logger LOGGER = LogManager.getLogger(HSQLDBRewardShareIndex.class);
+
+	/** Same ordering as HSQLDB uses for VARBINARY columns */
+	private static final Comparator<RewardShareData> PUBLIC_KEY_ORDER =
+			(a, b) -> Arrays.compareUnsigned(a.getRewardSharePublicKey(), b.getRewardSharePublicKey());
+
+	private static class Snapshot {
+		private final RepositoryFactory repositoryFactory;
+		private final RewardShareData[] rewardShares;
+
+		private Snapshot(RepositoryFactory repositoryFactory, RewardShareData[] rewardShares) {
+			this.repositoryFactory = repositoryFactory;
+			this.rewardShares = rewardShares;
+		}
+	}
+
+	private static final Object LOCK = new Object();
+
+	/** Current index, or null if it needs (re)building */
+	private static volatile Snapshot snapshot;
+	/** Incremented whenever committed reward-shares change, so we don't publish stale rebuilds. Guarded by LOCK. */
+	private static long generation;
+	/** Number of sessions between COMMIT of reward-share changes and applying them here. Guarded by LOCK. */
+	private static int pendingCommits;
+
+	private HSQLDBRewardShareIndex() {
+	}
+
+	/**
+	 * Returns reward-shares sorted by public key, building index if needed,
+	 * or null if index can't be used right now.
+	 * <p>
+	 * Returned array must not be modified.
+	 */
+	public static RewardShareData[] getRewardShares(HSQLDBRepository repository) throws DataException {
+		// Sessions with uncommitted changes must see their own changes
+		if (repository.hasRewardShareChanges())
+			return null;
+
+		final RepositoryFactory repositoryFactory = RepositoryManager.getRepositoryFactory();
+
+		long buildGeneration;
+		synchronized (LOCK) {
+			if (pendingCommits > 0)
+				return null;
+
+			Snapshot currentSnapshot = snapshot;
+			if (currentSnapshot != null && currentSnapshot.repositoryFactory == repositoryFactory)
+				return currentSnapshot.rewardShares;
+
+			buildGeneration = generation;
+		}
+
+		RewardShareData[] rewardShares = load(repository);
+
+		synchronized (LOCK) {
+			// Only publish if nothing was committed while we were loading
+			if (generation == buildGeneration && pendingCommits == 0)
+				snapshot = new Snapshot(repositoryFactory, rewardShares);
+		}
+
+		return rewardShares;
+	}
+
+	private static RewardShareData[] load(HSQLDBRepository repository) throws DataException {
+		final long before = System.currentTimeMillis();
+
+		RewardShareData[] rewardShares = repository.getAccountRepository().getRewardShares().toArray(new RewardShareData[0]);
+		Arrays.sort(rewardShares, PUBLIC_KEY_ORDER);
+
+		LOGGER.debug(() -> String.format("Loaded %d reward-shares into index in %d ms", rewardShares.length, System.currentTimeMillis() - before));
+
+		return rewardShares;
+	}
+
+	/** Rebuilds index from repository, e.g. at startup. */
+	public static void rebuild(HSQLDBRepository repository) throws DataException {
+		synchronized (LOCK) {
+			snapshot = null;
+			++generation;
+		}
+
+		getRewardShares(repository);
+	}
+
+	/** Called just before a session commits reward-share changes. Index is unusable until {@link #endCommit(Map)}. */
+	public static void beginCommit() {
+		synchronized (LOCK) {
+			++pendingCommits;
+			++generation;
+		}
+	}
+
+	/**
+	 * Applies committed reward-share changes to index.
+	 *
+	 * @param changes map of reward-share public key to new reward-share data, or to null if deleted;
+	 * or null if commit failed and index should be rebuilt
+	 */
+	public static void endCommit(Map<ByteArray, RewardShareData> changes) {
+		synchronized (LOCK) {
+			--pendingCommits;
+
+			Snapshot currentSnapshot = snapshot;
+			if (currentSnapshot == null)
+				return;
+
+			if (changes == null) {
+				snapshot = null;
+				return;
+			}
+
+			snapshot = new Snapshot(currentSnapshot.repositoryFactory, applyChanges(currentSnapshot.rewardShares, changes));
+		}
+	}
+
+	/* package */ static RewardShareData[] applyChanges(RewardShareData[] rewardShares, Map<ByteArray, RewardShareData> changes) {
+		List<RewardShareData> newRewardShares = new ArrayList<>(rewardShares.length + changes.size());
+
+		for (RewardShareData rewardShareData : rewardShares)
+			if (!changes.containsKey(ByteArray.wrap(rewardShareData.getRewardSharePublicKey())))
+				newRewardShares.add(rewardShareData);
+
+		for (RewardShareData rewardShareData : changes.values())
+			if (rewardShareData != null)
+				newRewardShares.add(rewardShareData);
+
+		RewardShareData[] newArray = newRewardShares.toArray(new RewardShareData[0]);
+		Arrays.sort(newArray, PUBLIC_KEY_ORDER);
+		return newArray;
+	}
+
+	/** Returns index of reward-share with passed public key, using binary search, or -1 if not found. */
+	public static int indexOf(RewardShareData[] rewardShares, byte[] rewardSharePublicKey) {
+		int low = 0;
+		int high = rewardShares.length - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int comparison = Arrays.compareUnsigned(rewardShares[mid].getRewardSharePublicKey(), rewardSharePublicKey);
+
+			if (comparison < 0)
+				low = mid + 1;
+			else if (comparison > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+
+		return -1;
+	}
+
+}
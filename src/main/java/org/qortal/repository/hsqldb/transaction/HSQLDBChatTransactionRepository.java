@@ -53,6 +53,111 @@ public class HSQLDBChatTransactionRepository extends HSQLDBTransactionRepository
 		} catch (SQLException e) {
 			throw new DataException("Unable to save chat transaction into repository", e);
 		}
+
+		try {
+			if (isGroupChat(chatTransactionData))
+				this.saveLatestGroupMessage(chatTransactionData.getTxGroupId(), chatTransactionData.getTimestamp(), chatTransactionData.getSignature());
+
+			String sender = chatTransactionData.getSender();
+			String recipient = chatTransactionData.getRecipient();
+			if (recipient != null) {
+				this.saveLatestDirectMessage(sender, recipient, chatTransactionData.getTimestamp(), chatTransactionData.getSignature());
+				this.saveLatestDirectMessage(recipient, sender, chatTransactionData.getTimestamp(), chatTransactionData.getSignature());
+			}
+		} catch (SQLException e) {
+			throw new DataException("Unable to save latest chat message into repository", e);
+		}
+	}
+
+	@Override
+	public void delete(TransactionData transactionData) throws DataException {
+		ChatTransactionData chatTransactionData = (ChatTransactionData) transactionData;
+
+		// If this was the latest message in its chats, the database has already removed it from the latest
+		// messages, via "ON DELETE CASCADE", so we need to find the new latest messages
+		try {
+			if (isGroupChat(chatTransactionData))
+				this.rebuildLatestGroupMessage(chatTransactionData.getTxGroupId());
+
+			String sender = chatTransactionData.getSender();
+			String recipient = chatTransactionData.getRecipient();
+			if (recipient != null) {
+				this.rebuildLatestDirectMessage(sender, recipient);
+				this.rebuildLatestDirectMessage(recipient, sender);
+			}
+		} catch (SQLException e) {
+			throw new DataException("Unable to rebuild latest chat message in repository", e);
+		}
+	}
+
+	/** Returns whether CHAT message is part of its group's chat. For group 0, only messages without a recipient are. */
+	private static boolean isGroupChat(ChatTransactionData chatTransactionData) {
+		return chatTransactionData.getTxGroupId() != 0 || chatTransactionData.getRecipient() == null;
+	}
+
+	private void saveLatestGroupMessage(int groupId, long timestamp, byte[] signature) throws SQLException {
+		try (ResultSet resultSet = this.repository.checkedExecute("SELECT created_when FROM LatestGroupChats WHERE group_id = ?", groupId)) {
+			// Already have a later message?
+			if (resultSet != null && resultSet.getLong(1) > timestamp)
+				return;
+		}
+
+		HSQLDBSaver saveHelper = new HSQLDBSaver("LatestGroupChats");
+
+		saveHelper.bind("group_id", groupId).bind("created_when", timestamp).bind("signature", signature);
+
+		saveHelper.execute(this.repository);
+	}
+
+	private void saveLatestDirectMessage(String address, String otherAddress, long timestamp, byte[] signature) throws SQLException {
+		String sql = "SELECT created_when FROM LatestDirectChats WHERE address = ? AND other_address = ?";
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, address, otherAddress)) {
+			// Already have a later message?
+			if (resultSet != null && resultSet.getLong(1) > timestamp)
+				return;
+		}
+
+		HSQLDBSaver saveHelper = new HSQLDBSaver("LatestDirectChats");
+
+		saveHelper.bind("address", address).bind("other_address", otherAddress)
+				.bind("created_when", timestamp).bind("signature", signature);
+
+		saveHelper.execute(this.repository);
+	}
+
+	private void rebuildLatestGroupMessage(int groupId) throws SQLException {
+		if (this.repository.exists("LatestGroupChats", "group_id = ?", groupId))
+			return;
+
+		String sql = "SELECT created_when, signature FROM ChatTransactions "
+				+ "JOIN Transactions USING (signature) "
+				+ "WHERE tx_group_id = ? "
+				+ (groupId == 0 ? "AND recipient IS NULL " : "")
+				+ "ORDER BY created_when DESC "
+				+ "LIMIT 1";
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, groupId)) {
+			if (resultSet != null)
+				this.saveLatestGroupMessage(groupId, resultSet.getLong(1), resultSet.getBytes(2));
+		}
+	}
+
+	private void rebuildLatestDirectMessage(String address, String otherAddress) throws SQLException {
+		if (this.repository.exists("LatestDirectChats", "address = ? AND other_address = ?", address, otherAddress))
+			return;
+
+		String sql = "SELECT created_when, signature FROM ChatTransactions "
+				+ "JOIN Transactions USING (signature) "
+				+ "WHERE (sender = ? AND recipient = ?) "
+				+ "OR (sender = ? AND recipient = ?) "
+				+ "ORDER BY created_when DESC "
+				+ "LIMIT 1";
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, address, otherAddress, otherAddress, address)) {
+			if (resultSet != null)
+				this.saveLatestDirectMessage(address, otherAddress, resultSet.getLong(1), resultSet.getBytes(2));
+		}
 	}
 
 }
@@ -171,6 +171,12 @@ public class Settings {
 	 * This has a significant effect on execution time. */
 	private int blockPruneBatchSize = 10000; // blocks
 
+	/** Target duration of a single pruning/trimming batch (ms).<br>
+	 * Batch sizes are reduced when exceeded, and increased when well under target and the node is idle. */
+	private long maintenanceTargetBatchTime = 2000L; // milliseconds
+	/** Maximum time to wait for minting/sync to release the blockchain lock before postponing a maintenance batch (ms). */
+	private long maintenanceMaxLockWait = 5000L; // milliseconds
+
 	/** Whether we should archive old data to reduce the database size */
 	private boolean archiveEnabled = true;
 	/** How often to attempt archiving (ms). */
@@ -204,6 +210,10 @@ public class Settings {
 	private int maxNetworkThreadPoolSize = 620;
 	/** Maximum number of threads for network proof-of-work compute, used during handshaking. */
 	private int networkPoWComputePoolSize = 2;
+	/** Maximum number of handshakes waiting for a network proof-of-work thread. Further connections are dropped until there's room. */
+	private int networkPoWComputeQueueSize = 50;
+	/** Whether network message handling and API requests run on virtual threads. Needs Java 21 or later, otherwise ignored. */
+	private boolean virtualThreadsEnabled = false;
 	/** Maximum number of retry attempts if a peer fails to respond with the requested data */
 	private int maxRetries = 2;
 
@@ -248,11 +258,21 @@ public class Settings {
 	/** Maximum buy attempts for each trade offer before it is considered failed, and hidden from the list */
 	private int maxTradeOfferAttempts = 3;
 
+	/** Number of threads stepping trade-bot entries, per foreign blockchain */
+	private int tradeBotThreadsPerBlockchain = 1;
+
 	/** Wallets path - used for storing encrypted wallet caches for coins that require them */
 	private String walletsPath = "wallets";
 
 	private int arrrDefaultBirthday = 2000000;
 
+	/** Foreign blockchain cache path - used for storing deeply confirmed block headers and transactions */
+	private String foreignCachePath = "foreign-cache";
+	/** Maximum number of transactions kept in foreign blockchain cache, per foreign blockchain. 0 disables caching transactions. */
+	private int foreignCacheMaxTransactions = 10000;
+	/** Whether slow read-only ElectrumX calls are also sent to a second server, using whichever answers first */
+	private boolean electrumHedgedRequestsEnabled = false;
+
 	// Repository related
 	/** Queries that take longer than this are logged. (milliseconds) */
 	private Long slowQueryThreshold = null;
@@ -260,6 +280,14 @@ public class Settings {
 	private String repositoryPath = "db";
 	/** Repository connection pool size. Needs to be a bit bigger than maxNetworkThreadPoolSize */
 	private int repositoryConnectionPoolSize = 1920;
+	/** Size of separate pool of read-only repository connections used by API, or 0 to have API share main pool */
+	private int repositoryReadOnlyConnectionPoolSize = 100;
+	/** How long to wait for a read-only repository connection before giving up. (seconds) */
+	private int repositoryReadOnlyConnectionTimeout = 10;
+	/** How long a CHECKPOINT holds back new repository transactions while waiting for in-flight ones to finish, before trying again later. (milliseconds) */
+	private long repositoryCheckpointDrainTimeout = 5000L;
+	/** Whether asset order matching uses in-memory order book, instead of querying repository for each order */
+	private boolean assetOrderBookEnabled = true;
 	private List<String> fixedNetwork;
 
 	// Export/import
@@ -370,6 +398,13 @@ public class Settings {
 	/** Limit threads per message type */
 	private Set<ThreadLimit> maxThreadsPerMessageType = new HashSet<>();
 
+	/** Maximum number of incoming messages, per message type, queued while that type is at its thread limit.
+	 * Further messages of that type are rejected. */
+	private int maxQueuedMessagesPerType = 20;
+	/** Maximum time an incoming message can wait in its queue (ms). Older messages are discarded,
+	 * as peers usually give up waiting for a response after a few seconds. */
+	private long maxMessageQueueTime = 10 * 1000L;
+
 	/** The number of threads per message type at which a warning should be logged.
 	 * Exclude from settings.json to disable this warning. */
 	private Integer threadCountPerMessageTypeWarningThreshold = null;
@@ -811,6 +846,14 @@ public class Settings {
 		return this.networkPoWComputePoolSize;
 	}
 
+	public int getNetworkPoWComputeQueueSize() {
+		return this.networkPoWComputeQueueSize;
+	}
+
+	public boolean isVirtualThreadsEnabled() {
+		return this.virtualThreadsEnabled;
+	}
+
 	public int getMaxRetries() { return this.maxRetries; }
 
 	public long getRecoveryModeTimeout() {
@@ -861,6 +904,10 @@ public class Settings {
 		return this.maxTradeOfferAttempts;
 	}
 
+	public int getTradeBotThreadsPerBlockchain() {
+		return this.tradeBotThreadsPerBlockchain;
+	}
+
 	public String getWalletsPath() {
 		return this.walletsPath;
 	}
@@ -869,6 +916,18 @@ public class Settings {
 		return this.arrrDefaultBirthday;
 	}
 
+	public String getForeignCachePath() {
+		return this.foreignCachePath;
+	}
+
+	public int getForeignCacheMaxTransactions() {
+		return this.foreignCacheMaxTransactions;
+	}
+
+	public boolean isElectrumHedgedRequestsEnabled() {
+		return this.electrumHedgedRequestsEnabled;
+	}
+
 	public boolean isTradebotSystrayEnabled() {
 		return this.tradebotSystrayEnabled;
 	}
@@ -877,6 +936,10 @@ public class Settings {
 		return this.slowQueryThreshold;
 	}
 
+	public boolean isAssetOrderBookEnabled() {
+		return this.assetOrderBookEnabled;
+	}
+
 	public String getRepositoryPath() {
 		return this.repositoryPath;
 	}
@@ -885,6 +948,18 @@ public class Settings {
 		return this.repositoryConnectionPoolSize;
 	}
 
+	public int getRepositoryReadOnlyConnectionPoolSize() {
+		return this.repositoryReadOnlyConnectionPoolSize;
+	}
+
+	public int getRepositoryReadOnlyConnectionTimeout() {
+		return this.repositoryReadOnlyConnectionTimeout;
+	}
+
+	public long getRepositoryCheckpointDrainTimeout() {
+		return this.repositoryCheckpointDrainTimeout;
+	}
+
 	public String getExportPath() {
 		return this.exportPath;
 	}
@@ -1027,6 +1102,14 @@ public class Settings {
 		return this.archiveEnabled;
 	}
 
+	public long getMaintenanceTargetBatchTime() {
+		return this.maintenanceTargetBatchTime;
+	}
+
+	public long getMaintenanceMaxLockWait() {
+		return this.maintenanceMaxLockWait;
+	}
+
 	public long getArchiveInterval() {
 		return this.archiveInterval;
 	}
@@ -1122,6 +1205,14 @@ public class Settings {
 		return null;
 	}
 
+	public int getMaxQueuedMessagesPerType() {
+		return this.maxQueuedMessagesPerType;
+	}
+
+	public long getMaxMessageQueueTime() {
+		return this.maxMessageQueueTime;
+	}
+
 	public Integer getThreadCountPerMessageTypeWarningThreshold() {
 		return this.threadCountPerMessageTypeWarningThreshold;
 	}
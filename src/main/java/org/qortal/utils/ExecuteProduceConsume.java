@@ -9,6 +9,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class ExecuteProduceConsume implements Runnable {
 
@@ -30,8 +31,11 @@ public abstract class ExecuteProduceConsume implements Runnable {
 
 	protected ExecutorService executor;
 
+	/** Guards counts, and serializes task production. A lock rather than monitor so waiting virtual threads don't pin their carriers. */
+	private final ReentrantLock lock = new ReentrantLock();
+
 	// These are volatile to prevent thread-local caching of values
-	// but all are updated inside synchronized blocks
+	// but all are updated while holding lock
 	// so we don't need AtomicInteger/AtomicBoolean
 
 	private volatile int activeThreadCount = 0;
@@ -71,13 +75,16 @@ public abstract class ExecuteProduceConsume implements Runnable {
 	public StatsSnapshot getStatsSnapshot() {
 		StatsSnapshot snapshot = new StatsSnapshot();
 
-		synchronized (this) {
+		this.lock.lock();
+		try {
 			snapshot.activeThreadCount = this.activeThreadCount;
 			snapshot.greatestActiveThreadCount = this.greatestActiveThreadCount;
 			snapshot.consumerCount = this.consumerCount;
 			snapshot.tasksProduced = this.tasksProduced;
 			snapshot.tasksConsumed = this.tasksConsumed;
 			snapshot.spawnFailures = this.spawnFailures;
+		} finally {
+			this.lock.unlock();
 		}
 
 		return snapshot;
@@ -106,7 +113,8 @@ public abstract class ExecuteProduceConsume implements Runnable {
 		Thread.currentThread().setName(this.className + "-" + Thread.currentThread().getId());
 
 		boolean wasThreadPending;
-		synchronized (this) {
+		this.lock.lock();
+		try {
 			++this.activeThreadCount;
 			if (this.activeThreadCount > this.greatestActiveThreadCount)
 				this.greatestActiveThreadCount = this.activeThreadCount;
@@ -116,6 +124,8 @@ public abstract class ExecuteProduceConsume implements Runnable {
 
 			// Defer clearing hasThreadPending to prevent unnecessary threads waiting to produce...
 			wasThreadPending = this.hasThreadPending;
+		} finally {
+			this.lock.unlock();
 		}
 
 		try {
@@ -125,7 +135,8 @@ public abstract class ExecuteProduceConsume implements Runnable {
 
 				this.logger.trace(() -> String.format("[%d] waiting to produce...", Thread.currentThread().getId()));
 
-				synchronized (this) {
+				this.lock.lock();
+				try {
 					if (wasThreadPending) {
 						// Clear thread-pending flag now that we about to produce.
 						this.hasThreadPending = false;
@@ -162,10 +173,13 @@ public abstract class ExecuteProduceConsume implements Runnable {
 					} else {
 						taskType = null;
 					}
+				} finally {
+					this.lock.unlock();
 				}
 
-				if (task == null)
-					synchronized (this) {
+				if (task == null) {
+					this.lock.lock();
+					try {
 						this.logger.trace(() -> String.format("[%d] no task, activeThreadCount: %d, consumerCount: %d",
 								Thread.currentThread().getId(), this.activeThreadCount, this.consumerCount));
 
@@ -180,11 +194,15 @@ public abstract class ExecuteProduceConsume implements Runnable {
 						}
 
 						continue;
+					} finally {
+						this.lock.unlock();
 					}
+				}
 
 				// We have a task
 
-				synchronized (this) {
+				this.lock.lock();
+				try {
 					++this.tasksProduced;
 					++this.consumerCount;
 
@@ -210,6 +228,8 @@ public abstract class ExecuteProduceConsume implements Runnable {
 					} else {
 						this.logger.trace(() -> String.format("[%d] NOT spawning another thread", Thread.currentThread().getId()));
 					}
+				} finally {
+					this.lock.unlock();
 				}
 
 				this.logger.trace(() -> String.format("[%d] consuming [%s] task...", Thread.currentThread().getId(), taskType));
@@ -231,12 +251,15 @@ public abstract class ExecuteProduceConsume implements Runnable {
 					this.logger.debug(() -> String.format("[%d] consumed [%s] task in %dms", Thread.currentThread().getId(), taskType, productionPeriod));
 				}
 
-				synchronized (this) {
+				this.lock.lock();
+				try {
 					++this.tasksConsumed;
 					--this.consumerCount;
 
 					this.logger.trace(() -> String.format("[%d] consumerCount now: %d",
 							Thread.currentThread().getId(), this.consumerCount));
+				} finally {
+					this.lock.unlock();
 				}
 			}
 		} finally {
@@ -0,0 +1,129 @@
+package org.qortal.utils;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel, for expiring entries without having to scan them all.
+ * <p>
+ * Each entry is placed in the slot covering its expiry time. {@link #expire(long, Consumer)} only visits
+ * the slots that have elapsed since it was last called. Entries due further ahead than one revolution
+ * of the wheel are simply left in place until a later revolution.
+ * <p>
+ * Entries can be scheduled by many threads at once. Scheduling waits for any expiry in progress,
+ * unless called from the expiry callback itself, so entries never land in a slot that's already been passed.
+ * <p>
+ * The wheel doesn't track whether an entry has been replaced or removed elsewhere, so the expiry callback
+ * should check whether the expired entry is still current before discarding anything.
+ *
+ * @param <E> entry type
+ */
+public class ExpiryWheel<E> {
+
+	private static class Timeout<E> {
+		private final E entry;
+		private final long expiry;
+
+		private Timeout(E entry, long expiry) {
+			this.entry = entry;
+			this.expiry = expiry;
+		}
+	}
+
+	private final long tickLength;
+	private final Queue<Timeout<E>>[] slots;
+	private final AtomicInteger size = new AtomicInteger();
+
+	/** Read lock for scheduling, write lock for expiry, so scheduling always sees current sweep position */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/** Last fully-processed tick, or -1 if expire() not yet called. During expiry, tick currently being processed. */
+	private long lastTick = -1;
+
+	/**
+	 * @param tickLength time covered by each slot (ms)
+	 * @param slotCount number of slots; ideally enough to cover the longest timeout
+	 */
+	@SuppressWarnings("unchecked")
+	public ExpiryWheel(long tickLength, int slotCount) {
+		if (tickLength <= 0 || slotCount <= 0)
+			throw new IllegalArgumentException("Tick length and slot count must be positive");
+
+		this.tickLength = tickLength;
+		this.slots = new Queue[slotCount];
+		for (int i = 0; i < slotCount; ++i)
+			this.slots[i] = new ConcurrentLinkedQueue<>();
+	}
+
+	/** Schedules <tt>entry</tt> to expire at <tt>expiry</tt> (ms). */
+	public void schedule(E entry, long expiry) {
+		this.lock.readLock().lock();
+		try {
+			// Entries that are already due go into next slot to be processed, rather than waiting a whole revolution
+			long tick = Math.max(expiry / this.tickLength, this.lastTick + 1);
+
+			this.slots[this.slotIndex(tick)].add(new Timeout<>(entry, expiry));
+			this.size.incrementAndGet();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Passes entries that have expired by <tt>now</tt> (ms) to <tt>onExpiry</tt>, removing them from the wheel.
+	 *
+	 * @return number of expired entries
+	 */
+	public int expire(long now, Consumer<E> onExpiry) {
+		this.lock.writeLock().lock();
+		try {
+			final long nowTick = now / this.tickLength;
+
+			// Visit each slot at most once, even if we haven't been called for a while
+			long tick = Math.max(this.lastTick + 1, nowTick - this.slots.length + 1);
+			int expiredCount = 0;
+
+			for (; tick <= nowTick; ++tick) {
+				// Anything scheduled by onExpiry, into a slot we've already passed, goes into a later slot instead
+				this.lastTick = tick;
+
+				Iterator<Timeout<E>> iterator = this.slots[this.slotIndex(tick)].iterator();
+
+				while (iterator.hasNext()) {
+					Timeout<E> timeout = iterator.next();
+
+					// Not due until a later revolution?
+					if (timeout.expiry > now)
+						continue;
+
+					iterator.remove();
+					this.size.decrementAndGet();
+					++expiredCount;
+
+					onExpiry.accept(timeout.entry);
+				}
+			}
+
+			// Current tick isn't over yet, so we'll need to revisit its slot next time
+			this.lastTick = nowTick - 1;
+
+			return expiredCount;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/** Returns number of scheduled entries, including any that have since been replaced by their owner. */
+	public int size() {
+		return this.size.get();
+	}
+
+	private int slotIndex(long tick) {
+		return (int) Math.floorMod(tick, (long) this.slots.length);
+	}
+
+}
@@ -0,0 +1,61 @@
+package org.qortal.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * FIFO queue of entries that have work ready, where each entry is queued at most once.
+ * <p>
+ * Offering an entry that's already queued leaves it in place, so an entry with lots of work
+ * doesn't get ahead of others. Consumers that only do part of an entry's work should offer
+ * it again afterwards, which puts it at the back of the queue, giving round-robin service.
+ * <p>
+ * All operations are O(1).
+ *
+ * @param <E> entry type
+ */
+public class ReadyQueue<E> {
+
+	private final LinkedHashSet<E> entries = new LinkedHashSet<>();
+
+	/** Queues entry, unless already queued. Returns true if entry was newly queued. */
+	public synchronized boolean offer(E entry) {
+		return this.entries.add(entry);
+	}
+
+	/** Moves entry to back of queue, queuing it if not already queued. */
+	public synchronized void requeue(E entry) {
+		this.entries.remove(entry);
+		this.entries.add(entry);
+	}
+
+	/** Returns entry at front of queue, without removing it, or null if queue is empty. */
+	public synchronized E peek() {
+		Iterator<E> iterator = this.entries.iterator();
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+
+	/** Removes and returns entry at front of queue, or null if queue is empty. */
+	public synchronized E poll() {
+		Iterator<E> iterator = this.entries.iterator();
+		if (!iterator.hasNext())
+			return null;
+
+		E entry = iterator.next();
+		iterator.remove();
+		return entry;
+	}
+
+	public synchronized boolean remove(E entry) {
+		return this.entries.remove(entry);
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public synchronized boolean isEmpty() {
+		return this.entries.isEmpty();
+	}
+
+}
@@ -0,0 +1,161 @@
+package org.qortal.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Access to virtual threads, which need Java 21 or later.
+ * <p>
+ * We're built for older Java releases, so virtual threads are created reflectively. Callers should fall back
+ * to platform threads when {@link #newThreadPerTaskExecutor(String, int)} returns null.
+ */
+public class VirtualThreads {
+
+	private static final Logger LOGGER = LogManager.getLogger(VirtualThreads.class);
+
+	/** Thread.ofVirtual(), or null if not supported */
+	private static final Method OF_VIRTUAL;
+	/** Thread.Builder.name(String, long) */
+	private static final Method BUILDER_NAME;
+	/** Thread.Builder.factory() */
+	private static final Method BUILDER_FACTORY;
+	/** Thread.isVirtual() */
+	private static final Method IS_VIRTUAL;
+
+	static {
+		Method ofVirtual = null;
+		Method builderName = null;
+		Method builderFactory = null;
+		Method isVirtual = null;
+
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			builderName = builderClass.getMethod("name", String.class, long.class);
+			builderFactory = builderClass.getMethod("factory");
+			isVirtual = Thread.class.getMethod("isVirtual");
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			// Older JVM
+			ofVirtual = null;
+		}
+
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_FACTORY = builderFactory;
+		IS_VIRTUAL = isVirtual;
+	}
+
+	/** Executor that runs each task on a new virtual thread, rejecting tasks when too many are running. */
+	private static class BoundedThreadPerTaskExecutor extends AbstractExecutorService {
+		private final ThreadPoolExecutor executor;
+		private final Semaphore permits;
+
+		private BoundedThreadPerTaskExecutor(ThreadFactory threadFactory, int maxThreads) {
+			// No queue, and no reuse of threads, as virtual threads are cheap to create
+			this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0L, TimeUnit.MILLISECONDS,
+					new SynchronousQueue<>(), threadFactory);
+			this.permits = new Semaphore(maxThreads);
+		}
+
+		@Override
+		public void execute(Runnable task) {
+			if (!this.permits.tryAcquire())
+				throw new RejectedExecutionException("Too many virtual threads");
+
+			try {
+				this.executor.execute(() -> {
+					try {
+						task.run();
+					} finally {
+						this.permits.release();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				this.permits.release();
+				throw e;
+			}
+		}
+
+		@Override
+		public void shutdown() {
+			this.executor.shutdown();
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			return this.executor.shutdownNow();
+		}
+
+		@Override
+		public boolean isShutdown() {
+			return this.executor.isShutdown();
+		}
+
+		@Override
+		public boolean isTerminated() {
+			return this.executor.isTerminated();
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			return this.executor.awaitTermination(timeout, unit);
+		}
+	}
+
+	private VirtualThreads() {
+	}
+
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	/** Returns whether current thread is a virtual thread. */
+	public static boolean isVirtual() {
+		if (IS_VIRTUAL == null)
+			return false;
+
+		try {
+			return (Boolean) IS_VIRTUAL.invoke(Thread.currentThread());
+		} catch (ReflectiveOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns factory for virtual threads named <tt>name</tt>-<i>N</i>, or null if virtual threads aren't supported.
+	 */
+	public static ThreadFactory newThreadFactory(String name) {
+		if (!isSupported())
+			return null;
+
+		try {
+			Object builder = OF_VIRTUAL.invoke(null);
+			builder = BUILDER_NAME.invoke(builder, name + "-", 1L);
+			return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			LOGGER.warn("Unable to create virtual thread factory: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Returns executor that runs each task on a new virtual thread, with at most <tt>maxThreads</tt> tasks running
+	 * at once, or null if virtual threads aren't supported.
+	 * <p>
+	 * Tasks submitted while <tt>maxThreads</tt> are running are rejected, with {@link RejectedExecutionException},
+	 * like a thread pool with no queue.
+	 */
+	public static ExecutorService newThreadPerTaskExecutor(String name, int maxThreads) {
+		ThreadFactory threadFactory = newThreadFactory(name);
+		if (threadFactory == null)
+			return null;
+
+		return new BoundedThreadPerTaskExecutor(threadFactory, maxThreads);
+	}
+
+}
@@ -7,6 +7,7 @@ import org.qortal.account.PrivateKeyAccount;
 import org.qortal.block.Block;
 import org.qortal.block.GenesisBlock;
 import org.qortal.data.block.BlockData;
+import org.qortal.data.transaction.PaymentTransactionData;
 import org.qortal.data.transaction.TransactionData;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
@@ -14,6 +15,7 @@ import org.qortal.repository.RepositoryManager;
 import org.qortal.test.common.BlockUtils;
 import org.qortal.test.common.Common;
 import org.qortal.test.common.TransactionUtils;
+import org.qortal.test.common.transaction.TestTransaction;
 import org.qortal.transaction.Transaction;
 import org.qortal.transaction.Transaction.TransactionType;
 import org.qortal.transform.TransformationException;
@@ -26,6 +28,7 @@ import java.util.Arrays;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
@@ -138,6 +141,38 @@ public class BlockTests extends Common {
 		}
 	}
 
+	@Test
+	public void testActivitySummaries() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+
+			Map<TransactionType, Integer> initialTotals = repository.getBlockRepository().getActivityTotals();
+			int initialPaymentCount = initialTotals.getOrDefault(TransactionType.PAYMENT, 0);
+
+			TransactionData paymentTransactionData = new PaymentTransactionData(TestTransaction.generateBase(alice), bob.getAddress(), 100000L);
+			TransactionUtils.signAndMint(repository, paymentTransactionData, alice);
+
+			int height = repository.getBlockRepository().getBlockchainHeight();
+
+			// Materialised counts should match confirmed transactions
+			Map<TransactionType, Integer> activitySummary = repository.getBlockRepository().getActivitySummary(height, height);
+			assertEquals(1, (int) activitySummary.get(TransactionType.PAYMENT));
+			assertEquals(repository.getTransactionRepository().getTransactionSummary(height, height), activitySummary);
+			assertEquals(initialPaymentCount + 1, (int) repository.getBlockRepository().getActivityTotals().get(TransactionType.PAYMENT));
+
+			// Orphaning should undo counts
+			BlockUtils.orphanLastBlock(repository);
+
+			assertTrue(repository.getBlockRepository().getActivitySummary(height, height).isEmpty());
+			assertEquals(initialTotals, repository.getBlockRepository().getActivityTotals());
+
+			// Rebuilding should produce same totals
+			repository.getBlockRepository().rebuildActivitySummaries();
+			assertEquals(initialTotals, repository.getBlockRepository().getActivityTotals());
+		}
+	}
+
 	@Test
 	public void testLatestBlockCacheWithLatestBlock() throws DataException {
 		try (final Repository repository = RepositoryManager.getRepository()) {
@@ -0,0 +1,209 @@
+package org.qortal.test;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.crypto.Crypto;
+import org.qortal.data.account.AccountData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBCheckpointCoordinator;
+import org.qortal.repository.hsqldb.HSQLDBRepositoryFactory;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.Common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class CheckpointTests extends Common {
+
+	private static final Random RANDOM = new Random();
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testIdleSessionsDontBlockCheckpoint() throws DataException {
+		try (final Repository idleRepository = RepositoryManager.getRepository();
+				final Repository committedRepository = RepositoryManager.getRepository()) {
+			// Session that has committed, then sits idle
+			saveAccount(committedRepository);
+			committedRepository.saveChanges();
+
+			assertEquals(0, getCoordinator().getInFlightCount());
+
+			RepositoryManager.setRequestedCheckpoint(Boolean.TRUE);
+			RepositoryManager.getRepository().close();
+
+			assertNull("CHECKPOINT should have been performed", RepositoryManager.getRequestedCheckpoint());
+		}
+	}
+
+	@Test
+	public void testDrainsInFlightTransaction() throws Exception {
+		ExecutorService executor = Executors.newCachedThreadPool();
+
+		try (final Repository writerRepository = RepositoryManager.getRepository()) {
+			// Writer is mid-transaction
+			saveAccount(writerRepository);
+			assertEquals(1, getCoordinator().getInFlightCount());
+
+			// Checkpointing session waits for writer
+			RepositoryManager.setRequestedCheckpoint(Boolean.TRUE);
+			Future<?> checkpointFuture = executor.submit(() -> {
+				RepositoryManager.getRepository().close();
+				return null;
+			});
+
+			assertTrue(awaitDraining(true));
+
+			// New session is held back while draining
+			CountDownLatch newSessionStarted = new CountDownLatch(1);
+			Future<?> newSessionFuture = executor.submit(() -> {
+				try (final Repository repository = RepositoryManager.getRepository()) {
+					newSessionStarted.countDown();
+					repository.getAccountRepository().getAccount(Crypto.toAddress(new byte[32]));
+				}
+				return null;
+			});
+			assertTrue(newSessionStarted.await(5, TimeUnit.SECONDS));
+			Thread.sleep(200L);
+			assertFalse("New transaction should be held back", newSessionFuture.isDone());
+
+			// In-flight writer isn't held back, and finishing lets CHECKPOINT proceed
+			saveAccount(writerRepository);
+			writerRepository.saveChanges();
+
+			checkpointFuture.get(5, TimeUnit.SECONDS);
+			newSessionFuture.get(5, TimeUnit.SECONDS);
+
+			assertNull("CHECKPOINT should have been performed", RepositoryManager.getRequestedCheckpoint());
+			assertFalse(getCoordinator().isDraining());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testDeferredCheckpoint() throws Exception {
+		FieldUtils.writeField(Settings.getInstance(), "repositoryCheckpointDrainTimeout", 500L, true);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		try (final Repository writerRepository = RepositoryManager.getRepository()) {
+			saveAccount(writerRepository);
+
+			RepositoryManager.setRequestedCheckpoint(Boolean.TRUE);
+
+			// Checkpointing session is on another thread, as CHECKPOINT is never attempted by a thread with a transaction in flight
+			long before = System.currentTimeMillis();
+			executor.submit(() -> {
+				RepositoryManager.getRepository().close();
+				return null;
+			}).get(5, TimeUnit.SECONDS);
+			long waited = System.currentTimeMillis() - before;
+
+			// Gave up waiting for writer
+			assertNotNull("CHECKPOINT should have been deferred", RepositoryManager.getRequestedCheckpoint());
+			assertTrue(String.format("Waited %dms", waited), waited >= 400L && waited < 5000L);
+			assertFalse(getCoordinator().isDraining());
+
+			// Writer carries on unaffected
+			saveAccount(writerRepository);
+			writerRepository.saveChanges();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// Next session close performs deferred CHECKPOINT
+		RepositoryManager.getRepository().close();
+		assertNull("CHECKPOINT should have been performed", RepositoryManager.getRequestedCheckpoint());
+	}
+
+	@Test
+	public void testConcurrentWriters() throws Exception {
+		final int writerCount = 8;
+		final long testDuration = 3000L; // ms
+
+		ExecutorService executor = Executors.newFixedThreadPool(writerCount);
+		AtomicBoolean isRunning = new AtomicBoolean(true);
+		List<Future<Integer>> writerFutures = new ArrayList<>();
+
+		try {
+			for (int i = 0; i < writerCount; ++i)
+				writerFutures.add(executor.submit(() -> {
+					int commitCount = 0;
+
+					while (isRunning.get()) {
+						try (final Repository repository = RepositoryManager.getRepository()) {
+							// Nested session on same thread mustn't be held back by its own in-flight transaction
+							saveAccount(repository);
+							try (final Repository nestedRepository = RepositoryManager.getRepository()) {
+								nestedRepository.getAccountRepository().getAccount(Crypto.toAddress(new byte[32]));
+							}
+							saveAccount(repository);
+							repository.saveChanges();
+							++commitCount;
+						}
+					}
+
+					return commitCount;
+				}));
+
+			int checkpointCount = 0;
+			long deadline = System.currentTimeMillis() + testDuration;
+			while (System.currentTimeMillis() < deadline) {
+				RepositoryManager.setRequestedCheckpoint(Boolean.TRUE);
+				RepositoryManager.getRepository().close();
+
+				if (RepositoryManager.getRequestedCheckpoint() == null)
+					++checkpointCount;
+
+				Thread.sleep(100L);
+			}
+
+			isRunning.set(false);
+
+			for (Future<Integer> writerFuture : writerFutures)
+				assertTrue(writerFuture.get(10, TimeUnit.SECONDS) > 0);
+
+			assertTrue("No CHECKPOINTs performed", checkpointCount > 0);
+			assertEquals(0, getCoordinator().getInFlightCount());
+		} finally {
+			isRunning.set(false);
+			executor.shutdownNow();
+			RepositoryManager.setRequestedCheckpoint(null);
+		}
+	}
+
+	private static HSQLDBCheckpointCoordinator getCoordinator() {
+		return ((HSQLDBRepositoryFactory) RepositoryManager.getRepositoryFactory()).getCheckpointCoordinator();
+	}
+
+	private static boolean awaitDraining(boolean isDraining) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000L;
+
+		while (getCoordinator().isDraining() != isDraining)
+			if (System.currentTimeMillis() > deadline)
+				return false;
+			else
+				Thread.sleep(10L);
+
+		return true;
+	}
+
+	private static void saveAccount(Repository repository) throws DataException {
+		byte[] publicKey = new byte[32];
+		RANDOM.nextBytes(publicKey);
+
+		repository.getAccountRepository().ensureAccount(new AccountData(Crypto.toAddress(publicKey)));
+	}
+
+}
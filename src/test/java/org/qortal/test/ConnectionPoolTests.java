@@ -0,0 +1,170 @@
+package org.qortal.test;
+
+import org.hsqldb.jdbc.HSQLDBPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class ConnectionPoolTests {
+
+	private HSQLDBPool pool;
+	private ExecutorService executor;
+
+	@Before
+	public void beforeTest() {
+		this.executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void afterTest() throws SQLException {
+		this.executor.shutdownNow();
+
+		if (this.pool != null)
+			this.pool.close(0);
+	}
+
+	@Test
+	public void testReuse() throws SQLException {
+		this.pool = newPool(4, 1);
+
+		for (int i = 0; i < 100; ++i)
+			try (Connection connection = this.pool.getConnection()) {
+				assertEquals(1, this.pool.getAllocatedCount());
+			}
+
+		assertEquals(0, this.pool.getAllocatedCount());
+
+		List<Connection> connections = new ArrayList<>();
+		for (int i = 0; i < 4; ++i)
+			connections.add(this.pool.getConnection());
+
+		assertEquals(4, this.pool.getAllocatedCount());
+		assertNull(this.pool.tryConnection());
+
+		for (Connection connection : connections)
+			connection.close();
+
+		assertEquals(0, this.pool.getAllocatedCount());
+	}
+
+	@Test
+	public void testFifoOrder() throws Exception {
+		final int waiterCount = 5;
+		this.pool = newPool(1, 10);
+
+		Connection heldConnection = this.pool.getConnection();
+
+		List<Integer> acquisitionOrder = Collections.synchronizedList(new ArrayList<>());
+		List<Future<?>> futures = new ArrayList<>();
+
+		// Queue up waiters, one at a time, so their arrival order is known
+		for (int i = 0; i < waiterCount; ++i) {
+			final int waiterId = i;
+
+			futures.add(this.executor.submit(() -> {
+				try (Connection connection = this.pool.getConnection()) {
+					acquisitionOrder.add(waiterId);
+					// Give later waiters a chance to barge in, if they could
+					Thread.sleep(20L);
+				}
+				return null;
+			}));
+
+			assertTrue(awaitWaitingCount(i + 1));
+		}
+
+		// Queued waiters aren't jumped
+		assertNull(this.pool.tryConnection());
+
+		heldConnection.close();
+
+		for (Future<?> future : futures)
+			future.get(5, TimeUnit.SECONDS);
+
+		List<Integer> expectedOrder = new ArrayList<>();
+		for (int i = 0; i < waiterCount; ++i)
+			expectedOrder.add(i);
+
+		assertEquals(expectedOrder, acquisitionOrder);
+		assertEquals(0, this.pool.getWaitingCount());
+		assertEquals(0, this.pool.getAllocatedCount());
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		this.pool = newPool(1, 1);
+
+		try (Connection heldConnection = this.pool.getConnection()) {
+			long before = System.currentTimeMillis();
+			try {
+				this.pool.getConnection().close();
+				fail("Pool should be exhausted");
+			} catch (SQLException e) {
+				// Expected
+			}
+			long waited = System.currentTimeMillis() - before;
+
+			assertTrue(String.format("Waited %dms", waited), waited >= 900L && waited < 5000L);
+			assertEquals(0, this.pool.getWaitingCount());
+		}
+
+		// Timed-out waiter didn't take a slot
+		try (Connection connection = this.pool.tryConnection()) {
+			assertNotNull(connection);
+		}
+	}
+
+	@Test
+	public void testCloseWakesWaiters() throws Exception {
+		this.pool = newPool(1, 30);
+
+		Connection heldConnection = this.pool.getConnection();
+
+		Future<?> future = this.executor.submit(() -> {
+			this.pool.getConnection().close();
+			return null;
+		});
+		assertTrue(awaitWaitingCount(1));
+
+		this.pool.close(0);
+
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("Waiter should have been refused a connection");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof SQLException);
+		}
+
+		heldConnection.close();
+		this.pool = null;
+	}
+
+	private static HSQLDBPool newPool(int poolSize, int timeout) throws SQLException {
+		HSQLDBPool pool = new HSQLDBPool(poolSize);
+		pool.setUrl("jdbc:hsqldb:mem:connectionPoolTests");
+		pool.setLoginTimeout(timeout);
+		return pool;
+	}
+
+	private boolean awaitWaitingCount(int waitingCount) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000L;
+
+		while (this.pool.getWaitingCount() != waitingCount)
+			if (System.currentTimeMillis() > deadline)
+				return false;
+			else
+				Thread.sleep(10L);
+
+		return true;
+	}
+
+}
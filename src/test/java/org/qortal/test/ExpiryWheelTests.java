@@ -0,0 +1,118 @@
+package org.qortal.test;
+
+import org.junit.Test;
+import org.qortal.utils.ExpiryWheel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ExpiryWheelTests {
+
+	private static final long TICK = 1000L;
+
+	@Test
+	public void testExpiryOrder() {
+		ExpiryWheel<String> wheel = new ExpiryWheel<>(TICK, 10);
+		final long now = 1_000_000L;
+
+		wheel.schedule("a", now + 500);
+		wheel.schedule("b", now + 2500);
+		wheel.schedule("c", now + 5000);
+		assertEquals(3, wheel.size());
+
+		List<String> expired = new ArrayList<>();
+
+		assertEquals(0, wheel.expire(now, expired::add));
+		assertTrue(expired.isEmpty());
+
+		// "a" is due, even though it shares its slot's tick with the previous call
+		assertEquals(1, wheel.expire(now + 600, expired::add));
+		assertEquals(Collections.singletonList("a"), expired);
+
+		assertEquals(1, wheel.expire(now + 3000, expired::add));
+		assertEquals(Arrays.asList("a", "b"), expired);
+
+		assertEquals(1, wheel.expire(now + 10000, expired::add));
+		assertEquals(Arrays.asList("a", "b", "c"), expired);
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testExpiryBeyondOneRevolution() {
+		ExpiryWheel<String> wheel = new ExpiryWheel<>(TICK, 4);
+		final long now = 1_000_000L;
+
+		wheel.expire(now, entry -> fail("nothing should expire"));
+
+		// Further ahead than the wheel spans, so must survive a revolution
+		wheel.schedule("late", now + 10 * TICK);
+
+		List<String> expired = new ArrayList<>();
+		for (long time = now; time < now + 10 * TICK; time += TICK / 2)
+			wheel.expire(time, expired::add);
+
+		assertTrue(expired.isEmpty());
+
+		wheel.expire(now + 10 * TICK, expired::add);
+		assertEquals(Collections.singletonList("late"), expired);
+	}
+
+	@Test
+	public void testAlreadyDueEntry() {
+		ExpiryWheel<String> wheel = new ExpiryWheel<>(TICK, 4);
+		final long now = 1_000_000L;
+
+		wheel.expire(now, entry -> fail("nothing should expire"));
+
+		// Scheduled in the past, so should expire next time rather than after a full revolution
+		wheel.schedule("overdue", now - 5 * TICK);
+
+		List<String> expired = new ArrayList<>();
+		wheel.expire(now + 1, expired::add);
+		assertEquals(Collections.singletonList("overdue"), expired);
+	}
+
+	@Test
+	public void testScheduleDuringExpiry() {
+		ExpiryWheel<String> wheel = new ExpiryWheel<>(TICK, 10);
+		final long now = 1_000_000L;
+
+		wheel.expire(now, entry -> fail("nothing should expire"));
+
+		wheel.schedule("first", now + 3 * TICK + 500);
+
+		// While sweeping "first"'s slot, schedule an entry into a slot that has already been passed
+		List<String> expired = new ArrayList<>();
+		int expiredCount = wheel.expire(now + 5 * TICK, entry -> {
+			expired.add(entry);
+
+			if (entry.equals("first"))
+				wheel.schedule("second", now + TICK + 500);
+		});
+
+		// "second" should expire in the same sweep, not a whole revolution later
+		assertEquals(2, expiredCount);
+		assertEquals(Arrays.asList("first", "second"), expired);
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testLongGapBetweenCalls() {
+		ExpiryWheel<Integer> wheel = new ExpiryWheel<>(TICK, 8);
+		final long now = 1_000_000L;
+
+		wheel.expire(now, entry -> fail("nothing should expire"));
+
+		for (int i = 0; i < 100; ++i)
+			wheel.schedule(i, now + i * 100L);
+
+		List<Integer> expired = new ArrayList<>();
+		assertEquals(100, wheel.expire(now + 60 * TICK, expired::add));
+		assertEquals(100, expired.size());
+	}
+
+}
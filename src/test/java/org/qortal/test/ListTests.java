@@ -2,6 +2,7 @@ package org.qortal.test;
 
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.qortal.list.ResourceList;
 import org.qortal.list.ResourceListManager;
@@ -13,7 +14,10 @@ import org.qortal.utils.ListUtils;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -126,4 +130,116 @@ public class ListTests {
         assertEquals(1, ResourceListManager.getInstance().getStringsInListsWithPrefix("blockedNames").size());
     }
 
+
+    @Test
+    public void testCaseInsensitiveLookups() {
+        ResourceListManager resourceListManager = ResourceListManager.getInstance();
+        String listName = "blockedNames_test";
+
+        resourceListManager.addToList(listName, "TestName", false);
+        resourceListManager.addToList(listName, "testname", false);
+        assertEquals(2, resourceListManager.getItemCountForList(listName));
+
+        assertTrue(resourceListManager.listContains(listName, "TestName", true));
+        assertFalse(resourceListManager.listContains(listName, "TESTNAME", true));
+        assertTrue(resourceListManager.listContains(listName, "TESTNAME", false));
+
+        // Removing one case variant leaves the other matching case-insensitively
+        resourceListManager.removeFromList(listName, "TestName", false);
+        assertTrue(resourceListManager.listContains(listName, "TESTNAME", false));
+        assertFalse(resourceListManager.listContains(listName, "TestName", true));
+
+        resourceListManager.removeFromList(listName, "testname", false);
+        assertFalse(resourceListManager.listContains(listName, "TESTNAME", false));
+        assertEquals(0, resourceListManager.getItemCountForList(listName));
+    }
+
+    @Test
+    public void testCaseInsensitiveMatchesEqualsIgnoreCase() {
+        ResourceListManager resourceListManager = ResourceListManager.getInstance();
+        String listName = "blockedNames_test";
+
+        // Characters whose whole-string case mappings differ from equalsIgnoreCase
+        String[] entries = { "Straße", "ılkay", "İstanbul", "SS" };
+        String[] lookups = { "STRASSE", "strasse", "STRAßE", "Ilkay", "ilkay", "istanbul", "İSTANBUL", "ss", "ß" };
+
+        for (String entry : entries)
+            resourceListManager.addToList(listName, entry, false);
+
+        for (String lookup : lookups) {
+            boolean isExpected = false;
+            for (String entry : entries)
+                isExpected |= entry.equalsIgnoreCase(lookup);
+
+            assertEquals(lookup, isExpected, resourceListManager.listContains(listName, lookup, false));
+        }
+    }
+
+    @Test
+    public void testSnapshotIsStable() {
+        ResourceListManager resourceListManager = ResourceListManager.getInstance();
+        String listName = "followedNames_test";
+
+        resourceListManager.addToList(listName, "testName1", false);
+        List<String> snapshot = resourceListManager.getStringsInList(listName);
+
+        resourceListManager.addToList(listName, "testName2", false);
+
+        // Earlier snapshot is unaffected by later modification
+        assertEquals(1, snapshot.size());
+        assertEquals(2, resourceListManager.getStringsInList(listName).size());
+        assertEquals("testName2", resourceListManager.getStringsInList(listName).get(1));
+    }
+
+    @Test
+    @Ignore(value = "For informational use")
+    public void benchmarkLookups() {
+        ResourceListManager resourceListManager = ResourceListManager.getInstance();
+        String listName = "blockedNames_test";
+        final int entryCount = 20000;
+        final int lookupCount = 100000;
+
+        Random random = new Random();
+        List<String> names = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; ++i) {
+            // Some names with characters whose whole-string case mappings differ from equalsIgnoreCase
+            String name = String.format(i % 100 == 0 ? "Naße-ı-İ-%08x" : "Name-%08x", random.nextInt());
+            names.add(name);
+            resourceListManager.addToList(listName, name, false);
+        }
+
+        String[] lookups = new String[lookupCount];
+        for (int i = 0; i < lookupCount; ++i)
+            // Half hits, half misses
+            lookups[i] = (i & 1) == 0 ? names.get(random.nextInt(entryCount)).toUpperCase(Locale.ROOT) : "missing" + i;
+
+        for (boolean caseSensitive : new boolean[] { true, false }) {
+            long before = System.nanoTime();
+            int hits = 0;
+            for (String lookup : lookups)
+                if (resourceListManager.listContains(listName, lookup, caseSensitive))
+                    ++hits;
+            long hashedNanos = System.nanoTime() - before;
+
+            // Previous implementation: linear scan of list
+            List<String> list = resourceListManager.getStringsInList(listName);
+            before = System.nanoTime();
+            int scanHits = 0;
+            for (int i = 0; i < lookupCount / 100; ++i) {
+                final String lookup = lookups[i];
+                boolean isScanHit = caseSensitive ? list.contains(lookup) : list.stream().anyMatch(lookup::equalsIgnoreCase);
+                if (isScanHit)
+                    ++scanHits;
+
+                // Both lookups must agree
+                assertEquals(isScanHit, resourceListManager.listContains(listName, lookup, caseSensitive));
+            }
+            long scanNanos = (System.nanoTime() - before) * 100;
+
+            System.out.println(String.format("%d entries, %s: hashed %d ns/lookup (%d hits), linear scan ~%d ns/lookup (%d hits in 1%% sample)",
+                    entryCount, caseSensitive ? "case-sensitive" : "case-insensitive",
+                    hashedNanos / lookupCount, hits, scanNanos / lookupCount, scanHits));
+        }
+    }
+
 }
@@ -0,0 +1,97 @@
+package org.qortal.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.controller.repository.MaintenanceScheduler;
+import org.qortal.controller.repository.MaintenanceTask;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.test.common.Common;
+
+import static org.junit.Assert.*;
+
+public class MaintenanceSchedulerTests extends Common {
+
+	/** Task that takes a few steps then stops, optionally failing unexpectedly instead. */
+	private static class TestTask extends MaintenanceTask {
+		private final String name;
+		private final boolean isFailingPrepare;
+		private final boolean isFailingStep;
+		private int stepCount = 0;
+
+		TestTask(String name, boolean isFailingPrepare, boolean isFailingStep) {
+			this.name = name;
+			this.isFailingPrepare = isFailingPrepare;
+			this.isFailingStep = isFailingStep;
+		}
+
+		@Override
+		public String getName() {
+			return this.name;
+		}
+
+		@Override
+		public boolean isEnabled() {
+			return true;
+		}
+
+		@Override
+		protected long getBaseInterval() {
+			return 1L;
+		}
+
+		@Override
+		protected int getBaseBatchSize() {
+			return 1;
+		}
+
+		@Override
+		protected boolean prepare(Repository repository) throws DataException {
+			if (this.isFailingPrepare)
+				throw new IllegalStateException("Test failure preparing " + this.name);
+
+			return true;
+		}
+
+		@Override
+		protected StepResult step(Repository repository, int batchSize) {
+			this.stepCount++;
+
+			if (this.isFailingStep)
+				throw new IllegalStateException("Test failure during " + this.name);
+
+			return this.stepCount < 3 ? StepResult.PROGRESS : StepResult.STOP;
+		}
+	}
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testFailingTaskStopsAlone() {
+		TestTask failingPrepareTask = new TestTask("failing prepare", true, false);
+		TestTask failingStepTask = new TestTask("failing step", false, true);
+		TestTask goodTask = new TestTask("good", false, false);
+
+		MaintenanceScheduler scheduler = new MaintenanceScheduler();
+		scheduler.addTask(failingPrepareTask);
+		scheduler.addTask(failingStepTask);
+		scheduler.addTask(goodTask);
+
+		// Returns once all tasks have stopped
+		scheduler.run();
+
+		assertTrue(failingPrepareTask.isStopped());
+		assertEquals(0, failingPrepareTask.stepCount);
+
+		assertTrue(failingStepTask.isStopped());
+		assertEquals(1, failingStepTask.stepCount);
+
+		// Other tasks still ran to completion
+		assertTrue(goodTask.isStopped());
+		assertEquals(3, goodTask.stepCount);
+	}
+
+}
@@ -0,0 +1,47 @@
+package org.qortal.test;
+
+import org.junit.Test;
+import org.qortal.controller.repository.MaintenanceTask;
+
+import static org.junit.Assert.*;
+
+public class MaintenanceTaskTests {
+
+	private static final long TARGET_BATCH_TIME = 2000L; // ms
+
+	@Test
+	public void testSlowBatchShrinks() {
+		int batchSize = MaintenanceTask.adjustBatchSize(100, 100, TARGET_BATCH_TIME, TARGET_BATCH_TIME * 2, 0L, true);
+		assertEquals(50, batchSize);
+
+		// Never below 1
+		batchSize = MaintenanceTask.adjustBatchSize(1, 100, TARGET_BATCH_TIME, TARGET_BATCH_TIME * 2, 0L, false);
+		assertEquals(1, batchSize);
+	}
+
+	@Test
+	public void testLockWaitShrinks() {
+		int batchSize = MaintenanceTask.adjustBatchSize(100, 100, TARGET_BATCH_TIME, 1L, TARGET_BATCH_TIME, false);
+		assertEquals(50, batchSize);
+	}
+
+	@Test
+	public void testIdleGrows() {
+		int batchSize = MaintenanceTask.adjustBatchSize(100, 100, TARGET_BATCH_TIME, 1L, 0L, true);
+		assertEquals(125, batchSize);
+
+		// Not idle, so no growth
+		batchSize = MaintenanceTask.adjustBatchSize(100, 100, TARGET_BATCH_TIME, 1L, 0L, false);
+		assertEquals(100, batchSize);
+	}
+
+	@Test
+	public void testGrowthIsCapped() {
+		int batchSize = 100;
+		for (int i = 0; i < 100; ++i)
+			batchSize = MaintenanceTask.adjustBatchSize(batchSize, 100, TARGET_BATCH_TIME, 1L, 0L, true);
+
+		assertEquals(800, batchSize);
+	}
+
+}
@@ -0,0 +1,64 @@
+package org.qortal.test;
+
+import org.junit.Test;
+import org.qortal.metrics.Counter;
+import org.qortal.metrics.Histogram;
+import org.qortal.metrics.Metrics;
+
+import static org.junit.Assert.*;
+
+public class MetricsTests {
+
+	@Test
+	public void testCounter() {
+		Counter counter = Metrics.getInstance().counter("test_counter_total", "Test counter");
+		counter.increment();
+		counter.add(4);
+
+		assertEquals(5, counter.get());
+
+		// Same name returns same counter
+		assertSame(counter, Metrics.getInstance().counter("test_counter_total", "Test counter"));
+
+		assertTrue(Metrics.getInstance().toPrometheusText().contains("test_counter_total 5\n"));
+	}
+
+	@Test
+	public void testHistogramBuckets() {
+		Histogram histogram = Metrics.getInstance().histogram("test_latency_seconds", "Test histogram");
+
+		histogram.record(500L); // 0.5us -> first bucket (<= 1us)
+		histogram.record(3_000L); // 3us -> <= 4us bucket
+		histogram.record(4_000L); // 4us -> <= 4us bucket
+		histogram.record(1_000_000_000_000L); // 1000s -> overflow
+
+		long[] counts = histogram.getBucketCounts();
+		assertEquals(1, counts[0]);
+		assertEquals(2, counts[2]);
+		assertEquals(1, counts[counts.length - 1]);
+		assertEquals(4, histogram.getCount());
+
+		assertEquals(4, histogram.getPercentileMicros(50.0));
+
+		String text = Metrics.getInstance().toPrometheusText();
+		assertTrue(text.contains("# TYPE test_latency_seconds histogram\n"));
+		assertTrue(text.contains("test_latency_seconds_bucket{le=\"0.000001\"} 1\n"));
+		assertTrue(text.contains("test_latency_seconds_bucket{le=\"0.000004\"} 3\n"));
+		assertTrue(text.contains("test_latency_seconds_bucket{le=\"+Inf\"} 4\n"));
+		assertTrue(text.contains("test_latency_seconds_count 4\n"));
+	}
+
+	@Test
+	public void testLabelledGauge() {
+		Metrics.getInstance().gauge("test_queue_size", "Test gauge", "queue", "a\"b", () -> 42L);
+
+		assertTrue(Metrics.getInstance().toPrometheusText().contains("test_queue_size{queue=\"a\\\"b\"} 42\n"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTypeMismatch() {
+		Metrics.getInstance().counter("test_mismatch", "Test");
+		Metrics.getInstance().histogram("test_mismatch", "Test");
+	}
+
+}
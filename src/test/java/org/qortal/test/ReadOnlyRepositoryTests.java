@@ -0,0 +1,102 @@
+package org.qortal.test;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.data.account.AccountData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBRepository;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.Common;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+public class ReadOnlyRepositoryTests extends Common {
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testReadOnly() throws DataException {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
+			assertTrue(repository.getBlockRepository().getBlockchainHeight() > 0);
+
+			try {
+				repository.getAccountRepository().ensureAccount(new AccountData(Common.getTestAccount(repository, "alice").getAddress() + "x"));
+				fail("Read-only repository shouldn't allow writes");
+			} catch (DataException e) {
+				// Expected
+			}
+		}
+	}
+
+	@Test
+	public void testReadsDontHoldTransactions() throws DataException, SQLException {
+		try (final Repository readOnlyRepository = RepositoryManager.getReadOnlyRepository();
+				final HSQLDBRepository repository = (HSQLDBRepository) RepositoryManager.getRepository()) {
+			// Read-write session is mid-transaction after reading, read-only session isn't
+			readOnlyRepository.getBlockRepository().getLastBlock();
+			repository.getBlockRepository().getLastBlock();
+
+			PreparedStatement pstmt = repository.prepareStatement("SELECT COUNT(*) FROM Information_schema.system_sessions WHERE transaction = TRUE");
+			try (ResultSet resultSet = pstmt.executeQuery()) {
+				assertTrue(resultSet.next());
+				assertEquals(1, resultSet.getInt(1));
+			}
+		}
+	}
+
+	@Test
+	public void testPoolTimeout() throws DataException, IllegalAccessException {
+		final int poolSize = 2;
+		reopenRepository(poolSize, 1);
+
+		try {
+			Repository[] repositories = new Repository[poolSize];
+			for (int i = 0; i < poolSize; ++i)
+				repositories[i] = RepositoryManager.getReadOnlyRepository();
+
+			// Read-only pool exhausted, but main pool still available
+			try (final Repository repository = RepositoryManager.getRepository()) {
+				assertNotNull(repository);
+			}
+
+			long before = System.currentTimeMillis();
+			try {
+				RepositoryManager.getReadOnlyRepository().close();
+				fail("Read-only pool should be exhausted");
+			} catch (DataException e) {
+				// Expected
+			}
+			long waited = System.currentTimeMillis() - before;
+			assertTrue(String.format("Waited %dms", waited), waited >= 900L && waited < 5000L);
+
+			// Connection available again once one is returned
+			repositories[0].close();
+			try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
+				assertNotNull(repository);
+			}
+
+			repositories[1].close();
+		} finally {
+			reopenRepository(100, 10);
+		}
+	}
+
+	private static void reopenRepository(int readOnlyPoolSize, int readOnlyTimeout) throws DataException, IllegalAccessException {
+		FieldUtils.writeField(Settings.getInstance(), "repositoryReadOnlyConnectionPoolSize", readOnlyPoolSize, true);
+		FieldUtils.writeField(Settings.getInstance(), "repositoryReadOnlyConnectionTimeout", readOnlyTimeout, true);
+
+		RepositoryManager.closeRepositoryFactory();
+		Common.setRepository(true);
+	}
+
+}
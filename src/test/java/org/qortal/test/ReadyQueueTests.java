@@ -0,0 +1,169 @@
+package org.qortal.test;
+
+import org.junit.Test;
+import org.qortal.utils.ReadyQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReadyQueueTests {
+
+	/** Stand-in for a network peer with some received messages waiting to be processed */
+	private static class SimulatedPeer {
+		private int pendingMessages;
+		private int processedMessages;
+
+		/** Returns true if a message was taken */
+		private boolean takeMessage() {
+			if (this.pendingMessages == 0)
+				return false;
+
+			--this.pendingMessages;
+			++this.processedMessages;
+			return true;
+		}
+	}
+
+	@Test
+	public void testQueueOrder() {
+		ReadyQueue<String> queue = new ReadyQueue<>();
+		assertNull(queue.peek());
+		assertNull(queue.poll());
+
+		assertTrue(queue.offer("a"));
+		assertTrue(queue.offer("b"));
+		// Already queued, so stays where it is
+		assertFalse(queue.offer("a"));
+		assertEquals(2, queue.size());
+		assertEquals("a", queue.peek());
+
+		// Requeue moves to back
+		queue.requeue("a");
+		queue.requeue("c");
+		assertEquals(3, queue.size());
+
+		List<String> polled = new ArrayList<>();
+		String entry;
+		while ((entry = queue.poll()) != null)
+			polled.add(entry);
+
+		assertEquals(Arrays.asList("b", "a", "c"), polled);
+		assertTrue(queue.isEmpty());
+
+		queue.offer("d");
+		assertTrue(queue.remove("d"));
+		assertFalse(queue.remove("d"));
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testRoundRobin() {
+		ReadyQueue<SimulatedPeer> queue = new ReadyQueue<>();
+
+		// Busy peer is ready first
+		SimulatedPeer busyPeer = new SimulatedPeer();
+		busyPeer.pendingMessages = 100;
+		queue.offer(busyPeer);
+
+		List<SimulatedPeer> quietPeers = new ArrayList<>();
+		for (int i = 1; i <= 5; ++i) {
+			SimulatedPeer quietPeer = new SimulatedPeer();
+			quietPeer.pendingMessages = 1;
+			quietPeers.add(quietPeer);
+			queue.offer(quietPeer);
+		}
+
+		// Every quiet peer is served within one round, despite busy peer's backlog
+		for (int i = 0; i < 1 + quietPeers.size(); ++i)
+			assertNotNull(produceTask(queue));
+
+		for (SimulatedPeer quietPeer : quietPeers)
+			assertEquals(1, quietPeer.processedMessages);
+
+		assertEquals(1, busyPeer.processedMessages);
+
+		// Only busy peer remains
+		assertEquals(1, queue.size());
+		while (produceTask(queue) != null)
+			;
+
+		assertEquals(100, busyPeer.processedMessages);
+	}
+
+	@Test
+	public void benchmarkTaskProduction() {
+		final int roundCount = 200_000;
+
+		for (int peerCount : new int[] { 100, 300, 600 }) {
+			// First pass is JIT warm-up
+			for (int pass = 0; pass < 2; ++pass) {
+				// Old approach: scan all peers for the first one with work, including when there's none
+				List<SimulatedPeer> peers = newPeers(peerCount);
+				Random random = new Random(peerCount);
+
+				long startTime = System.nanoTime();
+				for (int i = 0; i < roundCount; ++i) {
+					deliverMessage(peers.get(random.nextInt(peerCount)), null);
+
+					while (peers.stream().filter(SimulatedPeer::takeMessage).findFirst().orElse(null) != null)
+						;
+				}
+				long scanNanos = System.nanoTime() - startTime;
+
+				// New approach: poll ready queue
+				peers = newPeers(peerCount);
+				random = new Random(peerCount);
+				ReadyQueue<SimulatedPeer> queue = new ReadyQueue<>();
+
+				startTime = System.nanoTime();
+				for (int i = 0; i < roundCount; ++i) {
+					deliverMessage(peers.get(random.nextInt(peerCount)), queue);
+
+					while (produceTask(queue) != null)
+						;
+				}
+				long queueNanos = System.nanoTime() - startTime;
+
+				if (pass > 0)
+					System.out.println(String.format("%d peers: scan %.0fns/message, ready queue %.0fns/message",
+							peerCount, (double) scanNanos / roundCount, (double) queueNanos / roundCount));
+			}
+		}
+	}
+
+	private static List<SimulatedPeer> newPeers(int peerCount) {
+		List<SimulatedPeer> peers = new ArrayList<>(peerCount);
+		for (int i = 0; i < peerCount; ++i)
+			peers.add(new SimulatedPeer());
+
+		return peers;
+	}
+
+	private static void deliverMessage(SimulatedPeer peer, ReadyQueue<SimulatedPeer> queue) {
+		++peer.pendingMessages;
+
+		if (queue != null)
+			queue.offer(peer);
+	}
+
+	/** Mirrors how network processor produces message tasks from ready peers. */
+	private static SimulatedPeer produceTask(ReadyQueue<SimulatedPeer> queue) {
+		SimulatedPeer peer;
+		while ((peer = queue.poll()) != null) {
+			boolean hasTask = peer.takeMessage();
+
+			if (peer.pendingMessages > 0)
+				queue.offer(peer);
+
+			if (hasTask)
+				return peer;
+		}
+
+		return null;
+	}
+
+}
@@ -0,0 +1,163 @@
+package org.qortal.test;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.qortal.utils.ExecuteProduceConsume;
+import org.qortal.utils.VirtualThreads;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class VirtualThreadsTests {
+
+	/** EPC whose tasks simulate message handlers blocking on repository I/O */
+	static class BlockingHandlerEPC extends ExecuteProduceConsume {
+		private final BlockingQueue<Long> pendingJobs = new LinkedBlockingQueue<>();
+		private final long[] latencies; // ns
+		private final AtomicInteger completedCount = new AtomicInteger();
+		private final CountDownLatch completed;
+		private final long ioTime; // ms
+
+		BlockingHandlerEPC(ExecutorService executor, int jobCount, long ioTime) {
+			super(executor);
+
+			this.latencies = new long[jobCount];
+			this.completed = new CountDownLatch(jobCount);
+			this.ioTime = ioTime;
+		}
+
+		@Override
+		protected Task produceTask(boolean canBlock) throws InterruptedException {
+			final Long queuedTime = canBlock ? this.pendingJobs.poll(100, TimeUnit.MILLISECONDS) : this.pendingJobs.poll();
+			if (queuedTime == null)
+				return null;
+
+			return new Task() {
+				@Override
+				public String getName() {
+					return "BlockingHandlerTask";
+				}
+
+				@Override
+				public void perform() throws InterruptedException {
+					Thread.sleep(ioTime);
+
+					latencies[completedCount.getAndIncrement()] = System.nanoTime() - queuedTime;
+					completed.countDown();
+				}
+			};
+		}
+	}
+
+	@Test
+	public void testSupportDetection() {
+		boolean isSupported = Runtime.version().feature() >= 21;
+		assertEquals(isSupported, VirtualThreads.isSupported());
+
+		if (!isSupported) {
+			assertNull(VirtualThreads.newThreadFactory("test"));
+			assertNull(VirtualThreads.newThreadPerTaskExecutor("test", 10));
+		}
+
+		assertFalse(VirtualThreads.isVirtual());
+	}
+
+	@Test
+	public void testBoundedExecutor() throws Exception {
+		// Skip if virtual threads not supported by this JVM
+		Assume.assumeTrue(VirtualThreads.isSupported());
+
+		ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test", 2);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicBoolean wasVirtual = new AtomicBoolean();
+
+		try {
+			for (int i = 0; i < 2; ++i)
+				executor.execute(() -> {
+					wasVirtual.set(VirtualThreads.isVirtual());
+
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+
+			try {
+				executor.execute(() -> {});
+				fail("Third task should be rejected");
+			} catch (RejectedExecutionException e) {
+				// Expected
+			}
+
+			release.countDown();
+
+			// Permits are returned once tasks finish
+			Future<Boolean> future = executor.submit(VirtualThreads::isVirtual);
+			assertTrue(future.get(5, TimeUnit.SECONDS));
+			assertTrue(wasVirtual.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void loadTest() throws InterruptedException {
+		final int maxThreads = 620; // default maxNetworkThreadPoolSize
+		final int jobCount = 5000;
+		final long ioTime = 20L; // ms
+
+		ExecutorService platformExecutor = new ThreadPoolExecutor(1, maxThreads, 1L, TimeUnit.SECONDS, new SynchronousQueue<>());
+		runLoad("platform", platformExecutor, jobCount, ioTime);
+
+		ExecutorService virtualExecutor = VirtualThreads.newThreadPerTaskExecutor("load", maxThreads);
+		if (virtualExecutor == null) {
+			System.out.println("virtual: not supported by this JVM (Java " + Runtime.version().feature() + ")");
+			return;
+		}
+
+		runLoad("virtual", virtualExecutor, jobCount, ioTime);
+	}
+
+	private static void runLoad(String mode, ExecutorService executor, int jobCount, long ioTime) throws InterruptedException {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		Runtime runtime = Runtime.getRuntime();
+
+		System.gc();
+		long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+		threadMXBean.resetPeakThreadCount();
+		int threadsBefore = threadMXBean.getThreadCount();
+
+		BlockingHandlerEPC epc = new BlockingHandlerEPC(executor, jobCount, ioTime);
+		epc.start();
+
+		long startTime = System.nanoTime();
+		for (int i = 0; i < jobCount; ++i)
+			epc.pendingJobs.add(System.nanoTime());
+
+		long peakHeap = 0;
+		while (!epc.completed.await(10, TimeUnit.MILLISECONDS))
+			peakHeap = Math.max(peakHeap, runtime.totalMemory() - runtime.freeMemory());
+
+		long duration = System.nanoTime() - startTime;
+		int peakThreads = threadMXBean.getPeakThreadCount();
+		int greatestActiveThreadCount = epc.getStatsSnapshot().greatestActiveThreadCount;
+
+		assertTrue(epc.shutdown(5000));
+
+		long[] latencies = epc.latencies.clone();
+		Arrays.sort(latencies);
+
+		System.out.println(String.format("%s: %d jobs in %dms, EPC threads %d, peak platform threads %d (was %d), peak heap growth %dKB, latency p50 %dms p99 %dms",
+				mode, jobCount, duration / 1_000_000L, greatestActiveThreadCount, peakThreads, threadsBefore,
+				Math.max(0, peakHeap - heapBefore) / 1024,
+				latencies[latencies.length / 2] / 1_000_000L, latencies[latencies.length * 99 / 100] / 1_000_000L));
+	}
+
+}
@@ -90,10 +90,10 @@ public class AssetsApiTests extends ApiCommon {
 
 		for (BalanceOrdering balanceOrdering : BalanceOrdering.values()) {
 			for (Boolean excludeZero : ALL_BOOLEAN_VALUES) {
-				assertNotNull(this.assetsResource.getAssetBalances(Collections.emptyList(), assetIds, balanceOrdering, excludeZero, null, null, null));
-				assertNotNull(this.assetsResource.getAssetBalances(addresses, Collections.emptyList(), balanceOrdering, excludeZero, null, null, null));
-				assertNotNull(this.assetsResource.getAssetBalances(addresses, assetIds, balanceOrdering, excludeZero, null, null, null));
-				assertNotNull(this.assetsResource.getAssetBalances(addresses, assetIds, balanceOrdering, excludeZero, 1, 1, true));
+				assertNotNull(readStream(this.assetsResource.getAssetBalances(Collections.emptyList(), assetIds, balanceOrdering, excludeZero, null, null, null)));
+				assertNotNull(readStream(this.assetsResource.getAssetBalances(addresses, Collections.emptyList(), balanceOrdering, excludeZero, null, null, null)));
+				assertNotNull(readStream(this.assetsResource.getAssetBalances(addresses, assetIds, balanceOrdering, excludeZero, null, null, null)));
+				assertNotNull(readStream(this.assetsResource.getAssetBalances(addresses, assetIds, balanceOrdering, excludeZero, 1, 1, true)));
 			}
 		}
 	}
@@ -0,0 +1,230 @@
+package org.qortal.test.api;
+
+import org.eclipse.persistence.jaxb.JAXBContextFactory;
+import org.eclipse.persistence.jaxb.MarshallerProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.api.ApiError;
+import org.qortal.api.ApiException;
+import org.qortal.api.SearchMode;
+import org.qortal.api.StreamingJsonList;
+import org.qortal.api.resource.ArbitraryResource;
+import org.qortal.api.resource.AssetsResource;
+import org.qortal.api.resource.BlocksResource;
+import org.qortal.api.resource.TransactionsResource;
+import org.qortal.api.resource.TransactionsResource.ConfirmationStatus;
+import org.qortal.arbitrary.misc.Service;
+import org.qortal.data.account.AccountBalanceData;
+import org.qortal.data.block.BlockData;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.repository.AccountRepository.BalanceOrdering;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.ResultCursor;
+import org.qortal.test.common.ApiCommon;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StreamingJsonListTests extends ApiCommon {
+
+	private AssetsResource assetsResource;
+	private BlocksResource blocksResource;
+	private TransactionsResource transactionsResource;
+	private ArbitraryResource arbitraryResource;
+
+	@Before
+	public void buildResources() {
+		this.assetsResource = (AssetsResource) ApiCommon.buildResource(AssetsResource.class);
+		this.blocksResource = (BlocksResource) ApiCommon.buildResource(BlocksResource.class);
+		this.transactionsResource = (TransactionsResource) ApiCommon.buildResource(TransactionsResource.class);
+		this.arbitraryResource = (ArbitraryResource) ApiCommon.buildResource(ArbitraryResource.class);
+	}
+
+	@Test
+	public void testAssetBalances() throws DataException, JAXBException {
+		List<String> addresses = Arrays.asList(aliceAddress, bobAddress);
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<AccountBalanceData> balances = repository.getAccountRepository().getAssetBalances(addresses, Collections.emptyList(),
+					BalanceOrdering.ACCOUNT_ASSET, false, null, null, null);
+			assertFalse(balances.isEmpty());
+
+			String streamedJson = readStream(this.assetsResource.getAssetBalances(addresses, Collections.emptyList(),
+					BalanceOrdering.ACCOUNT_ASSET, false, null, null, null));
+
+			assertEquals(marshalList(AccountBalanceData.class, balances), streamedJson);
+		}
+	}
+
+	@Test
+	public void testBlockRange() throws DataException, JAXBException {
+		final int count = 3;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<BlockData> blocks = new ArrayList<>();
+			for (int height = 1; height <= count; ++height) {
+				BlockData blockData = repository.getBlockRepository().fromHeight(height);
+				if (blockData == null)
+					break;
+
+				blockData.setOnlineAccountsSignatures(null);
+				blocks.add(blockData);
+			}
+
+			String streamedJson = readStream(this.blocksResource.getBlockRange(1, count, false, false));
+
+			assertEquals(marshalList(BlockData.class, blocks), streamedJson);
+		}
+	}
+
+	@Test
+	public void testTransactions() throws DataException, JAXBException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<TransactionData> transactions = new ArrayList<>();
+			for (byte[] signature : repository.getTransactionRepository().getSignaturesMatchingCriteria(null, null, null,
+					null, null, null, null, ConfirmationStatus.CONFIRMED, 20, null, null))
+				transactions.add(repository.getTransactionRepository().fromSignature(signature));
+
+			assertFalse(transactions.isEmpty());
+
+			String streamedJson = readStream(this.transactionsResource.searchTransactions(null, null, null,
+					null, null, ConfirmationStatus.CONFIRMED, 20, null, null));
+
+			// Subclass-specific fields, and "type", are included, same as returning List<TransactionData>
+			assertEquals(marshalList(TransactionData.class, transactions), streamedJson);
+			assertTrue(streamedJson.contains("\"type\""));
+		}
+	}
+
+	@Test
+	public void testPaging() throws DataException, JAXBException {
+		List<String> addresses = Arrays.asList(aliceAddress, bobAddress,
+				Common.getTestAccount(null, "chloe").getAddress(), Common.getTestAccount(null, "dilbert").getAddress());
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			Integer[][] limitsAndOffsets = new Integer[][] { { null, null }, { 0, 0 }, { 3, null }, { null, 2 }, { 3, 1 }, { 100, 5 } };
+
+			for (Integer[] limitAndOffset : limitsAndOffsets) {
+				Integer limit = limitAndOffset[0];
+				Integer offset = limitAndOffset[1];
+
+				List<AccountBalanceData> balances = repository.getAccountRepository().getAssetBalances(addresses, Collections.emptyList(),
+						BalanceOrdering.ACCOUNT_ASSET, false, limit, offset, null);
+
+				for (int pageSize = 1; pageSize <= 3; ++pageSize) {
+					StreamingJsonList<?> streamingOutput = (StreamingJsonList<?>) this.assetsResource.getAssetBalances(addresses, Collections.emptyList(),
+							BalanceOrdering.ACCOUNT_ASSET, false, limit, offset, null);
+					streamingOutput.setPageSize(pageSize);
+
+					assertEquals(marshalList(AccountBalanceData.class, balances), readStream(streamingOutput));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBlockRangePaging() throws DataException, JAXBException {
+		final int count = 3;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			BlockUtils.mintBlocks(repository, count);
+
+			for (boolean reverse : new boolean[] { false, true }) {
+				final int startHeight = reverse ? count : 1;
+
+				List<BlockData> blocks = new ArrayList<>();
+				for (int i = 0; i < count; ++i) {
+					BlockData blockData = repository.getBlockRepository().fromHeight(reverse ? startHeight - i : startHeight + i);
+					blockData.setOnlineAccountsSignatures(null);
+					blocks.add(blockData);
+				}
+
+				StreamingJsonList<?> streamingOutput = (StreamingJsonList<?>) this.blocksResource.getBlockRange(startHeight, count, reverse, false);
+				streamingOutput.setPageSize(2);
+
+				assertEquals(marshalList(BlockData.class, blocks), readStream(streamingOutput));
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidAssetId() {
+		StreamingOutput streamingOutput = this.assetsResource.getAssetBalances(Arrays.asList(aliceAddress), Arrays.asList(Long.MAX_VALUE),
+				BalanceOrdering.ACCOUNT_ASSET, false, null, null, null);
+
+		try {
+			readStream(streamingOutput);
+			fail("invalid asset ID should produce API error");
+		} catch (ApiException e) {
+			assertEquals(ApiError.INVALID_ASSET_ID.getCode(), e.error);
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals("[]", readStream(this.blocksResource.getBlockRange(Integer.MAX_VALUE, 10, false, false)));
+		// No arbitrary resources in test chain
+		assertEquals("[]", readStream(this.arbitraryResource.getResources(null, null, null, null, null, null, null,
+				null, null, null, null, null)));
+
+		for (SearchMode mode : SearchMode.values())
+			for (Boolean reverse : new Boolean[] { null, true })
+				assertEquals("[]", readStream(this.arbitraryResource.searchResources(Service.WEBSITE, "test", null, null, null, null,
+						null, null, null, mode, 1, null, null, null, null, null, null, null, 10, 0, reverse)));
+	}
+
+	@Test
+	public void testCursor() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<AccountBalanceData> balances = repository.getAccountRepository().getAssetBalances(Collections.emptyList(), Arrays.asList(0L),
+					BalanceOrdering.ASSET_BALANCE_ACCOUNT, true, null, null, null);
+
+			try (ResultCursor<AccountBalanceData> cursor = repository.getAccountRepository().getAssetBalancesCursor(Collections.emptyList(), Arrays.asList(0L),
+					BalanceOrdering.ASSET_BALANCE_ACCOUNT, true, null, null, null)) {
+				for (AccountBalanceData balance : balances) {
+					AccountBalanceData cursorBalance = cursor.next();
+					assertNotNull(cursorBalance);
+					assertEquals(balance.getAddress(), cursorBalance.getAddress());
+					assertEquals(balance.getBalance(), cursorBalance.getBalance());
+				}
+
+				assertNull(cursor.next());
+				// Still null once exhausted
+				assertNull(cursor.next());
+			}
+
+			// Cursor with no rows
+			try (ResultCursor<AccountBalanceData> cursor = repository.getAccountRepository().getAssetBalancesCursor(Collections.emptyList(), Arrays.asList(0L),
+					BalanceOrdering.ASSET_BALANCE_ACCOUNT, true, 0, Integer.MAX_VALUE, null)) {
+				assertNull(cursor.next());
+			}
+		}
+	}
+
+	/** Returns JSON for whole list, as produced when resource methods return a List. */
+	private static String marshalList(Class<?> entryClass, List<?> list) throws JAXBException {
+		JAXBContext jc = JAXBContextFactory.createContext(new Class[] { entryClass }, null);
+
+		Marshaller marshaller = jc.createMarshaller();
+		marshaller.setProperty(MarshallerProperties.MEDIA_TYPE, "application/json");
+		marshaller.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, false);
+
+		StringWriter writer = new StringWriter();
+		marshaller.marshal(list, writer);
+		return writer.toString();
+	}
+
+}
@@ -0,0 +1,275 @@
+package org.qortal.test.assets;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.data.asset.OrderData;
+import org.qortal.data.asset.TradeData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.AssetUtils;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.TransactionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OrderBookTests extends Common {
+
+	private static final long[] PRICES = new long[] { 90000000L, 95000000L, 1_00000000L, 1_05000000L, 1_10000000L };
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		Common.orphanCheck();
+	}
+
+	@Test
+	public void testBookMatchesRepository() throws DataException, IllegalAccessException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			Random random = new Random(1234L);
+
+			// Committed orders, via blocks
+			for (int i = 0; i < 20; ++i)
+				createRandomOrder(repository, random, random.nextBoolean());
+
+			assertBookMatchesRepository(repository);
+
+			// Uncommitted orders, saved directly, including one cancelled and one deleted
+			List<OrderData> uncommittedOrders = new ArrayList<>();
+			for (int i = 0; i < 20; ++i) {
+				OrderData orderData = randomOrderData(random, i);
+				repository.getAssetRepository().save(orderData);
+				uncommittedOrders.add(orderData);
+			}
+
+			uncommittedOrders.get(0).setIsClosed(true);
+			repository.getAssetRepository().save(uncommittedOrders.get(0));
+			repository.getAssetRepository().delete(uncommittedOrders.get(1).getOrderId());
+
+			assertBookMatchesRepository(repository);
+
+			// Changes after savepoint are discarded by rollback
+			repository.setSavepoint();
+			repository.getAssetRepository().delete(uncommittedOrders.get(2).getOrderId());
+			repository.getAssetRepository().save(randomOrderData(random, 100));
+			assertBookMatchesRepository(repository);
+
+			repository.rollbackToSavepoint();
+			assertBookMatchesRepository(repository);
+
+			// Discarded uncommitted orders don't reach book
+			repository.discardChanges();
+			assertBookMatchesRepository(repository);
+
+			// Book survives rebuild
+			repository.getAssetRepository().rebuildOrderBook();
+			assertBookMatchesRepository(repository);
+		}
+	}
+
+	@Test
+	public void testReplay() throws DataException, IllegalAccessException {
+		final int orderCount = 60;
+		final long seed = 5678L;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			// Spread assets around so there are several accounts on each side of book
+			AssetUtils.transferAsset(repository, "alice", "chloe", AssetUtils.testAssetId, 10_000_00000000L);
+			AssetUtils.transferAsset(repository, "bob", "dilbert", AssetUtils.otherAssetId, 10_000_00000000L);
+
+			int startHeight = repository.getBlockRepository().getBlockchainHeight();
+
+			// Matching using repository queries, as before
+			setOrderBookEnabled(false);
+			List<TradeData> expectedTrades = replayOrders(repository, new Random(seed), orderCount);
+			List<OrderData> expectedOrders = getAllOrders(repository);
+
+			assertFalse("Replay should produce trades", expectedTrades.isEmpty());
+
+			BlockUtils.orphanToBlock(repository, startHeight);
+			// Orphaned orders would otherwise clash with replayed orders
+			TransactionUtils.deleteUnconfirmedTransactions(repository);
+
+			// Matching using order book
+			setOrderBookEnabled(true);
+			List<TradeData> actualTrades = replayOrders(repository, new Random(seed), orderCount);
+			List<OrderData> actualOrders = getAllOrders(repository);
+
+			assertEquals(expectedTrades.size(), actualTrades.size());
+			for (int i = 0; i < expectedTrades.size(); ++i) {
+				TradeData expected = expectedTrades.get(i);
+				TradeData actual = actualTrades.get(i);
+
+				assertArrayEquals(expected.getInitiator(), actual.getInitiator());
+				assertArrayEquals(expected.getTarget(), actual.getTarget());
+				assertEquals(expected.getTargetAmount(), actual.getTargetAmount());
+				assertEquals(expected.getInitiatorAmount(), actual.getInitiatorAmount());
+				assertEquals(expected.getInitiatorSaving(), actual.getInitiatorSaving());
+				assertEquals(expected.getTimestamp(), actual.getTimestamp());
+			}
+
+			assertEquals(expectedOrders.size(), actualOrders.size());
+			for (int i = 0; i < expectedOrders.size(); ++i) {
+				assertArrayEquals(expectedOrders.get(i).getOrderId(), actualOrders.get(i).getOrderId());
+				assertEquals(expectedOrders.get(i).getFulfilled(), actualOrders.get(i).getFulfilled());
+				assertEquals(expectedOrders.get(i).getIsFulfilled(), actualOrders.get(i).getIsFulfilled());
+			}
+		}
+	}
+
+	@Test
+	public void benchmarkMatching() throws DataException, IllegalAccessException {
+		final int[] bookDepths = new int[] { 1000, 10000 };
+		final int iterations = 1000;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			Random random = new Random();
+
+			int savedCount = 0;
+			for (int bookDepth : bookDepths) {
+				// Deep book on one side, directly into repository
+				for (; savedCount < bookDepth; ++savedCount)
+					repository.getAssetRepository().save(randomOrderData(random, savedCount, AssetUtils.otherAssetId, AssetUtils.testAssetId));
+
+				repository.saveChanges();
+
+				// Incoming order only crosses best few prices
+				long minimumPrice = PRICES[0];
+
+				setOrderBookEnabled(false);
+				long before = System.nanoTime();
+				for (int i = 0; i < iterations; ++i)
+					repository.getAssetRepository().getOpenOrdersForTrading(AssetUtils.otherAssetId, AssetUtils.testAssetId, minimumPrice);
+				long repositoryNanos = System.nanoTime() - before;
+
+				setOrderBookEnabled(true);
+				// Warm up, which also builds book
+				repository.getAssetRepository().getOpenOrdersForTrading(AssetUtils.otherAssetId, AssetUtils.testAssetId, minimumPrice);
+
+				before = System.nanoTime();
+				for (int i = 0; i < iterations; ++i)
+					repository.getAssetRepository().getOpenOrdersForTrading(AssetUtils.otherAssetId, AssetUtils.testAssetId, minimumPrice);
+				long bookNanos = System.nanoTime() - before;
+
+				System.out.println(String.format("Book depth %d: %d us per repository lookup, %d us per order book lookup",
+						bookDepth, repositoryNanos / iterations / 1000, bookNanos / iterations / 1000));
+			}
+
+			// Tidy up so orphan check passes
+			repository.discardChanges();
+			for (OrderData orderData : repository.getAssetRepository().getOpenOrders(AssetUtils.otherAssetId, AssetUtils.testAssetId))
+				repository.getAssetRepository().delete(orderData.getOrderId());
+
+			repository.saveChanges();
+		}
+	}
+
+	private static void setOrderBookEnabled(boolean isEnabled) throws IllegalAccessException {
+		FieldUtils.writeField(Settings.getInstance(), "assetOrderBookEnabled", isEnabled, true);
+	}
+
+	/** Checks order book, with any uncommitted changes, gives same results as repository, for both sides and various prices. */
+	private static void assertBookMatchesRepository(Repository repository) throws DataException, IllegalAccessException {
+		long[][] pairs = new long[][] {
+			{ AssetUtils.testAssetId, AssetUtils.otherAssetId },
+			{ AssetUtils.otherAssetId, AssetUtils.testAssetId }
+		};
+
+		for (long[] pair : pairs)
+			for (long minimumPrice : PRICES) {
+				setOrderBookEnabled(false);
+				List<OrderData> expectedOrders = repository.getAssetRepository().getOpenOrdersForTrading(pair[0], pair[1], minimumPrice);
+
+				setOrderBookEnabled(true);
+				List<OrderData> actualOrders = repository.getAssetRepository().getOpenOrdersForTrading(pair[0], pair[1], minimumPrice);
+
+				assertEquals(expectedOrders.size(), actualOrders.size());
+				for (int i = 0; i < expectedOrders.size(); ++i) {
+					OrderData expected = expectedOrders.get(i);
+					OrderData actual = actualOrders.get(i);
+
+					assertArrayEquals(expected.getOrderId(), actual.getOrderId());
+					assertEquals(expected.getFulfilled(), actual.getFulfilled());
+					assertEquals(expected.getPrice(), actual.getPrice());
+				}
+			}
+	}
+
+	private static List<TradeData> replayOrders(Repository repository, Random random, int orderCount) throws DataException {
+		String[] testAssetHolders = new String[] { "alice", "chloe" };
+		String[] otherAssetHolders = new String[] { "bob", "dilbert" };
+
+		for (int i = 0; i < orderCount; ++i) {
+			long amount = (1 + random.nextInt(10)) * 1_00000000L;
+			long price = PRICES[random.nextInt(PRICES.length)];
+
+			if (random.nextBoolean())
+				AssetUtils.createOrder(repository, testAssetHolders[random.nextInt(2)], AssetUtils.testAssetId, AssetUtils.otherAssetId, amount, price);
+			else
+				AssetUtils.createOrder(repository, otherAssetHolders[random.nextInt(2)], AssetUtils.otherAssetId, AssetUtils.testAssetId, amount, price);
+		}
+
+		List<TradeData> trades = new ArrayList<>();
+		trades.addAll(repository.getAssetRepository().getTrades(AssetUtils.testAssetId, AssetUtils.otherAssetId, null, null, null));
+		trades.addAll(repository.getAssetRepository().getTrades(AssetUtils.otherAssetId, AssetUtils.testAssetId, null, null, null));
+		return trades;
+	}
+
+	private static List<OrderData> getAllOrders(Repository repository) throws DataException {
+		List<OrderData> orders = new ArrayList<>();
+
+		for (String accountName : new String[] { "alice", "bob", "chloe", "dilbert" }) {
+			PrivateKeyAccount account = Common.getTestAccount(repository, accountName);
+			orders.addAll(repository.getAssetRepository().getAccountsOrders(account.getPublicKey(), null, null, null, null, null));
+		}
+
+		return orders;
+	}
+
+	private static void createRandomOrder(Repository repository, Random random, boolean isSellingTestAsset) throws DataException {
+		long amount = (1 + random.nextInt(10)) * 1_00000000L;
+		long price = PRICES[random.nextInt(PRICES.length)];
+
+		if (isSellingTestAsset)
+			AssetUtils.createOrder(repository, "alice", AssetUtils.testAssetId, AssetUtils.otherAssetId, amount, price);
+		else
+			AssetUtils.createOrder(repository, "bob", AssetUtils.otherAssetId, AssetUtils.testAssetId, amount, price);
+	}
+
+	private static OrderData randomOrderData(Random random, int index) {
+		if (random.nextBoolean())
+			return randomOrderData(random, index, AssetUtils.testAssetId, AssetUtils.otherAssetId);
+		else
+			return randomOrderData(random, index, AssetUtils.otherAssetId, AssetUtils.testAssetId);
+	}
+
+	private static OrderData randomOrderData(Random random, int index, long haveAssetId, long wantAssetId) {
+		byte[] orderId = new byte[64];
+		random.nextBytes(orderId);
+
+		byte[] creatorPublicKey = new byte[32];
+		random.nextBytes(creatorPublicKey);
+
+		long amount = (1 + random.nextInt(10)) * 1_00000000L;
+		// Spread prices so deep books have few orders at best price
+		long price = PRICES[0] + random.nextInt(1_000_000) * 100L;
+		// Distinct timestamps, so ordering is never left to repository's storage layout
+		long timestamp = 1_600_000_000_000L + index * 1000L + random.nextInt(1000);
+
+		return new OrderData(orderId, creatorPublicKey, haveAssetId, wantAssetId, amount, 0L, price, timestamp, false, false);
+	}
+
+}
@@ -0,0 +1,283 @@
+package org.qortal.test.at;
+
+import org.ciyam.at.CompilationException;
+import org.ciyam.at.MachineState;
+import org.ciyam.at.OpCode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.asset.Asset;
+import org.qortal.at.AT;
+import org.qortal.at.ATMachineStateCache;
+import org.qortal.at.QortalATAPI;
+import org.qortal.at.QortalAtLoggerFactory;
+import org.qortal.crypto.Crypto;
+import org.qortal.data.at.ATData;
+import org.qortal.data.transaction.BaseTransactionData;
+import org.qortal.data.transaction.DeployAtTransactionData;
+import org.qortal.group.Group;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.AtUtils;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class AtSchedulingTests extends Common {
+
+	private static final long SLEEP_BLOCKS = 5L;
+	private static final long FUNDING_AMOUNT = 1_00000000L;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		Common.orphanCheck();
+	}
+
+	@Test
+	public void testSleepingATsSkipped() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount deployer = Common.getTestAccount(repository, "alice");
+
+			String sleepingAtAddress = AtUtils.doDeployAT(repository, deployer, buildSleepingAT(), FUNDING_AMOUNT).getATAccount().getAddress();
+			String simpleAtAddress = AtUtils.doDeployAT(repository, deployer, AtUtils.buildSimpleAT(), FUNDING_AMOUNT).getATAccount().getAddress();
+
+			int skippedCount = 0;
+
+			for (int i = 0; i < 3 * SLEEP_BLOCKS; ++i) {
+				final int nextHeight = repository.getBlockRepository().getBlockchainHeight() + 1;
+				final long nextTimestamp = repository.getBlockRepository().getLastBlock().getTimestamp() + 1;
+
+				List<ATData> allExecutableATs = repository.getATRepository().getAllExecutableATs();
+				List<ATData> executableATs = repository.getATRepository().getExecutableATs(nextHeight);
+
+				List<String> allAddresses = allExecutableATs.stream().map(ATData::getATAddress).collect(Collectors.toList());
+				List<String> addresses = executableATs.stream().map(ATData::getATAddress).collect(Collectors.toList());
+
+				// Same order, just some omitted
+				List<String> expectedAddresses = new ArrayList<>(allAddresses);
+				expectedAddresses.retainAll(addresses);
+				assertEquals(expectedAddresses, addresses);
+
+				// Always runnable
+				assertTrue(addresses.contains(simpleAtAddress));
+
+				// Same code, whether cached or not
+				for (ATData atData : executableATs)
+					assertArrayEquals(repository.getATRepository().fromATAddress(atData.getATAddress()).getCodeBytes(), atData.getCodeBytes());
+
+				// Omitted ATs would not have produced any state
+				for (ATData atData : allExecutableATs) {
+					if (addresses.contains(atData.getATAddress()))
+						continue;
+
+					assertEquals(sleepingAtAddress, atData.getATAddress());
+					++skippedCount;
+
+					AT at = new AT(repository, atData);
+					at.run(nextHeight, nextTimestamp);
+					assertNull(at.getATStateData());
+				}
+
+				BlockUtils.mintBlock(repository);
+			}
+
+			// Sleeping AT should have been skipped for most blocks
+			assertTrue(skippedCount >= 2 * (SLEEP_BLOCKS - 1));
+		}
+	}
+
+	@Test
+	public void benchmarkExecutableATs() throws DataException {
+		final int[] atCounts = new int[] { 100, 1000, 5000 };
+		// ATs stay asleep for these blocks
+		final int blockCount = (int) SLEEP_BLOCKS - 1;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			byte[] creationBytes = buildSleepingAT();
+			Random random = new Random();
+
+			int deployedCount = 0;
+			for (int atCount : atCounts) {
+				// Deploy more ATs, directly into repository
+				int height = repository.getBlockRepository().getBlockchainHeight() + 1;
+				long timestamp = repository.getBlockRepository().getLastBlock().getTimestamp() + 1;
+
+				for (; deployedCount < atCount; ++deployedCount)
+					deployDirectly(repository, random, creationBytes);
+
+				// Run all ATs once so they go to sleep
+				for (ATData atData : repository.getATRepository().getAllExecutableATs()) {
+					AT at = new AT(repository, atData);
+					at.run(height, timestamp);
+
+					if (at.getATStateData() != null)
+						at.update(height, timestamp);
+				}
+
+				// Previous behaviour: fetch and try to run all unfinished ATs
+				long before = System.nanoTime();
+				int ranCount = 0;
+				for (int i = 1; i <= blockCount; ++i)
+					for (ATData atData : repository.getATRepository().getAllExecutableATs()) {
+						AT at = new AT(repository, atData);
+						at.run(height + i, timestamp + i);
+						if (at.getATStateData() != null)
+							++ranCount;
+					}
+				long allNanos = System.nanoTime() - before;
+
+				before = System.nanoTime();
+				int newRanCount = 0;
+				for (int i = 1; i <= blockCount; ++i)
+					for (ATData atData : repository.getATRepository().getExecutableATs(height + i)) {
+						AT at = new AT(repository, atData);
+						at.run(height + i, timestamp + i);
+						if (at.getATStateData() != null)
+							++newRanCount;
+					}
+				long filteredNanos = System.nanoTime() - before;
+
+				// Same ATs actually produced new state
+				assertEquals(ranCount, newRanCount);
+
+				System.out.println(String.format("%d sleeping ATs: per-block overhead %d us loading all, %d us loading only runnable",
+						atCount, allNanos / blockCount / 1000L, filteredNanos / blockCount / 1000L));
+			}
+		}
+	}
+
+	@Test
+	public void testCachedMachinesMatchFreshMachines() throws DataException {
+		final int blockCount = 3 * (int) SLEEP_BLOCKS;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount deployer = Common.getTestAccount(repository, "alice");
+
+			List<String> atAddresses = new ArrayList<>();
+			atAddresses.add(AtUtils.doDeployAT(repository, deployer, buildSleepingAT(), FUNDING_AMOUNT).getATAccount().getAddress());
+			atAddresses.add(AtUtils.doDeployAT(repository, deployer, AtUtils.buildSimpleAT(), FUNDING_AMOUNT).getATAccount().getAddress());
+
+			ATMachineStateCache machineStateCache = ATMachineStateCache.getInstance();
+
+			// Reference run, always building machines from scratch
+			List<byte[]> freshStateHashes = new ArrayList<>();
+			for (int i = 0; i < blockCount; ++i) {
+				machineStateCache.clear();
+				BlockUtils.mintBlock(repository);
+				freshStateHashes.addAll(getLatestStateHashes(repository, atAddresses));
+			}
+
+			BlockUtils.orphanBlocks(repository, blockCount);
+
+			// Orphaning invalidates cached machines
+			for (String atAddress : atAddresses)
+				assertNull(machineStateCache.take(atAddress, repository.getATRepository().fromATAddress(atAddress).getCodeHash(), null));
+
+			// Same again, but reusing cached machines
+			List<byte[]> cachedStateHashes = new ArrayList<>();
+			for (int i = 0; i < blockCount; ++i) {
+				BlockUtils.mintBlock(repository);
+				cachedStateHashes.addAll(getLatestStateHashes(repository, atAddresses));
+			}
+
+			assertEquals(freshStateHashes.size(), cachedStateHashes.size());
+			for (int i = 0; i < freshStateHashes.size(); ++i)
+				assertArrayEquals(freshStateHashes.get(i), cachedStateHashes.get(i));
+		}
+	}
+
+	@Test
+	public void benchmarkMachineStateReuse() throws DataException {
+		final int iterations = 100_000;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount deployer = Common.getTestAccount(repository, "alice");
+			String atAddress = AtUtils.doDeployAT(repository, deployer, buildSleepingAT(), FUNDING_AMOUNT).getATAccount().getAddress();
+
+			ATData atData = repository.getATRepository().fromATAddress(atAddress);
+			byte[] stateData = repository.getATRepository().getLatestATState(atAddress).getStateData();
+			QortalATAPI api = new QortalATAPI(repository, atData, 0L);
+
+			MachineState machineState = null;
+			long before = System.nanoTime();
+			for (int i = 0; i < iterations; ++i)
+				machineState = MachineState.fromBytes(api, QortalAtLoggerFactory.getInstance(), stateData, atData.getCodeBytes());
+			long freshNanos = System.nanoTime() - before;
+
+			before = System.nanoTime();
+			for (int i = 0; i < iterations; ++i)
+				machineState.reuseFromBytes(api, stateData);
+			long reuseNanos = System.nanoTime() - before;
+
+			assertArrayEquals(stateData, machineState.toBytes());
+
+			System.out.println(String.format("Machine state: %d ns to build from scratch, %d ns to reuse",
+					freshNanos / iterations, reuseNanos / iterations));
+		}
+	}
+
+	private static List<byte[]> getLatestStateHashes(Repository repository, List<String> atAddresses) throws DataException {
+		List<byte[]> stateHashes = new ArrayList<>();
+		for (String atAddress : atAddresses)
+			stateHashes.add(repository.getATRepository().getLatestATState(atAddress).getStateHash());
+
+		return stateHashes;
+	}
+
+	private static void deployDirectly(Repository repository, Random random, byte[] creationBytes) throws DataException {
+		byte[] signature = new byte[64];
+		random.nextBytes(signature);
+		byte[] creatorPublicKey = new byte[32];
+		random.nextBytes(creatorPublicKey);
+
+		String atAddress = Crypto.toATAddress(signature);
+
+		BaseTransactionData baseTransactionData = new BaseTransactionData(System.currentTimeMillis(), Group.NO_GROUP, null, creatorPublicKey, 0L, signature);
+		DeployAtTransactionData deployAtTransactionData = new DeployAtTransactionData(baseTransactionData, atAddress, "Test AT", "Test AT", "Test", "TEST",
+				creationBytes, FUNDING_AMOUNT, Asset.QORT);
+
+		new AT(repository, deployAtTransactionData).deploy();
+
+		// So AT doesn't freeze due to lack of funds
+		repository.getAccountRepository().modifyAssetBalance(atAddress, Asset.QORT, FUNDING_AMOUNT);
+	}
+
+	/** Builds AT that sleeps for a few blocks at a time. */
+	private static byte[] buildSleepingAT() {
+		ByteBuffer dataByteBuffer = ByteBuffer.allocate(MachineState.VALUE_SIZE);
+
+		ByteBuffer codeByteBuffer = ByteBuffer.allocate(512);
+
+		try {
+			codeByteBuffer.put(OpCode.SLP_VAL.compile(SLEEP_BLOCKS));
+			codeByteBuffer.put(OpCode.STP_IMD.compile());
+		} catch (CompilationException e) {
+			throw new IllegalStateException("Unable to compile AT?", e);
+		}
+
+		codeByteBuffer.flip();
+
+		byte[] codeBytes = new byte[codeByteBuffer.limit()];
+		codeByteBuffer.get(codeBytes);
+
+		final short ciyamAtVersion = 2;
+		final short numCallStackPages = 0;
+		final short numUserStackPages = 0;
+		final long minActivationAmount = 0L;
+
+		return MachineState.toCreationBytes(ciyamAtVersion, codeBytes, dataByteBuffer.array(), numCallStackPages, numUserStackPages, minActivationAmount);
+	}
+
+}
@@ -0,0 +1,158 @@
+package org.qortal.test.chat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.data.chat.ActiveChats;
+import org.qortal.data.chat.ActiveChats.DirectChat;
+import org.qortal.data.chat.ActiveChats.GroupChat;
+import org.qortal.data.transaction.BaseTransactionData;
+import org.qortal.data.transaction.ChatTransactionData;
+import org.qortal.group.Group;
+import org.qortal.group.Group.ApprovalThreshold;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.GroupUtils;
+import org.qortal.transaction.Transaction.ApprovalStatus;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.qortal.data.chat.ChatMessage.Encoding;
+
+public class ActiveChatsTests extends Common {
+
+	private static final Random RANDOM = new Random();
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testDirectChats() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+			PrivateKeyAccount chloe = Common.getTestAccount(repository, "chloe");
+
+			ChatTransactionData bobToAlice = saveChat(repository, bob, alice.getAddress(), Group.NO_GROUP, 2000L);
+			ChatTransactionData aliceToBob = saveChat(repository, alice, bob.getAddress(), Group.NO_GROUP, 3000L);
+			saveChat(repository, chloe, alice.getAddress(), Group.NO_GROUP, 1500L);
+			// Older message, arriving late, doesn't replace latest
+			ChatTransactionData oldBobToAlice = saveChat(repository, bob, alice.getAddress(), Group.NO_GROUP, 500L);
+
+			assertDirectChat(repository, alice.getAddress(), bob.getAddress(), 3000L, alice.getAddress());
+			assertDirectChat(repository, bob.getAddress(), alice.getAddress(), 3000L, alice.getAddress());
+			assertDirectChat(repository, alice.getAddress(), chloe.getAddress(), 1500L, chloe.getAddress());
+			assertNull(repository.getChatRepository().getActiveDirectChat(bob.getAddress(), chloe.getAddress()));
+
+			ActiveChats activeChats = repository.getChatRepository().getActiveChats(alice.getAddress(), Encoding.BASE58);
+			assertEquals(2, activeChats.getDirect().size());
+
+			// Direct messages aren't part of group-less chat
+			GroupChat grouplessChat = findGroupChat(activeChats, Group.NO_GROUP);
+			assertNotNull(grouplessChat);
+			assertNull(grouplessChat.getTimestamp());
+
+			// Deleting latest message falls back to previous
+			repository.getTransactionRepository().delete(aliceToBob);
+			assertDirectChat(repository, alice.getAddress(), bob.getAddress(), 2000L, bob.getAddress());
+			assertDirectChat(repository, bob.getAddress(), alice.getAddress(), 2000L, bob.getAddress());
+
+			// Deleting older message doesn't affect latest
+			repository.getTransactionRepository().delete(oldBobToAlice);
+			assertDirectChat(repository, alice.getAddress(), bob.getAddress(), 2000L, bob.getAddress());
+
+			repository.getTransactionRepository().delete(bobToAlice);
+			assertNull(repository.getChatRepository().getActiveDirectChat(alice.getAddress(), bob.getAddress()));
+			assertEquals(1, repository.getChatRepository().getActiveChats(alice.getAddress(), Encoding.BASE58).getDirect().size());
+		}
+	}
+
+	@Test
+	public void testGroupChats() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+
+			int groupId = GroupUtils.createGroup(repository, "alice", "chat-group", true, ApprovalThreshold.NONE, 0, 10);
+
+			ChatTransactionData grouplessMessage = saveChat(repository, bob, null, Group.NO_GROUP, 1000L);
+			saveChat(repository, alice, null, groupId, 2000L);
+			// Messages with recipient still count towards non-zero groups
+			ChatTransactionData groupDirectMessage = saveChat(repository, bob, alice.getAddress(), groupId, 4000L);
+			saveChat(repository, bob, null, groupId, 3000L);
+
+			ActiveChats activeChats = repository.getChatRepository().getActiveChats(alice.getAddress(), Encoding.BASE64);
+
+			GroupChat groupChat = findGroupChat(activeChats, groupId);
+			assertNotNull(groupChat);
+			assertEquals("chat-group", groupChat.getGroupName());
+			assertEquals(4000L, (long) groupChat.getTimestamp());
+			assertEquals(bob.getAddress(), groupChat.getSender());
+			assertArrayEquals(groupDirectMessage.getSignature(), groupChat.getSignature());
+
+			GroupChat grouplessChat = findGroupChat(activeChats, Group.NO_GROUP);
+			assertNotNull(grouplessChat);
+			assertEquals(1000L, (long) grouplessChat.getTimestamp());
+
+			// Bob isn't a member of group
+			assertNull(findGroupChat(repository.getChatRepository().getActiveChats(bob.getAddress(), Encoding.BASE58), groupId));
+
+			// Single group lookup matches
+			GroupChat singleGroupChat = repository.getChatRepository().getActiveGroupChat(groupId, Encoding.BASE64);
+			assertEquals(groupChat.getTimestamp(), singleGroupChat.getTimestamp());
+			assertEquals(groupChat.getData(), singleGroupChat.getData());
+
+			repository.getTransactionRepository().delete(groupDirectMessage);
+			assertEquals(3000L, (long) repository.getChatRepository().getActiveGroupChat(groupId, Encoding.BASE64).getTimestamp());
+
+			repository.getTransactionRepository().delete(grouplessMessage);
+			assertNull(repository.getChatRepository().getActiveGroupChat(Group.NO_GROUP, Encoding.BASE64).getTimestamp());
+
+			assertNull(repository.getChatRepository().getActiveGroupChat(groupId + 1000, Encoding.BASE64));
+		}
+	}
+
+	private static ChatTransactionData saveChat(Repository repository, PrivateKeyAccount sender, String recipient, int txGroupId, long timestamp) throws DataException {
+		byte[] reference = new byte[64];
+		RANDOM.nextBytes(reference);
+		byte[] signature = new byte[64];
+		RANDOM.nextBytes(signature);
+		byte[] data = new byte[32];
+		RANDOM.nextBytes(data);
+
+		BaseTransactionData baseTransactionData = new BaseTransactionData(timestamp, txGroupId, reference, sender.getPublicKey(), 0L,
+				ApprovalStatus.NOT_REQUIRED, null, null, signature);
+		ChatTransactionData chatTransactionData = new ChatTransactionData(baseTransactionData, sender.getAddress(), 0, recipient, null, data, false, false);
+
+		repository.getTransactionRepository().save(chatTransactionData);
+
+		return chatTransactionData;
+	}
+
+	private static void assertDirectChat(Repository repository, String address, String otherAddress, long expectedTimestamp, String expectedSender) throws DataException {
+		DirectChat directChat = repository.getChatRepository().getActiveDirectChat(address, otherAddress);
+		assertNotNull(directChat);
+		assertEquals(otherAddress, directChat.getAddress());
+		assertEquals(expectedTimestamp, directChat.getTimestamp());
+		assertEquals(expectedSender, directChat.getSender());
+
+		// Same as in full list
+		DirectChat listedChat = repository.getChatRepository().getActiveChats(address, Encoding.BASE58).getDirect().stream()
+				.filter(chat -> chat.getAddress().equals(otherAddress))
+				.findFirst().orElse(null);
+		assertNotNull(listedChat);
+		assertEquals(expectedTimestamp, listedChat.getTimestamp());
+	}
+
+	private static GroupChat findGroupChat(ActiveChats activeChats, int groupId) {
+		return activeChats.getGroups().stream()
+				.filter(groupChat -> groupChat.getGroupId() == groupId)
+				.findFirst().orElse(null);
+	}
+
+}
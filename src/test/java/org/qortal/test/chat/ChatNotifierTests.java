@@ -0,0 +1,187 @@
+package org.qortal.test.chat;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.After;
+import org.junit.Test;
+import org.qortal.controller.ChatNotifier;
+import org.qortal.data.transaction.BaseTransactionData;
+import org.qortal.data.transaction.ChatTransactionData;
+import org.qortal.group.Group;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ChatNotifierTests {
+
+	private static final String ALICE = "QgV4s3xnzLhVBEJxcYui4u4q11yhUHsd9v";
+	private static final String BOB = "QixPbJUwsaHsVEofJdozU9zgVqkK6aYhrK";
+	private static final String CHLOE = "QaUpHNhT3Ygx6avRiKobuLdusppR5biXjL";
+
+	private final List<Session> sessions = new ArrayList<>();
+
+	@After
+	public void afterTest() {
+		for (Session session : this.sessions)
+			ChatNotifier.getInstance().deregister(session);
+	}
+
+	@Test
+	public void testIndexedDelivery() throws InterruptedException {
+		final int groupId = 5;
+
+		Map<String, List<ChatNotifier.Event>> received = new HashMap<>();
+		CountDownLatch delivered = new CountDownLatch(3);
+
+		register("group", ChatNotifier.Subscription.forGroup(groupId), received, delivered);
+		register("alice", ChatNotifier.Subscription.forAddresses(Collections.singletonList(ALICE)), received, delivered);
+		register("membership", new ChatNotifier.Subscription(Collections.emptySet(), Collections.emptySet(), true), received, delivered);
+
+		ChatNotifier.getInstance().onNewChatTransaction(chatTransaction(CHLOE, null, groupId));
+		ChatNotifier.getInstance().onNewChatTransaction(chatTransaction(BOB, ALICE, Group.NO_GROUP));
+		// Nobody subscribed to these
+		ChatNotifier.getInstance().onNewChatTransaction(chatTransaction(CHLOE, BOB, Group.NO_GROUP));
+		ChatNotifier.getInstance().onNewChatTransaction(chatTransaction(ALICE, null, groupId + 1));
+		ChatNotifier.getInstance().onGroupMembershipChange();
+
+		assertTrue(delivered.await(5, TimeUnit.SECONDS));
+		// Give any wrongly-delivered events a chance to arrive
+		Thread.sleep(100L);
+
+		synchronized (received) {
+			assertEquals(1, received.get("group").size());
+			assertEquals(CHLOE, received.get("group").get(0).getChatTransactionData().getSender());
+
+			assertEquals(1, received.get("alice").size());
+			assertEquals(BOB, received.get("alice").get(0).getChatTransactionData().getSender());
+
+			assertEquals(1, received.get("membership").size());
+			assertNull(received.get("membership").get(0).getChatTransactionData());
+		}
+	}
+
+	@Test
+	public void testSharedPayload() throws InterruptedException {
+		final int sessionCount = 20;
+		final int groupId = 7;
+
+		AtomicInteger buildCount = new AtomicInteger();
+		List<String> payloads = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch delivered = new CountDownLatch(sessionCount);
+
+		for (int i = 0; i < sessionCount; ++i)
+			ChatNotifier.getInstance().register(newSession(), ChatNotifier.Subscription.forGroup(groupId), event -> {
+				payloads.add(event.getPayload("BASE58", () -> "payload-" + buildCount.incrementAndGet()));
+				delivered.countDown();
+			});
+
+		ChatNotifier.getInstance().onNewChatTransaction(chatTransaction(ALICE, null, groupId));
+
+		assertTrue(delivered.await(5, TimeUnit.SECONDS));
+		assertEquals(1, buildCount.get());
+		assertEquals(Collections.nCopies(sessionCount, "payload-1"), payloads);
+	}
+
+	@Test
+	public void testSlowSession() throws InterruptedException {
+		final int groupId = 9;
+		final int eventCount = 150;
+
+		CountDownLatch firstEventStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<Long> slowTimestamps = Collections.synchronizedList(new ArrayList<>());
+		Semaphore fastDelivered = new Semaphore(0);
+
+		ChatNotifier.getInstance().register(newSession(), ChatNotifier.Subscription.forGroup(groupId), event -> {
+			firstEventStarted.countDown();
+
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			slowTimestamps.add(event.getChatTransactionData().getTimestamp());
+		});
+		ChatNotifier.getInstance().register(newSession(), ChatNotifier.Subscription.forGroup(groupId), event -> fastDelivered.release());
+
+		// Caller isn't held up by slow session
+		ChatNotifier.getInstance().onNewChatTransaction(chatTransaction(ALICE, null, groupId, 0L));
+		assertTrue(firstEventStarted.await(5, TimeUnit.SECONDS));
+
+		assertTrue(fastDelivered.tryAcquire(5, TimeUnit.SECONDS));
+
+		// Other sessions still get everything
+		for (long timestamp = 1; timestamp <= eventCount; ++timestamp) {
+			ChatNotifier.getInstance().onNewChatTransaction(chatTransaction(ALICE, null, groupId, timestamp));
+			assertTrue(fastDelivered.tryAcquire(5, TimeUnit.SECONDS));
+		}
+
+		release.countDown();
+
+		// Slow session gets first event, then as many as fitted in its queue, in order
+		long deadline = System.currentTimeMillis() + 5000L;
+		while (slowTimestamps.size() < 101 && System.currentTimeMillis() < deadline)
+			Thread.sleep(10L);
+
+		List<Long> expectedTimestamps = new ArrayList<>();
+		for (long timestamp = 0; timestamp <= 100; ++timestamp)
+			expectedTimestamps.add(timestamp);
+
+		assertEquals(expectedTimestamps, slowTimestamps);
+	}
+
+	private void register(String name, ChatNotifier.Subscription subscription, Map<String, List<ChatNotifier.Event>> received, CountDownLatch delivered) {
+		synchronized (received) {
+			received.put(name, new ArrayList<>());
+		}
+
+		ChatNotifier.getInstance().register(newSession(), subscription, event -> {
+			synchronized (received) {
+				received.get(name).add(event);
+			}
+
+			delivered.countDown();
+		});
+	}
+
+	/** Returns placeholder session, only usable as a map key. */
+	private Session newSession() {
+		Object identity = new Object();
+
+		Session session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] { Session.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+						case "hashCode":
+							return identity.hashCode();
+
+						case "equals":
+							return proxy == args[0];
+
+						case "toString":
+							return "session-" + identity.hashCode();
+
+						default:
+							throw new UnsupportedOperationException(method.getName());
+					}
+				});
+
+		this.sessions.add(session);
+		return session;
+	}
+
+	private static ChatTransactionData chatTransaction(String sender, String recipient, int txGroupId) {
+		return chatTransaction(sender, recipient, txGroupId, System.currentTimeMillis());
+	}
+
+	private static ChatTransactionData chatTransaction(String sender, String recipient, int txGroupId, long timestamp) {
+		BaseTransactionData baseTransactionData = new BaseTransactionData(timestamp, txGroupId, new byte[64], new byte[32], 0L, new byte[64]);
+		return new ChatTransactionData(baseTransactionData, sender, 0, recipient, null, new byte[0], true, false);
+	}
+
+}
@@ -6,7 +6,11 @@ import org.qortal.api.ApiError;
 import org.qortal.api.ApiException;
 import org.qortal.repository.DataException;
 
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -102,6 +106,19 @@ public class ApiCommon extends Common {
 		assertNoApiError(apiCall, MAX_API_RESPONSE_PERIOD);
 	}
 
+	/** Returns JSON written by streamed API response, e.g. to make repository queries actually happen. */
+	public static String readStream(StreamingOutput streamingOutput) {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+		try {
+			streamingOutput.write(outputStream);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to read streamed API response: " + e.getMessage(), e);
+		}
+
+		return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
 	public static void assertNoApiError(SlicedApiCall apiCall) {
 		for (Integer limit : SAMPLE_LIMIT_VALUES)
 			for (Integer offset : SAMPLE_OFFSET_VALUES)
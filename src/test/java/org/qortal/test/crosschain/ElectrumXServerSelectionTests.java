@@ -0,0 +1,369 @@
+package org.qortal.test.crosschain;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.crosschain.ChainableServer.ConnectionType;
+import org.qortal.crosschain.ElectrumX;
+import org.qortal.crosschain.ForeignBlockchainCache;
+import org.qortal.crosschain.ForeignBlockchainException;
+import org.qortal.repository.DataException;
+import org.qortal.test.common.Common;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ElectrumXServerSelectionTests extends Common {
+
+	private static final String NET_ID = "Fake-TEST";
+	private static final int HEIGHT = 123456;
+
+	private static final Map<ConnectionType, Integer> DEFAULT_PORTS = new EnumMap<>(ConnectionType.class);
+	static {
+		DEFAULT_PORTS.put(ConnectionType.TCP, 50001);
+		DEFAULT_PORTS.put(ConnectionType.SSL, 50002);
+	}
+
+	/** Minimal ElectrumX server, answering just enough RPC methods, with injectable latency or failure. */
+	private static class FakeElectrumX implements Closeable {
+		private final ServerSocket serverSocket;
+		private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<>());
+
+		private volatile long delay = 0L; // ms
+		private volatile boolean isBroken = false;
+		/** Whether to answer height requests with an error */
+		private volatile boolean isErroring = false;
+		private volatile long height = HEIGHT;
+		private final AtomicInteger connectionCount = new AtomicInteger();
+		private final AtomicInteger heightRequestCount = new AtomicInteger();
+
+		private final ElectrumX.Server server;
+
+		FakeElectrumX() throws IOException {
+			this.serverSocket = new ServerSocket(0);
+			this.server = new ElectrumX.Server("localhost", ConnectionType.TCP, this.serverSocket.getLocalPort());
+
+			Thread acceptThread = new Thread(this::acceptConnections, "FakeElectrumX-" + this.serverSocket.getLocalPort());
+			acceptThread.setDaemon(true);
+			acceptThread.start();
+		}
+
+		private void acceptConnections() {
+			while (!this.serverSocket.isClosed()) {
+				try {
+					Socket socket = this.serverSocket.accept();
+					this.connectionCount.incrementAndGet();
+					this.sockets.add(socket);
+
+					Thread connectionThread = new Thread(() -> this.handleConnection(socket));
+					connectionThread.setDaemon(true);
+					connectionThread.start();
+				} catch (IOException e) {
+					// Closed
+				}
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void handleConnection(Socket socket) {
+			try (socket;
+					BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+					Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (this.isBroken)
+						return;
+
+					JSONObject requestJson = (JSONObject) JSONValue.parse(line);
+					String method = (String) requestJson.get("method");
+
+					Object result;
+					switch (method) {
+						case "server.version":
+							result = new JSONArray();
+							break;
+
+						case "server.features":
+							JSONObject featuresJson = new JSONObject();
+							featuresJson.put("protocol_min", "1.4");
+							result = featuresJson;
+							break;
+
+						case "server.peers.subscribe":
+							result = new JSONArray();
+							break;
+
+						case "blockchain.headers.subscribe":
+							this.heightRequestCount.incrementAndGet();
+							JSONObject headerJson = new JSONObject();
+							headerJson.put("height", this.height);
+							headerJson.put("hex", "00");
+							result = headerJson;
+							break;
+
+						case "blockchain.block.headers":
+							// No headers available
+							JSONObject headersJson = new JSONObject();
+							headersJson.put("count", 0L);
+							headersJson.put("hex", "");
+							result = headersJson;
+							break;
+
+						default:
+							result = null;
+							break;
+					}
+
+					if (this.delay > 0)
+						Thread.sleep(this.delay);
+
+					JSONObject responseJson = new JSONObject();
+					responseJson.put("id", requestJson.get("id"));
+					responseJson.put("jsonrpc", "2.0");
+
+					if (this.isErroring && method.equals("blockchain.headers.subscribe")) {
+						JSONObject errorJson = new JSONObject();
+						errorJson.put("code", 1L);
+						errorJson.put("message", "fake error");
+						responseJson.put("error", errorJson);
+					} else {
+						responseJson.put("result", result);
+					}
+
+					writer.write(responseJson.toJSONString() + "\n");
+					writer.flush();
+				}
+			} catch (IOException | InterruptedException e) {
+				// Client went away, or we're closing
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.serverSocket.close();
+
+			synchronized (this.sockets) {
+				for (Socket socket : this.sockets)
+					socket.close();
+			}
+		}
+	}
+
+	private final List<FakeElectrumX> fakeServers = new ArrayList<>();
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() throws IOException {
+		for (FakeElectrumX fakeServer : this.fakeServers)
+			fakeServer.close();
+	}
+
+	private FakeElectrumX newFakeServer(long delay) throws IOException {
+		FakeElectrumX fakeServer = new FakeElectrumX();
+		fakeServer.delay = delay;
+		this.fakeServers.add(fakeServer);
+		return fakeServer;
+	}
+
+	private static ElectrumX newElectrumX(boolean isHedgingEnabled, FakeElectrumX... fakeServers) {
+		List<ElectrumX.Server> servers = new ArrayList<>();
+		for (FakeElectrumX fakeServer : fakeServers)
+			servers.add(fakeServer.server);
+
+		ElectrumX electrumX = new ElectrumX(NET_ID, null, servers, DEFAULT_PORTS);
+		electrumX.setHedgingEnabled(isHedgingEnabled);
+		return electrumX;
+	}
+
+	@Test
+	public void testFastServerPreferred() throws IOException, ForeignBlockchainException {
+		FakeElectrumX slowServer = newFakeServer(100L);
+		FakeElectrumX fastServer = newFakeServer(0L);
+
+		// Probing measures both servers
+		newElectrumX(false, slowServer, fastServer).probeServers();
+
+		assertEquals(1, slowServer.connectionCount.get());
+		assertEquals(1, fastServer.connectionCount.get());
+		assertTrue(slowServer.server.getLastContactTimestamp() > 0);
+		assertTrue(slowServer.server.getScore() > fastServer.server.getScore());
+
+		// Server stats are shared, so new instances mostly pick fast server, apart from occasional exploration
+		for (int i = 0; i < 20; ++i)
+			assertEquals(HEIGHT, newElectrumX(false, slowServer, fastServer).getCurrentHeight());
+
+		assertTrue(fastServer.heightRequestCount.get() > 14);
+		assertEquals(20, slowServer.heightRequestCount.get() + fastServer.heightRequestCount.get());
+	}
+
+	@Test
+	public void testFailingServerRested() throws IOException, ForeignBlockchainException {
+		FakeElectrumX brokenServer = newFakeServer(0L);
+		brokenServer.isBroken = true;
+		FakeElectrumX goodServer = newFakeServer(0L);
+
+		ElectrumX electrumX = newElectrumX(false, brokenServer, goodServer);
+
+		// One failure isn't enough to rest a server...
+		electrumX.probeServers();
+		assertFalse(brokenServer.server.isResting(System.currentTimeMillis()));
+
+		// ...but repeated failures are
+		electrumX.probeServers();
+		assertTrue(brokenServer.server.isResting(System.currentTimeMillis()));
+		assertFalse(goodServer.server.isResting(System.currentTimeMillis()));
+
+		// Resting server isn't picked, even for exploration
+		int brokenConnectionCount = brokenServer.connectionCount.get();
+		for (int i = 0; i < 10; ++i)
+			assertEquals(HEIGHT, newElectrumX(false, brokenServer, goodServer).getCurrentHeight());
+
+		assertEquals(brokenConnectionCount, brokenServer.connectionCount.get());
+		assertEquals(10, goodServer.heightRequestCount.get());
+	}
+
+	@Test
+	public void testHedgedRequest() throws IOException, ForeignBlockchainException {
+		FakeElectrumX server1 = newFakeServer(0L);
+		FakeElectrumX server2 = newFakeServer(0L);
+
+		ElectrumX electrumX = newElectrumX(true, server1, server2);
+
+		// Build up response time readings for current server
+		for (int i = 0; i < 5; ++i)
+			assertEquals(HEIGHT, electrumX.getCurrentHeight());
+
+		FakeElectrumX primaryServer = electrumX.getCurrentServer().equals(server1.server) ? server1 : server2;
+		FakeElectrumX otherServer = primaryServer == server1 ? server2 : server1;
+
+		// Primary server becomes very slow
+		primaryServer.delay = 5000L;
+
+		long startTime = System.currentTimeMillis();
+		assertEquals(HEIGHT, electrumX.getCurrentHeight());
+		long duration = System.currentTimeMillis() - startTime;
+
+		assertTrue(String.format("Hedged call took %dms", duration), duration < 2000L);
+		assertEquals(1, otherServer.heightRequestCount.get());
+
+		// Faster server is now current
+		assertEquals(otherServer.server, electrumX.getCurrentServer());
+
+		// Without hedging, we'd have to wait for slow server
+		primaryServer.delay = 300L;
+		ElectrumX unhedgedElectrumX = newElectrumX(false, primaryServer);
+
+		startTime = System.currentTimeMillis();
+		assertEquals(HEIGHT, unhedgedElectrumX.getCurrentHeight());
+		assertTrue(System.currentTimeMillis() - startTime >= 300L);
+	}
+
+	@Test
+	public void testHedgedRequestError() throws IOException, ForeignBlockchainException {
+		FakeElectrumX server1 = newFakeServer(0L);
+		FakeElectrumX server2 = newFakeServer(0L);
+
+		ElectrumX electrumX = newElectrumX(true, server1, server2);
+
+		// Build up response time readings for current server
+		for (int i = 0; i < 5; ++i)
+			assertEquals(HEIGHT, electrumX.getCurrentHeight());
+
+		FakeElectrumX primaryServer = electrumX.getCurrentServer().equals(server1.server) ? server1 : server2;
+		FakeElectrumX otherServer = primaryServer == server1 ? server2 : server1;
+
+		// Primary server becomes slow, and other server answers with an error first
+		primaryServer.delay = 1000L;
+		primaryServer.height = HEIGHT + 1;
+		otherServer.isErroring = true;
+
+		try {
+			electrumX.getCurrentHeight();
+			fail("Error from other server should be thrown");
+		} catch (ForeignBlockchainException e) {
+			// Expected
+		}
+
+		// Primary connection, with its call still pending, was dropped
+		assertNull(electrumX.getCurrentServer());
+
+		primaryServer.delay = 0L;
+		primaryServer.height = HEIGHT + 2;
+		otherServer.isErroring = false;
+
+		// Next call mustn't be given stray response to earlier call
+		int height = electrumX.getCurrentHeight();
+		assertTrue(height != HEIGHT + 1);
+	}
+
+	@Test
+	public void testHedgedRequestInterrupted() throws Exception {
+		FakeElectrumX server1 = newFakeServer(0L);
+		FakeElectrumX server2 = newFakeServer(0L);
+
+		ElectrumX electrumX = newElectrumX(true, server1, server2);
+
+		for (int i = 0; i < 5; ++i)
+			assertEquals(HEIGHT, electrumX.getCurrentHeight());
+
+		// Both servers become too slow to answer before we're interrupted
+		server1.delay = 2000L;
+		server2.delay = 2000L;
+
+		final int connectionCount = server1.connectionCount.get() + server2.connectionCount.get();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Integer> call = executor.submit(electrumX::getCurrentHeight);
+
+			Thread.sleep(300L);
+			executor.shutdownNow();
+
+			try {
+				call.get(5, TimeUnit.SECONDS);
+				fail("Interrupted call should throw");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof ForeignBlockchainException);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// Interruption isn't the servers' fault, so only hedge connection was made, with no retries using other servers
+		assertEquals(connectionCount + 1, server1.connectionCount.get() + server2.connectionCount.get());
+	}
+
+	@Test
+	public void testCachedHeadersKeptWhenNoneFetched() throws IOException, ForeignBlockchainException {
+		FakeElectrumX server = newFakeServer(0L);
+		ElectrumX electrumX = newElectrumX(false, server);
+
+		// Sets tip height, so headers are deep enough to cache
+		assertEquals(HEIGHT, electrumX.getCurrentHeight());
+
+		final int startHeight = 1000;
+		List<byte[]> headers = new ArrayList<>();
+		for (int i = 0; i < 5; ++i)
+			headers.add(new byte[80]);
+
+		ForeignBlockchainCache.getInstance(NET_ID).putHeaders(startHeight, headers);
+
+		// Server has no further headers, so we get all the cached ones
+		assertEquals(headers.size(), electrumX.getRawBlockHeaders(startHeight, 10).size());
+	}
+
+}
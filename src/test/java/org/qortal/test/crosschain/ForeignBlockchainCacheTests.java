@@ -0,0 +1,195 @@
+package org.qortal.test.crosschain;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.crosschain.BitcoinyTransaction;
+import org.qortal.crosschain.ForeignBlockchainCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ForeignBlockchainCacheTests {
+
+	private static final String NET_ID = "Bitcoin-TEST3";
+	private static final int TIP_HEIGHT = 1000;
+	private static final int DEEP_HEIGHT = TIP_HEIGHT - ForeignBlockchainCache.REORG_SAFETY_DEPTH;
+
+	private Path tempDir;
+	private Path cachePath;
+
+	@Before
+	public void beforeTest() throws IOException {
+		this.tempDir = Files.createTempDirectory("foreign-cache");
+		this.cachePath = this.tempDir.resolve(NET_ID + ".dat");
+	}
+
+	@After
+	public void afterTest() throws IOException {
+		Files.deleteIfExists(this.cachePath);
+		Files.deleteIfExists(this.tempDir);
+	}
+
+	@Test
+	public void testHeaderDepth() {
+		ForeignBlockchainCache cache = new ForeignBlockchainCache(NET_ID, this.cachePath, 100);
+
+		// Nothing cached until tip height is known
+		assertTrue(cache.putHeaders(DEEP_HEIGHT - 5, headers(DEEP_HEIGHT - 5, 3)));
+		assertTrue(cache.getHeaders(DEEP_HEIGHT - 5, 3).isEmpty());
+
+		cache.setTipHeight(TIP_HEIGHT);
+
+		// Only headers deep enough are cached
+		int startHeight = DEEP_HEIGHT - 2;
+		assertTrue(cache.putHeaders(startHeight, headers(startHeight, 5)));
+
+		List<byte[]> cachedHeaders = cache.getHeaders(startHeight, 5);
+		assertEquals(3, cachedHeaders.size());
+		for (int i = 0; i < cachedHeaders.size(); ++i)
+			assertArrayEquals(header(startHeight + i, 0), cachedHeaders.get(i));
+
+		// Cached headers stop at first gap
+		assertTrue(cache.getHeaders(startHeight - 1, 5).isEmpty());
+	}
+
+	@Test
+	public void testReorgInvalidation() {
+		ForeignBlockchainCache cache = new ForeignBlockchainCache(NET_ID, this.cachePath, 100);
+		cache.setTipHeight(TIP_HEIGHT);
+
+		int startHeight = DEEP_HEIGHT - 10;
+		assertTrue(cache.putHeaders(startHeight, headers(startHeight, 10)));
+		cache.putTransaction(transaction("aa"), ForeignBlockchainCache.REORG_SAFETY_DEPTH);
+
+		// Matching headers are fine
+		assertTrue(cache.putHeaders(startHeight + 2, headers(startHeight + 2, 3)));
+
+		// Different header means deeper reorg than expected
+		List<byte[]> reorgedHeaders = Arrays.asList(header(startHeight + 5, 0), header(startHeight + 6, 1));
+		assertFalse(cache.putHeaders(startHeight + 5, reorgedHeaders));
+
+		assertEquals(6, cache.getHeaders(startHeight, 10).size());
+		assertNull(cache.getTransaction("aa"));
+
+		// New headers can then be cached
+		assertTrue(cache.putHeaders(startHeight + 6, Collections.singletonList(header(startHeight + 6, 1))));
+		assertArrayEquals(header(startHeight + 6, 1), cache.getHeaders(startHeight + 6, 1).get(0));
+	}
+
+	@Test
+	public void testTransactions() {
+		ForeignBlockchainCache cache = new ForeignBlockchainCache(NET_ID, this.cachePath, 2);
+
+		// Not enough confirmations
+		cache.putTransaction(transaction("aa"), ForeignBlockchainCache.REORG_SAFETY_DEPTH - 1);
+		assertNull(cache.getTransaction("aa"));
+
+		cache.putTransaction(transaction("aa"), ForeignBlockchainCache.REORG_SAFETY_DEPTH);
+		cache.putTransaction(transaction("bb"), ForeignBlockchainCache.REORG_SAFETY_DEPTH);
+		assertNotNull(cache.getTransaction("aa"));
+
+		// Least recently used is evicted, i.e. "bb"
+		cache.putTransaction(transaction("cc"), ForeignBlockchainCache.REORG_SAFETY_DEPTH);
+		assertNotNull(cache.getTransaction("aa"));
+		assertNull(cache.getTransaction("bb"));
+		assertNotNull(cache.getTransaction("cc"));
+	}
+
+	@Test
+	public void testPersistence() throws IOException {
+		ForeignBlockchainCache cache = new ForeignBlockchainCache(NET_ID, this.cachePath, 100);
+		cache.setTipHeight(TIP_HEIGHT);
+
+		int startHeight = DEEP_HEIGHT - 10;
+		cache.putHeaders(startHeight, headers(startHeight, 10));
+
+		BitcoinyTransaction transaction = transaction("aa");
+		cache.putTransaction(transaction, ForeignBlockchainCache.REORG_SAFETY_DEPTH);
+		cache.save(true);
+
+		// As if after restart
+		ForeignBlockchainCache reloadedCache = new ForeignBlockchainCache(NET_ID, this.cachePath, 100);
+
+		List<byte[]> reloadedHeaders = reloadedCache.getHeaders(startHeight, 10);
+		assertEquals(10, reloadedHeaders.size());
+		assertArrayEquals(header(startHeight + 9, 0), reloadedHeaders.get(9));
+
+		BitcoinyTransaction reloadedTransaction = reloadedCache.getTransaction("aa");
+		assertNotNull(reloadedTransaction);
+		assertEquals(transaction.toString(), reloadedTransaction.toString());
+		assertEquals(transaction.outputs.get(0).addresses, reloadedTransaction.outputs.get(0).addresses);
+		assertNull(reloadedTransaction.outputs.get(1).addresses);
+		assertEquals(transaction.totalAmount, reloadedTransaction.totalAmount);
+
+		// Tip height was persisted too, so further deep headers are cacheable
+		reloadedCache.putHeaders(startHeight + 10, headers(startHeight + 10, 1));
+		assertEquals(1, reloadedCache.getHeaders(startHeight + 10, 1).size());
+
+		// Unreadable cache is ignored
+		Files.write(this.cachePath, new byte[] { 1, 2, 3 });
+		ForeignBlockchainCache corruptCache = new ForeignBlockchainCache(NET_ID, this.cachePath, 100);
+		assertNull(corruptCache.getTransaction("aa"));
+		assertTrue(corruptCache.getHeaders(startHeight, 10).isEmpty());
+	}
+
+	@Test
+	public void testCorruptFile() throws IOException {
+		ForeignBlockchainCache cache = new ForeignBlockchainCache(NET_ID, this.cachePath, 100);
+		cache.setTipHeight(TIP_HEIGHT);
+		cache.putHeaders(DEEP_HEIGHT - 10, headers(DEEP_HEIGHT - 10, 10));
+		cache.putTransaction(transaction("aa"), ForeignBlockchainCache.REORG_SAFETY_DEPTH);
+		cache.save(true);
+
+		byte[] savedBytes = Files.readAllBytes(this.cachePath);
+
+		// Truncated at any point
+		for (int length = 0; length < savedBytes.length; ++length) {
+			Files.write(this.cachePath, Arrays.copyOf(savedBytes, length));
+
+			ForeignBlockchainCache truncatedCache = new ForeignBlockchainCache(NET_ID, this.cachePath, 100);
+			assertNull(truncatedCache.getTransaction("aa"));
+			assertTrue(truncatedCache.getHeaders(DEEP_HEIGHT - 10, 10).isEmpty());
+		}
+
+		// Any length, or count, replaced by huge or negative values
+		for (int value : new int[] { Integer.MAX_VALUE, Integer.MIN_VALUE, -2 })
+			for (int offset = 0; offset + 4 <= savedBytes.length; ++offset) {
+				byte[] corruptBytes = savedBytes.clone();
+				ByteBuffer.wrap(corruptBytes).putInt(offset, value);
+				Files.write(this.cachePath, corruptBytes);
+
+				// Mustn't throw, or run out of memory
+				new ForeignBlockchainCache(NET_ID, this.cachePath, 100);
+			}
+	}
+
+	private static byte[] header(int height, int variant) {
+		byte[] header = new byte[80];
+		new Random(height * 31L + variant).nextBytes(header);
+		return header;
+	}
+
+	private static List<byte[]> headers(int startHeight, int count) {
+		List<byte[]> headers = new ArrayList<>();
+		for (int i = 0; i < count; ++i)
+			headers.add(header(startHeight + i, 0));
+
+		return headers;
+	}
+
+	private static BitcoinyTransaction transaction(String txHash) {
+		List<BitcoinyTransaction.Input> inputs = Collections.singletonList(new BitcoinyTransaction.Input("abcd", 0xfffffffe, "ef01", 1));
+		List<BitcoinyTransaction.Output> outputs = Arrays.asList(
+				new BitcoinyTransaction.Output("76a914", 12345L, Collections.singletonList("mzBc4XEFSdzCDcTxAgf6EZXgsZWpztRhef")),
+				new BitcoinyTransaction.Output("6a", 0L));
+
+		return new BitcoinyTransaction(txHash, 250, 0, 1600000000, inputs, outputs);
+	}
+
+}
@@ -0,0 +1,159 @@
+package org.qortal.test.crosschain;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.controller.tradebot.TradeBotScheduler;
+import org.qortal.data.crosschain.TradeBotData;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TradeBotSchedulerTests {
+
+	private static final long NOW = 1_700_000_000_000L;
+
+	private TradeBotScheduler scheduler;
+
+	@Before
+	public void beforeTest() {
+		this.scheduler = new TradeBotScheduler(1);
+	}
+
+	@After
+	public void afterTest() {
+		this.scheduler.shutdown();
+	}
+
+	@Test
+	public void testIdleBackoff() {
+		assertEquals(0L, TradeBotScheduler.getIdleBackoff(0));
+		assertEquals(TradeBotScheduler.MIN_IDLE_BACKOFF, TradeBotScheduler.getIdleBackoff(1));
+		assertEquals(TradeBotScheduler.MIN_IDLE_BACKOFF * 2, TradeBotScheduler.getIdleBackoff(2));
+		assertEquals(TradeBotScheduler.MAX_IDLE_BACKOFF, TradeBotScheduler.getIdleBackoff(10));
+		assertEquals(TradeBotScheduler.MAX_IDLE_BACKOFF, TradeBotScheduler.getIdleBackoff(Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testScheduling() {
+		TradeBotData tradeBotData = newTradeBotData(1);
+
+		// New entries are always due
+		assertTrue(this.scheduler.claimIfDue(tradeBotData, NOW));
+		// ...but not twice at once
+		assertFalse(this.scheduler.claimIfDue(tradeBotData, NOW));
+
+		// Idle step backs off
+		this.scheduler.stepFinished(tradeBotData, false, false, NOW);
+		assertFalse(this.scheduler.claimIfDue(tradeBotData, NOW + TradeBotScheduler.MIN_IDLE_BACKOFF - 1));
+		assertTrue(this.scheduler.claimIfDue(tradeBotData, NOW + TradeBotScheduler.MIN_IDLE_BACKOFF));
+
+		// Further idle steps back off more
+		long now = NOW + TradeBotScheduler.MIN_IDLE_BACKOFF;
+		this.scheduler.stepFinished(tradeBotData, false, false, now);
+		assertFalse(this.scheduler.claimIfDue(tradeBotData, now + TradeBotScheduler.MIN_IDLE_BACKOFF));
+		assertTrue(this.scheduler.claimIfDue(tradeBotData, now + TradeBotScheduler.MIN_IDLE_BACKOFF * 2));
+
+		// Failed step also backs off
+		now += TradeBotScheduler.MIN_IDLE_BACKOFF * 2;
+		this.scheduler.stepFinished(tradeBotData, true, true, now);
+		assertFalse(this.scheduler.claimIfDue(tradeBotData, now));
+
+		// State change made elsewhere, e.g. via API, makes entry due immediately
+		tradeBotData.setStateValue(tradeBotData.getStateValue() + 1);
+		assertTrue(this.scheduler.claimIfDue(tradeBotData, now));
+
+		// Changing step resets backoff
+		tradeBotData.setStateValue(tradeBotData.getStateValue() + 1);
+		this.scheduler.stepFinished(tradeBotData, true, false, now);
+		assertTrue(this.scheduler.claimIfDue(tradeBotData, now));
+
+		// Last running step is reported, so presences can be broadcast
+		assertTrue(this.scheduler.stepFinished(tradeBotData, false, false, now));
+		assertEquals(0, this.scheduler.getBacklog());
+	}
+
+	@Test
+	public void testRejectedAndRemoved() {
+		TradeBotData tradeBotData = newTradeBotData(2);
+		TradeBotData otherTradeBotData = newTradeBotData(3);
+
+		assertTrue(this.scheduler.claimIfDue(tradeBotData, NOW));
+		this.scheduler.stepRejected(tradeBotData);
+		assertEquals(0, this.scheduler.getBacklog());
+
+		// Rejected entries are due again
+		assertTrue(this.scheduler.claimIfDue(tradeBotData, NOW));
+		this.scheduler.stepFinished(tradeBotData, false, false, NOW);
+
+		assertTrue(this.scheduler.claimIfDue(otherTradeBotData, NOW));
+		this.scheduler.stepFinished(otherTradeBotData, false, false, NOW);
+
+		// Deleted entry's schedule is forgotten, so it would be due straight away if it reappeared
+		this.scheduler.retainOnly(Collections.singletonList(tradeBotData));
+		assertFalse(this.scheduler.claimIfDue(tradeBotData, NOW));
+		assertTrue(this.scheduler.claimIfDue(otherTradeBotData, NOW));
+	}
+
+	@Test
+	public void testSlowBlockchainDoesntBlockOthers() throws InterruptedException {
+		CountDownLatch slowStepRelease = new CountDownLatch(1);
+		CountDownLatch fastStepsDone = new CountDownLatch(3);
+
+		assertTrue(this.scheduler.submit("BITCOIN", () -> {
+			try {
+				slowStepRelease.await();
+			} catch (InterruptedException e) {
+				// Shutting down
+			}
+		}));
+
+		for (int i = 0; i < 3; ++i)
+			assertTrue(this.scheduler.submit("LITECOIN", fastStepsDone::countDown));
+
+		assertTrue("Steps for other blockchain should run while one blockchain is slow", fastStepsDone.await(5, TimeUnit.SECONDS));
+
+		slowStepRelease.countDown();
+	}
+
+	@Test
+	public void testBoundedQueue() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+
+		boolean wasRejected = false;
+		for (int i = 0; i < 1000 && !wasRejected; ++i)
+			wasRejected = !this.scheduler.submit("DOGECOIN", () -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					// Shutting down
+				}
+			});
+
+		assertTrue("Steps should be rejected once blockchain's queue is full", wasRejected);
+
+		release.countDown();
+
+		this.scheduler.shutdown();
+		assertFalse(this.scheduler.submit("DOGECOIN", () -> {}));
+	}
+
+	private static TradeBotData newTradeBotData(long seed) {
+		Random random = new Random(seed);
+		byte[] tradePrivateKey = new byte[32];
+		random.nextBytes(tradePrivateKey);
+
+		return new TradeBotData(tradePrivateKey, "LitecoinACCTv3", "BOB_WAITING_FOR_MESSAGE", 10,
+				null, "AT" + seed, NOW, 1_00000000L,
+				null, null, null,
+				null, null,
+				"LITECOIN", null, null,
+				100000L, null,
+				null, null, null);
+	}
+
+}
@@ -0,0 +1,198 @@
+package org.qortal.test.crosschain;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.api.model.CrossChainOfferSummary;
+import org.qortal.controller.tradebot.TradeOfferBook;
+import org.qortal.controller.tradebot.TradeOfferBook.TradeOffer;
+import org.qortal.crosschain.AcctMode;
+import org.qortal.crosschain.LitecoinACCTv3;
+import org.qortal.crosschain.SupportedBlockchain;
+import org.qortal.data.at.ATData;
+import org.qortal.data.crosschain.CrossChainTradeData;
+import org.qortal.data.transaction.BaseTransactionData;
+import org.qortal.data.transaction.MessageTransactionData;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.group.Group;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.AtUtils;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.TransactionUtils;
+import org.qortal.transaction.MessageTransaction;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class TradeOfferBookTests extends Common {
+
+	private static final String BLOCKCHAIN = SupportedBlockchain.LITECOIN.name();
+	private static final byte[] LITECOIN_PUBLIC_KEY_HASH = new byte[20];
+	private static final long REDEEM_AMOUNT = 80_40200000L;
+	private static final long FUNDING_AMOUNT = 123_45600000L;
+	private static final long FOREIGN_AMOUNT = 864200L;
+	private static final int TRADE_TIMEOUT = 20; // blocks
+
+	private final List<CrossChainOfferSummary> receivedChanges = new ArrayList<>();
+	private final TradeOfferBook.OfferListener listener = (foreignBlockchain, changedOffers) -> {
+		assertEquals(BLOCKCHAIN, foreignBlockchain);
+		this.receivedChanges.addAll(changedOffers);
+	};
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+
+		TradeOfferBook.getInstance().addListener(this.listener);
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		TradeOfferBook.getInstance().removeListener(this.listener);
+
+		Common.orphanCheck();
+	}
+
+	@Test
+	public void testOfferLifecycle() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			TradeOfferBook tradeOfferBook = TradeOfferBook.getInstance();
+			tradeOfferBook.update(repository);
+			assertTrue(tradeOfferBook.isReady());
+
+			PrivateKeyAccount deployer = Common.getTestAccount(repository, "chloe");
+
+			// New offer
+			String atAddress = deployTradeAT(repository, deployer);
+			tradeOfferBook.update(repository);
+
+			assertBookMatchesRepository(repository);
+			assertEquals(Collections.singletonList(atAddress), getAtAddresses(tradeOfferBook.getCurrentOffers(BLOCKCHAIN)));
+			assertChanges(atAddress, AcctMode.OFFERING);
+
+			// Cancelled by creator
+			sendMessage(repository, deployer, LitecoinACCTv3.getInstance().buildCancelMessage(deployer.getAddress()), atAddress);
+			BlockUtils.mintBlock(repository);
+			tradeOfferBook.update(repository);
+
+			assertBookMatchesRepository(repository);
+			assertTrue(tradeOfferBook.getCurrentOffers(BLOCKCHAIN).isEmpty());
+			assertEquals(Collections.singletonList(atAddress), getAtAddresses(tradeOfferBook.getHistoricOffers(BLOCKCHAIN)));
+			assertChanges(atAddress, AcctMode.CANCELLED);
+
+			// Unrelated blocks don't change anything
+			BlockUtils.mintBlock(repository);
+			tradeOfferBook.update(repository);
+			assertChanges(null, null);
+
+			// Orphan back to before cancellation
+			BlockUtils.orphanBlocks(repository, 3);
+			tradeOfferBook.update(repository);
+
+			assertBookMatchesRepository(repository);
+			assertEquals(Collections.singletonList(atAddress), getAtAddresses(tradeOfferBook.getCurrentOffers(BLOCKCHAIN)));
+			assertTrue(tradeOfferBook.getHistoricOffers(BLOCKCHAIN).isEmpty());
+			assertChanges(atAddress, AcctMode.OFFERING);
+
+			// Orphan deployment
+			BlockUtils.orphanLastBlock(repository);
+			tradeOfferBook.update(repository);
+
+			assertBookMatchesRepository(repository);
+			assertTrue(tradeOfferBook.getCurrentOffers(BLOCKCHAIN).isEmpty());
+		}
+	}
+
+	@Test
+	public void testManyOffers() throws DataException {
+		final int offerCount = 10;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			TradeOfferBook tradeOfferBook = TradeOfferBook.getInstance();
+			tradeOfferBook.update(repository);
+
+			PrivateKeyAccount deployer = Common.getTestAccount(repository, "chloe");
+
+			List<String> atAddresses = new ArrayList<>();
+			for (int i = 0; i < offerCount; ++i)
+				atAddresses.add(deployTradeAT(repository, deployer));
+
+			// Several blocks at once
+			tradeOfferBook.update(repository);
+
+			assertBookMatchesRepository(repository);
+			assertEquals(atAddresses, getAtAddresses(tradeOfferBook.getCurrentOffers(BLOCKCHAIN)));
+			assertEquals(atAddresses, getAtAddresses(tradeOfferBook.getCurrentOffers(null)));
+			assertEquals(offerCount, this.receivedChanges.size());
+			this.receivedChanges.clear();
+
+			// Offers sorted by creation timestamp
+			List<TradeOffer> currentOffers = tradeOfferBook.getCurrentOffers(BLOCKCHAIN);
+			for (int i = 1; i < currentOffers.size(); ++i)
+				assertTrue(currentOffers.get(i - 1).getTradeData().creationTimestamp <= currentOffers.get(i).getTradeData().creationTimestamp);
+
+			// Orphan half
+			BlockUtils.orphanBlocks(repository, offerCount / 2);
+			tradeOfferBook.update(repository);
+
+			assertBookMatchesRepository(repository);
+			assertEquals(atAddresses.subList(0, offerCount / 2), getAtAddresses(tradeOfferBook.getCurrentOffers(BLOCKCHAIN)));
+		}
+	}
+
+	/** Checks book's offers match those found by scanning repository, as trade offers API used to do. */
+	private static void assertBookMatchesRepository(Repository repository) throws DataException {
+		Set<String> expectedAtAddresses = new HashSet<>();
+
+		List<ATData> atsData = repository.getATRepository().getATsByFunctionality(LitecoinACCTv3.CODE_BYTES_HASH, true, null, null, null);
+		for (ATData atData : atsData) {
+			CrossChainTradeData crossChainTradeData = LitecoinACCTv3.getInstance().populateTradeData(repository, atData);
+			if (crossChainTradeData.mode == AcctMode.OFFERING)
+				expectedAtAddresses.add(crossChainTradeData.qortalAtAddress);
+		}
+
+		assertEquals(expectedAtAddresses, new HashSet<>(getAtAddresses(TradeOfferBook.getInstance().getCurrentOffers(BLOCKCHAIN))));
+	}
+
+	private void assertChanges(String atAddress, AcctMode mode) {
+		if (atAddress == null) {
+			assertTrue(this.receivedChanges.isEmpty());
+			return;
+		}
+
+		assertEquals(1, this.receivedChanges.size());
+		assertEquals(atAddress, this.receivedChanges.get(0).getQortalAtAddress());
+		assertEquals(mode, this.receivedChanges.get(0).getMode());
+
+		this.receivedChanges.clear();
+	}
+
+	private static List<String> getAtAddresses(List<TradeOffer> tradeOffers) {
+		return tradeOffers.stream().map(tradeOffer -> tradeOffer.getTradeData().qortalAtAddress).collect(Collectors.toList());
+	}
+
+	private static String deployTradeAT(Repository repository, PrivateKeyAccount deployer) throws DataException {
+		// Any account other than deployer will do for trade address
+		String tradeAddress = Common.getTestAccount(repository, "alice").getAddress();
+
+		byte[] creationBytes = LitecoinACCTv3.buildQortalAT(tradeAddress, LITECOIN_PUBLIC_KEY_HASH, REDEEM_AMOUNT, FOREIGN_AMOUNT, TRADE_TIMEOUT);
+		return AtUtils.doDeployAT(repository, deployer, creationBytes, FUNDING_AMOUNT).getATAccount().getAddress();
+	}
+
+	private static void sendMessage(Repository repository, PrivateKeyAccount sender, byte[] data, String recipient) throws DataException {
+		BaseTransactionData baseTransactionData = new BaseTransactionData(System.currentTimeMillis(), Group.NO_GROUP, sender.getLastReference(), sender.getPublicKey(), null, null);
+		TransactionData messageTransactionData = new MessageTransactionData(baseTransactionData, 4, 0, recipient, 0, null, data, false, false);
+
+		MessageTransaction messageTransaction = new MessageTransaction(repository, messageTransactionData);
+		messageTransactionData.setFee(messageTransaction.calcRecommendedFee());
+
+		TransactionUtils.signAndMint(repository, messageTransactionData, sender);
+	}
+
+}
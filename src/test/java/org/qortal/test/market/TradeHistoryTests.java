@@ -0,0 +1,294 @@
+package org.qortal.test.market;
+
+import com.google.common.primitives.UnsignedBytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.crosschain.LitecoinACCTv3;
+import org.qortal.crosschain.SupportedBlockchain;
+import org.qortal.crypto.Crypto;
+import org.qortal.data.market.CandleData;
+import org.qortal.data.market.CompletedCrossChainTradeData;
+import org.qortal.data.market.MarketTradeData;
+import org.qortal.data.transaction.BaseTransactionData;
+import org.qortal.data.transaction.MessageTransactionData;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.group.Group;
+import org.qortal.market.CandleInterval;
+import org.qortal.market.TradeHistory;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.AssetUtils;
+import org.qortal.test.common.AtUtils;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.TransactionUtils;
+import org.qortal.transaction.MessageTransaction;
+import org.qortal.utils.Amounts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TradeHistoryTests extends Common {
+
+	private static final String ASSET_MARKET = TradeHistory.getAssetMarket(AssetUtils.testAssetId, AssetUtils.otherAssetId);
+	private static final String CROSS_CHAIN_MARKET = SupportedBlockchain.LITECOIN.name();
+
+	private static final byte[] SECRET_A = "This string is exactly 32 bytes!".getBytes();
+	private static final byte[] HASH_OF_SECRET_A = Crypto.hash160(SECRET_A);
+	private static final byte[] LITECOIN_PUBLIC_KEY_HASH = new byte[20];
+	private static final long REDEEM_AMOUNT = 80_40200000L;
+	private static final long FUNDING_AMOUNT = 123_45600000L;
+	private static final long FOREIGN_AMOUNT = 864200L;
+	private static final int TRADE_TIMEOUT = 20; // blocks
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		Common.orphanCheck();
+	}
+
+	@Test
+	public void testAssetTradeCandles() throws DataException {
+		long[] prices = new long[] { 2_00000000L, 3_00000000L, 1_50000000L, 2_50000000L };
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			// Alice sells test asset for other asset, Bob buys at increasing prices
+			for (long price : prices) {
+				long amount = 10_00000000L;
+
+				AssetUtils.createOrder(repository, "alice", AssetUtils.testAssetId, AssetUtils.otherAssetId, amount, price);
+				AssetUtils.createOrder(repository, "bob", AssetUtils.otherAssetId, AssetUtils.testAssetId, amount, Amounts.scaledDivide(Amounts.MULTIPLIER, price));
+
+				assertAssetCandlesMatchTrades(repository);
+			}
+
+			int tradeCount = getTotalTradeCount(repository, ASSET_MARKET);
+			assertEquals(prices.length, tradeCount);
+
+			// Orphan one trade at a time
+			for (int i = prices.length - 1; i >= 0; --i) {
+				BlockUtils.orphanBlocks(repository, 2);
+
+				assertAssetCandlesMatchTrades(repository);
+				assertEquals(i, getTotalTradeCount(repository, ASSET_MARKET));
+			}
+
+			assertTrue(repository.getMarketRepository().getCandles(ASSET_MARKET, CandleInterval.DAY, 0L, Long.MAX_VALUE, null, null).isEmpty());
+		}
+	}
+
+	@Test
+	public void testOutOfOrderTrades() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			// Alice offers ever more test asset per other asset, until her newest order's ID doesn't sort first
+			List<byte[]> orderIds = new ArrayList<>();
+			long price = 2_00000000L;
+			do {
+				orderIds.add(AssetUtils.createOrder(repository, "alice", AssetUtils.testAssetId, AssetUtils.otherAssetId, 1_00000000L, price));
+				price += 10000000L;
+			} while (orderIds.size() < 2 || UnsignedBytes.lexicographicalComparator().compare(orderIds.get(orderIds.size() - 1),
+					orderIds.stream().min(UnsignedBytes.lexicographicalComparator()).get()) == 0);
+
+			// Bob buys from all of Alice's orders in one go, so trades are processed best price first
+			AssetUtils.createOrder(repository, "bob", AssetUtils.otherAssetId, AssetUtils.testAssetId, 10_00000000L * orderIds.size(), 25000000L);
+
+			List<MarketTradeData> trades = repository.getMarketRepository().getAssetTrades(AssetUtils.testAssetId, AssetUtils.otherAssetId, 0L, Long.MAX_VALUE);
+			assertEquals(orderIds.size(), trades.size());
+
+			// Bob's order matched Alice's newest order first, but that trade isn't first in trade order
+			byte[] newestOrderId = orderIds.get(orderIds.size() - 1);
+			assertFalse(Arrays.equals(newestOrderId, Arrays.copyOfRange(trades.get(0).getTradeKey(), newestOrderId.length, 2 * newestOrderId.length)));
+
+			assertAssetCandlesMatchTrades(repository);
+
+			List<List<CandleData>> processedCandles = new ArrayList<>();
+			for (CandleInterval interval : CandleInterval.values())
+				processedCandles.add(repository.getMarketRepository().getCandles(ASSET_MARKET, interval, 0L, Long.MAX_VALUE, null, null));
+
+			// Another trade, with rest of Bob's order, later orphaned so candles are rebuilt from the out-of-order trades
+			AssetUtils.createOrder(repository, "alice", AssetUtils.testAssetId, AssetUtils.otherAssetId, 1_00000000L, 5_00000000L);
+			assertEquals(orderIds.size() + 1, getTotalTradeCount(repository, ASSET_MARKET));
+
+			BlockUtils.orphanBlocks(repository, 1);
+
+			for (CandleInterval interval : CandleInterval.values())
+				assertCandlesEqual(processedCandles.get(interval.ordinal()),
+						repository.getMarketRepository().getCandles(ASSET_MARKET, interval, 0L, Long.MAX_VALUE, null, null));
+
+			// Orphaning the out-of-order trades themselves leaves no candles
+			BlockUtils.orphanBlocks(repository, 1);
+			assertEquals(0, getTotalTradeCount(repository, ASSET_MARKET));
+		}
+	}
+
+	@Test
+	public void testCrossChainTradeCandles() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			String atAddress = redeemTrade(repository);
+
+			CompletedCrossChainTradeData tradeData = repository.getMarketRepository().getCompletedCrossChainTrade(atAddress);
+			assertNotNull(tradeData);
+			assertEquals(CROSS_CHAIN_MARKET, tradeData.getForeignBlockchain());
+			assertEquals(REDEEM_AMOUNT, tradeData.getQortAmount());
+			assertEquals(FOREIGN_AMOUNT, tradeData.getForeignAmount());
+
+			// Price is in QORT per foreign unit
+			long expectedPrice = Amounts.scaledDivide(REDEEM_AMOUNT, FOREIGN_AMOUNT);
+
+			for (CandleInterval interval : CandleInterval.values()) {
+				List<CandleData> candles = repository.getMarketRepository().getCandles(CROSS_CHAIN_MARKET, interval, 0L, Long.MAX_VALUE, null, null);
+				assertEquals(1, candles.size());
+
+				CandleData candleData = candles.get(0);
+				assertEquals(interval.getBucketStart(tradeData.getTimestamp()), candleData.getTimestamp());
+				assertEquals(expectedPrice, candleData.getOpen());
+				assertEquals(expectedPrice, candleData.getClose());
+				assertEquals(FOREIGN_AMOUNT, candleData.getVolume());
+				assertEquals(REDEEM_AMOUNT, candleData.getQuoteVolume());
+				assertEquals(1, candleData.getTradeCount());
+			}
+
+			// Further blocks don't count trade again
+			BlockUtils.mintBlock(repository);
+			assertEquals(1, getTotalTradeCount(repository, CROSS_CHAIN_MARKET));
+
+			// Orphan redeem
+			BlockUtils.orphanBlocks(repository, 2);
+
+			assertNull(repository.getMarketRepository().getCompletedCrossChainTrade(atAddress));
+			assertEquals(0, getTotalTradeCount(repository, CROSS_CHAIN_MARKET));
+		}
+	}
+
+	@Test
+	public void testRebuild() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			AssetUtils.createOrder(repository, "alice", AssetUtils.testAssetId, AssetUtils.otherAssetId, 10_00000000L, 2_00000000L);
+			AssetUtils.createOrder(repository, "bob", AssetUtils.otherAssetId, AssetUtils.testAssetId, 10_00000000L, 50000000L);
+
+			String atAddress = redeemTrade(repository);
+
+			List<CandleData> expectedAssetCandles = repository.getMarketRepository().getCandles(ASSET_MARKET, CandleInterval.MINUTE, 0L, Long.MAX_VALUE, null, null);
+			List<CandleData> expectedCrossChainCandles = repository.getMarketRepository().getCandles(CROSS_CHAIN_MARKET, CandleInterval.MINUTE, 0L, Long.MAX_VALUE, null, null);
+
+			repository.getMarketRepository().setTradeHistoryBuilt(false);
+			repository.getMarketRepository().deleteAllCandles();
+			repository.getMarketRepository().deleteAllCompletedCrossChainTrades();
+
+			TradeHistory.buildIfNeeded(repository);
+
+			assertTrue(repository.getMarketRepository().isTradeHistoryBuilt());
+			assertNotNull(repository.getMarketRepository().getCompletedCrossChainTrade(atAddress));
+			assertCandlesEqual(expectedAssetCandles, repository.getMarketRepository().getCandles(ASSET_MARKET, CandleInterval.MINUTE, 0L, Long.MAX_VALUE, null, null));
+			assertCandlesEqual(expectedCrossChainCandles, repository.getMarketRepository().getCandles(CROSS_CHAIN_MARKET, CandleInterval.MINUTE, 0L, Long.MAX_VALUE, null, null));
+		}
+	}
+
+	@Test
+	public void testInverted() {
+		CandleData candleData = CandleData.fromTrade(CandleInterval.HOUR, new MarketTradeData(ASSET_MARKET, 1234567L, new byte[] { 1 }, 10_00000000L, 20_00000000L));
+		candleData.merge(new MarketTradeData(ASSET_MARKET, 1234568L, new byte[] { 2 }, 10_00000000L, 40_00000000L));
+
+		assertEquals(0L, candleData.getTimestamp());
+		assertEquals(2_00000000L, candleData.getOpen());
+		assertEquals(4_00000000L, candleData.getHigh());
+
+		CandleData invertedData = candleData.inverted();
+		assertEquals(50000000L, invertedData.getOpen());
+		assertEquals(25000000L, invertedData.getClose());
+		assertEquals(50000000L, invertedData.getHigh());
+		assertEquals(25000000L, invertedData.getLow());
+		assertEquals(60_00000000L, invertedData.getVolume());
+		assertEquals(20_00000000L, invertedData.getQuoteVolume());
+		assertEquals(2, invertedData.getTradeCount());
+	}
+
+	/** Checks stored candles match candles recomputed from trades still in repository. */
+	private static void assertAssetCandlesMatchTrades(Repository repository) throws DataException {
+		List<MarketTradeData> trades = repository.getMarketRepository().getAssetTrades(AssetUtils.testAssetId, AssetUtils.otherAssetId, 0L, Long.MAX_VALUE);
+
+		for (CandleInterval interval : CandleInterval.values()) {
+			List<CandleData> expectedCandles = new ArrayList<>();
+			for (MarketTradeData trade : trades) {
+				CandleData lastCandle = expectedCandles.isEmpty() ? null : expectedCandles.get(expectedCandles.size() - 1);
+
+				if (lastCandle != null && lastCandle.getTimestamp() == interval.getBucketStart(trade.getTimestamp()))
+					lastCandle.merge(trade);
+				else
+					expectedCandles.add(CandleData.fromTrade(interval, trade));
+			}
+
+			assertCandlesEqual(expectedCandles, repository.getMarketRepository().getCandles(ASSET_MARKET, interval, 0L, Long.MAX_VALUE, null, null));
+		}
+	}
+
+	private static void assertCandlesEqual(List<CandleData> expectedCandles, List<CandleData> actualCandles) {
+		assertEquals(expectedCandles.size(), actualCandles.size());
+
+		for (int i = 0; i < expectedCandles.size(); ++i) {
+			CandleData expected = expectedCandles.get(i);
+			CandleData actual = actualCandles.get(i);
+
+			assertEquals(expected.getTimestamp(), actual.getTimestamp());
+			assertEquals(expected.getOpen(), actual.getOpen());
+			assertEquals(expected.getHigh(), actual.getHigh());
+			assertEquals(expected.getLow(), actual.getLow());
+			assertEquals(expected.getClose(), actual.getClose());
+			assertEquals(expected.getVolume(), actual.getVolume());
+			assertEquals(expected.getQuoteVolume(), actual.getQuoteVolume());
+			assertEquals(expected.getTradeCount(), actual.getTradeCount());
+		}
+	}
+
+	private static int getTotalTradeCount(Repository repository, String market) throws DataException {
+		return repository.getMarketRepository().getCandles(market, CandleInterval.DAY, 0L, Long.MAX_VALUE, null, null)
+				.stream().mapToInt(CandleData::getTradeCount).sum();
+	}
+
+	/** Deploys LTC trade AT and takes it through to redemption, returning AT's address. */
+	private static String redeemTrade(Repository repository) throws DataException {
+		PrivateKeyAccount deployer = Common.getTestAccount(repository, "chloe");
+		PrivateKeyAccount tradeAccount = Common.getTestAccount(repository, "alice");
+		PrivateKeyAccount partner = Common.getTestAccount(repository, "dilbert");
+
+		byte[] creationBytes = LitecoinACCTv3.buildQortalAT(tradeAccount.getAddress(), LITECOIN_PUBLIC_KEY_HASH, REDEEM_AMOUNT, FOREIGN_AMOUNT, TRADE_TIMEOUT);
+		String atAddress = AtUtils.doDeployAT(repository, deployer, creationBytes, FUNDING_AMOUNT).getATAccount().getAddress();
+
+		long partnersOfferMessageTransactionTimestamp = System.currentTimeMillis();
+		int lockTimeA = (int) (partnersOfferMessageTransactionTimestamp / 1000L + TRADE_TIMEOUT * 60);
+		int refundTimeout = LitecoinACCTv3.calcRefundTimeout(partnersOfferMessageTransactionTimestamp, lockTimeA);
+
+		// Send trade info to AT, then give AT time to process message
+		byte[] messageData = LitecoinACCTv3.buildTradeMessage(partner.getAddress(), LITECOIN_PUBLIC_KEY_HASH, HASH_OF_SECRET_A, lockTimeA, refundTimeout);
+		sendMessage(repository, tradeAccount, messageData, atAddress);
+		BlockUtils.mintBlock(repository);
+
+		// Send correct secret to AT, which redeems in the next block
+		messageData = LitecoinACCTv3.buildRedeemMessage(SECRET_A, partner.getAddress());
+		sendMessage(repository, partner, messageData, atAddress);
+		BlockUtils.mintBlock(repository);
+
+		return atAddress;
+	}
+
+	private static void sendMessage(Repository repository, PrivateKeyAccount sender, byte[] data, String recipient) throws DataException {
+		BaseTransactionData baseTransactionData = new BaseTransactionData(System.currentTimeMillis(), Group.NO_GROUP, sender.getLastReference(), sender.getPublicKey(), null, null);
+		TransactionData messageTransactionData = new MessageTransactionData(baseTransactionData, 4, 0, recipient, 0, null, data, false, false);
+
+		MessageTransaction messageTransaction = new MessageTransaction(repository, messageTransactionData);
+		messageTransactionData.setFee(messageTransaction.calcRecommendedFee());
+
+		TransactionUtils.signAndMint(repository, messageTransactionData, sender);
+	}
+
+}
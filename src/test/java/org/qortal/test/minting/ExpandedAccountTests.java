@@ -0,0 +1,195 @@
+package org.qortal.test.minting;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.asset.Asset;
+import org.qortal.block.Block.ExpandedAccount;
+import org.qortal.data.account.AccountBalanceData;
+import org.qortal.data.account.AccountData;
+import org.qortal.data.account.RewardShareData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.Common;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ExpandedAccountTests extends Common {
+
+	private static final int BENCHMARK_ROUNDS = 5;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		Common.orphanCheck();
+	}
+
+	@Test
+	public void testGetAccountsMatchesGetAccount() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			Random random = new Random();
+
+			List<String> addresses = new ArrayList<>();
+			for (int i = 0; i < 2500; ++i)
+				addresses.add(saveRandomAccount(repository, random).getAddress());
+
+			// Duplicates and unknown accounts
+			addresses.add(addresses.get(0));
+			addresses.add("QunknownAccount");
+
+			Map<String, AccountData> accounts = repository.getAccountRepository().getAccounts(addresses);
+
+			assertEquals(2500, accounts.size());
+			assertFalse(accounts.containsKey("QunknownAccount"));
+
+			for (String address : addresses) {
+				AccountData expected = repository.getAccountRepository().getAccount(address);
+				AccountData actual = accounts.get(address);
+
+				if (expected == null) {
+					assertNull(actual);
+					continue;
+				}
+
+				assertEquals(expected.getAddress(), actual.getAddress());
+				assertEquals(expected.getFlags(), actual.getFlags());
+				assertEquals(expected.getLevel(), actual.getLevel());
+				assertEquals(expected.getBlocksMinted(), actual.getBlocksMinted());
+				assertEquals(expected.getDefaultGroupId(), actual.getDefaultGroupId());
+			}
+
+			assertTrue(repository.getAccountRepository().getAccounts(Collections.emptyList()).isEmpty());
+		}
+	}
+
+	@Test
+	public void testExpandAccounts() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			Random random = new Random();
+
+			List<RewardShareData> rewardShares = randomRewardShares(repository, random, 500);
+			List<ExpandedAccount> expandedAccounts = ExpandedAccount.expandAccounts(repository, rewardShares);
+
+			assertEquals(rewardShares.size(), expandedAccounts.size());
+
+			final int blockHeight = repository.getBlockRepository().getBlockchainHeight() + 1;
+			for (int i = 0; i < rewardShares.size(); ++i) {
+				RewardShareData rewardShareData = rewardShares.get(i);
+				ExpandedAccount expandedAccount = expandedAccounts.get(i);
+
+				assertEquals(rewardShareData.getMinter(), expandedAccount.getMintingAccount().getAddress());
+				assertEquals(rewardShareData.getRecipient(), expandedAccount.getRecipientAccount().getAddress());
+
+				// Share bin is derived from minter's level, so should match individually fetched account
+				AccountData mintingAccountData = repository.getAccountRepository().getAccount(rewardShareData.getMinter());
+				if (mintingAccountData.getLevel() == 0)
+					assertNull(expandedAccount.getShareBin(blockHeight));
+			}
+
+			// All of each distributed amount is accounted for
+			Map<String, Long> balanceChanges = new HashMap<>();
+			for (ExpandedAccount expandedAccount : expandedAccounts)
+				expandedAccount.distribute(100L, balanceChanges);
+
+			assertEquals(100L * expandedAccounts.size(), balanceChanges.values().stream().mapToLong(Long::longValue).sum());
+		}
+	}
+
+	@Test
+	public void benchmarkExpandAccounts() throws DataException {
+		final int onlineAccountsCount = 10_000;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			Random random = new Random();
+
+			List<RewardShareData> rewardShares = randomRewardShares(repository, random, onlineAccountsCount);
+
+			// Best of several rounds, as early rounds are dominated by JIT warm-up
+			long pointLookupNanos = Long.MAX_VALUE;
+			long bulkNanos = Long.MAX_VALUE;
+			List<ExpandedAccount> expandedAccounts = null;
+
+			for (int round = 0; round < BENCHMARK_ROUNDS; ++round) {
+				// Previous behaviour: point lookups for each minter and recipient
+				long before = System.nanoTime();
+				for (RewardShareData rewardShareData : rewardShares) {
+					assertNotNull(repository.getAccountRepository().getAccount(rewardShareData.getMinter()));
+
+					if (!rewardShareData.getRecipient().equals(rewardShareData.getMinter()))
+						assertNotNull(repository.getAccountRepository().getAccount(rewardShareData.getRecipient()));
+				}
+				pointLookupNanos = Math.min(pointLookupNanos, System.nanoTime() - before);
+
+				before = System.nanoTime();
+				expandedAccounts = ExpandedAccount.expandAccounts(repository, rewardShares);
+				bulkNanos = Math.min(bulkNanos, System.nanoTime() - before);
+			}
+
+			assertEquals(onlineAccountsCount, expandedAccounts.size());
+
+			// Reward distribution: per-account balance updates versus one batch
+			Map<String, Long> balanceChanges = new HashMap<>();
+			for (ExpandedAccount expandedAccount : expandedAccounts)
+				expandedAccount.distribute(1000L, balanceChanges);
+
+			repository.setSavepoint();
+			long before = System.nanoTime();
+			for (Map.Entry<String, Long> entry : balanceChanges.entrySet())
+				repository.getAccountRepository().modifyAssetBalance(entry.getKey(), Asset.QORT, entry.getValue());
+			long individualBalanceNanos = System.nanoTime() - before;
+			repository.rollbackToSavepoint();
+
+			List<AccountBalanceData> accountBalanceDeltas = new ArrayList<>(balanceChanges.size());
+			for (Map.Entry<String, Long> entry : balanceChanges.entrySet())
+				accountBalanceDeltas.add(new AccountBalanceData(entry.getKey(), Asset.QORT, entry.getValue()));
+
+			before = System.nanoTime();
+			repository.getAccountRepository().modifyAssetBalances(accountBalanceDeltas);
+			long batchedBalanceNanos = System.nanoTime() - before;
+
+			System.out.println(String.format("%d online accounts: expansion via point lookups %d ms, bulk %d ms; balance updates individually %d ms, batched %d ms",
+					onlineAccountsCount,
+					pointLookupNanos / 1_000_000L, bulkNanos / 1_000_000L,
+					individualBalanceNanos / 1_000_000L, batchedBalanceNanos / 1_000_000L));
+		}
+	}
+
+	private static AccountData saveRandomAccount(Repository repository, Random random) throws DataException {
+		String address = "Q" + Long.toHexString(random.nextLong());
+
+		AccountData accountData = new AccountData(address);
+		repository.getAccountRepository().ensureAccount(accountData);
+
+		accountData.setLevel(random.nextInt(11));
+		repository.getAccountRepository().setLevel(accountData);
+
+		return accountData;
+	}
+
+	/** Returns synthetic reward-shares, about a quarter of which are self-shares, with all accounts in repository. */
+	private static List<RewardShareData> randomRewardShares(Repository repository, Random random, int count) throws DataException {
+		List<RewardShareData> rewardShares = new ArrayList<>(count);
+
+		for (int i = 0; i < count; ++i) {
+			String minter = saveRandomAccount(repository, random).getAddress();
+			String recipient = random.nextInt(4) == 0 ? minter : saveRandomAccount(repository, random).getAddress();
+
+			byte[] minterPublicKey = new byte[32];
+			random.nextBytes(minterPublicKey);
+			byte[] rewardSharePublicKey = new byte[32];
+			random.nextBytes(rewardSharePublicKey);
+
+			rewardShares.add(new RewardShareData(minterPublicKey, minter, recipient, rewardSharePublicKey, random.nextInt(100_00)));
+		}
+
+		return rewardShares;
+	}
+
+}
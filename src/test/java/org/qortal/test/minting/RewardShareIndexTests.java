@@ -0,0 +1,175 @@
+package org.qortal.test.minting;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.data.account.RewardShareData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.AccountUtils;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.TransactionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RewardShareIndexTests extends Common {
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		Common.orphanCheck();
+	}
+
+	@Test
+	public void testIndexMatchesRepositoryOrdering() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			Random random = new Random();
+
+			List<RewardShareData> addedRewardShares = new ArrayList<>();
+			for (int i = 0; i < 200; ++i) {
+				RewardShareData rewardShareData = randomRewardShare(random);
+				repository.getAccountRepository().save(rewardShareData);
+				addedRewardShares.add(rewardShareData);
+			}
+
+			// Uncommitted changes, so these come from repository queries
+			List<byte[]> repositoryPublicKeys = repository.getAccountRepository().getRewardSharePublicKeys();
+			List<Integer> repositoryIndexes = getIndexes(repository, addedRewardShares);
+
+			repository.saveChanges();
+
+			// Committed, so these come from in-memory index
+			List<byte[]> indexedPublicKeys = repository.getAccountRepository().getRewardSharePublicKeys();
+			assertEqualKeys(repositoryPublicKeys, indexedPublicKeys);
+			assertEquals(repositoryIndexes, getIndexes(repository, addedRewardShares));
+
+			// Index lookups round-trip
+			int[] indexes = repositoryIndexes.stream().mapToInt(Integer::intValue).toArray();
+			List<RewardShareData> indexedRewardShares = repository.getAccountRepository().getRewardSharesByIndexes(indexes);
+			for (int i = 0; i < indexes.length; ++i)
+				assertArrayEquals(addedRewardShares.get(i).getRewardSharePublicKey(), indexedRewardShares.get(i).getRewardSharePublicKey());
+
+			// Out of bounds
+			assertNull(repository.getAccountRepository().getRewardSharesByIndexes(new int[] { indexedPublicKeys.size() }));
+			assertNull(repository.getAccountRepository().getRewardShareByIndex(indexedPublicKeys.size()));
+
+			// Delete some and compare again
+			for (int i = 0; i < addedRewardShares.size(); i += 3) {
+				RewardShareData rewardShareData = addedRewardShares.get(i);
+				repository.getAccountRepository().delete(rewardShareData.getMinterPublicKey(), rewardShareData.getRecipient());
+			}
+
+			repositoryPublicKeys = repository.getAccountRepository().getRewardSharePublicKeys();
+			repositoryIndexes = getIndexes(repository, addedRewardShares);
+
+			repository.saveChanges();
+
+			assertEqualKeys(repositoryPublicKeys, repository.getAccountRepository().getRewardSharePublicKeys());
+			assertEquals(repositoryIndexes, getIndexes(repository, addedRewardShares));
+
+			// Tidy up for orphan check
+			for (RewardShareData rewardShareData : addedRewardShares)
+				repository.getAccountRepository().delete(rewardShareData.getMinterPublicKey(), rewardShareData.getRecipient());
+
+			repository.saveChanges();
+		}
+	}
+
+	@Test
+	public void testRollbackToSavepoint() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			Random random = new Random();
+			List<byte[]> initialPublicKeys = repository.getAccountRepository().getRewardSharePublicKeys();
+
+			RewardShareData keptRewardShare = randomRewardShare(random);
+			repository.getAccountRepository().save(keptRewardShare);
+
+			repository.setSavepoint();
+
+			RewardShareData discardedRewardShare = randomRewardShare(random);
+			repository.getAccountRepository().save(discardedRewardShare);
+
+			repository.rollbackToSavepoint();
+
+			repository.saveChanges();
+
+			assertNotNull(repository.getAccountRepository().getRewardShareIndex(keptRewardShare.getRewardSharePublicKey()));
+			assertNull(repository.getAccountRepository().getRewardShareIndex(discardedRewardShare.getRewardSharePublicKey()));
+			assertEquals(initialPublicKeys.size() + 1, repository.getAccountRepository().getRewardSharePublicKeys().size());
+
+			// Other sessions see the same
+			try (final Repository otherRepository = RepositoryManager.getRepository()) {
+				assertNotNull(otherRepository.getAccountRepository().getRewardShareIndex(keptRewardShare.getRewardSharePublicKey()));
+				assertNull(otherRepository.getAccountRepository().getRewardShareIndex(discardedRewardShare.getRewardSharePublicKey()));
+			}
+
+			// Discarded changes never reach index
+			repository.getAccountRepository().delete(keptRewardShare.getMinterPublicKey(), keptRewardShare.getRecipient());
+			repository.discardChanges();
+			assertNotNull(repository.getAccountRepository().getRewardShareIndex(keptRewardShare.getRewardSharePublicKey()));
+
+			repository.getAccountRepository().delete(keptRewardShare.getMinterPublicKey(), keptRewardShare.getRecipient());
+			repository.saveChanges();
+			assertNull(repository.getAccountRepository().getRewardShareIndex(keptRewardShare.getRewardSharePublicKey()));
+		}
+	}
+
+	@Test
+	public void testRewardShareTransactionsUpdateIndex() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			int initialCount = repository.getAccountRepository().getRewardSharePublicKeys().size();
+
+			// Process a block with new REWARD_SHARE transaction
+			byte[] rewardSharePrivateKey = AccountUtils.rewardShare(repository, "alice", "bob", 50_00);
+			byte[] rewardSharePublicKey = new PrivateKeyAccount(repository, rewardSharePrivateKey).getPublicKey();
+
+			assertEquals(initialCount + 1, repository.getAccountRepository().getRewardSharePublicKeys().size());
+			assertNotNull(repository.getAccountRepository().getRewardShareIndex(rewardSharePublicKey));
+
+			// Orphan it again
+			BlockUtils.orphanLastBlock(repository);
+			TransactionUtils.deleteUnconfirmedTransactions(repository);
+
+			assertEquals(initialCount, repository.getAccountRepository().getRewardSharePublicKeys().size());
+			assertNull(repository.getAccountRepository().getRewardShareIndex(rewardSharePublicKey));
+		}
+	}
+
+	private static RewardShareData randomRewardShare(Random random) {
+		byte[] minterPublicKey = new byte[32];
+		random.nextBytes(minterPublicKey);
+		byte[] rewardSharePublicKey = new byte[32];
+		random.nextBytes(rewardSharePublicKey);
+
+		String minter = "Q" + random.nextInt(Integer.MAX_VALUE);
+		String recipient = "Q" + random.nextInt(Integer.MAX_VALUE);
+
+		return new RewardShareData(minterPublicKey, minter, recipient, rewardSharePublicKey, random.nextInt(100_00));
+	}
+
+	private static List<Integer> getIndexes(Repository repository, List<RewardShareData> rewardShares) throws DataException {
+		List<Integer> indexes = new ArrayList<>();
+		for (RewardShareData rewardShareData : rewardShares)
+			indexes.add(repository.getAccountRepository().getRewardShareIndex(rewardShareData.getRewardSharePublicKey()));
+
+		return indexes;
+	}
+
+	private static void assertEqualKeys(List<byte[]> expected, List<byte[]> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); ++i)
+			assertArrayEquals(expected.get(i), actual.get(i));
+	}
+
+}
@@ -0,0 +1,104 @@
+package org.qortal.test.network;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.crypto.MemoryPoW;
+import org.qortal.network.HandshakePoWExecutor;
+import org.qortal.utils.NTP;
+
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class HandshakePoWExecutorTests {
+
+	private static final int WORK_BUFFER_LENGTH = 2 * 1024 * 1024; // bytes
+	private static final int DIFFICULTY = 2; // leading zero bits
+
+	@Before
+	public void beforeTest() {
+		// MemoryPoW needs NTP time
+		NTP.setFixedOffset(0L);
+	}
+
+	@Test
+	public void testReusedWorkBuffer() throws Exception {
+		HandshakePoWExecutor executor = new HandshakePoWExecutor(1, 10);
+		Random random = new Random();
+
+		try {
+			AtomicReference<long[]> firstBuffer = new AtomicReference<>();
+			AtomicReference<long[]> secondBuffer = new AtomicReference<>();
+
+			for (int i = 0; i < 5; ++i) {
+				byte[] data = new byte[32];
+				random.nextBytes(data);
+
+				CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+				assertTrue(executor.execute(() -> {
+					long[] workBuffer = HandshakePoWExecutor.getWorkBuffer(WORK_BUFFER_LENGTH);
+					if (firstBuffer.get() == null)
+						firstBuffer.set(workBuffer);
+					else
+						secondBuffer.set(workBuffer);
+
+					// Buffer still holds previous handshake's work, which mustn't affect result
+					Integer nonce = MemoryPoW.compute2(data, workBuffer, WORK_BUFFER_LENGTH, DIFFICULTY);
+
+					result.complete(MemoryPoW.verify2(data, workBuffer, WORK_BUFFER_LENGTH, DIFFICULTY, nonce)
+							&& MemoryPoW.verify2(data, WORK_BUFFER_LENGTH, DIFFICULTY, nonce));
+				}));
+
+				assertTrue(result.get(10, TimeUnit.SECONDS));
+			}
+
+			assertEquals(WORK_BUFFER_LENGTH / 8, firstBuffer.get().length);
+			assertSame(firstBuffer.get(), secondBuffer.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testQueueBounded() throws Exception {
+		HandshakePoWExecutor executor = new HandshakePoWExecutor(1, 2);
+
+		try {
+			CountDownLatch started = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+
+			assertTrue(executor.execute(() -> {
+				started.countDown();
+
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+
+			CountDownLatch queuedDone = new CountDownLatch(2);
+			assertTrue(executor.execute(queuedDone::countDown));
+			assertTrue(executor.execute(queuedDone::countDown));
+			assertEquals(2, executor.getQueuedCount());
+
+			// Queue is full
+			assertFalse(executor.execute(() -> fail("rejected step shouldn't run")));
+
+			release.countDown();
+			assertTrue(queuedDone.await(5, TimeUnit.SECONDS));
+
+			// Room again
+			CountDownLatch laterDone = new CountDownLatch(1);
+			assertTrue(executor.execute(laterDone::countDown));
+			assertTrue(laterDone.await(5, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,217 @@
+package org.qortal.test.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.network.MessageDispatcher;
+import org.qortal.network.message.MessageType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class MessageDispatcherTests {
+
+	private static final long MAX_QUEUE_TIME = 60 * 1000L; // ms
+
+	private ExecutorService executor;
+
+	@Before
+	public void beforeTest() {
+		this.executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void afterTest() {
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	public void testPriorities() {
+		assertEquals(MessageDispatcher.Priority.CRITICAL, MessageDispatcher.getPriority(MessageType.GET_BLOCK));
+		assertEquals(MessageDispatcher.Priority.CRITICAL, MessageDispatcher.getPriority(MessageType.ONLINE_ACCOUNTS_V3));
+		assertEquals(MessageDispatcher.Priority.NORMAL, MessageDispatcher.getPriority(MessageType.TRANSACTION));
+		assertEquals(MessageDispatcher.Priority.BULK, MessageDispatcher.getPriority(MessageType.ARBITRARY_DATA_FILE));
+	}
+
+	@Test
+	public void testQueuedInsteadOfDiscarded() throws Exception {
+		MessageDispatcher dispatcher = new MessageDispatcher(type -> type == MessageType.GET_ARBITRARY_DATA_FILE ? 1 : null, 100, 10, MAX_QUEUE_TIME, this.executor);
+
+		CountDownLatch release = new CountDownLatch(1);
+		Future<Boolean> blockedDispatch = this.dispatchBlocking(dispatcher, MessageType.GET_ARBITRARY_DATA_FILE, release);
+
+		// Type is at its limit, so further messages are queued, without blocking caller
+		List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+		for (int i = 0; i < 3; ++i) {
+			final int messageNumber = i;
+			assertTrue(dispatcher.dispatch(MessageType.GET_ARBITRARY_DATA_FILE, () -> handled.add(messageNumber)));
+		}
+
+		assertEquals(3, dispatcher.getQueuedCount(MessageType.GET_ARBITRARY_DATA_FILE));
+		assertTrue(handled.isEmpty());
+
+		// Other message types are unaffected
+		assertTrue(dispatcher.dispatch(MessageType.ARBITRARY_DATA_FILE, () -> handled.add(-1)));
+		assertEquals(Collections.singletonList(-1), handled);
+
+		// Once blocked handler finishes, queued messages are handled, in order
+		release.countDown();
+		assertTrue(blockedDispatch.get(5, TimeUnit.SECONDS));
+
+		waitForIdle(dispatcher);
+		assertEquals(Arrays.asList(-1, 0, 1, 2), handled);
+		assertEquals(0, dispatcher.getQueuedCount(MessageType.GET_ARBITRARY_DATA_FILE));
+		assertEquals(0, dispatcher.getTotalActiveCount());
+	}
+
+	@Test
+	public void testQueueBounded() throws Exception {
+		MessageDispatcher dispatcher = new MessageDispatcher(type -> 1, 100, 2, MAX_QUEUE_TIME, this.executor);
+
+		CountDownLatch release = new CountDownLatch(1);
+		Future<Boolean> blockedDispatch = this.dispatchBlocking(dispatcher, MessageType.GET_TRANSACTION, release);
+
+		assertTrue(dispatcher.dispatch(MessageType.GET_TRANSACTION, () -> {}));
+		assertTrue(dispatcher.dispatch(MessageType.GET_TRANSACTION, () -> {}));
+		// Queue is full
+		assertFalse(dispatcher.dispatch(MessageType.GET_TRANSACTION, () -> fail("rejected message shouldn't be handled")));
+		assertEquals(2, dispatcher.getQueuedCount(MessageType.GET_TRANSACTION));
+
+		release.countDown();
+		assertTrue(blockedDispatch.get(5, TimeUnit.SECONDS));
+
+		waitForIdle(dispatcher);
+		assertEquals(0, dispatcher.getQueuedCount(MessageType.GET_TRANSACTION));
+	}
+
+	@Test
+	public void testCriticalMessagesGoFirst() throws Exception {
+		// With 4 threads, bulk messages can only use 3, leaving 1 for critical messages
+		MessageDispatcher dispatcher = new MessageDispatcher(type -> null, 4, 10, MAX_QUEUE_TIME, this.executor);
+
+		CountDownLatch releaseFirst = new CountDownLatch(1);
+		CountDownLatch releaseOthers = new CountDownLatch(1);
+		List<Future<Boolean>> blockedDispatches = new ArrayList<>();
+		blockedDispatches.add(this.dispatchBlocking(dispatcher, MessageType.ARBITRARY_DATA_FILE, releaseFirst));
+		for (int i = 0; i < 2; ++i)
+			blockedDispatches.add(this.dispatchBlocking(dispatcher, MessageType.ARBITRARY_DATA_FILE, releaseOthers));
+
+		assertEquals(3, dispatcher.getTotalActiveCount());
+
+		// Bulk message has to wait...
+		List<String> handled = Collections.synchronizedList(new ArrayList<>());
+		assertTrue(dispatcher.dispatch(MessageType.GET_ARBITRARY_DATA, () -> handled.add("bulk")));
+		assertEquals(1, dispatcher.getQueuedCount(MessageType.GET_ARBITRARY_DATA));
+
+		// ...but critical message can use reserved thread
+		assertTrue(dispatcher.dispatch(MessageType.GET_BLOCK, () -> handled.add("critical-1")));
+		assertEquals(Collections.singletonList("critical-1"), handled);
+
+		// Use up the reserved thread too
+		blockedDispatches.add(this.dispatchBlocking(dispatcher, MessageType.GET_BLOCK_SUMMARIES, releaseOthers));
+		assertEquals(4, dispatcher.getTotalActiveCount());
+
+		assertTrue(dispatcher.dispatch(MessageType.GET_SIGNATURES_V2, () -> handled.add("critical-2")));
+		assertEquals(1, dispatcher.getQueuedCount(MessageType.GET_SIGNATURES_V2));
+
+		// Freed thread picks critical message first, even though bulk message has been waiting longer
+		releaseFirst.countDown();
+		assertTrue(blockedDispatches.get(0).get(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("critical-1", "critical-2"), handled);
+
+		releaseOthers.countDown();
+		for (Future<Boolean> blockedDispatch : blockedDispatches)
+			assertTrue(blockedDispatch.get(5, TimeUnit.SECONDS));
+
+		waitForIdle(dispatcher);
+		assertEquals(Arrays.asList("critical-1", "critical-2", "bulk"), handled);
+		assertEquals(0, dispatcher.getTotalActiveCount());
+	}
+
+	@Test
+	public void testLimitedHandoffs() throws Exception {
+		MessageDispatcher dispatcher = new MessageDispatcher(type -> 1, 100, 10, MAX_QUEUE_TIME, this.executor);
+
+		CountDownLatch release = new CountDownLatch(1);
+		List<Thread> handlerThreads = Collections.synchronizedList(new ArrayList<>());
+		Future<Boolean> blockedDispatch = this.executor.submit(() -> dispatcher.dispatch(MessageType.GET_TRANSACTION, () -> {
+			handlerThreads.add(Thread.currentThread());
+
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+
+		while (dispatcher.getTotalActiveCount() == 0)
+			Thread.sleep(10L);
+
+		for (int i = 0; i < 3; ++i)
+			assertTrue(dispatcher.dispatch(MessageType.GET_TRANSACTION, () -> handlerThreads.add(Thread.currentThread())));
+
+		release.countDown();
+		assertTrue(blockedDispatch.get(5, TimeUnit.SECONDS));
+
+		waitForIdle(dispatcher);
+		assertEquals(4, handlerThreads.size());
+
+		// Dispatching thread handled its own message and one queued message, but no more
+		assertSame(handlerThreads.get(0), handlerThreads.get(1));
+		assertNotSame(handlerThreads.get(0), handlerThreads.get(2));
+	}
+
+	@Test
+	public void testStaleMessagesDiscarded() throws Exception {
+		MessageDispatcher dispatcher = new MessageDispatcher(type -> 1, 100, 10, 100L, this.executor);
+
+		CountDownLatch release = new CountDownLatch(1);
+		Future<Boolean> blockedDispatch = this.dispatchBlocking(dispatcher, MessageType.GET_TRANSACTION, release);
+
+		assertTrue(dispatcher.dispatch(MessageType.GET_TRANSACTION, () -> fail("stale message shouldn't be handled")));
+		assertEquals(1, dispatcher.getQueuedCount(MessageType.GET_TRANSACTION));
+
+		// Wait for queued message to become stale
+		Thread.sleep(200L);
+
+		release.countDown();
+		assertTrue(blockedDispatch.get(5, TimeUnit.SECONDS));
+
+		waitForIdle(dispatcher);
+		assertEquals(0, dispatcher.getQueuedCount(MessageType.GET_TRANSACTION));
+	}
+
+	/** Waits for all dispatched messages, including those handed to executor, to be handled. */
+	private static void waitForIdle(MessageDispatcher dispatcher) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 5000L;
+
+		while (dispatcher.getTotalActiveCount() > 0) {
+			assertTrue("timed out waiting for messages to be handled", System.currentTimeMillis() < deadline);
+			Thread.sleep(10L);
+		}
+	}
+
+	/** Dispatches message, on another thread, whose handling blocks until <tt>release</tt>. Returns once handling has started. */
+	private Future<Boolean> dispatchBlocking(MessageDispatcher dispatcher, MessageType messageType, CountDownLatch release) throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+
+		Future<Boolean> future = this.executor.submit(() -> dispatcher.dispatch(messageType, () -> {
+			started.countDown();
+
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		return future;
+	}
+
+}